@@ -6,6 +6,7 @@ import org.junit.Test;
 import java.util.ArrayList;
 import java.util.List;
 
+import io.pivotal.android.push.backend.analytics.PCFPushSendAnalyticsApiRequestImpl;
 import io.pivotal.android.push.prefs.Pivotal;
 
 import static org.junit.Assert.*;
@@ -30,6 +31,8 @@ public class PushServiceInfoTest {
                 .setSSLCertValidationMode(Pivotal.SslCertValidationMode.TRUST_ALL)
                 .setPinnedCertificateNames(certificateNames)
                 .setAnalyticsEnabled(false)
+                .setAnalyticsCompressionEnabled(true)
+                .setAnalyticsCompressionThreshold(2048)
                 .build();
 
         assertEquals("https://some-serviceurl.com", serviceInfo.getServiceUrl());
@@ -38,6 +41,8 @@ public class PushServiceInfoTest {
         assertEquals(Pivotal.SslCertValidationMode.TRUST_ALL, serviceInfo.getSslCertValidationMode());
         assertEquals(certificateNames, serviceInfo.getPinnedSslCertificateNames());
         assertEquals(false, serviceInfo.areAnalyticsEnabled());
+        assertEquals(true, serviceInfo.isAnalyticsCompressionEnabled());
+        assertEquals(2048, serviceInfo.getAnalyticsCompressionThresholdInBytes());
     }
 
     @Test
@@ -51,6 +56,8 @@ public class PushServiceInfoTest {
         assertEquals(Pivotal.SslCertValidationMode.DEFAULT, serviceInfo.getSslCertValidationMode());
         assertTrue(serviceInfo.getPinnedSslCertificateNames().isEmpty());
         assertEquals(true, serviceInfo.areAnalyticsEnabled());
+        assertEquals(false, serviceInfo.isAnalyticsCompressionEnabled());
+        assertEquals(PCFPushSendAnalyticsApiRequestImpl.DEFAULT_COMPRESSION_THRESHOLD_IN_BYTES, serviceInfo.getAnalyticsCompressionThresholdInBytes());
     }
 
     @Test(expected = IllegalArgumentException.class)
@@ -86,4 +93,13 @@ public class PushServiceInfoTest {
                 .build();
     }
 
-}
\ No newline at end of file
+    @Test(expected = IllegalArgumentException.class)
+    public void builder_setsInvalidAnalyticsCompressionThreshold() throws Exception {
+        PushServiceInfo serviceInfo = PushServiceInfo.Builder()
+                .setServiceUrl("https://some-serviceurl.com")
+                .setPlatformUuid("some-platform-uuid")
+                .setPlatformSecret("some-platform-secret")
+                .setAnalyticsCompressionThreshold(-1)
+                .build();
+    }
+}
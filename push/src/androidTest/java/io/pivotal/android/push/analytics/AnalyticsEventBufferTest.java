@@ -0,0 +1,180 @@
+package io.pivotal.android.push.analytics;
+
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import io.pivotal.android.push.model.analytics.AnalyticsEvent;
+import io.pivotal.android.push.model.analytics.DummyEvent;
+
+public class AnalyticsEventBufferTest extends AndroidTestCase {
+
+    private ScheduledExecutorService executor;
+    private List<List<AnalyticsEvent>> flushes;
+    private CountDownLatch flushLatch;
+    private AnalyticsEventBuffer.Listener listener;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        executor = Executors.newSingleThreadScheduledExecutor();
+        flushes = new ArrayList<>();
+        flushLatch = new CountDownLatch(1);
+        listener = new AnalyticsEventBuffer.Listener() {
+            @Override
+            public void onFlush(List<AnalyticsEvent> events) {
+                flushes.add(events);
+                flushLatch.countDown();
+            }
+        };
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        executor.shutdownNow();
+        super.tearDown();
+    }
+
+    public void testRequiresPositiveCapacity() {
+        try {
+            new AnalyticsEventBuffer(0, 0, listener, executor);
+            fail("should have failed");
+        } catch (IllegalArgumentException e) {
+            // should have thrown
+        }
+    }
+
+    public void testRequiresNonNegativeLatency() {
+        try {
+            new AnalyticsEventBuffer(1, -1, listener, executor);
+            fail("should have failed");
+        } catch (IllegalArgumentException e) {
+            // should have thrown
+        }
+    }
+
+    public void testRequiresListener() {
+        try {
+            new AnalyticsEventBuffer(1, 0, null, executor);
+            fail("should have failed");
+        } catch (IllegalArgumentException e) {
+            // should have thrown
+        }
+    }
+
+    public void testRequiresExecutor() {
+        try {
+            new AnalyticsEventBuffer(1, 0, listener, null);
+            fail("should have failed");
+        } catch (IllegalArgumentException e) {
+            // should have thrown
+        }
+    }
+
+    public void testRequiresEvent() {
+        final AnalyticsEventBuffer buffer = new AnalyticsEventBuffer(2, 0, listener, executor);
+        try {
+            buffer.add(null);
+            fail("should have failed");
+        } catch (IllegalArgumentException e) {
+            // should have thrown
+        }
+    }
+
+    public void testCapacityOfOneFlushesEveryEvent() {
+        final AnalyticsEventBuffer buffer = new AnalyticsEventBuffer(1, 0, listener, executor);
+        buffer.add(DummyEvent.getEvent("1"));
+        buffer.add(DummyEvent.getEvent("2"));
+        assertEquals(2, flushes.size());
+        assertEquals(1, flushes.get(0).size());
+        assertEquals(1, flushes.get(1).size());
+        assertEquals(0, buffer.getNumberOfEvents());
+    }
+
+    public void testFlushesWhenFull() {
+        final AnalyticsEventBuffer buffer = new AnalyticsEventBuffer(3, 0, listener, executor);
+        buffer.add(DummyEvent.getEvent("1"));
+        buffer.add(DummyEvent.getEvent("2"));
+        assertTrue(flushes.isEmpty());
+        assertEquals(2, buffer.getNumberOfEvents());
+
+        buffer.add(DummyEvent.getEvent("3"));
+        assertEquals(1, flushes.size());
+        assertEquals(3, flushes.get(0).size());
+        assertEquals("1", flushes.get(0).get(0).getDeviceUuid());
+        assertEquals("2", flushes.get(0).get(1).getDeviceUuid());
+        assertEquals("3", flushes.get(0).get(2).getDeviceUuid());
+        assertEquals(0, buffer.getNumberOfEvents());
+
+        // The buffer is reused after it has been flushed
+        buffer.add(DummyEvent.getEvent("4"));
+        assertEquals(1, flushes.size());
+        assertEquals(1, buffer.getNumberOfEvents());
+    }
+
+    public void testFlush() {
+        final AnalyticsEventBuffer buffer = new AnalyticsEventBuffer(10, 0, listener, executor);
+        buffer.flush();
+        assertTrue(flushes.isEmpty());
+
+        buffer.add(DummyEvent.getEvent("1"));
+        buffer.flush();
+        assertEquals(1, flushes.size());
+        assertEquals(1, flushes.get(0).size());
+    }
+
+    public void testFlushesAfterMaximumLatency() throws InterruptedException {
+        final AnalyticsEventBuffer buffer = new AnalyticsEventBuffer(10, 20, listener, executor);
+        buffer.add(DummyEvent.getEvent("1"));
+        buffer.add(DummyEvent.getEvent("2"));
+        assertTrue(flushLatch.await(5, TimeUnit.SECONDS));
+        assertEquals(0, buffer.getNumberOfEvents());
+        assertEquals(1, flushes.size());
+        assertEquals(2, flushes.get(0).size());
+    }
+
+    public void testFlushCancelsScheduledFlush() throws InterruptedException {
+        final AnalyticsEventBuffer buffer = new AnalyticsEventBuffer(10, 20, listener, executor);
+        buffer.add(DummyEvent.getEvent("1"));
+        buffer.flush();
+        assertEquals(1, flushes.size());
+        Thread.sleep(100);
+        assertEquals(1, flushes.size());
+    }
+
+    public void testListenerExceptionsDoNotKeepEvents() {
+        final AnalyticsEventBuffer buffer = new AnalyticsEventBuffer(2, 0, new AnalyticsEventBuffer.Listener() {
+            @Override
+            public void onFlush(List<AnalyticsEvent> events) {
+                throw new RuntimeException("Could not save");
+            }
+        }, executor);
+        buffer.add(DummyEvent.getEvent("1"));
+        buffer.add(DummyEvent.getEvent("2"));
+        assertEquals(0, buffer.getNumberOfEvents());
+    }
+
+    public void testListenerIsCalledOutsideTheBufferLock() {
+        final AnalyticsEventBuffer[] buffer = new AnalyticsEventBuffer[1];
+        final boolean[] wasLockHeld = new boolean[] { true, true };
+        buffer[0] = new AnalyticsEventBuffer(2, 0, new AnalyticsEventBuffer.Listener() {
+            @Override
+            public void onFlush(List<AnalyticsEvent> events) {
+                wasLockHeld[events.size() - 1] = Thread.holdsLock(buffer[0]);
+            }
+        }, executor);
+
+        buffer[0].add(DummyEvent.getEvent("1"));
+        buffer[0].flush();
+        buffer[0].add(DummyEvent.getEvent("2"));
+        buffer[0].add(DummyEvent.getEvent("3"));
+
+        assertFalse(wasLockHeld[0]);
+        assertFalse(wasLockHeld[1]);
+    }
+}
@@ -54,6 +54,17 @@ public class AnalyticsEventLoggerTest extends AndroidTestCase {
             .thenReturn(TEST_EVENT_DEVICE_UUID_VALUE);
         when(pushPreferences.getPlatformUuid()).thenReturn(TEST_EVENT_PLATFORM_UUID_VALUE);
         when(pushPreferences.areAnalyticsEnabled()).thenReturn(true);
+
+        // Save and send each event as soon as it is logged unless a test says otherwise
+        AnalyticsEventLogger.configureEventBuffer(1, 0);
+        AnalyticsEventLogger.configureSendScheduler(0);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        AnalyticsEventLogger.configureEventBuffer(AnalyticsEventBuffer.DEFAULT_CAPACITY, AnalyticsEventBuffer.DEFAULT_MAX_LATENCY_IN_MILLISECONDS);
+        AnalyticsEventLogger.configureSendScheduler(AnalyticsSendScheduler.DEFAULT_SEND_WINDOW_IN_MILLISECONDS);
+        super.tearDown();
     }
 
     public void testRequiresServiceStarter() {
@@ -174,6 +185,138 @@ public class AnalyticsEventLoggerTest extends AndroidTestCase {
         assertTrue(getJob(1) instanceof SendAnalyticsEventsJob);
     }
 
+    public void testBufferedEventsAreSavedTogetherWhenBufferIsFull() {
+        AnalyticsEventLogger.configureEventBuffer(3, 0);
+        final AnalyticsEventLogger eventLogger = getEventLoggerWithAnalyticsEnabled();
+        eventLogger.logReceivedNotification("1");
+        eventLogger.logReceivedNotification("2");
+        assertFalse(serviceStarter.wasStarted());
+
+        eventLogger.logOpenedNotification("3");
+        assertNumberOfServiceIntents(2);
+        final EnqueueAnalyticsEventJob job = getJob(0);
+        assertEquals(3, job.getEvents().size());
+        assertEquals("1", job.getEvents().get(0).getReceiptId());
+        assertEquals("2", job.getEvents().get(1).getReceiptId());
+        assertEquals("3", job.getEvents().get(2).getReceiptId());
+        assertEquals(AnalyticsEventLogger.PCF_PUSH_EVENT_TYPE_PUSH_NOTIFICATION_OPENED, job.getEvents().get(2).getEventType());
+        assertTrue(getJob(1) instanceof SendAnalyticsEventsJob);
+    }
+
+    public void testBufferedEventsAreSavedWhenFlushed() {
+        AnalyticsEventLogger.configureEventBuffer(10, 0);
+        final AnalyticsEventLogger eventLogger = getEventLoggerWithAnalyticsEnabled();
+        eventLogger.logReceivedNotification(TEST_EVENT_RECEIPT_ID_VALUE);
+        eventLogger.logReceivedHeartbeat(TEST_EVENT_RECEIPT_ID_VALUE);
+        assertFalse(serviceStarter.wasStarted());
+
+        AnalyticsEventLogger.flushEvents();
+        assertNumberOfServiceIntents(2);
+        assertEquals(2, ((EnqueueAnalyticsEventJob) getJob(0)).getEvents().size());
+        assertTrue(getJob(1) instanceof SendAnalyticsEventsJob);
+
+        // Nothing left to save
+        AnalyticsEventLogger.flushEvents();
+        assertNumberOfServiceIntents(2);
+    }
+
+    public void testBufferedEventsAreSavedAfterMaximumLatency() throws InterruptedException {
+        AnalyticsEventLogger.configureEventBuffer(10, 50);
+        final AnalyticsEventLogger eventLogger = getEventLoggerWithAnalyticsEnabled();
+        eventLogger.logReceivedNotification(TEST_EVENT_RECEIPT_ID_VALUE);
+
+        final long deadline = System.currentTimeMillis() + 5000L;
+        while (serviceStarter.getStartedIntents().size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        // Has nothing left to save
+        AnalyticsEventLogger.flushEvents();
+        assertNumberOfServiceIntents(2);
+        assertEquals(TEST_EVENT_RECEIPT_ID_VALUE, getLoggedEvent(0).getReceiptId());
+    }
+
+    public void testOpenedNotificationsAreSavedRightAway() {
+        AnalyticsEventLogger.configureEventBuffer(10, 1000);
+        final AnalyticsEventLogger eventLogger = getEventLoggerWithAnalyticsEnabled();
+        eventLogger.logReceivedNotification("1");
+        assertFalse(serviceStarter.wasStarted());
+
+        eventLogger.logOpenedNotification("2");
+        assertNumberOfServiceIntents(2);
+        final EnqueueAnalyticsEventJob job = getJob(0);
+        assertEquals(2, job.getEvents().size());
+        assertEquals(AnalyticsEventLogger.PCF_PUSH_EVENT_TYPE_PUSH_NOTIFICATION_OPENED, job.getEvents().get(1).getEventType());
+    }
+
+    public void testReconfiguringBufferFlushesEvents() {
+        AnalyticsEventLogger.configureEventBuffer(10, 0);
+        final AnalyticsEventLogger eventLogger = getEventLoggerWithAnalyticsEnabled();
+        eventLogger.logReceivedNotification(TEST_EVENT_RECEIPT_ID_VALUE);
+        assertFalse(serviceStarter.wasStarted());
+
+        AnalyticsEventLogger.configureEventBuffer(1, 0);
+        assertNumberOfServiceIntents(2);
+    }
+
+    public void testConfigureEventBufferRequiresValidArguments() {
+        try {
+            AnalyticsEventLogger.configureEventBuffer(0, 0);
+            fail("should have failed");
+        } catch (IllegalArgumentException e) {
+            // should have thrown
+        }
+        try {
+            AnalyticsEventLogger.configureEventBuffer(1, -1);
+            fail("should have failed");
+        } catch (IllegalArgumentException e) {
+            // should have thrown
+        }
+    }
+
+    public void testSendsAreCoalescedWhileASendIsInFlight() {
+        final AnalyticsEventLogger eventLogger = getEventLoggerWithAnalyticsEnabled();
+        eventLogger.logReceivedNotification("1");
+        eventLogger.logReceivedNotification("2");
+        eventLogger.logReceivedNotification("3");
+        assertNumberOfServiceIntents(4);
+        assertTrue(getJob(0) instanceof EnqueueAnalyticsEventJob);
+        assertTrue(getJob(1) instanceof SendAnalyticsEventsJob);
+        assertTrue(getJob(2) instanceof EnqueueAnalyticsEventJob);
+        assertTrue(getJob(3) instanceof EnqueueAnalyticsEventJob);
+
+        // One more send for all of the events saved while the first send was in flight
+        AnalyticsEventLogger.onSendAnalyticsEventsJobComplete();
+        assertNumberOfServiceIntents(5);
+        assertTrue(getJob(4) instanceof SendAnalyticsEventsJob);
+
+        // Nothing new has been saved
+        AnalyticsEventLogger.onSendAnalyticsEventsJobComplete();
+        assertNumberOfServiceIntents(5);
+    }
+
+    public void testSendsAreCoalescedWithinTheSendWindow() {
+        AnalyticsEventLogger.configureSendScheduler(60000L);
+        final AnalyticsEventLogger eventLogger = getEventLoggerWithAnalyticsEnabled();
+        eventLogger.logReceivedNotification("1");
+        AnalyticsEventLogger.onSendAnalyticsEventsJobComplete();
+        eventLogger.logReceivedNotification("2");
+        AnalyticsEventLogger.onSendAnalyticsEventsJobComplete();
+        eventLogger.logReceivedNotification("3");
+        assertNumberOfServiceIntents(4);
+        assertTrue(getJob(1) instanceof SendAnalyticsEventsJob);
+        assertTrue(getJob(2) instanceof EnqueueAnalyticsEventJob);
+        assertTrue(getJob(3) instanceof EnqueueAnalyticsEventJob);
+    }
+
+    public void testConfigureSendSchedulerRequiresValidArguments() {
+        try {
+            AnalyticsEventLogger.configureSendScheduler(-1);
+            fail("should have failed");
+        } catch (IllegalArgumentException e) {
+            // should have thrown
+        }
+    }
+
     private void assertNumberOfServiceIntents(int expected) {
         assertEquals(expected, serviceStarter.getStartedIntents().size());
     }
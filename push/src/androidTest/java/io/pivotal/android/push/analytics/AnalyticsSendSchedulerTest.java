@@ -0,0 +1,166 @@
+package io.pivotal.android.push.analytics;
+
+import android.test.AndroidTestCase;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import io.pivotal.android.push.util.FakeTimeProvider;
+import io.pivotal.android.push.util.TimeProvider;
+
+public class AnalyticsSendSchedulerTest extends AndroidTestCase {
+
+    private ScheduledExecutorService executor;
+    private FakeTimeProvider timeProvider;
+    private Semaphore sendSemaphore;
+    private int numberOfSends;
+    private boolean willSendStart;
+    private AnalyticsSendScheduler.Sender sender;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        executor = Executors.newSingleThreadScheduledExecutor();
+        timeProvider = new FakeTimeProvider();
+        sendSemaphore = new Semaphore(0);
+        numberOfSends = 0;
+        willSendStart = true;
+        sender = new AnalyticsSendScheduler.Sender() {
+            @Override
+            public boolean send() {
+                numberOfSends += 1;
+                sendSemaphore.release();
+                return willSendStart;
+            }
+        };
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        executor.shutdownNow();
+        super.tearDown();
+    }
+
+    public void testRequiresNonNegativeSendWindow() {
+        try {
+            new AnalyticsSendScheduler(-1, sender, executor, timeProvider);
+            fail("should have failed");
+        } catch (IllegalArgumentException e) {
+            // should have thrown
+        }
+    }
+
+    public void testRequiresSender() {
+        try {
+            new AnalyticsSendScheduler(0, null, executor, timeProvider);
+            fail("should have failed");
+        } catch (IllegalArgumentException e) {
+            // should have thrown
+        }
+    }
+
+    public void testRequiresExecutor() {
+        try {
+            new AnalyticsSendScheduler(0, sender, null, timeProvider);
+            fail("should have failed");
+        } catch (IllegalArgumentException e) {
+            // should have thrown
+        }
+    }
+
+    public void testRequiresTimeProvider() {
+        try {
+            new AnalyticsSendScheduler(0, sender, executor, null);
+            fail("should have failed");
+        } catch (IllegalArgumentException e) {
+            // should have thrown
+        }
+    }
+
+    public void testFirstRequestSendsImmediately() {
+        final AnalyticsSendScheduler scheduler = new AnalyticsSendScheduler(60000L, sender, executor, timeProvider);
+        scheduler.requestSend();
+        assertEquals(1, numberOfSends);
+        assertTrue(scheduler.isSendInFlight());
+        assertFalse(scheduler.isSendPending());
+    }
+
+    public void testRequestsWhileInFlightAreCoalesced() {
+        final AnalyticsSendScheduler scheduler = new AnalyticsSendScheduler(0, sender, executor, timeProvider);
+        scheduler.requestSend();
+        for (int i = 0; i < 100; i += 1) {
+            scheduler.requestSend();
+        }
+        assertEquals(1, numberOfSends);
+
+        scheduler.onSendComplete();
+        assertEquals(2, numberOfSends);
+
+        scheduler.onSendComplete();
+        assertEquals(2, numberOfSends);
+        assertFalse(scheduler.isSendInFlight());
+    }
+
+    public void testRequestsWithinTheWindowAreCoalesced() {
+        final AnalyticsSendScheduler scheduler = new AnalyticsSendScheduler(60000L, sender, executor, timeProvider);
+        scheduler.requestSend();
+        scheduler.onSendComplete();
+        for (int i = 0; i < 100; i += 1) {
+            timeProvider.advance(500L);
+            scheduler.requestSend();
+            scheduler.onSendComplete();
+        }
+        assertEquals(1, numberOfSends);
+        assertTrue(scheduler.isSendPending());
+    }
+
+    public void testRequestAfterTheWindowSendsImmediately() {
+        final AnalyticsSendScheduler scheduler = new AnalyticsSendScheduler(60000L, sender, executor, timeProvider);
+        scheduler.requestSend();
+        scheduler.onSendComplete();
+        timeProvider.advance(60000L);
+        scheduler.requestSend();
+        assertEquals(2, numberOfSends);
+    }
+
+    public void testPendingSendStartsWhenTheWindowHasPassed() throws InterruptedException {
+        final AnalyticsSendScheduler scheduler = new AnalyticsSendScheduler(20L, sender, executor, new TimeProvider());
+        scheduler.requestSend();
+        scheduler.onSendComplete();
+        assertTrue(sendSemaphore.tryAcquire());
+
+        scheduler.requestSend();
+        scheduler.requestSend();
+        assertTrue(sendSemaphore.tryAcquire(5, TimeUnit.SECONDS));
+        assertEquals(2, numberOfSends);
+        assertFalse(scheduler.isSendPending());
+        assertTrue(scheduler.isSendInFlight());
+    }
+
+    public void testCancelStopsPendingSend() throws InterruptedException {
+        final AnalyticsSendScheduler scheduler = new AnalyticsSendScheduler(20L, sender, executor, new TimeProvider());
+        scheduler.requestSend();
+        scheduler.onSendComplete();
+        scheduler.requestSend();
+        assertTrue(scheduler.isSendPending());
+
+        scheduler.cancel();
+        assertFalse(scheduler.isSendPending());
+        Thread.sleep(100);
+        assertEquals(1, numberOfSends);
+    }
+
+    public void testSendThatDoesNotStartIsNotInFlight() {
+        willSendStart = false;
+        final AnalyticsSendScheduler scheduler = new AnalyticsSendScheduler(0, sender, executor, timeProvider);
+        scheduler.requestSend();
+        assertFalse(scheduler.isSendInFlight());
+
+        willSendStart = true;
+        scheduler.requestSend();
+        assertEquals(2, numberOfSends);
+        assertTrue(scheduler.isSendInFlight());
+    }
+}
@@ -0,0 +1,206 @@
+package io.pivotal.android.push.analytics;
+
+import android.test.AndroidTestCase;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.pivotal.android.push.database.EventQueueStatistics;
+import io.pivotal.android.push.model.analytics.AnalyticsEvent;
+import io.pivotal.android.push.util.FakeTimeProvider;
+import io.pivotal.android.push.util.RetryPolicy;
+import io.pivotal.android.push.util.RetryPolicyTest;
+
+public class AnalyticsUploadPolicyTest extends AndroidTestCase {
+
+    private static final int FLUSH_EVENT_COUNT = 10;
+    private static final long MAX_PENDING_AGE = 60000L;
+    private static final int LARGE_BACKLOG_EVENT_COUNT = 100;
+    private static final long MAX_LARGE_BACKLOG_AGE = 600000L;
+    private static final long RECHECK_INTERVAL = 15000L;
+    private static final long BASE_BACKOFF = 1000L;
+    private static final long MAX_BACKOFF = 8000L;
+
+    private FakeTimeProvider timeProvider;
+    private FakeDeviceConditions deviceConditions;
+    private AnalyticsUploadPolicy policy;
+
+    private static class FakeDeviceConditions implements AnalyticsUploadPolicy.DeviceConditions {
+
+        private boolean isNetworkAvailable = true;
+        private boolean isNetworkUnmetered = false;
+        private boolean isCharging = false;
+
+        @Override
+        public boolean isNetworkAvailable() {
+            return isNetworkAvailable;
+        }
+
+        @Override
+        public boolean isNetworkUnmetered() {
+            return isNetworkUnmetered;
+        }
+
+        @Override
+        public boolean isCharging() {
+            return isCharging;
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        timeProvider = new FakeTimeProvider();
+        deviceConditions = new FakeDeviceConditions();
+        policy = new AnalyticsUploadPolicy(timeProvider, deviceConditions, FLUSH_EVENT_COUNT, MAX_PENDING_AGE,
+                LARGE_BACKLOG_EVENT_COUNT, MAX_LARGE_BACKLOG_AGE, RECHECK_INTERVAL,
+                new RetryPolicy(Integer.MAX_VALUE, BASE_BACKOFF, MAX_BACKOFF, new RetryPolicyTest.FixedRandom(0.99999999)));
+    }
+
+    public void testRequiresTimeProvider() {
+        try {
+            new AnalyticsUploadPolicy(null, deviceConditions);
+            fail("should have failed");
+        } catch (IllegalArgumentException e) {
+            // should have thrown
+        }
+    }
+
+    public void testRequiresDeviceConditions() {
+        try {
+            new AnalyticsUploadPolicy(timeProvider, null);
+            fail("should have failed");
+        } catch (IllegalArgumentException e) {
+            // should have thrown
+        }
+    }
+
+    public void testRequiresPositiveFlushEventCount() {
+        try {
+            new AnalyticsUploadPolicy(timeProvider, deviceConditions, 0, MAX_PENDING_AGE, LARGE_BACKLOG_EVENT_COUNT,
+                    MAX_LARGE_BACKLOG_AGE, RECHECK_INTERVAL, new RetryPolicy());
+            fail("should have failed");
+        } catch (IllegalArgumentException e) {
+            // should have thrown
+        }
+    }
+
+    public void testRequiresPositiveRecheckInterval() {
+        try {
+            new AnalyticsUploadPolicy(timeProvider, deviceConditions, FLUSH_EVENT_COUNT, MAX_PENDING_AGE, LARGE_BACKLOG_EVENT_COUNT,
+                    MAX_LARGE_BACKLOG_AGE, 0, new RetryPolicy());
+            fail("should have failed");
+        } catch (IllegalArgumentException e) {
+            // should have thrown
+        }
+    }
+
+    public void testRequiresStatistics() {
+        try {
+            policy.decide(null);
+            fail("should have failed");
+        } catch (IllegalArgumentException e) {
+            // should have thrown
+        }
+    }
+
+    public void testIdleWithNoPendingEvents() {
+        final AnalyticsUploadPolicy.Decision decision = policy.decide(getStatistics(0, 0));
+        assertTrue(decision.isIdle());
+        assertFalse(decision.shouldSendNow());
+    }
+
+    public void testSendsOnceEnoughEventsAreWaiting() {
+        assertTrue(policy.decide(getStatistics(FLUSH_EVENT_COUNT, 0)).shouldSendNow());
+    }
+
+    public void testWaitsForTheOldestEventToBeOldEnough() {
+        final AnalyticsUploadPolicy.Decision decision = policy.decide(getStatistics(1, 10000L));
+        assertFalse(decision.shouldSendNow());
+        assertFalse(decision.isIdle());
+        assertEquals(MAX_PENDING_AGE - 10000L, decision.getDelayInMilliseconds());
+        assertTrue(decision.shouldWakeDevice());
+    }
+
+    public void testSendsOnceTheOldestEventIsOldEnough() {
+        assertTrue(policy.decide(getStatistics(1, MAX_PENDING_AGE)).shouldSendNow());
+    }
+
+    public void testSendsEventsWithoutATime() {
+        final Map<Integer, Integer> numberOfEventsByStatus = new HashMap<>();
+        numberOfEventsByStatus.put(AnalyticsEvent.Status.NOT_POSTED, 1);
+        assertTrue(policy.decide(new EventQueueStatistics(numberOfEventsByStatus, null, 0)).shouldSendNow());
+    }
+
+    public void testWaitsWhileOffline() {
+        deviceConditions.isNetworkAvailable = false;
+        final AnalyticsUploadPolicy.Decision decision = policy.decide(getStatistics(FLUSH_EVENT_COUNT, MAX_PENDING_AGE));
+        assertFalse(decision.shouldSendNow());
+        assertEquals(RECHECK_INTERVAL, decision.getDelayInMilliseconds());
+        assertFalse(decision.shouldWakeDevice());
+    }
+
+    public void testLargeBacklogWaitsForUnmeteredNetworkOrCharging() {
+        final AnalyticsUploadPolicy.Decision decision = policy.decide(getStatistics(LARGE_BACKLOG_EVENT_COUNT, MAX_PENDING_AGE));
+        assertFalse(decision.shouldSendNow());
+        assertEquals(RECHECK_INTERVAL, decision.getDelayInMilliseconds());
+        assertFalse(decision.shouldWakeDevice());
+    }
+
+    public void testLargeBacklogSendsOnUnmeteredNetwork() {
+        deviceConditions.isNetworkUnmetered = true;
+        assertTrue(policy.decide(getStatistics(LARGE_BACKLOG_EVENT_COUNT, 0)).shouldSendNow());
+    }
+
+    public void testLargeBacklogSendsWhileCharging() {
+        deviceConditions.isCharging = true;
+        assertTrue(policy.decide(getStatistics(LARGE_BACKLOG_EVENT_COUNT, 0)).shouldSendNow());
+    }
+
+    public void testLargeBacklogWaitsNoLongerThanItsMaximumAge() {
+        final AnalyticsUploadPolicy.Decision decision = policy.decide(getStatistics(LARGE_BACKLOG_EVENT_COUNT, MAX_LARGE_BACKLOG_AGE - 1000L));
+        assertFalse(decision.shouldSendNow());
+        assertEquals(1000L, decision.getDelayInMilliseconds());
+        assertTrue(decision.shouldWakeDevice());
+        assertTrue(policy.decide(getStatistics(LARGE_BACKLOG_EVENT_COUNT, MAX_LARGE_BACKLOG_AGE)).shouldSendNow());
+    }
+
+    public void testBacksOffAfterFailures() {
+        assertEquals(BASE_BACKOFF, policy.onSendFailed());
+        assertEquals(1, policy.getNumberOfConsecutiveFailures());
+
+        AnalyticsUploadPolicy.Decision decision = policy.decide(getStatistics(FLUSH_EVENT_COUNT, 0));
+        assertFalse(decision.shouldSendNow());
+        assertEquals(BASE_BACKOFF, decision.getDelayInMilliseconds());
+        assertTrue(decision.shouldWakeDevice());
+
+        timeProvider.advance(BASE_BACKOFF);
+        assertTrue(policy.decide(getStatistics(FLUSH_EVENT_COUNT, 0)).shouldSendNow());
+
+        assertEquals(2 * BASE_BACKOFF, policy.onSendFailed());
+        assertEquals(4 * BASE_BACKOFF, policy.onSendFailed());
+        assertEquals(MAX_BACKOFF, policy.onSendFailed());
+        assertEquals(MAX_BACKOFF, policy.onSendFailed());
+        decision = policy.decide(getStatistics(FLUSH_EVENT_COUNT, 0));
+        assertEquals(MAX_BACKOFF, decision.getDelayInMilliseconds());
+    }
+
+    public void testSuccessResetsBackoff() {
+        policy.onSendFailed();
+        policy.onSendFailed();
+        policy.onSendSucceeded();
+        assertEquals(0, policy.getNumberOfConsecutiveFailures());
+        assertTrue(policy.decide(getStatistics(FLUSH_EVENT_COUNT, 0)).shouldSendNow());
+        assertEquals(BASE_BACKOFF, policy.onSendFailed());
+    }
+
+    private EventQueueStatistics getStatistics(int numberOfPendingEvents, long ageOfOldestEvent) {
+        final Map<Integer, Integer> numberOfEventsByStatus = new HashMap<>();
+        if (numberOfPendingEvents > 0) {
+            numberOfEventsByStatus.put(AnalyticsEvent.Status.NOT_POSTED, numberOfPendingEvents);
+        }
+        final Date oldestPendingEventTime = numberOfPendingEvents > 0 ? new Date(timeProvider.currentTimeMillis() - ageOfOldestEvent) : null;
+        return new EventQueueStatistics(numberOfEventsByStatus, oldestPendingEventTime, 0);
+    }
+}
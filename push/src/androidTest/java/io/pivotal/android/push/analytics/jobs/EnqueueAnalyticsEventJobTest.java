@@ -2,12 +2,15 @@ package io.pivotal.android.push.analytics.jobs;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import android.net.Uri;
 import android.support.test.runner.AndroidJUnit4;
 import android.test.MoreAsserts;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import io.pivotal.android.push.model.analytics.AnalyticsEvent;
@@ -80,6 +83,37 @@ public class EnqueueAnalyticsEventJobTest extends JobTest {
         assertEquals(heartbeatEvent, savedEvent);
     }
 
+    @Test
+    public void testEnqueuesMultipleEvents() throws InterruptedException {
+
+        // Setup environment
+        assertEquals(0, eventsStorage.getNumberOfEvents());
+
+        // Run job
+        final EnqueueAnalyticsEventJob job = new EnqueueAnalyticsEventJob(event1, event2);
+        job.run(getJobParams(new JobResultListener() {
+
+            @Override
+            public void onJobComplete(int resultCode) {
+                assertEquals(RESULT_SUCCESS, resultCode);
+                semaphore.release();
+            }
+        }));
+
+        semaphore.acquire();
+
+        // Ensure both events made it into the database
+        assertEquals(2, eventsStorage.getNumberOfEvents());
+        final List<Uri> uris = eventsStorage.getEventUris();
+        assertEquals(2, uris.size());
+        final List<AnalyticsEvent> savedEvents = new ArrayList<>();
+        for (final Uri uri : uris) {
+            savedEvents.add(eventsStorage.readEvent(uri));
+        }
+        assertTrue(savedEvents.contains(event1));
+        assertTrue(savedEvents.contains(event2));
+    }
+
     @Test
     public void testSaveFails() throws InterruptedException {
 
@@ -120,6 +154,25 @@ public class EnqueueAnalyticsEventJobTest extends JobTest {
         MoreAsserts.assertNotEqual(job1, job2);
     }
 
+    @Test
+    public void testCoalescesWithPendingEnqueueJob() {
+        final EnqueueAnalyticsEventJob pendingJob = new EnqueueAnalyticsEventJob(event1);
+        final EnqueueAnalyticsEventJob job = new EnqueueAnalyticsEventJob(event2);
+        final EnqueueAnalyticsEventJob coalescedJob = (EnqueueAnalyticsEventJob) job.coalesceWith(pendingJob);
+        assertNotNull(coalescedJob);
+        assertEquals(2, coalescedJob.getEvents().size());
+        assertEquals(event1, coalescedJob.getEvents().get(0));
+        assertEquals(event2, coalescedJob.getEvents().get(1));
+        assertEquals(BaseJob.PRIORITY_HIGH, coalescedJob.getPriority());
+    }
+
+    @Test
+    public void testDoesNotCoalesceWithOtherJobs() {
+        final EnqueueAnalyticsEventJob job = new EnqueueAnalyticsEventJob(event1);
+        assertNull(job.coalesceWith(new SendAnalyticsEventsJob()));
+        assertNull(job.coalesceWith(null));
+    }
+
     @Test
     public void testParcelsData() {
         final EnqueueAnalyticsEventJob inputJob = new EnqueueAnalyticsEventJob(event1);
@@ -127,4 +180,13 @@ public class EnqueueAnalyticsEventJobTest extends JobTest {
         assertNotNull(outputJob);
         assertEquals(inputJob, outputJob);
     }
+
+    @Test
+    public void testParcelsMultipleEvents() {
+        final EnqueueAnalyticsEventJob inputJob = new EnqueueAnalyticsEventJob(event1, event2);
+        final EnqueueAnalyticsEventJob outputJob = getJobViaParcel(inputJob);
+        assertNotNull(outputJob);
+        assertEquals(inputJob, outputJob);
+        assertEquals(2, outputJob.getEvents().size());
+    }
 }
@@ -3,6 +3,8 @@ package io.pivotal.android.push.analytics.jobs;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import android.content.Intent;
@@ -158,6 +160,19 @@ public class PrepareDatabaseJobTest extends JobTest {
         assertFalse(job1.equals(job2));
     }
 
+    @Test
+    public void testCoalescesWithEqualPendingJob() {
+        final PrepareDatabaseJob pendingJob = new PrepareDatabaseJob(true);
+        assertSame(pendingJob, new PrepareDatabaseJob(true).coalesceWith(pendingJob));
+        assertEquals(BaseJob.PRIORITY_LOW, pendingJob.getPriority());
+    }
+
+    @Test
+    public void testDoesNotCoalesceWithDifferentPendingJob() {
+        assertNull(new PrepareDatabaseJob(true).coalesceWith(new PrepareDatabaseJob(false)));
+        assertNull(new PrepareDatabaseJob(true).coalesceWith(new SendAnalyticsEventsJob()));
+    }
+
     @Test
     public void testParcelsData() {
         final PrepareDatabaseJob inputJob = new PrepareDatabaseJob(true);
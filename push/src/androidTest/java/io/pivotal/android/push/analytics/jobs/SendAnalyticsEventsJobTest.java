@@ -3,16 +3,24 @@ package io.pivotal.android.push.analytics.jobs;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import android.net.Uri;
 import android.support.test.runner.AndroidJUnit4;
 import android.test.MoreAsserts;
+import io.pivotal.android.push.analytics.AnalyticsUploadPolicy;
 import io.pivotal.android.push.backend.analytics.FakePCFPushSendAnalyticsApiRequest;
 import io.pivotal.android.push.model.analytics.AnalyticsEvent;
+import io.pivotal.android.push.util.FakeTimeProvider;
+import io.pivotal.android.push.util.RetryPolicy;
+import io.pivotal.android.push.util.RetryPolicyTest;
 import java.util.ArrayList;
 import java.util.List;
 import junit.framework.Assert;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -24,6 +32,14 @@ public class SendAnalyticsEventsJobTest extends JobTest {
     public void setUp() throws Exception {
         super.setUp();
         alarmProvider.enableAlarm();
+        SendAnalyticsEventsJob.setUploadPolicy(null);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        SendAnalyticsEventsJob.configureBatches(SendAnalyticsEventsJob.DEFAULT_MAX_EVENTS_PER_BATCH, SendAnalyticsEventsJob.DEFAULT_MAX_BYTES_PER_BATCH);
+        SendAnalyticsEventsJob.setBatchListener(null);
+        SendAnalyticsEventsJob.setUploadPolicy(null);
     }
 
     @Test
@@ -134,6 +150,311 @@ public class SendAnalyticsEventsJobTest extends JobTest {
         assertTrue(alarmProvider.isAlarmEnabled());
     }
 
+    @Test
+    public void testFailedSendDoesNotChangeEventsSavedDuringRequest() throws InterruptedException {
+
+        final Uri uri = saveEventWithStatus(AnalyticsEvent.Status.NOT_POSTED);
+        final Uri[] newUri = new Uri[1];
+
+        sendAnalyticsApiRequest.setWillBeSuccessfulRequest(false);
+        sendAnalyticsApiRequest
+            .setRequestHook(new FakePCFPushSendAnalyticsApiRequest.RequestHook() {
+
+                @Override
+                public void onRequestMade(FakePCFPushSendAnalyticsApiRequest request,
+                    List<Uri> uris) {
+                    newUri[0] = saveEventWithStatus(AnalyticsEvent.Status.NOT_POSTED);
+                }
+            });
+
+        final SendAnalyticsEventsJob job = new SendAnalyticsEventsJob();
+        job.run(getJobParams(new JobResultListener() {
+
+            @Override
+            public void onJobComplete(int resultCode) {
+                assertEquals(SendAnalyticsEventsJob.RESULT_FAILED_TO_SEND_RECEIPTS, resultCode);
+                semaphore.release();
+            }
+        }));
+
+        semaphore.acquire();
+        assertEventHasStatus(uri, AnalyticsEvent.Status.POSTING_ERROR);
+        assertEventHasStatus(newUri[0], AnalyticsEvent.Status.NOT_POSTED);
+    }
+
+    @Test
+    public void testSendsEventsInBatchesBoundedByCount() throws InterruptedException {
+
+        final List<Uri> uris = new ArrayList<>();
+        for (int i = 0; i < 5; i += 1) {
+            uris.add(saveEventWithStatus(AnalyticsEvent.Status.NOT_POSTED));
+        }
+        final List<Boolean> batchResults = new ArrayList<>();
+        final List<Integer> batchSizes = new ArrayList<>();
+        SendAnalyticsEventsJob.configureBatches(2, SendAnalyticsEventsJob.DEFAULT_MAX_BYTES_PER_BATCH);
+        SendAnalyticsEventsJob.setBatchListener(new SendAnalyticsEventsJob.BatchListener() {
+
+            @Override
+            public void onBatchSent(int numberOfEvents, long approximateBytes, long latencyInMilliseconds, boolean isSuccessful) {
+                assertTrue(approximateBytes > 0);
+                assertTrue(latencyInMilliseconds >= 0);
+                batchSizes.add(numberOfEvents);
+                batchResults.add(isSuccessful);
+            }
+        });
+        sendAnalyticsApiRequest.setWillBeSuccessfulRequest(true);
+
+        final SendAnalyticsEventsJob job = new SendAnalyticsEventsJob();
+        job.run(getJobParams(new JobResultListener() {
+
+            @Override
+            public void onJobComplete(int resultCode) {
+                assertEquals(RESULT_SUCCESS, resultCode);
+                semaphore.release();
+            }
+        }));
+
+        semaphore.acquire();
+        Assert.assertEquals(0, eventsStorage.getNumberOfEvents());
+        assertEquals(3, sendAnalyticsApiRequest.getNumberOfRequests());
+        assertEquals(uris.subList(0, 2), sendAnalyticsApiRequest.getRequestedBatches().get(0));
+        assertEquals(uris.subList(2, 4), sendAnalyticsApiRequest.getRequestedBatches().get(1));
+        assertEquals(uris.subList(4, 5), sendAnalyticsApiRequest.getRequestedBatches().get(2));
+        Assert.assertEquals(5, sendAnalyticsApiRequest.numberOfEventsSent());
+        MoreAsserts.assertContentsInOrder(batchSizes, 2, 2, 1);
+        MoreAsserts.assertContentsInOrder(batchResults, true, true, true);
+        assertFalse(alarmProvider.isAlarmEnabled());
+    }
+
+    @Test
+    public void testSendsEventsInBatchesBoundedBySize() throws InterruptedException {
+
+        final Uri uri1 = saveEventWithStatus(AnalyticsEvent.Status.NOT_POSTED);
+        final Uri uri2 = saveEventWithStatus(AnalyticsEvent.Status.POSTING_ERROR);
+        final Uri uri3 = saveEventWithStatus(AnalyticsEvent.Status.NOT_POSTED);
+
+        // Each batch has room for two events
+        final int eventSize = eventsStorage.readEvent(uri1).getApproximateSerializedSize();
+        SendAnalyticsEventsJob.configureBatches(100, eventSize * 2 + 1);
+        sendAnalyticsApiRequest.setWillBeSuccessfulRequest(true);
+
+        final SendAnalyticsEventsJob job = new SendAnalyticsEventsJob();
+        job.run(getJobParams(new JobResultListener() {
+
+            @Override
+            public void onJobComplete(int resultCode) {
+                assertEquals(RESULT_SUCCESS, resultCode);
+                semaphore.release();
+            }
+        }));
+
+        semaphore.acquire();
+        Assert.assertEquals(0, eventsStorage.getNumberOfEvents());
+        assertEquals(2, sendAnalyticsApiRequest.getNumberOfRequests());
+        MoreAsserts.assertContentsInOrder(sendAnalyticsApiRequest.getRequestedBatches().get(0), uri1, uri2);
+        MoreAsserts.assertContentsInOrder(sendAnalyticsApiRequest.getRequestedBatches().get(1), uri3);
+    }
+
+    @Test
+    public void testSendsEventLargerThanBatchSizeByItself() throws InterruptedException {
+
+        final Uri uri1 = saveEventWithStatus(AnalyticsEvent.Status.NOT_POSTED);
+        final Uri uri2 = saveEventWithStatus(AnalyticsEvent.Status.NOT_POSTED);
+
+        SendAnalyticsEventsJob.configureBatches(100, 1);
+        sendAnalyticsApiRequest.setWillBeSuccessfulRequest(true);
+
+        final SendAnalyticsEventsJob job = new SendAnalyticsEventsJob();
+        job.run(getJobParams(new JobResultListener() {
+
+            @Override
+            public void onJobComplete(int resultCode) {
+                assertEquals(RESULT_SUCCESS, resultCode);
+                semaphore.release();
+            }
+        }));
+
+        semaphore.acquire();
+        Assert.assertEquals(0, eventsStorage.getNumberOfEvents());
+        assertEquals(2, sendAnalyticsApiRequest.getNumberOfRequests());
+        MoreAsserts.assertContentsInOrder(sendAnalyticsApiRequest.getRequestedBatches().get(0), uri1);
+        MoreAsserts.assertContentsInOrder(sendAnalyticsApiRequest.getRequestedBatches().get(1), uri2);
+    }
+
+    @Test
+    public void testFailedBatchKeepsEarlierBatchesDeleted() throws InterruptedException {
+
+        final Uri uri1 = saveEventWithStatus(AnalyticsEvent.Status.NOT_POSTED);
+        final Uri uri2 = saveEventWithStatus(AnalyticsEvent.Status.NOT_POSTED);
+        final Uri uri3 = saveEventWithStatus(AnalyticsEvent.Status.NOT_POSTED);
+        final Uri uri4 = saveEventWithStatus(AnalyticsEvent.Status.NOT_POSTED);
+        final Uri uri5 = saveEventWithStatus(AnalyticsEvent.Status.NOT_POSTED);
+
+        final List<Boolean> batchResults = new ArrayList<>();
+        SendAnalyticsEventsJob.configureBatches(2, SendAnalyticsEventsJob.DEFAULT_MAX_BYTES_PER_BATCH);
+        SendAnalyticsEventsJob.setBatchListener(new SendAnalyticsEventsJob.BatchListener() {
+
+            @Override
+            public void onBatchSent(int numberOfEvents, long approximateBytes, long latencyInMilliseconds, boolean isSuccessful) {
+                batchResults.add(isSuccessful);
+            }
+        });
+        sendAnalyticsApiRequest.setWillBeSuccessfulRequest(true);
+        sendAnalyticsApiRequest.setNumberOfSuccessfulRequests(1);
+
+        final SendAnalyticsEventsJob job = new SendAnalyticsEventsJob();
+        job.run(getJobParams(new JobResultListener() {
+
+            @Override
+            public void onJobComplete(int resultCode) {
+                assertEquals(SendAnalyticsEventsJob.RESULT_FAILED_TO_SEND_RECEIPTS, resultCode);
+                semaphore.release();
+            }
+        }));
+
+        semaphore.acquire();
+        assertEquals(2, sendAnalyticsApiRequest.getNumberOfRequests());
+        Assert.assertEquals(3, eventsStorage.getNumberOfEvents());
+        assertEventNotInStorage(uri1);
+        assertEventNotInStorage(uri2);
+        assertEventHasStatus(uri3, AnalyticsEvent.Status.POSTING_ERROR);
+        assertEventHasStatus(uri4, AnalyticsEvent.Status.POSTING_ERROR);
+        assertEventHasStatus(uri5, AnalyticsEvent.Status.NOT_POSTED); // never sent
+        MoreAsserts.assertContentsInOrder(batchResults, true, false);
+        assertTrue(alarmProvider.isAlarmEnabled());
+    }
+
+    @Test
+    public void testFailedBatchIsSentAgainWithTheSameBatchId() throws InterruptedException {
+
+        final Uri uri1 = saveEventWithStatus(AnalyticsEvent.Status.NOT_POSTED);
+        final Uri uri2 = saveEventWithStatus(AnalyticsEvent.Status.NOT_POSTED);
+
+        sendAnalyticsApiRequest.setWillBeSuccessfulRequest(false);
+        new SendAnalyticsEventsJob().run(getJobParams(new JobResultListener() {
+
+            @Override
+            public void onJobComplete(int resultCode) {
+                assertEquals(SendAnalyticsEventsJob.RESULT_FAILED_TO_SEND_RECEIPTS, resultCode);
+                semaphore.release();
+            }
+        }));
+        semaphore.acquire();
+
+        // The batch ID is kept with the events
+        final String batchId = sendAnalyticsApiRequest.getRequestedBatchIds().get(0);
+        assertNotNull(batchId);
+        assertEquals(batchId, eventsStorage.readEvent(uri1).getBatchId());
+        assertEquals(batchId, eventsStorage.readEvent(uri2).getBatchId());
+
+        // Events saved since then go in a new batch
+        final Uri uri3 = saveEventWithStatus(AnalyticsEvent.Status.NOT_POSTED);
+        sendAnalyticsApiRequest.setWillBeSuccessfulRequest(true);
+        new SendAnalyticsEventsJob().run(getJobParams(new JobResultListener() {
+
+            @Override
+            public void onJobComplete(int resultCode) {
+                assertEquals(RESULT_SUCCESS, resultCode);
+                semaphore.release();
+            }
+        }));
+        semaphore.acquire();
+
+        assertEquals(3, sendAnalyticsApiRequest.getNumberOfRequests());
+        assertEquals(batchId, sendAnalyticsApiRequest.getRequestedBatchIds().get(1));
+        MoreAsserts.assertContentsInOrder(sendAnalyticsApiRequest.getRequestedBatches().get(1), uri1, uri2);
+        MoreAsserts.assertNotEqual(batchId, sendAnalyticsApiRequest.getRequestedBatchIds().get(2));
+        MoreAsserts.assertContentsInOrder(sendAnalyticsApiRequest.getRequestedBatches().get(2), uri3);
+        Assert.assertEquals(0, eventsStorage.getNumberOfEvents());
+    }
+
+    @Test
+    public void testConfigureBatchesRequiresPositiveLimits() {
+        try {
+            SendAnalyticsEventsJob.configureBatches(0, 1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // success
+        }
+        try {
+            SendAnalyticsEventsJob.configureBatches(1, 0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // success
+        }
+    }
+
+    @Test
+    public void testUploadPolicyDefersSend() throws InterruptedException {
+        final AnalyticsUploadPolicy policy = getUploadPolicy(2, 60000L);
+        SendAnalyticsEventsJob.setUploadPolicy(policy);
+        saveEventWithStatus(AnalyticsEvent.Status.NOT_POSTED);
+
+        final SendAnalyticsEventsJob job = new SendAnalyticsEventsJob();
+        job.run(getJobParams(new JobResultListener() {
+
+            @Override
+            public void onJobComplete(int resultCode) {
+                assertEquals(SendAnalyticsEventsJob.RESULT_DEFERRED, resultCode);
+                semaphore.release();
+            }
+        }));
+
+        semaphore.acquire();
+        assertFalse(sendAnalyticsApiRequest.wasRequestAttempted());
+        Assert.assertEquals(1, eventsStorage.getNumberOfEvents());
+        assertTrue(alarmProvider.isAlarmEnabled());
+        assertEquals(60000L, alarmProvider.getScheduledDelayInMilliseconds());
+        assertTrue(alarmProvider.willScheduledAlarmWakeDevice());
+    }
+
+    @Test
+    public void testUploadPolicyBacksOffAfterFailedSend() throws InterruptedException {
+        final AnalyticsUploadPolicy policy = getUploadPolicy(1, 60000L);
+        SendAnalyticsEventsJob.setUploadPolicy(policy);
+        saveEventWithStatus(AnalyticsEvent.Status.NOT_POSTED);
+        sendAnalyticsApiRequest.setWillBeSuccessfulRequest(false);
+
+        final SendAnalyticsEventsJob job = new SendAnalyticsEventsJob();
+        job.run(getJobParams(new JobResultListener() {
+
+            @Override
+            public void onJobComplete(int resultCode) {
+                assertEquals(SendAnalyticsEventsJob.RESULT_FAILED_TO_SEND_RECEIPTS, resultCode);
+                semaphore.release();
+            }
+        }));
+
+        semaphore.acquire();
+        assertTrue(sendAnalyticsApiRequest.wasRequestAttempted());
+        assertEquals(1, policy.getNumberOfConsecutiveFailures());
+        assertEquals(1000L, alarmProvider.getScheduledDelayInMilliseconds());
+        assertTrue(alarmProvider.willScheduledAlarmWakeDevice());
+    }
+
+    @Test
+    public void testUploadPolicyIsResetBySuccessfulSend() throws InterruptedException {
+        final AnalyticsUploadPolicy policy = getUploadPolicy(1, 60000L);
+        SendAnalyticsEventsJob.setUploadPolicy(policy);
+        saveEventWithStatus(AnalyticsEvent.Status.NOT_POSTED);
+        sendAnalyticsApiRequest.setWillBeSuccessfulRequest(true);
+
+        final SendAnalyticsEventsJob job = new SendAnalyticsEventsJob();
+        job.run(getJobParams(new JobResultListener() {
+
+            @Override
+            public void onJobComplete(int resultCode) {
+                assertEquals(RESULT_SUCCESS, resultCode);
+                semaphore.release();
+            }
+        }));
+
+        semaphore.acquire();
+        Assert.assertEquals(0, eventsStorage.getNumberOfEvents());
+        assertEquals(0, policy.getNumberOfConsecutiveFailures());
+        assertFalse(alarmProvider.isAlarmEnabled());
+    }
+
     @Test
     public void testEquals() {
         final SendAnalyticsEventsJob job1 = new SendAnalyticsEventsJob();
@@ -142,6 +463,13 @@ public class SendAnalyticsEventsJobTest extends JobTest {
         assertEquals(job1, job2);
     }
 
+    @Test
+    public void testCoalescesWithPendingSendJob() {
+        final SendAnalyticsEventsJob pendingJob = new SendAnalyticsEventsJob();
+        assertSame(pendingJob, new SendAnalyticsEventsJob().coalesceWith(pendingJob));
+        assertNull(new SendAnalyticsEventsJob().coalesceWith(new PrepareDatabaseJob(true)));
+    }
+
     @Test
     public void testParcelsData() {
         final SendAnalyticsEventsJob inputJob = new SendAnalyticsEventsJob();
@@ -149,4 +477,29 @@ public class SendAnalyticsEventsJobTest extends JobTest {
         assertNotNull(outputJob);
         assertEquals(inputJob, outputJob);
     }
+
+    // The events saved by the tests are newer than the clock, so they are treated as having just been saved
+    private AnalyticsUploadPolicy getUploadPolicy(int flushEventCount, long maxPendingAgeInMilliseconds) {
+        final AnalyticsUploadPolicy.DeviceConditions deviceConditions = new AnalyticsUploadPolicy.DeviceConditions() {
+
+            @Override
+            public boolean isNetworkAvailable() {
+                return true;
+            }
+
+            @Override
+            public boolean isNetworkUnmetered() {
+                return true;
+            }
+
+            @Override
+            public boolean isCharging() {
+                return false;
+            }
+        };
+        return new AnalyticsUploadPolicy(new FakeTimeProvider(0), deviceConditions, flushEventCount, maxPendingAgeInMilliseconds,
+                AnalyticsUploadPolicy.DEFAULT_LARGE_BACKLOG_EVENT_COUNT, AnalyticsUploadPolicy.DEFAULT_MAX_LARGE_BACKLOG_AGE_IN_MILLISECONDS,
+                AnalyticsUploadPolicy.DEFAULT_RECHECK_INTERVAL_IN_MILLISECONDS,
+                new RetryPolicy(Integer.MAX_VALUE, 1000L, 8000L, new RetryPolicyTest.FixedRandom(0.99999999)));
+    }
 }
@@ -2,6 +2,7 @@ package io.pivotal.android.push.backend.analytics;
 
 import android.net.Uri;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -12,6 +13,9 @@ public class FakePCFPushSendAnalyticsApiRequest implements PCFPushSendAnalyticsA
     private boolean wasRequestAttempted = false;
     private RequestHook requestHook = null;
     private List<Uri> receivedUris = null;
+    private int numberOfSuccessfulRequests = -1;
+    private final List<List<Uri>> requestedBatches = new ArrayList<>();
+    private final List<String> requestedBatchIds = new ArrayList<>();
 
     public interface RequestHook {
         public void onRequestMade(FakePCFPushSendAnalyticsApiRequest request, List<Uri> uris);
@@ -28,6 +32,11 @@ public class FakePCFPushSendAnalyticsApiRequest implements PCFPushSendAnalyticsA
 
     @Override
     public void startSendEvents(List<Uri> eventUris, PCFPushSendAnalyticsListener listener) {
+        startSendEvents(null, eventUris, listener);
+    }
+
+    @Override
+    public void startSendEvents(String batchId, List<Uri> eventUris, PCFPushSendAnalyticsListener listener) {
 
         wasRequestAttempted = true;
         if (originatingRequest != null) {
@@ -38,10 +47,18 @@ public class FakePCFPushSendAnalyticsApiRequest implements PCFPushSendAnalyticsA
             requestHook.onRequestMade(this, eventUris);
         }
 
-        if (willBeSuccessfulRequest) {
-            receivedUris = eventUris;
+        // Copies report back to the request that they were made from
+        final FakePCFPushSendAnalyticsApiRequest request = originatingRequest != null ? originatingRequest : this;
+        request.requestedBatches.add(eventUris);
+        request.requestedBatchIds.add(batchId);
+
+        final boolean isSuccessful = willBeSuccessfulRequest &&
+                (request.numberOfSuccessfulRequests < 0 || request.requestedBatches.size() <= request.numberOfSuccessfulRequests);
+
+        if (isSuccessful) {
+            addReceivedUris(eventUris);
             if (originatingRequest != null) {
-                originatingRequest.receivedUris = eventUris;
+                originatingRequest.addReceivedUris(eventUris);
             }
             listener.onBackEndSendEventsSuccess();
         } else {
@@ -49,6 +66,13 @@ public class FakePCFPushSendAnalyticsApiRequest implements PCFPushSendAnalyticsA
         }
     }
 
+    private void addReceivedUris(List<Uri> eventUris) {
+        if (receivedUris == null) {
+            receivedUris = new ArrayList<>();
+        }
+        receivedUris.addAll(eventUris);
+    }
+
     @Override
     public PCFPushSendAnalyticsApiRequest copy() {
         final FakePCFPushSendAnalyticsApiRequest newRequest = new FakePCFPushSendAnalyticsApiRequest(this);
@@ -64,6 +88,26 @@ public class FakePCFPushSendAnalyticsApiRequest implements PCFPushSendAnalyticsA
         this.willBeSuccessfulRequest = b;
     }
 
+    /**
+     * Makes requests fail once the given number of requests have succeeded.  Only used if the
+     * request will be successful.
+     */
+    public void setNumberOfSuccessfulRequests(int numberOfSuccessfulRequests) {
+        this.numberOfSuccessfulRequests = numberOfSuccessfulRequests;
+    }
+
+    public int getNumberOfRequests() {
+        return requestedBatches.size();
+    }
+
+    public List<List<Uri>> getRequestedBatches() {
+        return Collections.unmodifiableList(requestedBatches);
+    }
+
+    public List<String> getRequestedBatchIds() {
+        return Collections.unmodifiableList(requestedBatchIds);
+    }
+
     public void setRequestHook(RequestHook requestHook) {
         this.requestHook = requestHook;
     }
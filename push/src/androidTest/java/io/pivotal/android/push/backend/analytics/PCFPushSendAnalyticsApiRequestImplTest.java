@@ -3,6 +3,7 @@ package io.pivotal.android.push.backend.analytics;
 import static android.support.test.InstrumentationRegistry.getContext;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
@@ -10,19 +11,34 @@ import static org.mockito.Mockito.mock;
 import android.net.Uri;
 import android.support.test.runner.AndroidJUnit4;
 
+import com.google.gson.Gson;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
 
 import io.pivotal.android.push.PushParameters;
+import io.pivotal.android.push.database.AnalyticsEventsHandler;
+import io.pivotal.android.push.database.EventIdRange;
 import io.pivotal.android.push.database.FakeAnalyticsEventsStorage;
+import io.pivotal.android.push.model.analytics.AnalyticsEvent;
+import io.pivotal.android.push.model.analytics.AnalyticsEventList;
 import io.pivotal.android.push.model.analytics.AnalyticsEventTest;
 import io.pivotal.android.push.prefs.FakePushRequestHeaders;
 import io.pivotal.android.push.prefs.Pivotal;
+import io.pivotal.android.push.util.ApiRequestImpl;
 import io.pivotal.android.push.util.DelayedLoop;
 import io.pivotal.android.push.util.FakeHttpURLConnection;
 import io.pivotal.android.push.util.FakeNetworkWrapper;
+import io.pivotal.android.push.util.FakeTimeProvider;
 import io.pivotal.android.push.util.NetworkWrapper;
+import io.pivotal.android.push.util.RetryPolicy;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -66,12 +82,18 @@ public class PCFPushSendAnalyticsApiRequestImplTest {
 
         pushRequestHeaders = new FakePushRequestHeaders();
         FakeHttpURLConnection.reset();
+        ApiRequestImpl.setRetryPolicy(new RetryPolicy(), new FakeTimeProvider(), new Random());
         emptyList = new LinkedList<>();
         listWithOneItem = new LinkedList<>();
         final Uri uri = eventsStorage.saveEvent(AnalyticsEventTest.getEvent1());
         listWithOneItem.add(uri);
     }
 
+    @After
+    public void tearDown() throws Exception {
+        PCFPushSendAnalyticsApiRequestImpl.configureCompression(false, PCFPushSendAnalyticsApiRequestImpl.DEFAULT_COMPRESSION_THRESHOLD_IN_BYTES);
+    }
+
     @Test
     public void testRequiresContext() {
         try {
@@ -150,6 +172,154 @@ public class PCFPushSendAnalyticsApiRequestImplTest {
         assertTrue(delayedLoop.isSuccess());
     }
     @Test
+    public void testRequestBodyContainsEvents() throws Exception {
+        final AnalyticsEvent event2 = AnalyticsEventTest.getEvent2();
+        event2.setDeviceUuid("d\u00e9vice-\u4e2d\u6587");
+        final List<Uri> listWithTwoItems = new LinkedList<>(listWithOneItem);
+        listWithTwoItems.add(eventsStorage.saveEvent(event2));
+
+        makeListenersForSuccessfulRequestFromNetwork(true, 200);
+        final PCFPushSendAnalyticsApiRequestImpl request = new PCFPushSendAnalyticsApiRequestImpl(getContext(), parameters, eventsStorage, pushRequestHeaders, networkWrapper);
+        request.startSendEvents(listWithTwoItems, listener);
+        delayedLoop.startLoop();
+        assertTrue(delayedLoop.isSuccess());
+
+        final String requestDataString = new String(FakeHttpURLConnection.getRequestData(), "UTF-8");
+        final AnalyticsEventList eventList = new Gson().fromJson(requestDataString, AnalyticsEventList.class);
+        assertEquals(2, eventList.getEvents().size());
+        assertEquals(AnalyticsEventTest.getEvent1(), eventList.getEvents().get(0));
+        assertEquals(event2, eventList.getEvents().get(1));
+    }
+    @Test
+    public void testRequestHasBatchIdHeader() {
+        makeListenersForSuccessfulRequestFromNetwork(true, 200);
+        final PCFPushSendAnalyticsApiRequestImpl request = new PCFPushSendAnalyticsApiRequestImpl(getContext(), parameters, eventsStorage, pushRequestHeaders, networkWrapper);
+        request.startSendEvents("TEST-BATCH-ID", listWithOneItem, listener);
+        delayedLoop.startLoop();
+        assertTrue(delayedLoop.isSuccess());
+        assertEquals("TEST-BATCH-ID", FakeHttpURLConnection.getRequestPropertiesMap().get(PCFPushSendAnalyticsApiRequestImpl.BATCH_ID_HEADER));
+    }
+    @Test
+    public void testRequestWithoutBatchIdHasNoBatchIdHeader() {
+        makeListenersForSuccessfulRequestFromNetwork(true, 200);
+        final PCFPushSendAnalyticsApiRequestImpl request = new PCFPushSendAnalyticsApiRequestImpl(getContext(), parameters, eventsStorage, pushRequestHeaders, networkWrapper);
+        request.startSendEvents(listWithOneItem, listener);
+        delayedLoop.startLoop();
+        assertTrue(delayedLoop.isSuccess());
+        assertNull(FakeHttpURLConnection.getRequestPropertiesMap().get(PCFPushSendAnalyticsApiRequestImpl.BATCH_ID_HEADER));
+    }
+    @Test
+    public void testRequestBodyOnlyContainsRequestedEvents() throws Exception {
+        // An event saved after the batch was collected is not sent with it
+        eventsStorage.saveEvent(AnalyticsEventTest.getEvent2());
+
+        makeListenersForSuccessfulRequestFromNetwork(true, 200);
+        final PCFPushSendAnalyticsApiRequestImpl request = new PCFPushSendAnalyticsApiRequestImpl(getContext(), parameters, eventsStorage, pushRequestHeaders, networkWrapper);
+        request.startSendEvents(listWithOneItem, listener);
+        delayedLoop.startLoop();
+        assertTrue(delayedLoop.isSuccess());
+
+        final String requestDataString = new String(FakeHttpURLConnection.getRequestData(), "UTF-8");
+        final AnalyticsEventList eventList = new Gson().fromJson(requestDataString, AnalyticsEventList.class);
+        assertEquals(1, eventList.getEvents().size());
+        assertEquals(AnalyticsEventTest.getEvent1(), eventList.getEvents().get(0));
+    }
+    @Test
+    public void testFailsWithoutConnectingIfRequestedEventIsMissing() {
+        eventsStorage.deleteEvents(listWithOneItem);
+        FakeHttpURLConnection.setResponseCode(200);
+        makeBackEndMessageReceiptListenerForUnsentRequest();
+        final PCFPushSendAnalyticsApiRequestImpl request = new PCFPushSendAnalyticsApiRequestImpl(getContext(), parameters, eventsStorage, pushRequestHeaders, networkWrapper);
+        request.startSendEvents(listWithOneItem, listener);
+        delayedLoop.startLoop();
+        assertTrue(delayedLoop.isSuccess());
+        assertEquals(0, FakeHttpURLConnection.getNumberOfConnections());
+    }
+    @Test
+    public void testDropsConnectionIfRequestedEventIsDeletedWhileSending() {
+        // The event is found by the check before connecting, but is gone by the time that the request body is written
+        final FakeAnalyticsEventsStorage eventsStorage = new FakeAnalyticsEventsStorage() {
+
+            @Override
+            public void streamEvents(List<EventIdRange> idRanges, AnalyticsEventsHandler handler) throws IOException {
+            }
+        };
+        final List<Uri> uris = new LinkedList<>();
+        uris.add(eventsStorage.saveEvent(AnalyticsEventTest.getEvent1()));
+
+        makeListenersForSuccessfulRequestFromNetwork(false, 200);
+        final PCFPushSendAnalyticsApiRequestImpl request = new PCFPushSendAnalyticsApiRequestImpl(getContext(), parameters, eventsStorage, pushRequestHeaders, networkWrapper);
+        request.startSendEvents(uris, listener);
+        delayedLoop.startLoop();
+        assertTrue(delayedLoop.isSuccess());
+        assertEquals(1, FakeHttpURLConnection.getNumberOfConnections());
+        assertTrue(FakeHttpURLConnection.getNumberOfDisconnects() > 0);
+    }
+    @Test
+    public void testCompressedRequestBody() throws Exception {
+        PCFPushSendAnalyticsApiRequestImpl.configureCompression(true, 0);
+
+        makeListenersForSuccessfulRequestFromNetwork(true, 200);
+        final PCFPushSendAnalyticsApiRequestImpl request = new PCFPushSendAnalyticsApiRequestImpl(getContext(), parameters, eventsStorage, pushRequestHeaders, networkWrapper);
+        request.startSendEvents(listWithOneItem, listener);
+        delayedLoop.startLoop();
+        assertTrue(delayedLoop.isSuccess());
+
+        assertEquals("gzip", FakeHttpURLConnection.getRequestPropertiesMap().get("Content-Encoding"));
+        final String requestDataString = new String(gunzip(FakeHttpURLConnection.getRequestData()), "UTF-8");
+        final AnalyticsEventList eventList = new Gson().fromJson(requestDataString, AnalyticsEventList.class);
+        assertEquals(1, eventList.getEvents().size());
+        assertEquals(AnalyticsEventTest.getEvent1(), eventList.getEvents().get(0));
+    }
+    @Test
+    public void testRequestBodyBelowThresholdIsNotCompressed() throws Exception {
+        PCFPushSendAnalyticsApiRequestImpl.configureCompression(true, 1024 * 1024);
+
+        makeListenersForSuccessfulRequestFromNetwork(true, 200);
+        final PCFPushSendAnalyticsApiRequestImpl request = new PCFPushSendAnalyticsApiRequestImpl(getContext(), parameters, eventsStorage, pushRequestHeaders, networkWrapper);
+        request.startSendEvents(listWithOneItem, listener);
+        delayedLoop.startLoop();
+        assertTrue(delayedLoop.isSuccess());
+
+        assertNull(FakeHttpURLConnection.getRequestPropertiesMap().get("Content-Encoding"));
+        final String requestDataString = new String(FakeHttpURLConnection.getRequestData(), "UTF-8");
+        final AnalyticsEventList eventList = new Gson().fromJson(requestDataString, AnalyticsEventList.class);
+        assertEquals(1, eventList.getEvents().size());
+    }
+    @Test
+    public void testFallsBackToUncompressedRequestBodyAfter415() throws Exception {
+        PCFPushSendAnalyticsApiRequestImpl.configureCompression(true, 0);
+
+        // The fake server keeps returning 415, so the uncompressed retry fails too
+        makeListenersForSuccessfulRequestFromNetwork(false, 415);
+        PCFPushSendAnalyticsApiRequestImpl request = new PCFPushSendAnalyticsApiRequestImpl(getContext(), parameters, eventsStorage, pushRequestHeaders, networkWrapper);
+        request.startSendEvents(listWithOneItem, listener);
+        delayedLoop.startLoop();
+        assertTrue(delayedLoop.isSuccess());
+
+        assertNull(FakeHttpURLConnection.getRequestPropertiesMap().get("Content-Encoding"));
+        final String requestDataString = new String(FakeHttpURLConnection.getRequestData(), "UTF-8");
+        assertEquals(1, new Gson().fromJson(requestDataString, AnalyticsEventList.class).getEvents().size());
+
+        // Later requests are not compressed either
+        delayedLoop = new DelayedLoop(TEN_SECOND_TIMEOUT);
+        makeListenersForSuccessfulRequestFromNetwork(true, 200);
+        request = new PCFPushSendAnalyticsApiRequestImpl(getContext(), parameters, eventsStorage, pushRequestHeaders, networkWrapper);
+        request.startSendEvents(listWithOneItem, listener);
+        delayedLoop.startLoop();
+        assertTrue(delayedLoop.isSuccess());
+        assertNull(FakeHttpURLConnection.getRequestPropertiesMap().get("Content-Encoding"));
+    }
+    @Test
+    public void testConfigureCompressionRequiresNonNegativeThreshold() {
+        try {
+            PCFPushSendAnalyticsApiRequestImpl.configureCompression(true, -1);
+            fail("Should not have succeeded");
+        } catch (IllegalArgumentException ex) {
+            // Success
+        }
+    }
+    @Test
     public void testAreAnalyticsDisabled() {
         parameters = new PushParameters(
                 TEST_PLATFORM_UUID,
@@ -239,4 +409,34 @@ public class PCFPushSendAnalyticsApiRequestImplTest {
             }
         };
     }
-}
\ No newline at end of file
+
+    private void makeBackEndMessageReceiptListenerForUnsentRequest() {
+        listener = new PCFPushSendAnalyticsListener() {
+
+            @Override
+            public void onBackEndSendEventsSuccess() {
+                delayedLoop.flagFailure();
+            }
+
+            @Override
+            public void onBackEndSendEventsFailed(String reason) {
+                delayedLoop.flagSuccess();
+            }
+        };
+    }
+
+    private static byte[] gunzip(byte[] data) throws IOException {
+        final InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(data));
+        try {
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[256];
+            int numberBytesRead;
+            while ((numberBytesRead = inputStream.read(buffer)) >= 0) {
+                outputStream.write(buffer, 0, numberBytesRead);
+            }
+            return outputStream.toByteArray();
+        } finally {
+            inputStream.close();
+        }
+    }
+}
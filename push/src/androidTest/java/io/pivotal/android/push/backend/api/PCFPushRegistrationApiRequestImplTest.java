@@ -8,12 +8,14 @@ import android.test.AndroidTestCase;
 import com.google.gson.Gson;
 
 import java.io.IOException;
+import java.net.ConnectException;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 
 import io.pivotal.android.push.PushParameters;
@@ -24,6 +26,8 @@ import io.pivotal.android.push.util.ApiRequestImpl;
 import io.pivotal.android.push.util.DelayedLoop;
 import io.pivotal.android.push.util.FakeHttpURLConnection;
 import io.pivotal.android.push.util.FakeNetworkWrapper;
+import io.pivotal.android.push.util.FakeTimeProvider;
+import io.pivotal.android.push.util.RetryPolicy;
 
 public class PCFPushRegistrationApiRequestImplTest extends AndroidTestCase {
 
@@ -40,6 +44,7 @@ public class PCFPushRegistrationApiRequestImplTest extends AndroidTestCase {
     private static final long TEN_SECOND_TIMEOUT = 10000L;
 
     private FakeNetworkWrapper networkWrapper;
+    private FakeTimeProvider timeProvider;
     private DelayedLoop delayedLoop;
     private PCFPushRegistrationListener listener;
     private Map<String, String> EXPECTED_REQUEST_HEADERS = new HashMap<>();
@@ -50,6 +55,8 @@ public class PCFPushRegistrationApiRequestImplTest extends AndroidTestCase {
         networkWrapper = new FakeNetworkWrapper();
         delayedLoop = new DelayedLoop(TEN_SECOND_TIMEOUT);
         FakeHttpURLConnection.reset();
+        timeProvider = new FakeTimeProvider();
+        ApiRequestImpl.setRetryPolicy(new RetryPolicy(), timeProvider, new Random());
         EXPECTED_REQUEST_HEADERS.put("COOKIES", "COMPOST COOKIES");
         EXPECTED_REQUEST_HEADERS.put("CANDY", "CHOCOLATE ALMONDS SO ADDICTING");
     }
@@ -296,6 +303,45 @@ public class PCFPushRegistrationApiRequestImplTest extends AndroidTestCase {
         assertTrue(delayedLoop.isSuccess());
     }
 
+    public void testNewDeviceRegistrationIsRetriedIfItCouldNotConnect() {
+        makeListenersFromFailedRequestFromNetwork("Your server is busted", 0, HTTP_POST, null, null, null);
+        FakeHttpURLConnection.setConnectionException(new ConnectException("Your server is busted"));
+        final PCFPushRegistrationApiRequestImpl request = new PCFPushRegistrationApiRequestImpl(getContext(), networkWrapper);
+        request.startNewDeviceRegistration(TEST_FCM_TOKEN_ID, null, getParameters(), listener);
+        delayedLoop.startLoop();
+        assertTrue(delayedLoop.isSuccess());
+        assertEquals(RetryPolicy.DEFAULT_MAX_ATTEMPTS, FakeHttpURLConnection.getNumberOfConnections());
+    }
+
+    // The server may have received the request already, so sending it again could register the device twice
+    public void testNewDeviceRegistrationIsNotRetriedAfterOtherIOExceptions() {
+        makeListenersFromFailedRequestFromNetwork("Your server is busted", 0, HTTP_POST, null, null, null);
+        final PCFPushRegistrationApiRequestImpl request = new PCFPushRegistrationApiRequestImpl(getContext(), networkWrapper);
+        request.startNewDeviceRegistration(TEST_FCM_TOKEN_ID, null, getParameters(), listener);
+        delayedLoop.startLoop();
+        assertTrue(delayedLoop.isSuccess());
+        assertEquals(1, FakeHttpURLConnection.getNumberOfConnections());
+        assertTrue(timeProvider.getSleeps().isEmpty());
+    }
+
+    public void testNewDeviceRegistrationIsNotRetriedAfterServerErrors() {
+        makeListenersForSuccessfulRequestFromNetwork(false, 503, HTTP_POST, null, null, null);
+        final PCFPushRegistrationApiRequestImpl request = new PCFPushRegistrationApiRequestImpl(getContext(), networkWrapper);
+        request.startNewDeviceRegistration(TEST_FCM_TOKEN_ID, null, getParameters(), listener);
+        delayedLoop.startLoop();
+        assertTrue(delayedLoop.isSuccess());
+        assertEquals(1, FakeHttpURLConnection.getNumberOfConnections());
+    }
+
+    public void testUpdateDeviceRegistrationIsRetriedAfterServerErrors() {
+        makeListenersForSuccessfulRequestFromNetwork(false, 503, HTTP_PUT, null, null, TEST_PCF_PUSH_DEVICE_REGISTRATION_ID);
+        final PCFPushRegistrationApiRequestImpl request = new PCFPushRegistrationApiRequestImpl(getContext(), networkWrapper);
+        request.startUpdateDeviceRegistration(TEST_FCM_TOKEN_ID, TEST_PCF_PUSH_DEVICE_REGISTRATION_ID, null, getParameters(), listener);
+        delayedLoop.startLoop();
+        assertTrue(delayedLoop.isSuccess());
+        assertEquals(RetryPolicy.DEFAULT_MAX_ATTEMPTS, FakeHttpURLConnection.getNumberOfConnections());
+    }
+
     public void testNewDeviceRegistrationBadNetworkResponse() {
         makeListenersWithBadNetworkResponse(HTTP_POST, null, null, null);
         final PCFPushRegistrationApiRequestImpl request = new PCFPushRegistrationApiRequestImpl(getContext(), networkWrapper);
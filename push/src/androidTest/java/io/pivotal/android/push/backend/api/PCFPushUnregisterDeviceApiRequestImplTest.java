@@ -8,12 +8,17 @@ import android.test.AndroidTestCase;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Random;
 
 import io.pivotal.android.push.PushParameters;
 import io.pivotal.android.push.prefs.Pivotal;
+import io.pivotal.android.push.util.ApiRequestImpl;
+import io.pivotal.android.push.util.CircuitBreaker;
 import io.pivotal.android.push.util.DelayedLoop;
 import io.pivotal.android.push.util.FakeHttpURLConnection;
 import io.pivotal.android.push.util.FakeNetworkWrapper;
+import io.pivotal.android.push.util.FakeTimeProvider;
+import io.pivotal.android.push.util.RetryPolicy;
 
 public class PCFPushUnregisterDeviceApiRequestImplTest extends AndroidTestCase {
 
@@ -27,6 +32,7 @@ public class PCFPushUnregisterDeviceApiRequestImplTest extends AndroidTestCase {
     private PushParameters parameters;
     private FakeNetworkWrapper networkWrapper;
     private DelayedLoop delayedLoop;
+    private FakeTimeProvider timeProvider;
     private io.pivotal.android.push.backend.api.PCFPushUnregisterDeviceListener PCFPushUnregisterDeviceListener;
 
     @Override
@@ -37,6 +43,8 @@ public class PCFPushUnregisterDeviceApiRequestImplTest extends AndroidTestCase {
         networkWrapper = new FakeNetworkWrapper();
         delayedLoop = new DelayedLoop(TEN_SECOND_TIMEOUT);
         FakeHttpURLConnection.reset();
+        timeProvider = new FakeTimeProvider();
+        ApiRequestImpl.setRetryPolicy(new RetryPolicy(), timeProvider, new Random());
     }
 
     public void testRequiresContext() {
@@ -153,6 +161,149 @@ public class PCFPushUnregisterDeviceApiRequestImplTest extends AndroidTestCase {
         assertTrue(delayedLoop.isSuccess());
     }
 
+    public void testRetriesServerErrors() {
+        makeListenersForSuccessfulRequestFromNetwork(false, 503, null);
+        startUnregisterDevice();
+        assertEquals(RetryPolicy.DEFAULT_MAX_ATTEMPTS, FakeHttpURLConnection.getNumberOfConnections());
+        assertEquals(RetryPolicy.DEFAULT_MAX_ATTEMPTS - 1, timeProvider.getSleeps().size());
+    }
+
+    public void testRetriesConnectionFailures() {
+        makeListenersFromFailedRequestFromNetwork("Your server is busted");
+        startUnregisterDevice();
+        assertEquals(RetryPolicy.DEFAULT_MAX_ATTEMPTS, FakeHttpURLConnection.getNumberOfConnections());
+    }
+
+    public void testUsesRetryPolicy() {
+        ApiRequestImpl.setRetryPolicy(new RetryPolicy(1, 0L, 0L, new Random()));
+        makeListenersForSuccessfulRequestFromNetwork(false, 503, null);
+        startUnregisterDevice();
+        assertEquals(1, FakeHttpURLConnection.getNumberOfConnections());
+    }
+
+    public void testDoesNotRetryClientErrors() {
+        makeListenersForSuccessfulRequestFromNetwork(false, 400, null);
+        startUnregisterDevice();
+        assertEquals(1, FakeHttpURLConnection.getNumberOfConnections());
+        assertTrue(timeProvider.getSleeps().isEmpty());
+    }
+
+    public void testRetriesTooManyRequestsWithRetryAfter() {
+        final Map<String, String> responseHeaders = new HashMap<>();
+        responseHeaders.put("Retry-After", "5");
+        FakeHttpURLConnection.setResponseHeaders(responseHeaders);
+        makeListenersForSuccessfulRequestFromNetwork(false, 429, null);
+        startUnregisterDevice();
+        assertEquals(RetryPolicy.DEFAULT_MAX_ATTEMPTS, FakeHttpURLConnection.getNumberOfConnections());
+        for (final long sleep : timeProvider.getSleeps()) {
+            assertTrue(sleep >= 5000L);
+        }
+    }
+
+    public void testDoesNotRetryTooManyRequestsWithoutRetryAfter() {
+        makeListenersForSuccessfulRequestFromNetwork(false, 429, null);
+        startUnregisterDevice();
+        assertEquals(1, FakeHttpURLConnection.getNumberOfConnections());
+    }
+
+    public void testDoesNotRetryIfRetryAfterIsTooLong() {
+        final Map<String, String> responseHeaders = new HashMap<>();
+        responseHeaders.put("Retry-After", "3600");
+        FakeHttpURLConnection.setResponseHeaders(responseHeaders);
+        makeListenersForSuccessfulRequestFromNetwork(false, 503, null);
+        startUnregisterDevice();
+        assertEquals(1, FakeHttpURLConnection.getNumberOfConnections());
+    }
+
+    public void testCircuitBreakerSuspendsRequestsToAFailingEndpoint() {
+        makeListenersForSuccessfulRequestFromNetwork(false, 503, null);
+        startUnregisterDevice();
+        delayedLoop = new DelayedLoop(TEN_SECOND_TIMEOUT);
+        startUnregisterDevice();
+        assertEquals(CircuitBreaker.DEFAULT_FAILURE_THRESHOLD, FakeHttpURLConnection.getNumberOfConnections());
+
+        // No connections are made while the circuit is open
+        delayedLoop = new DelayedLoop(TEN_SECOND_TIMEOUT);
+        startUnregisterDevice();
+        assertEquals(CircuitBreaker.DEFAULT_FAILURE_THRESHOLD, FakeHttpURLConnection.getNumberOfConnections());
+
+        // The circuit lets a trial request through after the open duration and its jitter have passed
+        timeProvider.advance(2 * CircuitBreaker.DEFAULT_OPEN_DURATION_IN_MILLISECONDS);
+        delayedLoop = new DelayedLoop(TEN_SECOND_TIMEOUT);
+        makeListenersForSuccessfulRequestFromNetwork(true, 200, null);
+        startUnregisterDevice();
+        assertEquals(CircuitBreaker.DEFAULT_FAILURE_THRESHOLD + 1, FakeHttpURLConnection.getNumberOfConnections());
+    }
+
+    public void testCircuitBreakerRecoversAfterConnectionCouldNotBeOpenedInTrialRequest() {
+        makeListenersForSuccessfulRequestFromNetwork(false, 503, null);
+        startUnregisterDevice();
+        delayedLoop = new DelayedLoop(TEN_SECOND_TIMEOUT);
+        startUnregisterDevice();
+        assertEquals(CircuitBreaker.DEFAULT_FAILURE_THRESHOLD, FakeHttpURLConnection.getNumberOfConnections());
+
+        // The trial request fails before a connection is made, which opens the circuit again
+        timeProvider.advance(2 * CircuitBreaker.DEFAULT_OPEN_DURATION_IN_MILLISECONDS);
+        networkWrapper.setConnectionException(new IOException("Could not open connection"));
+        delayedLoop = new DelayedLoop(TEN_SECOND_TIMEOUT);
+        startUnregisterDevice();
+        assertEquals(CircuitBreaker.DEFAULT_FAILURE_THRESHOLD, FakeHttpURLConnection.getNumberOfConnections());
+
+        // The next trial request is still let through
+        timeProvider.advance(2 * CircuitBreaker.DEFAULT_OPEN_DURATION_IN_MILLISECONDS);
+        networkWrapper.setConnectionException(null);
+        delayedLoop = new DelayedLoop(TEN_SECOND_TIMEOUT);
+        makeListenersForSuccessfulRequestFromNetwork(true, 200, null);
+        startUnregisterDevice();
+        assertEquals(CircuitBreaker.DEFAULT_FAILURE_THRESHOLD + 1, FakeHttpURLConnection.getNumberOfConnections());
+    }
+
+    public void testCircuitBreakerIsSharedByAllDevices() {
+        makeListenersForSuccessfulRequestFromNetwork(false, 503, null);
+        startUnregisterDevice();
+        delayedLoop = new DelayedLoop(TEN_SECOND_TIMEOUT);
+        startUnregisterDevice();
+        assertEquals(CircuitBreaker.DEFAULT_FAILURE_THRESHOLD, FakeHttpURLConnection.getNumberOfConnections());
+
+        delayedLoop = new DelayedLoop(TEN_SECOND_TIMEOUT);
+        startUnregisterDevice("ANOTHER_PCF_PUSH_DEVICE_REGISTRATION_ID");
+        assertEquals(CircuitBreaker.DEFAULT_FAILURE_THRESHOLD, FakeHttpURLConnection.getNumberOfConnections());
+    }
+
+    public void testDisconnectsAfterRuntimeException() {
+        makeListenersForSuccessfulRequestFromNetwork(false, 200, null);
+        FakeHttpURLConnection.setResponseCodeException(new IllegalStateException("Your connection is busted"));
+        startUnregisterDevice();
+        assertEquals(1, FakeHttpURLConnection.getNumberOfConnections());
+        assertEquals(1, FakeHttpURLConnection.getNumberOfDisconnects());
+        assertTrue(timeProvider.getSleeps().isEmpty());
+    }
+
+    public void testCircuitBreakerCountsRuntimeExceptions() {
+        makeListenersForSuccessfulRequestFromNetwork(false, 200, null);
+        FakeHttpURLConnection.setResponseCodeException(new IllegalStateException("Your connection is busted"));
+        for (int i = 0; i < CircuitBreaker.DEFAULT_FAILURE_THRESHOLD; i += 1) {
+            delayedLoop = new DelayedLoop(TEN_SECOND_TIMEOUT);
+            startUnregisterDevice();
+        }
+        assertEquals(CircuitBreaker.DEFAULT_FAILURE_THRESHOLD, FakeHttpURLConnection.getNumberOfConnections());
+
+        delayedLoop = new DelayedLoop(TEN_SECOND_TIMEOUT);
+        startUnregisterDevice();
+        assertEquals(CircuitBreaker.DEFAULT_FAILURE_THRESHOLD, FakeHttpURLConnection.getNumberOfConnections());
+    }
+
+    private void startUnregisterDevice() {
+        startUnregisterDevice(TEST_PCF_PUSH_DEVICE_REGISTRATION_ID);
+    }
+
+    private void startUnregisterDevice(String pcfPushDeviceRegistrationId) {
+        final PCFPushUnregisterDeviceApiRequestImpl request = new PCFPushUnregisterDeviceApiRequestImpl(getContext(), networkWrapper);
+        request.startUnregisterDevice(pcfPushDeviceRegistrationId, parameters, PCFPushUnregisterDeviceListener);
+        delayedLoop.startLoop();
+        assertTrue(delayedLoop.isSuccess());
+    }
+
     private void makeListenersForSuccessfulRequestFromNetwork(boolean isSuccessfulResult, int expectedHttpStatusCode, Map<String, String> expectedRequestHeaders) {
         FakeHttpURLConnection.setResponseCode(expectedHttpStatusCode);
         makePCFPushUnegisterDeviceApiRequestListener(isSuccessfulResult, false, expectedRequestHeaders);
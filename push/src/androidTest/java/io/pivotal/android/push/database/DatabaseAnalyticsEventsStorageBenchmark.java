@@ -0,0 +1,114 @@
+package io.pivotal.android.push.database;
+
+import android.net.Uri;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.pivotal.android.push.model.analytics.AnalyticsEvent;
+import io.pivotal.android.push.model.analytics.DummyEvent;
+
+/**
+ * Compares the throughput of saving analytics events one row at a time (the old approach) against
+ * saving them in groups with one transaction per group, and counts how many events fit in the database
+ * before the oldest ones are discarded.  The results are written to logcat with the tag "AnalyticsEventsBenchmark".
+ */
+public class DatabaseAnalyticsEventsStorageBenchmark extends AndroidTestCase {
+
+    private static final String TAG = "AnalyticsEventsBenchmark";
+
+    // Each round is kept small so that it fits under the maximum size of the debug database
+    private static final int EVENTS_PER_ROUND = 50;
+    private static final int NUMBER_OF_ROUNDS = 20;
+
+    private DatabaseAnalyticsEventsStorage storage;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        DatabaseWrapper.createDatabaseInstance(getContext());
+        storage = new DatabaseAnalyticsEventsStorage();
+        storage.reset();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        storage.reset();
+        super.tearDown();
+    }
+
+    public void testGroupsOf8() {
+        runBenchmark(8);
+    }
+
+    public void testGroupsOf32() {
+        runBenchmark(32);
+    }
+
+    public void testGroupsOf50() {
+        runBenchmark(50);
+    }
+
+    public void testNumberOfEventsThatFit() {
+        final AnalyticsEvent event = DummyEvent.getEvent("DEVICE-UUID");
+        int numberOfEvents = 0;
+        while (true) {
+            event.setReceiptId("RECEIPT-ID-" + numberOfEvents);
+            assertNotNull(storage.saveEvent(event));
+            if (storage.getNumberOfEvents() <= numberOfEvents) {
+                break;
+            }
+            numberOfEvents += 1;
+        }
+        Log.i(TAG, String.format("%d events fit in the database before it was cleaned up", numberOfEvents));
+    }
+
+    private void runBenchmark(int groupSize) {
+        final List<AnalyticsEvent> events = new ArrayList<>(EVENTS_PER_ROUND);
+        for (int i = 0; i < EVENTS_PER_ROUND; i += 1) {
+            events.add(DummyEvent.getEvent("DEVICE-UUID-" + i));
+        }
+
+        final double singleRowRate = measureSingleRow(events);
+        final double groupCommitRate = measureGroupCommit(events, groupSize);
+
+        Log.i(TAG, String.format("%d events x %d rounds: single row %.0f events/s, groups of %d %.0f events/s",
+                EVENTS_PER_ROUND, NUMBER_OF_ROUNDS, singleRowRate, groupSize, groupCommitRate));
+    }
+
+    private double measureSingleRow(List<AnalyticsEvent> events) {
+        long elapsed = 0;
+        for (int round = 0; round < NUMBER_OF_ROUNDS; round += 1) {
+            storage.reset();
+            final long start = SystemClock.elapsedRealtime();
+            for (final AnalyticsEvent event : events) {
+                assertNotNull(storage.saveEvent(event));
+            }
+            elapsed += SystemClock.elapsedRealtime() - start;
+            assertEquals(events.size(), storage.getNumberOfEvents());
+        }
+        return getRate(elapsed);
+    }
+
+    private double measureGroupCommit(List<AnalyticsEvent> events, int groupSize) {
+        long elapsed = 0;
+        for (int round = 0; round < NUMBER_OF_ROUNDS; round += 1) {
+            storage.reset();
+            final long start = SystemClock.elapsedRealtime();
+            for (int i = 0; i < events.size(); i += groupSize) {
+                final List<Uri> uris = storage.saveEvents(events.subList(i, Math.min(i + groupSize, events.size())));
+                assertNotNull(uris);
+            }
+            elapsed += SystemClock.elapsedRealtime() - start;
+            assertEquals(events.size(), storage.getNumberOfEvents());
+        }
+        return getRate(elapsed);
+    }
+
+    private static double getRate(long elapsedInMilliseconds) {
+        return EVENTS_PER_ROUND * NUMBER_OF_ROUNDS * 1000.0 / Math.max(1L, elapsedInMilliseconds);
+    }
+}
@@ -1,10 +1,15 @@
 package io.pivotal.android.push.database;
 
+import android.content.ContentUris;
 import android.net.Uri;
 import android.test.AndroidTestCase;
 
 import junit.framework.Assert;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -55,6 +60,36 @@ public class DatabaseAnalyticsEventsStorageTest extends AndroidTestCase {
         Assert.assertEquals(2, storage.getNumberOfEvents());
     }
 
+    public void testSaveEvents() {
+        final List<AnalyticsEvent> events = new ArrayList<>();
+        events.add(EVENT_1);
+        events.add(EVENT_2);
+        events.add(EVENT_3);
+        final List<Uri> uris = storage.saveEvents(events);
+        assertEquals(3, uris.size());
+        assertEquals(3, storage.getNumberOfEvents());
+        assertTrue(ContentUris.parseId(uris.get(0)) < ContentUris.parseId(uris.get(1)));
+        assertTrue(ContentUris.parseId(uris.get(1)) < ContentUris.parseId(uris.get(2)));
+        assertEquals(EVENT_1, storage.readEvent(uris.get(0)));
+        assertEquals(EVENT_2, storage.readEvent(uris.get(1)));
+        assertEquals(EVENT_3, storage.readEvent(uris.get(2)));
+    }
+
+    public void testRepeatedValuesAreSavedOnce() {
+        storage.saveEvent(EVENT_1);
+        final int numberOfStrings = DatabaseWrapper.getNumberOfRowsInTable(Database.STRINGS_TABLE_NAME);
+        assertTrue(numberOfStrings > 0);
+
+        final AnalyticsEvent event = new AnalyticsEvent(EVENT_1);
+        event.setReceiptId("ANOTHER-RECEIPT-ID");
+        final Uri uri1 = storage.saveEvent(event);
+        final Uri uri2 = storage.saveEvent(EVENT_1);
+        assertEquals(numberOfStrings, DatabaseWrapper.getNumberOfRowsInTable(Database.STRINGS_TABLE_NAME));
+
+        assertEquals(event, storage.readEvent(uri1));
+        assertEquals(EVENT_1, storage.readEvent(uri2));
+    }
+
     public void testSaveMessageReceiptAndRead() {
         storage.saveEvent(EVENT_1);
         final List<Uri> files1 = storage.getEventUris();
@@ -182,4 +217,245 @@ public class DatabaseAnalyticsEventsStorageTest extends AndroidTestCase {
         assertEquals(1, uris3.size());
         assertEquals(uri2, uris3.get(0));
     }
+
+    public void testStreamEventsWithStatuses() throws IOException {
+        EVENT_1.setStatus(AnalyticsEvent.Status.POSTING_ERROR);
+        EVENT_2.setStatus(AnalyticsEvent.Status.POSTED);
+        EVENT_3.setStatus(AnalyticsEvent.Status.NOT_POSTED);
+        final Uri uri1 = storage.saveEvent(EVENT_1);
+        storage.saveEvent(EVENT_2);
+        final Uri uri3 = storage.saveEvent(EVENT_3);
+
+        final List<Uri> uris = new ArrayList<>();
+        final List<AnalyticsEvent> events = new ArrayList<>();
+        storage.streamEventsWithStatuses(new AnalyticsEventsHandler() {
+            @Override
+            public void onEvent(Uri uri, AnalyticsEvent event) {
+                uris.add(uri);
+                events.add(event);
+            }
+        }, AnalyticsEvent.Status.NOT_POSTED, AnalyticsEvent.Status.POSTING_ERROR);
+
+        // The events are streamed in the order they were saved
+        assertEquals(2, uris.size());
+        assertEquals(uri1, uris.get(0));
+        assertEquals(uri3, uris.get(1));
+        assertEquals(EVENT_1, events.get(0));
+        assertEquals(EVENT_3, events.get(1));
+        assertEquals(storage.readEvent(uri1), events.get(0));
+    }
+
+    public void testStreamEventsInRanges() throws IOException {
+        EVENT_1.setStatus(AnalyticsEvent.Status.POSTING);
+        final Uri uri1 = storage.saveEvent(EVENT_1);
+        final Uri uri2 = storage.saveEvent(EVENT_2);
+        final Uri uri3 = storage.saveEvent(EVENT_3);
+        final long id1 = ContentUris.parseId(uri1);
+        final long id3 = ContentUris.parseId(uri3);
+
+        final List<Uri> uris = new ArrayList<>();
+        storage.streamEvents(Arrays.asList(new EventIdRange(id1, id1), new EventIdRange(id3, id3 + 10)), new AnalyticsEventsHandler() {
+            @Override
+            public void onEvent(Uri uri, AnalyticsEvent event) {
+                uris.add(uri);
+            }
+        });
+
+        // Events outside the ranges are not read, whatever their status
+        assertEquals(2, uris.size());
+        assertEquals(uri1, uris.get(0));
+        assertEquals(uri3, uris.get(1));
+        assertFalse(uris.contains(uri2));
+    }
+
+    public void testStreamEventsWithNoStatuses() throws IOException {
+        storage.saveEvent(EVENT_1);
+        storage.streamEventsWithStatuses(new AnalyticsEventsHandler() {
+            @Override
+            public void onEvent(Uri uri, AnalyticsEvent event) {
+                fail("Should not have read any events");
+            }
+        });
+    }
+
+    public void testStreamEventsStopsWhenHandlerFails() {
+        storage.saveEvent(EVENT_1);
+        storage.saveEvent(EVENT_2);
+        final int[] numberOfEvents = new int[1];
+        try {
+            storage.streamEventsWithStatuses(new AnalyticsEventsHandler() {
+                @Override
+                public void onEvent(Uri uri, AnalyticsEvent event) throws IOException {
+                    numberOfEvents[0] += 1;
+                    throw new IOException("Handler failed");
+                }
+            }, AnalyticsEvent.Status.NOT_POSTED);
+            fail("Should have thrown an exception");
+        } catch (IOException e) {
+            // Success
+        }
+        assertEquals(1, numberOfEvents[0]);
+    }
+
+    public void testUpdateStatusWithStatuses() {
+        EVENT_1.setStatus(AnalyticsEvent.Status.NOT_POSTED);
+        EVENT_2.setStatus(AnalyticsEvent.Status.POSTING_ERROR);
+        EVENT_3.setStatus(AnalyticsEvent.Status.POSTING);
+        final Uri uri1 = storage.saveEvent(EVENT_1);
+        final Uri uri2 = storage.saveEvent(EVENT_2);
+        final Uri uri3 = storage.saveEvent(EVENT_3);
+
+        final int[] fromStatuses = new int[] { AnalyticsEvent.Status.NOT_POSTED, AnalyticsEvent.Status.POSTING_ERROR };
+        assertEquals(2, storage.updateStatus(fromStatuses, AnalyticsEvent.Status.POSTED, Long.MAX_VALUE));
+        assertEquals(AnalyticsEvent.Status.POSTED, storage.readEvent(uri1).getStatus());
+        assertEquals(AnalyticsEvent.Status.POSTED, storage.readEvent(uri2).getStatus());
+        assertEquals(AnalyticsEvent.Status.POSTING, storage.readEvent(uri3).getStatus());
+    }
+
+    public void testUpdateStatusWithStatusesUpToMaxId() {
+        final Uri uri1 = storage.saveEvent(EVENT_1);
+        final Uri uri2 = storage.saveEvent(EVENT_2);
+
+        final int[] fromStatuses = new int[] { AnalyticsEvent.Status.NOT_POSTED };
+        assertEquals(1, storage.updateStatus(fromStatuses, AnalyticsEvent.Status.POSTING, ContentUris.parseId(uri1)));
+        assertEquals(AnalyticsEvent.Status.POSTING, storage.readEvent(uri1).getStatus());
+        assertEquals(AnalyticsEvent.Status.NOT_POSTED, storage.readEvent(uri2).getStatus());
+    }
+
+    public void testUpdateStatusWithNoStatuses() {
+        final Uri uri1 = storage.saveEvent(EVENT_1);
+        assertEquals(0, storage.updateStatus(new int[0], AnalyticsEvent.Status.POSTING, Long.MAX_VALUE));
+        assertEquals(AnalyticsEvent.Status.NOT_POSTED, storage.readEvent(uri1).getStatus());
+    }
+
+    public void testUpdateStatusWithIdRange() {
+        EVENT_2.setStatus(AnalyticsEvent.Status.POSTING);
+        final Uri uri1 = storage.saveEvent(EVENT_1);
+        final Uri uri2 = storage.saveEvent(EVENT_2);
+        final Uri uri3 = storage.saveEvent(EVENT_3);
+
+        final EventIdRange idRange = new EventIdRange(ContentUris.parseId(uri2), ContentUris.parseId(uri3));
+        assertEquals(2, storage.updateStatus(idRange, AnalyticsEvent.Status.POSTING_ERROR));
+        assertEquals(AnalyticsEvent.Status.NOT_POSTED, storage.readEvent(uri1).getStatus());
+        assertEquals(AnalyticsEvent.Status.POSTING_ERROR, storage.readEvent(uri2).getStatus());
+        assertEquals(AnalyticsEvent.Status.POSTING_ERROR, storage.readEvent(uri3).getStatus());
+    }
+
+    public void testGetNumberOfEventsWithStatus() {
+        EVENT_2.setStatus(AnalyticsEvent.Status.POSTING);
+        EVENT_3.setStatus(AnalyticsEvent.Status.POSTING);
+        storage.saveEvent(EVENT_1);
+        storage.saveEvent(EVENT_2);
+        storage.saveEvent(EVENT_3);
+        assertEquals(1, storage.getNumberOfEventsWithStatus(AnalyticsEvent.Status.NOT_POSTED));
+        assertEquals(2, storage.getNumberOfEventsWithStatus(AnalyticsEvent.Status.POSTING));
+        assertEquals(0, storage.getNumberOfEventsWithStatus(AnalyticsEvent.Status.POSTED));
+    }
+
+    public void testHighThroughputMode() {
+        DatabaseWrapper.setHighThroughputModeEnabled(true);
+        try {
+            final Uri uri1 = storage.saveEvent(EVENT_1);
+            final List<Uri> uris = storage.saveEvents(Arrays.asList(EVENT_2, EVENT_3));
+            assertEquals(3, storage.getNumberOfEvents());
+            assertEquals(EVENT_1, storage.readEvent(uri1));
+            assertEquals(EVENT_3, storage.readEvent(uris.get(1)));
+
+            final EventIdRange idRange = new EventIdRange(ContentUris.parseId(uri1), ContentUris.parseId(uris.get(0)));
+            assertEquals(2, storage.updateStatus(idRange, AnalyticsEvent.Status.POSTING));
+            assertEquals(2, storage.getNumberOfEventsWithStatus(AnalyticsEvent.Status.POSTING));
+            assertEquals(1, storage.getNumberOfEventsWithStatus(AnalyticsEvent.Status.NOT_POSTED));
+
+            storage.deleteEvents(Arrays.asList(uri1, uris.get(1)));
+            assertEquals(1, storage.getNumberOfEvents());
+            assertEquals(EVENT_2.getDeviceUuid(), storage.readEvent(uris.get(0)).getDeviceUuid());
+        } finally {
+            DatabaseWrapper.setHighThroughputModeEnabled(false);
+        }
+    }
+
+    public void testGetQueueStatistics() {
+        EVENT_1.setStatus(AnalyticsEvent.Status.POSTING);
+        EVENT_1.setEventTime(new Date(1000000L));
+        EVENT_2.setStatus(AnalyticsEvent.Status.POSTING_ERROR);
+        EVENT_2.setEventTime(new Date(2000000L));
+        EVENT_3.setEventTime(new Date(3000000L));
+        storage.saveEvent(EVENT_1);
+        storage.saveEvent(EVENT_2);
+        storage.saveEvent(EVENT_3);
+
+        final EventQueueStatistics statistics = storage.getQueueStatistics();
+        assertEquals(3, statistics.getNumberOfEvents());
+        assertEquals(1, statistics.getNumberOfEventsWithStatus(AnalyticsEvent.Status.NOT_POSTED));
+        assertEquals(1, statistics.getNumberOfEventsWithStatus(AnalyticsEvent.Status.POSTING));
+        assertEquals(1, statistics.getNumberOfEventsWithStatus(AnalyticsEvent.Status.POSTING_ERROR));
+        assertEquals(0, statistics.getNumberOfEventsWithStatus(AnalyticsEvent.Status.POSTED));
+        assertEquals(2, statistics.getNumberOfPendingEvents());
+        assertEquals(new Date(2000000L), statistics.getOldestPendingEventTime());
+        assertTrue(statistics.getApproximateBytes() > 0);
+    }
+
+    public void testGetQueueStatisticsWhenEmpty() {
+        final EventQueueStatistics statistics = storage.getQueueStatistics();
+        assertEquals(0, statistics.getNumberOfEvents());
+        assertEquals(0, statistics.getNumberOfPendingEvents());
+        assertNull(statistics.getOldestPendingEventTime());
+    }
+
+    public void testDeleteEventsWithStatusesUpToMaxId() {
+        EVENT_2.setStatus(AnalyticsEvent.Status.POSTED);
+        EVENT_3.setStatus(AnalyticsEvent.Status.POSTED);
+        final Uri uri1 = storage.saveEvent(EVENT_1);
+        final Uri uri2 = storage.saveEvent(EVENT_2);
+        final Uri uri3 = storage.saveEvent(EVENT_3);
+
+        assertEquals(1, storage.deleteEvents(new int[] { AnalyticsEvent.Status.POSTED }, ContentUris.parseId(uri2)));
+        assertEquals(2, storage.getNumberOfEvents());
+        assertEquals(EVENT_1, storage.readEvent(uri1));
+        assertEquals(EVENT_3, storage.readEvent(uri3));
+    }
+
+    public void testDeleteEventsWithNoStatuses() {
+        storage.saveEvent(EVENT_1);
+        assertEquals(0, storage.deleteEvents(new int[0], Long.MAX_VALUE));
+        assertEquals(1, storage.getNumberOfEvents());
+    }
+
+    public void testDeleteEventsInRanges() {
+        final List<Uri> uris = storage.saveEvents(Arrays.asList(EVENT_1, EVENT_2, EVENT_3, DummyEvent.getEvent(TEST_DEVICE_UUID_1)));
+        final long firstId = ContentUris.parseId(uris.get(0));
+
+        final List<EventIdRange> idRanges = Arrays.asList(new EventIdRange(firstId, firstId + 1), new EventIdRange(firstId + 3, firstId + 3));
+        assertEquals(3, storage.deleteEventsInRanges(idRanges));
+        assertEquals(1, storage.getNumberOfEvents());
+        assertEquals(EVENT_3, storage.readEvent(uris.get(2)));
+    }
+
+    public void testSetBatchId() {
+        final List<Uri> uris = storage.saveEvents(Arrays.asList(EVENT_1, EVENT_2, EVENT_3));
+        final long firstId = ContentUris.parseId(uris.get(0));
+        final List<EventIdRange> idRanges = Arrays.asList(new EventIdRange(firstId, firstId + 1));
+
+        assertEquals(2, storage.setBatchId(idRanges, "TEST-BATCH-ID"));
+        assertEquals("TEST-BATCH-ID", storage.readEvent(uris.get(0)).getBatchId());
+        assertEquals("TEST-BATCH-ID", storage.readEvent(uris.get(1)).getBatchId());
+        assertNull(storage.readEvent(uris.get(2)).getBatchId());
+
+        assertEquals(2, storage.setBatchId(idRanges, null));
+        assertNull(storage.readEvent(uris.get(0)).getBatchId());
+    }
+
+    public void testDeleteManyEventsCoalescesIds() {
+        final List<AnalyticsEvent> events = new ArrayList<>();
+        for (int i = 0; i < 20; i += 1) {
+            events.add(DummyEvent.getEvent(TEST_DEVICE_UUID_1));
+        }
+        final List<Uri> uris = storage.saveEvents(events);
+        final List<Uri> urisToDelete = new ArrayList<>(uris);
+        urisToDelete.remove(10);
+
+        storage.deleteEvents(urisToDelete);
+        assertEquals(1, storage.getNumberOfEvents());
+        assertEquals(uris.get(10), storage.getEventUris().get(0));
+    }
 }
@@ -0,0 +1,148 @@
+package io.pivotal.android.push.database;
+
+import android.content.ContentUris;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.pivotal.android.push.model.analytics.AnalyticsEvent;
+import io.pivotal.android.push.model.analytics.DummyEvent;
+
+/**
+ * Compares the throughput of the analytics database with the high-throughput mode off and on while
+ * one thread saves events, like the EnqueueAnalyticsEventJob, and another thread reads, marks and deletes
+ * them, like the SendAnalyticsEventsJob.  The results are written to logcat with the tag
+ * "AnalyticsEventsBenchmark".
+ */
+public class DatabaseHighThroughputBenchmark extends AndroidTestCase {
+
+    private static final String TAG = "AnalyticsEventsBenchmark";
+
+    private static final int NUMBER_OF_EVENTS = 1000;
+    private static final int EVENTS_PER_GROUP = 10;
+
+    private DatabaseAnalyticsEventsStorage storage;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        DatabaseWrapper.createDatabaseInstance(getContext());
+        storage = new DatabaseAnalyticsEventsStorage();
+        storage.reset();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        DatabaseWrapper.setHighThroughputModeEnabled(false);
+        storage.reset();
+        super.tearDown();
+    }
+
+    public void testConcurrentEnqueueAndSend() throws Exception {
+        DatabaseWrapper.setHighThroughputModeEnabled(false);
+        final long before = runBenchmark();
+        storage.reset();
+
+        DatabaseWrapper.setHighThroughputModeEnabled(true);
+        final long after = runBenchmark();
+
+        Log.i(TAG, String.format("%d events saved and sent concurrently: default mode %d ms (%.0f events/s), high-throughput mode %d ms (%.0f events/s)",
+                NUMBER_OF_EVENTS, before, getRate(before), after, getRate(after)));
+    }
+
+    private long runBenchmark() throws Exception {
+        final List<AnalyticsEvent> events = new ArrayList<>(EVENTS_PER_GROUP);
+        for (int i = 0; i < EVENTS_PER_GROUP; i += 1) {
+            events.add(DummyEvent.getEvent("DEVICE-UUID-" + i));
+        }
+
+        final AtomicBoolean isEnqueueDone = new AtomicBoolean();
+        final AtomicInteger numberOfEventsSent = new AtomicInteger();
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+
+        final Thread enqueueThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < NUMBER_OF_EVENTS; i += EVENTS_PER_GROUP) {
+                        assertNotNull(storage.saveEvents(events));
+                    }
+                } catch (Throwable t) {
+                    error.set(t);
+                } finally {
+                    isEnqueueDone.set(true);
+                }
+            }
+        });
+
+        final Thread sendThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        final boolean isLastPass = isEnqueueDone.get();
+                        numberOfEventsSent.addAndGet(sendEvents());
+                        if (isLastPass) {
+                            break;
+                        }
+                    }
+                } catch (Throwable t) {
+                    error.set(t);
+                }
+            }
+        });
+
+        final long start = SystemClock.elapsedRealtime();
+        enqueueThread.start();
+        sendThread.start();
+        enqueueThread.join();
+        sendThread.join();
+        final long elapsed = SystemClock.elapsedRealtime() - start;
+
+        if (error.get() != null) {
+            throw new Exception(error.get());
+        }
+        // Some events may have been evicted if the database filled up
+        assertTrue(numberOfEventsSent.get() > 0);
+        assertEquals(0, storage.getNumberOfEventsWithStatus(AnalyticsEvent.Status.NOT_POSTED));
+        return elapsed;
+    }
+
+    // Does what the SendAnalyticsEventsJob does with the database, without the network request
+    private int sendEvents() throws IOException {
+        final List<Uri> uris = storage.getEventUrisWithStatus(AnalyticsEvent.Status.NOT_POSTED);
+        if (uris.isEmpty()) {
+            return 0;
+        }
+        long firstId = Long.MAX_VALUE;
+        long lastId = 0;
+        for (final Uri uri : uris) {
+            firstId = Math.min(firstId, ContentUris.parseId(uri));
+            lastId = Math.max(lastId, ContentUris.parseId(uri));
+        }
+        storage.updateStatus(new EventIdRange(firstId, lastId), AnalyticsEvent.Status.POSTING);
+
+        final AtomicInteger numberOfEventsRead = new AtomicInteger();
+        storage.streamEventsWithStatuses(new AnalyticsEventsHandler() {
+            @Override
+            public void onEvent(Uri uri, AnalyticsEvent event) {
+                numberOfEventsRead.incrementAndGet();
+            }
+        }, AnalyticsEvent.Status.POSTING);
+
+        storage.deleteEvents(uris);
+        return numberOfEventsRead.get();
+    }
+
+    private static double getRate(long elapsedInMilliseconds) {
+        return NUMBER_OF_EVENTS * 1000.0 / Math.max(1L, elapsedInMilliseconds);
+    }
+}
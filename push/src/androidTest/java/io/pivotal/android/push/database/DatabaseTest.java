@@ -148,6 +148,206 @@ public class DatabaseTest extends AndroidTestCase {
         assertTableRowCount(1, TABLE_NAME);  // Assert that the database did not drop the row added above
     }
 
+    public void testMigrateFromVersion3ToVersion4() {
+
+        database = getWritableDatabase(3);
+        assertEquals(3, database.getVersion());
+
+        final String schema3 = getTableSchema();
+        assertTrue(schema3.contains("'eventTime' TEXT"));
+        assertFalse(hasIndex(AnalyticsEvent.STATUS_AND_ID_INDEX_NAME));
+        assertFalse(hasIndex(AnalyticsEvent.EVENT_TYPE_INDEX_NAME));
+
+        final AnalyticsEvent event1 = DummyEvent.getEvent(TEST_DEVICE_UUID_1);
+        long rowId1 = database.insert(TABLE_NAME, null, event1.getContentValues(3));
+        MoreAsserts.assertNotEqual(-1, rowId1);
+        assertTableRowCount(1, TABLE_NAME);
+
+        database = getWritableDatabase(4);
+
+        assertEquals(4, database.getVersion());
+
+        final String schema4 = getTableSchema();
+        assertTrue(schema4.contains("'eventTime' INTEGER"));
+        assertTrue(hasIndex(AnalyticsEvent.STATUS_AND_ID_INDEX_NAME));
+        assertTrue(hasIndex(AnalyticsEvent.EVENT_TYPE_INDEX_NAME));
+
+        assertTableRowCount(1, TABLE_NAME);  // Assert that the database did not drop the row added above
+
+        // Assert that the row kept its ID and that its event time is now stored in milliseconds
+        final Cursor cursor = database.rawQuery("SELECT * FROM " + TABLE_NAME, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(rowId1, cursor.getLong(cursor.getColumnIndex("_id")));
+            final int eventTimeColumn = cursor.getColumnIndex(AnalyticsEvent.Columns.EVENT_TIME);
+            assertEquals(Cursor.FIELD_TYPE_INTEGER, cursor.getType(eventTimeColumn));
+            assertEquals(Long.parseLong(event1.getEventTime()) * 1000L, cursor.getLong(eventTimeColumn));
+            final AnalyticsEvent migratedEvent = new AnalyticsEvent(cursor);
+            assertEquals(event1, migratedEvent);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testMigrateFromVersion1ToVersion4() {
+
+        database = getWritableDatabase(1);
+        assertEquals(1, database.getVersion());
+
+        final AnalyticsEvent event1 = DummyEvent.getEvent(TEST_DEVICE_UUID_1);
+        long rowId1 = database.insert(TABLE_NAME, null, event1.getContentValues(1));
+        MoreAsserts.assertNotEqual(-1, rowId1);
+        assertTableRowCount(1, TABLE_NAME);
+
+        database = getWritableDatabase(4);
+
+        assertEquals(4, database.getVersion());
+
+        final String schema4 = getTableSchema();
+        assertTrue(schema4.contains("sdkVersion"));
+        assertTrue(schema4.contains("platformType"));
+        assertTrue(schema4.contains("platformUuid"));
+        assertTrue(schema4.contains("'eventTime' INTEGER"));
+        assertTrue(hasIndex(AnalyticsEvent.STATUS_AND_ID_INDEX_NAME));
+        assertTrue(hasIndex(AnalyticsEvent.EVENT_TYPE_INDEX_NAME));
+
+        assertTableRowCount(1, TABLE_NAME);  // Assert that the database did not drop the row added above
+    }
+
+    public void testCreateVersion4HasIndexes() {
+        database = getWritableDatabase(4);
+        assertTrue(hasIndex(AnalyticsEvent.STATUS_AND_ID_INDEX_NAME));
+        assertTrue(hasIndex(AnalyticsEvent.EVENT_TYPE_INDEX_NAME));
+    }
+
+    public void testMigrateFromVersion4ToVersion5() {
+
+        database = getWritableDatabase(4);
+        assertEquals(4, database.getVersion());
+        assertFalse(hasTable(Database.STRINGS_TABLE_NAME));
+
+        final AnalyticsEvent event1 = DummyEvent.getEvent(TEST_DEVICE_UUID_1);
+        final AnalyticsEvent event2 = DummyEvent.getEvent(TEST_DEVICE_UUID_1);
+        event2.setPlatformUuid(event1.getPlatformUuid());
+        long rowId1 = database.insert(TABLE_NAME, null, event1.getContentValues(4));
+        long rowId2 = database.insert(TABLE_NAME, null, event2.getContentValues(4));
+        MoreAsserts.assertNotEqual(-1, rowId1);
+        MoreAsserts.assertNotEqual(-1, rowId2);
+        assertTableRowCount(2, TABLE_NAME);
+
+        database = getWritableDatabase(5);
+
+        assertEquals(5, database.getVersion());
+        assertTrue(getTableSchema().contains("deviceUuidRef"));
+        assertTrue(hasTable(Database.STRINGS_TABLE_NAME));
+        assertTrue(hasView(Database.EVENTS_VIEW_NAME));
+        assertTrue(hasIndex(AnalyticsEvent.STATUS_AND_ID_INDEX_NAME));
+
+        assertTableRowCount(2, TABLE_NAME);  // Assert that the database did not drop the rows added above
+
+        // Each distinct value is saved once: device UUID, SDK version, platform type and platform UUID
+        assertTableRowCount(4, Database.STRINGS_TABLE_NAME);
+
+        // The values are no longer saved in the events table itself
+        final Cursor tableCursor = database.rawQuery("SELECT * FROM " + TABLE_NAME + " WHERE " + AnalyticsEvent.Columns.DEVICE_UUID + " IS NOT NULL", null);
+        try {
+            assertEquals(0, tableCursor.getCount());
+        } finally {
+            tableCursor.close();
+        }
+
+        // The view joins the values back in
+        final Cursor viewCursor = database.rawQuery("SELECT * FROM " + Database.EVENTS_VIEW_NAME + " ORDER BY _id", null);
+        try {
+            assertTrue(viewCursor.moveToFirst());
+            assertEquals(event1, new AnalyticsEvent(viewCursor));
+            assertTrue(viewCursor.moveToNext());
+            assertEquals(event2, new AnalyticsEvent(viewCursor));
+        } finally {
+            viewCursor.close();
+        }
+    }
+
+    public void testCreateVersion5HasStringsTableAndView() {
+        database = getWritableDatabase(5);
+        assertTrue(hasTable(Database.STRINGS_TABLE_NAME));
+        assertTrue(hasView(Database.EVENTS_VIEW_NAME));
+
+        // Events written straight to the table without references are still read by the view
+        final AnalyticsEvent event = DummyEvent.getEvent(TEST_DEVICE_UUID_1);
+        long rowId = database.insert(TABLE_NAME, null, event.getContentValues(5));
+        MoreAsserts.assertNotEqual(-1, rowId);
+        final Cursor cursor = database.rawQuery("SELECT * FROM " + Database.EVENTS_VIEW_NAME, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(event, new AnalyticsEvent(cursor));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testMigrateFromVersion5ToVersion6() {
+
+        database = getWritableDatabase(5);
+        final AnalyticsEvent event = DummyEvent.getEvent(TEST_DEVICE_UUID_1);
+        MoreAsserts.assertNotEqual(-1, database.insert(TABLE_NAME, null, event.getContentValues(5)));
+
+        database = getWritableDatabase(6);
+
+        assertEquals(6, database.getVersion());
+        assertTrue(getTableSchema().contains(AnalyticsEvent.Columns.BATCH_ID));
+        assertTableRowCount(1, TABLE_NAME);
+
+        // The existing event has not been sent in a batch yet
+        final Cursor cursor = database.rawQuery("SELECT * FROM " + Database.EVENTS_VIEW_NAME, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            final AnalyticsEvent eventFromView = new AnalyticsEvent(cursor);
+            assertEquals(event, eventFromView);
+            assertNull(eventFromView.getBatchId());
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // Another thread may add the same string between a lookup and an insert
+    public void testInsertingAnExistingStringIsIgnored() {
+        database = getWritableDatabase(Database.DATABASE_VERSION);
+        final EventStatements statements = new EventStatements(database);
+        try {
+            final long id = statements.insertString(TEST_DEVICE_UUID_1);
+            MoreAsserts.assertNotEqual(-1, id);
+
+            assertEquals(-1, statements.insertString(TEST_DEVICE_UUID_1));
+            assertEquals(id, statements.findString(TEST_DEVICE_UUID_1));
+            assertTableRowCount(1, Database.STRINGS_TABLE_NAME);
+        } finally {
+            statements.close();
+        }
+    }
+
+    private boolean hasTable(String tableName) {
+        return hasSchemaObject("table", tableName);
+    }
+
+    private boolean hasView(String viewName) {
+        return hasSchemaObject("view", viewName);
+    }
+
+    private boolean hasIndex(String indexName) {
+        return hasSchemaObject("index", indexName);
+    }
+
+    private boolean hasSchemaObject(String type, String name) {
+        final String sql = "SELECT name FROM sqlite_master WHERE type=? AND name=?";
+        final Cursor cursor = database.rawQuery(sql, new String[] { type, name });
+        try {
+            return cursor.getCount() == 1;
+        } finally {
+            cursor.close();
+        }
+    }
+
     private String getTableSchema() {
         final String sql = "SELECT sql FROM sqlite_master WHERE type='table' AND name=?";
         final Cursor cursor = database.rawQuery(sql, new String[] { Database.EVENTS_TABLE_NAME });
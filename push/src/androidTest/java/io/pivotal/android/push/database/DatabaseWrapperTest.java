@@ -6,6 +6,7 @@ import android.net.Uri;
 import android.provider.BaseColumns;
 import android.test.AndroidTestCase;
 
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -258,6 +259,43 @@ public class DatabaseWrapperTest extends AndroidTestCase {
 		assertEquals(rowCount, DatabaseWrapper.getNumberOfRowsInTable(Database.EVENTS_TABLE_NAME));
 	}
 
+	public void testNumberOfEventsIsNotChangedByRolledBackTransaction() {
+		final Uri uri1 = insertEvent(EVENT_1);
+		insertEvent(EVENT_2);
+		assertEquals(2, DatabaseWrapper.getNumberOfEvents());
+
+		// The first event is deleted before the bad URI fails the transaction
+		try {
+			DatabaseWrapper.delete(Arrays.asList(uri1, Uri.parse("content://bad/uri")), null, null);
+			fail("should have thrown");
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+
+		assertEventCountInDatabase(2);
+		assertEquals(2, DatabaseWrapper.getNumberOfEvents());
+	}
+
+	public void testNumberOfEventsAfterDeleteAll() {
+		insertEvent(EVENT_1);
+		insertEvent(EVENT_2);
+		assertEquals(2, DatabaseWrapper.getNumberOfEvents());
+
+		DatabaseWrapper.delete(Database.EVENTS_CONTENT_URI, null, null);
+
+		assertEquals(0, DatabaseWrapper.getNumberOfEvents());
+	}
+
+	public void testNumberOfEventsAfterCleanup() {
+		for (int i = 0; i < 4; i += 1) {
+			insertEvent(EVENT_1);
+		}
+
+		assertTrue(DatabaseWrapper.cleanup(Database.EVENTS_TABLE_NAME));
+
+		assertEquals(DatabaseWrapper.getNumberOfRowsInTable(Database.EVENTS_TABLE_NAME), DatabaseWrapper.getNumberOfEvents());
+	}
+
 	public void testGetNumberOfRowsInTableForBadTablenames() {
 		assertEquals(-1, DatabaseWrapper.getNumberOfRowsInTable(null));
 		assertEquals(-1, DatabaseWrapper.getNumberOfRowsInTable("COBRA COMMANDER WUZ HERE"));
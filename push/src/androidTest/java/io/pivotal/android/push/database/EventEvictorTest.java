@@ -0,0 +1,236 @@
+package io.pivotal.android.push.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+import android.test.RenamingDelegatingContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import io.pivotal.android.push.analytics.AnalyticsEventLogger;
+import io.pivotal.android.push.model.analytics.AnalyticsEvent;
+import io.pivotal.android.push.model.analytics.DummyEvent;
+
+public class EventEvictorTest extends AndroidTestCase {
+
+    private static final String TEST_FILE_PREFIX = "evictor_test_";
+    private static final String TEST_DEVICE_UUID = "TEST-DEVICE-UUID";
+    private static final List<String> EVICTION_ORDER = Arrays.asList(
+            AnalyticsEventLogger.PCF_PUSH_EVENT_TYPE_HEARTBEAT,
+            AnalyticsEventLogger.PCF_PUSH_EVENT_TYPE_PUSH_NOTIFICATION_OPENED);
+
+    private SQLiteDatabase database;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        final RenamingDelegatingContext context = new RenamingDelegatingContext(getContext(), TEST_FILE_PREFIX);
+        database = new Database(context, null, Database.DATABASE_VERSION).getWritableDatabase();
+        database.delete(Database.EVENTS_TABLE_NAME, null, null);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        database.close();
+        super.tearDown();
+    }
+
+    public void testRequiresPolicy() {
+        try {
+            new EventEvictor(null);
+            fail("should have failed");
+        } catch (IllegalArgumentException e) {
+            // should have thrown
+        }
+    }
+
+    public void testGetUsedBytes() {
+        final long emptyBytes = EventEvictor.getUsedBytes(database);
+        assertTrue(emptyBytes > 0);
+        assertEquals(0, emptyBytes % database.getPageSize());
+
+        insertEvents(DummyEvent.EVENT_TYPE, 200);
+        assertTrue(EventEvictor.getUsedBytes(database) > emptyBytes);
+    }
+
+    public void testCanStartEvictionOnlyChecksTheNumberOfEvents() {
+        final EventEvictor evictor = new EventEvictor(new PriorityEvictionPolicy(0.9, 0.75, 100, 10, EVICTION_ORDER));
+        assertFalse(evictor.canStartEviction(100, 1000));
+        assertTrue(evictor.canStartEviction(101, 1000));
+    }
+
+    public void testShouldStartEvictionUsesTheGivenSizes() {
+        final EventEvictor evictor = new EventEvictor(getPolicy(10));
+        final long usedBytes = EventEvictor.getUsedBytes(database);
+        assertTrue(evictor.shouldStartEviction(database, 1, database.getPageSize(), usedBytes));
+        assertFalse(evictor.shouldStartEviction(database, 1, database.getPageSize(), usedBytes * 2));
+    }
+
+    public void testEvictChunkEvictsCheapestEventTypeFirst() {
+        insertEvents(AnalyticsEventLogger.PCF_PUSH_EVENT_TYPE_PUSH_NOTIFICATION_OPENED, 3);
+        insertEvents(DummyEvent.EVENT_TYPE, 3);
+        insertEvents(AnalyticsEventLogger.PCF_PUSH_EVENT_TYPE_HEARTBEAT, 3);
+        final EventEvictor evictor = new EventEvictor(getPolicy(10));
+
+        assertEquals(3, evictor.evictChunk(database, 10));
+        assertEquals(0, getNumberOfEvents(AnalyticsEventLogger.PCF_PUSH_EVENT_TYPE_HEARTBEAT));
+
+        assertEquals(3, evictor.evictChunk(database, 10));
+        assertEquals(0, getNumberOfEvents(AnalyticsEventLogger.PCF_PUSH_EVENT_TYPE_PUSH_NOTIFICATION_OPENED));
+
+        // Event types that are not in the eviction order go last
+        assertEquals(3, evictor.evictChunk(database, 10));
+        assertEquals(0, getNumberOfEvents(null));
+
+        assertEquals(0, evictor.evictChunk(database, 10));
+    }
+
+    public void testEvictChunkEvictsOldestEventsOfATypeFirst() {
+        insertEvents(AnalyticsEventLogger.PCF_PUSH_EVENT_TYPE_HEARTBEAT, 5);
+        final List<Long> ids = getEventIds();
+        final EventEvictor evictor = new EventEvictor(getPolicy(10));
+
+        assertEquals(2, evictor.evictChunk(database, 2));
+        assertEquals(ids.subList(2, 5), getEventIds());
+    }
+
+    public void testEvictChunkLeavesEventsThatAreBeingSent() {
+        insertEvents(AnalyticsEventLogger.PCF_PUSH_EVENT_TYPE_HEARTBEAT, 2, AnalyticsEvent.Status.POSTING, "BATCH-1");
+        insertEvents(AnalyticsEventLogger.PCF_PUSH_EVENT_TYPE_HEARTBEAT, 2, AnalyticsEvent.Status.POSTING_ERROR, "BATCH-2");
+        final List<Long> inFlightIds = getEventIds();
+        insertEvents(AnalyticsEventLogger.PCF_PUSH_EVENT_TYPE_HEARTBEAT, 3);
+        insertEvents(DummyEvent.EVENT_TYPE, 3);
+        final EventEvictor evictor = new EventEvictor(getPolicy(10));
+
+        assertEquals(3, evictor.evictChunk(database, 10));
+        assertEquals(3, evictor.evictChunk(database, 10));
+        assertEquals(0, evictor.evictChunk(database, 10));
+        assertEquals(inFlightIds, getEventIds());
+    }
+
+    public void testEvictOnlyEvictsEventsThatAreBeingSentWhenFull() {
+        insertEvents(AnalyticsEventLogger.PCF_PUSH_EVENT_TYPE_HEARTBEAT, 4, AnalyticsEvent.Status.POSTING, "BATCH-1");
+        final EventEvictor evictor = new EventEvictor(new StopAtPolicy(0, 2));
+
+        assertEquals(0, evictor.evict(database, 4, false));
+        assertEquals(4, getNumberOfEvents(null));
+
+        assertEquals(2, evictor.evict(database, 4, true));
+        assertEquals(2, getNumberOfEvents(null));
+    }
+
+    public void testEvictStopsWhenPolicySaysSo() {
+        insertEvents(AnalyticsEventLogger.PCF_PUSH_EVENT_TYPE_HEARTBEAT, 10);
+        final EventEvictor evictor = new EventEvictor(new StopAtPolicy(7, 1));
+
+        assertEquals(3, evictor.evict(database, 10, false));
+        assertEquals(7, getNumberOfEvents(null));
+    }
+
+    public void testEvictDoesNothingIfPolicySaysToStop() {
+        insertEvents(AnalyticsEventLogger.PCF_PUSH_EVENT_TYPE_HEARTBEAT, 10);
+        final EventEvictor evictor = new EventEvictor(new StopAtPolicy(10, 1));
+
+        assertEquals(0, evictor.evict(database, 10, false));
+        assertEquals(10, getNumberOfEvents(null));
+    }
+
+    public void testEvictAlwaysEvictsAChunkWhenFull() {
+        insertEvents(AnalyticsEventLogger.PCF_PUSH_EVENT_TYPE_HEARTBEAT, 10);
+        final EventEvictor evictor = new EventEvictor(new StopAtPolicy(10, 2));
+
+        assertEquals(2, evictor.evict(database, 10, true));
+        assertEquals(8, getNumberOfEvents(null));
+    }
+
+    public void testEvictNeverEvictsMoreThanHalfOfTheEvents() {
+        insertEvents(AnalyticsEventLogger.PCF_PUSH_EVENT_TYPE_HEARTBEAT, 10);
+        final EventEvictor evictor = new EventEvictor(new StopAtPolicy(0, 50));
+
+        assertEquals(5, evictor.evict(database, 10, true));
+        assertEquals(5, getNumberOfEvents(null));
+    }
+
+    private EvictionPolicy getPolicy(int chunkSize) {
+        return new PriorityEvictionPolicy(0.9, 0.75, 0, chunkSize, EVICTION_ORDER);
+    }
+
+    private void insertEvents(String eventType, int numberOfEvents) {
+        insertEvents(eventType, numberOfEvents, AnalyticsEvent.Status.NOT_POSTED, null);
+    }
+
+    private void insertEvents(String eventType, int numberOfEvents, int status, String batchId) {
+        for (int i = 0; i < numberOfEvents; i += 1) {
+            final AnalyticsEvent event = DummyEvent.getEvent(TEST_DEVICE_UUID);
+            event.setEventType(eventType);
+            event.setStatus(status);
+            event.setBatchId(batchId);
+            assertTrue(database.insert(Database.EVENTS_TABLE_NAME, null, event.getContentValues(Database.DATABASE_VERSION)) > 0);
+        }
+    }
+
+    private int getNumberOfEvents(String eventType) {
+        final String selection = eventType == null ? null : AnalyticsEvent.Columns.EVENT_TYPE + " = ?";
+        final String[] selectionArgs = eventType == null ? null : new String[] { eventType };
+        Cursor cursor = null;
+        try {
+            cursor = database.query(Database.EVENTS_TABLE_NAME, null, selection, selectionArgs, null, null, null);
+            return cursor.getCount();
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    private List<Long> getEventIds() {
+        final List<Long> ids = new ArrayList<>();
+        Cursor cursor = null;
+        try {
+            cursor = database.query(Database.EVENTS_TABLE_NAME, new String[] { "_id" }, null, null, null, null, "_id");
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        return ids;
+    }
+
+    // Stops once the given number of events is left, regardless of the size of the database
+    private static class StopAtPolicy implements EvictionPolicy {
+
+        private final long numberOfEventsToKeep;
+        private final int chunkSize;
+
+        StopAtPolicy(long numberOfEventsToKeep, int chunkSize) {
+            this.numberOfEventsToKeep = numberOfEventsToKeep;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        public boolean shouldStartEviction(long numberOfEvents, long usedBytes, long maximumBytes) {
+            return numberOfEvents > numberOfEventsToKeep;
+        }
+
+        @Override
+        public boolean shouldStopEviction(long numberOfEvents, long usedBytes, long maximumBytes) {
+            return numberOfEvents <= numberOfEventsToKeep;
+        }
+
+        @Override
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        @Override
+        public List<String> getEventTypesInEvictionOrder() {
+            return Collections.emptyList();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package io.pivotal.android.push.database;
+
+import android.test.AndroidTestCase;
+
+import java.util.List;
+
+public class EventIdRangeTest extends AndroidTestCase {
+
+    public void testRequiresOrderedIds() {
+        try {
+            new EventIdRange(2, 1);
+            fail("should have failed");
+        } catch (IllegalArgumentException e) {
+            // should have thrown
+        }
+    }
+
+    public void testContains() {
+        final EventIdRange idRange = new EventIdRange(2, 4);
+        assertFalse(idRange.contains(1));
+        assertTrue(idRange.contains(2));
+        assertTrue(idRange.contains(4));
+        assertFalse(idRange.contains(5));
+    }
+
+    public void testFromNoIds() {
+        assertTrue(EventIdRange.fromIds(new long[0]).isEmpty());
+    }
+
+    public void testFromConsecutiveIds() {
+        final List<EventIdRange> idRanges = EventIdRange.fromIds(new long[] { 3, 4, 5, 6 });
+        assertEquals(1, idRanges.size());
+        assertEquals(new EventIdRange(3, 6), idRanges.get(0));
+    }
+
+    public void testFromUnorderedIdsWithGaps() {
+        final long[] ids = new long[] { 9, 1, 2, 7, 4, 8 };
+        final List<EventIdRange> idRanges = EventIdRange.fromIds(ids);
+        assertEquals(3, idRanges.size());
+        assertEquals(new EventIdRange(1, 2), idRanges.get(0));
+        assertEquals(new EventIdRange(4, 4), idRanges.get(1));
+        assertEquals(new EventIdRange(7, 9), idRanges.get(2));
+        assertEquals(9, ids[0]);
+    }
+
+    public void testFromRepeatedIds() {
+        final List<EventIdRange> idRanges = EventIdRange.fromIds(new long[] { 5, 5, 6 });
+        assertEquals(1, idRanges.size());
+        assertEquals(new EventIdRange(5, 6), idRanges.get(0));
+    }
+}
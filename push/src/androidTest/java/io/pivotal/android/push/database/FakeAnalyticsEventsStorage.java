@@ -1,8 +1,15 @@
 package io.pivotal.android.push.database;
 
+import android.content.ContentUris;
 import android.net.Uri;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -40,6 +47,21 @@ public class FakeAnalyticsEventsStorage implements AnalyticsEventsStorage {
         return uri;
     }
 
+    /**
+     * Saves all of the given {@link AnalyticsEvent} objects into the fake filesystem.
+     */
+    @Override
+    public List<Uri> saveEvents(List<AnalyticsEvent> eventsToSave) {
+        if (willSaveFail) {
+            return null;
+        }
+        final List<Uri> uris = new ArrayList<>(eventsToSave.size());
+        for (final AnalyticsEvent event : eventsToSave) {
+            uris.add(saveEvent(event));
+        }
+        return uris;
+    }
+
     /**
      * Gets the filenames for all the {@link AnalyticsEvent} objects currently in the fake filesystem.
      */
@@ -93,6 +115,41 @@ public class FakeAnalyticsEventsStorage implements AnalyticsEventsStorage {
         }
     }
 
+    /**
+     * Passes the {@link AnalyticsEvent} objects in the fake filesystem that match any of the given statuses
+     * to the given handler, in the order that they were saved.
+     */
+    @Override
+    public void streamEventsWithStatuses(AnalyticsEventsHandler handler, int... statuses) throws IOException {
+        final List<Uri> uris = new ArrayList<>();
+        for (final int status : statuses) {
+            getEventUrisWithStatusForEventType(status, uris);
+        }
+        Collections.sort(uris, new Comparator<Uri>() {
+            @Override
+            public int compare(Uri lhs, Uri rhs) {
+                final long lhsId = Long.parseLong(lhs.getLastPathSegment());
+                final long rhsId = Long.parseLong(rhs.getLastPathSegment());
+                return lhsId < rhsId ? -1 : (lhsId == rhsId ? 0 : 1);
+            }
+        });
+        for (final Uri uri : uris) {
+            handler.onEvent(uri, events.get(uri));
+        }
+    }
+
+    @Override
+    public void streamEvents(List<EventIdRange> idRanges, AnalyticsEventsHandler handler) throws IOException {
+        for (final EventIdRange idRange : idRanges) {
+            for (long id = idRange.getFirstId(); id <= idRange.getLastId(); id += 1) {
+                final Uri uri = Uri.withAppendedPath(Database.EVENTS_CONTENT_URI, String.valueOf(id));
+                if (events.containsKey(uri)) {
+                    handler.onEvent(uri, events.get(uri));
+                }
+            }
+        }
+    }
+
     /**
      * Deletes the {@link AnalyticsEvent} objects from the fake filesystem with the given list of filenames.
      */
@@ -105,6 +162,37 @@ public class FakeAnalyticsEventsStorage implements AnalyticsEventsStorage {
         }
     }
 
+    @Override
+    public int deleteEvents(int[] statuses, long maxId) {
+        int numberOfEvents = 0;
+        final Iterator<Map.Entry<Uri, AnalyticsEvent>> iterator = events.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<Uri, AnalyticsEvent> entry = iterator.next();
+            if (ContentUris.parseId(entry.getKey()) <= maxId && hasAnyStatus(entry.getValue(), statuses)) {
+                iterator.remove();
+                numberOfEvents += 1;
+            }
+        }
+        return numberOfEvents;
+    }
+
+    @Override
+    public int deleteEventsInRanges(List<EventIdRange> idRanges) {
+        int numberOfEvents = 0;
+        final Iterator<Uri> iterator = events.keySet().iterator();
+        while (iterator.hasNext()) {
+            final long id = ContentUris.parseId(iterator.next());
+            for (final EventIdRange idRange : idRanges) {
+                if (idRange.contains(id)) {
+                    iterator.remove();
+                    numberOfEvents += 1;
+                    break;
+                }
+            }
+        }
+        return numberOfEvents;
+    }
+
     /**
      * Returns the number of {@link AnalyticsEvent} objects currently in the fake filesystem.
      */
@@ -112,6 +200,52 @@ public class FakeAnalyticsEventsStorage implements AnalyticsEventsStorage {
         return events.size();
     }
 
+    @Override
+    public int getNumberOfEventsInRanges(List<EventIdRange> idRanges) {
+        int numberOfEvents = 0;
+        for (final Uri uri : events.keySet()) {
+            final long id = ContentUris.parseId(uri);
+            for (final EventIdRange idRange : idRanges) {
+                if (idRange.contains(id)) {
+                    numberOfEvents += 1;
+                    break;
+                }
+            }
+        }
+        return numberOfEvents;
+    }
+
+    @Override
+    public EventQueueStatistics getQueueStatistics() {
+        final Map<Integer, Integer> numberOfEventsByStatus = new HashMap<>();
+        long oldestPendingId = Long.MAX_VALUE;
+        Date oldestPendingEventTime = null;
+        for (final Uri uri : events.keySet()) {
+            final AnalyticsEvent event = events.get(uri);
+            final Integer count = numberOfEventsByStatus.get(event.getStatus());
+            numberOfEventsByStatus.put(event.getStatus(), count != null ? count + 1 : 1);
+
+            final long id = Long.parseLong(uri.getLastPathSegment());
+            final boolean isPending = event.getStatus() == AnalyticsEvent.Status.NOT_POSTED || event.getStatus() == AnalyticsEvent.Status.POSTING_ERROR;
+            if (isPending && id < oldestPendingId) {
+                oldestPendingId = id;
+                oldestPendingEventTime = event.getEventTime() != null ? new Date(Long.parseLong(event.getEventTime()) * 1000L) : null;
+            }
+        }
+        return new EventQueueStatistics(numberOfEventsByStatus, oldestPendingEventTime, 0);
+    }
+
+    @Override
+    public int getNumberOfEventsWithStatus(int status) {
+        int numberOfEvents = 0;
+        for (final AnalyticsEvent event : events.values()) {
+            if (event.getStatus() == status) {
+                numberOfEvents += 1;
+            }
+        }
+        return numberOfEvents;
+    }
+
     /**
      * Clears all {@link AnalyticsEvent} objects from the fake filesystem.
      */
@@ -130,4 +264,53 @@ public class FakeAnalyticsEventsStorage implements AnalyticsEventsStorage {
         final AnalyticsEvent event = readEvent(eventUri);
         event.setStatus(status);
     }
+
+    @Override
+    public int updateStatus(int[] fromStatuses, int toStatus, long maxId) {
+        int numberOfEvents = 0;
+        for (final Map.Entry<Uri, AnalyticsEvent> entry : events.entrySet()) {
+            if (ContentUris.parseId(entry.getKey()) <= maxId && hasAnyStatus(entry.getValue(), fromStatuses)) {
+                entry.getValue().setStatus(toStatus);
+                numberOfEvents += 1;
+            }
+        }
+        return numberOfEvents;
+    }
+
+    @Override
+    public int updateStatus(EventIdRange idRange, int toStatus) {
+        int numberOfEvents = 0;
+        for (final Map.Entry<Uri, AnalyticsEvent> entry : events.entrySet()) {
+            if (idRange.contains(ContentUris.parseId(entry.getKey()))) {
+                entry.getValue().setStatus(toStatus);
+                numberOfEvents += 1;
+            }
+        }
+        return numberOfEvents;
+    }
+
+    @Override
+    public int setBatchId(List<EventIdRange> idRanges, String batchId) {
+        int numberOfEvents = 0;
+        for (final Map.Entry<Uri, AnalyticsEvent> entry : events.entrySet()) {
+            final long id = ContentUris.parseId(entry.getKey());
+            for (final EventIdRange idRange : idRanges) {
+                if (idRange.contains(id)) {
+                    entry.getValue().setBatchId(batchId);
+                    numberOfEvents += 1;
+                    break;
+                }
+            }
+        }
+        return numberOfEvents;
+    }
+
+    private static boolean hasAnyStatus(AnalyticsEvent event, int[] statuses) {
+        for (final int status : statuses) {
+            if (event.getStatus() == status) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -3,6 +3,8 @@ package io.pivotal.android.push.database;
 import android.net.Uri;
 import android.test.AndroidTestCase;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -208,4 +210,25 @@ public class FakeAnalyticsEventsStorageTest extends AndroidTestCase {
 		assertEquals(1, uris3.size());
 		assertEquals(uri2, uris3.get(0));
 	}
+
+	public void testStreamEventsWithStatuses() throws IOException {
+		EVENT_1.setStatus(AnalyticsEvent.Status.POSTING_ERROR);
+		EVENT_2.setStatus(AnalyticsEvent.Status.POSTED);
+		EVENT_3.setStatus(AnalyticsEvent.Status.NOT_POSTED);
+		final Uri uri1 = storage.saveEvent(EVENT_1);
+		storage.saveEvent(EVENT_2);
+		final Uri uri3 = storage.saveEvent(EVENT_3);
+
+		final List<Uri> uris = new ArrayList<>();
+		storage.streamEventsWithStatuses(new AnalyticsEventsHandler() {
+			@Override
+			public void onEvent(Uri uri, AnalyticsEvent event) {
+				uris.add(uri);
+			}
+		}, AnalyticsEvent.Status.NOT_POSTED, AnalyticsEvent.Status.POSTING_ERROR);
+
+		assertEquals(2, uris.size());
+		assertEquals(uri1, uris.get(0));
+		assertEquals(uri3, uris.get(1));
+	}
 }
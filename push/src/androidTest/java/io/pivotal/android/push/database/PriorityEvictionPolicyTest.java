@@ -0,0 +1,72 @@
+package io.pivotal.android.push.database;
+
+import android.test.AndroidTestCase;
+
+import java.util.Collections;
+
+import io.pivotal.android.push.analytics.AnalyticsEventLogger;
+
+public class PriorityEvictionPolicyTest extends AndroidTestCase {
+
+    private static final long MAXIMUM_BYTES = 1000;
+
+    public void testRequiresValidArguments() {
+        assertInvalidArguments(0.0, 0.0, 0, 1);
+        assertInvalidArguments(1.1, 0.5, 0, 1);
+        assertInvalidArguments(0.5, 0.5, 0, 1);
+        assertInvalidArguments(0.5, -0.1, 0, 1);
+        assertInvalidArguments(0.9, 0.5, -1, 1);
+        assertInvalidArguments(0.9, 0.5, 0, 0);
+        try {
+            new PriorityEvictionPolicy(0.9, 0.5, 0, 1, null);
+            fail("should have failed");
+        } catch (IllegalArgumentException e) {
+            // should have thrown
+        }
+    }
+
+    public void testDefaultEvictionOrder() {
+        final PriorityEvictionPolicy policy = new PriorityEvictionPolicy();
+        assertEquals(PriorityEvictionPolicy.DEFAULT_CHUNK_SIZE, policy.getChunkSize());
+        assertEquals(AnalyticsEventLogger.PCF_PUSH_EVENT_TYPE_HEARTBEAT, policy.getEventTypesInEvictionOrder().get(0));
+        final int opened = policy.getEventTypesInEvictionOrder().indexOf(AnalyticsEventLogger.PCF_PUSH_EVENT_TYPE_PUSH_NOTIFICATION_OPENED);
+        assertEquals(policy.getEventTypesInEvictionOrder().size() - 1, opened);
+    }
+
+    public void testStartsEvictionWhenNearlyFull() {
+        final PriorityEvictionPolicy policy = getPolicy();
+        assertFalse(policy.shouldStartEviction(100, 899, MAXIMUM_BYTES));
+        assertTrue(policy.shouldStartEviction(100, 900, MAXIMUM_BYTES));
+    }
+
+    public void testDoesNotStartEvictionWithTooFewEvents() {
+        final PriorityEvictionPolicy policy = getPolicy();
+        assertFalse(policy.shouldStartEviction(10, MAXIMUM_BYTES, MAXIMUM_BYTES));
+        assertTrue(policy.shouldStartEviction(11, MAXIMUM_BYTES, MAXIMUM_BYTES));
+    }
+
+    public void testStopsEvictionWhenThereIsRoom() {
+        final PriorityEvictionPolicy policy = getPolicy();
+        assertFalse(policy.shouldStopEviction(90, 751, MAXIMUM_BYTES));
+        assertTrue(policy.shouldStopEviction(90, 750, MAXIMUM_BYTES));
+    }
+
+    public void testStopsEvictionAtMinimumNumberOfEvents() {
+        final PriorityEvictionPolicy policy = getPolicy();
+        assertFalse(policy.shouldStopEviction(11, MAXIMUM_BYTES, MAXIMUM_BYTES));
+        assertTrue(policy.shouldStopEviction(10, MAXIMUM_BYTES, MAXIMUM_BYTES));
+    }
+
+    private PriorityEvictionPolicy getPolicy() {
+        return new PriorityEvictionPolicy(0.9, 0.75, 10, 5, Collections.<String>emptyList());
+    }
+
+    private void assertInvalidArguments(double startFraction, double stopFraction, int minimumNumberOfEvents, int chunkSize) {
+        try {
+            new PriorityEvictionPolicy(startFraction, stopFraction, minimumNumberOfEvents, chunkSize, Collections.<String>emptyList());
+            fail("should have failed");
+        } catch (IllegalArgumentException e) {
+            // should have thrown
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package io.pivotal.android.push.model.analytics;
+
+import android.os.Debug;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.pivotal.android.push.util.GsonUtil;
+
+/**
+ * Compares the throughput and the allocations per event of writing an upload body with a new reflective
+ * Gson for each upload (the old approach) against writing it with the shared hand-written type adapter.
+ * The results are written to logcat with the tag "AnalyticsSerializerBenchmark".
+ */
+public class AnalyticsEventSerializerBenchmark extends AndroidTestCase {
+
+    private static final String TAG = "AnalyticsSerializerBenchmark";
+
+    private static final int EVENTS_PER_UPLOAD = 100;
+    private static final int NUMBER_OF_WARM_UP_UPLOADS = 50;
+    private static final int NUMBER_OF_UPLOADS = 500;
+
+    private interface Serializer {
+        void write(List<AnalyticsEvent> events, JsonWriter jsonWriter) throws IOException;
+    }
+
+    private final Serializer reflectiveSerializer = new Serializer() {
+        @Override
+        public void write(List<AnalyticsEvent> events, JsonWriter jsonWriter) throws IOException {
+            final Gson gson = new Gson();
+            final AnalyticsEventList eventList = new AnalyticsEventList();
+            eventList.setEvents(events);
+            gson.toJson(eventList, AnalyticsEventList.class, jsonWriter);
+        }
+    };
+
+    private final Serializer adapterSerializer = new Serializer() {
+
+        private final TypeAdapter<AnalyticsEvent> eventAdapter = GsonUtil.getGson().getAdapter(AnalyticsEvent.class);
+
+        @Override
+        public void write(List<AnalyticsEvent> events, JsonWriter jsonWriter) throws IOException {
+            jsonWriter.beginObject();
+            jsonWriter.name(AnalyticsEventList.EVENTS);
+            jsonWriter.beginArray();
+            for (int i = 0; i < events.size(); i += 1) {
+                eventAdapter.write(jsonWriter, events.get(i));
+            }
+            jsonWriter.endArray();
+            jsonWriter.endObject();
+        }
+    };
+
+    public void testSerializeUploads() throws Exception {
+        final List<AnalyticsEvent> events = getEvents();
+
+        final Result reflective = runBenchmark(reflectiveSerializer, events);
+        final Result adapter = runBenchmark(adapterSerializer, events);
+
+        Log.i(TAG, String.format("%d uploads of %d events: reflective %.0f events/s, %d bytes allocated/event; adapter %.0f events/s, %d bytes allocated/event",
+                NUMBER_OF_UPLOADS, EVENTS_PER_UPLOAD,
+                reflective.getEventsPerSecond(), reflective.getBytesAllocatedPerEvent(),
+                adapter.getEventsPerSecond(), adapter.getBytesAllocatedPerEvent()));
+    }
+
+    private static class Result {
+        private final long elapsedMilliseconds;
+        private final long bytesAllocated;
+
+        private Result(long elapsedMilliseconds, long bytesAllocated) {
+            this.elapsedMilliseconds = elapsedMilliseconds;
+            this.bytesAllocated = bytesAllocated;
+        }
+
+        private double getEventsPerSecond() {
+            return (double) NUMBER_OF_UPLOADS * EVENTS_PER_UPLOAD * 1000.0 / Math.max(elapsedMilliseconds, 1);
+        }
+
+        private long getBytesAllocatedPerEvent() {
+            return bytesAllocated / ((long) NUMBER_OF_UPLOADS * EVENTS_PER_UPLOAD);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private Result runBenchmark(Serializer serializer, List<AnalyticsEvent> events) throws IOException {
+        for (int i = 0; i < NUMBER_OF_WARM_UP_UPLOADS; i += 1) {
+            writeUpload(serializer, events);
+        }
+
+        // Allocations are counted on this thread only
+        Debug.resetThreadAllocSize();
+        Debug.startAllocCounting();
+        final long startTime = SystemClock.elapsedRealtime();
+        for (int i = 0; i < NUMBER_OF_UPLOADS; i += 1) {
+            writeUpload(serializer, events);
+        }
+        final long elapsedMilliseconds = SystemClock.elapsedRealtime() - startTime;
+        Debug.stopAllocCounting();
+        return new Result(elapsedMilliseconds, Debug.getThreadAllocSize());
+    }
+
+    private void writeUpload(Serializer serializer, List<AnalyticsEvent> events) throws IOException {
+        final JsonWriter jsonWriter = new JsonWriter(new OutputStreamWriter(new NullOutputStream(), "UTF-8"));
+        serializer.write(events, jsonWriter);
+        jsonWriter.close();
+    }
+
+    private static List<AnalyticsEvent> getEvents() {
+        final List<AnalyticsEvent> events = new ArrayList<>(EVENTS_PER_UPLOAD);
+        for (int i = 0; i < EVENTS_PER_UPLOAD; i += 1) {
+            final AnalyticsEvent event = AnalyticsEventTest.getEvent1();
+            event.setReceiptId("receipt-" + i);
+            event.setDeviceUuid("e7d26ae1-5c53-4a3b-8f4f-1a2b3c4d5e6f");
+            event.setGeofenceId(Integer.toString(i));
+            event.setLocationId(Integer.toString(i * 2));
+            events.add(event);
+        }
+        return events;
+    }
+
+    // Only the serializing is measured, not the writing
+    private static class NullOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
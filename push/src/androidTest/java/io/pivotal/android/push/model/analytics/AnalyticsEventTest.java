@@ -190,6 +190,17 @@ public class AnalyticsEventTest extends AndroidTestCase {
         assertEquals(1, AnalyticsEvent.getDatabaseMigrationCommands(1, 2).size());
         assertEquals(2, AnalyticsEvent.getDatabaseMigrationCommands(2, 3).size());
         assertEquals(3, AnalyticsEvent.getDatabaseMigrationCommands(1, 3).size());
+        assertEquals(0, AnalyticsEvent.getDatabaseMigrationCommands(4, 4).size());
+        assertEquals(7, AnalyticsEvent.getDatabaseMigrationCommands(3, 4).size());
+        assertEquals(9, AnalyticsEvent.getDatabaseMigrationCommands(2, 4).size());
+        assertEquals(10, AnalyticsEvent.getDatabaseMigrationCommands(1, 4).size());
+        assertEquals(0, AnalyticsEvent.getDatabaseMigrationCommands(5, 5).size());
+        assertEquals(14, AnalyticsEvent.getDatabaseMigrationCommands(4, 5).size());
+        assertEquals(24, AnalyticsEvent.getDatabaseMigrationCommands(1, 5).size());
+        assertEquals(0, AnalyticsEvent.getDatabaseMigrationCommands(6, 6).size());
+        assertEquals(3, AnalyticsEvent.getDatabaseMigrationCommands(5, 6).size());
+        assertEquals(17, AnalyticsEvent.getDatabaseMigrationCommands(4, 6).size());
+        assertEquals(27, AnalyticsEvent.getDatabaseMigrationCommands(1, 6).size());
     }
 
     public static AnalyticsEvent getEvent1() {
@@ -0,0 +1,102 @@
+package io.pivotal.android.push.model.analytics;
+
+import android.test.AndroidTestCase;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.util.Arrays;
+
+import io.pivotal.android.push.util.GsonUtil;
+
+public class AnalyticsEventTypeAdapterTest extends AndroidTestCase {
+
+    private Gson reflectiveGson;
+    private Gson gson;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        reflectiveGson = new Gson();
+        gson = new GsonBuilder()
+                .registerTypeAdapter(AnalyticsEvent.class, new AnalyticsEventTypeAdapter())
+                .registerTypeAdapter(AnalyticsEventList.class, new AnalyticsEventListTypeAdapter(new AnalyticsEventTypeAdapter()))
+                .create();
+    }
+
+    public void testListAdapterRequiresEventAdapter() {
+        try {
+            new AnalyticsEventListTypeAdapter(null);
+            fail("should have thrown");
+        } catch (IllegalArgumentException e) {
+            // success
+        }
+    }
+
+    public void testWritesTheSameJsonAsReflection() {
+        final AnalyticsEvent event = getEventWithAllFields();
+        assertEquals(reflectiveGson.toJson(event), gson.toJson(event));
+    }
+
+    public void testLeavesOutNullFields() {
+        final AnalyticsEvent event = AnalyticsEventTest.getEvent1();
+        final String json = gson.toJson(event);
+        assertEquals(reflectiveGson.toJson(event), json);
+        assertFalse(json.contains(AnalyticsEvent.Columns.GEOFENCE_ID));
+        assertFalse(json.contains("null"));
+    }
+
+    public void testDoesNotWriteDatabaseFields() {
+        final AnalyticsEvent event = getEventWithAllFields();
+        event.setStatus(AnalyticsEvent.Status.POSTING);
+        event.setBatchId("SOME-BATCH-ID");
+        final String json = gson.toJson(event);
+        assertFalse(json.contains(AnalyticsEvent.Columns.STATUS));
+        assertFalse(json.contains("SOME-BATCH-ID"));
+    }
+
+    public void testWritesNull() {
+        assertEquals("null", gson.toJson(null, AnalyticsEvent.class));
+    }
+
+    public void testReadsWhatItWrites() {
+        final AnalyticsEvent event = getEventWithAllFields();
+        assertEquals(event, gson.fromJson(gson.toJson(event), AnalyticsEvent.class));
+    }
+
+    public void testReadsNumbersAndSkipsUnknownFields() {
+        final AnalyticsEvent event = gson.fromJson("{\"receiptId\":\"RECEIPT\",\"eventTime\":1234,\"unknown\":{\"a\":[1,2]},\"geofenceId\":null}", AnalyticsEvent.class);
+        assertEquals("RECEIPT", event.getReceiptId());
+        assertEquals("1234", event.getEventTime());
+        assertNull(event.getGeofenceId());
+    }
+
+    public void testWritesTheSameListJsonAsReflection() {
+        final AnalyticsEventList eventList = new AnalyticsEventList();
+        eventList.setEvents(Arrays.asList(AnalyticsEventTest.getEvent1(), getEventWithAllFields()));
+        assertEquals(reflectiveGson.toJson(eventList), gson.toJson(eventList));
+        assertEquals(eventList, gson.fromJson(gson.toJson(eventList), AnalyticsEventList.class));
+    }
+
+    public void testWritesEmptyList() {
+        final AnalyticsEventList eventList = new AnalyticsEventList();
+        assertEquals("{}", gson.toJson(eventList));
+        assertEquals(eventList, gson.fromJson("{}", AnalyticsEventList.class));
+    }
+
+    public void testSharedGsonUsesTheAdapters() {
+        final AnalyticsEvent event = getEventWithAllFields();
+        assertSame(GsonUtil.getGson(), GsonUtil.getGson());
+        assertTrue(GsonUtil.getGson().getAdapter(AnalyticsEvent.class) instanceof AnalyticsEventTypeAdapter);
+        assertTrue(GsonUtil.getGson().getAdapter(AnalyticsEventList.class) instanceof AnalyticsEventListTypeAdapter);
+        assertEquals(reflectiveGson.toJson(event), GsonUtil.getGson().toJson(event));
+    }
+
+    private static AnalyticsEvent getEventWithAllFields() {
+        final AnalyticsEvent event = AnalyticsEventTest.getEvent1();
+        event.setDeviceUuid("DEVICE-UUID");
+        event.setGeofenceId("57");
+        event.setLocationId("<&'quoted\">");
+        return event;
+    }
+}
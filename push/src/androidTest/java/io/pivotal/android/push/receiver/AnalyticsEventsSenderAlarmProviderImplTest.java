@@ -16,4 +16,13 @@ public class AnalyticsEventsSenderAlarmProviderImplTest extends AndroidTestCase
             assertTrue("Bad trigger offset " + offset, offset <=  TRIGGER_UPPER_BOUND);
         }
     }
+
+    public void testScheduleAlarmRequiresNonNegativeDelay() {
+        try {
+            new AnalyticsEventsSenderAlarmProviderImpl(getContext()).scheduleAlarm(-1);
+            fail("should have thrown");
+        } catch (IllegalArgumentException e) {
+            // success
+        }
+    }
 }
@@ -3,6 +3,8 @@ package io.pivotal.android.push.receiver;
 public class FakeAnalyticsEventsSenderAlarmProvider implements AnalyticsEventsSenderAlarmProvider {
 
     private boolean isAlarmEnabled = false;
+    private long scheduledDelayInMilliseconds = -1;
+    private boolean willScheduledAlarmWakeDevice = false;
 
     @Override
     public synchronized void enableAlarm() {
@@ -12,6 +14,7 @@ public class FakeAnalyticsEventsSenderAlarmProvider implements AnalyticsEventsSe
     @Override
     public synchronized void disableAlarm() {
         isAlarmEnabled = false;
+        scheduledDelayInMilliseconds = -1;
     }
 
     @Override
@@ -25,4 +28,30 @@ public class FakeAnalyticsEventsSenderAlarmProvider implements AnalyticsEventsSe
             enableAlarm();
         }
     }
+
+    @Override
+    public synchronized void scheduleAlarm(long delayInMilliseconds) {
+        scheduleAlarm(delayInMilliseconds, true);
+    }
+
+    @Override
+    public synchronized void scheduleAlarm(long delayInMilliseconds, boolean shouldWakeDevice) {
+        isAlarmEnabled = true;
+        scheduledDelayInMilliseconds = delayInMilliseconds;
+        willScheduledAlarmWakeDevice = shouldWakeDevice;
+    }
+
+    /**
+     * @return the delay given to the last call to scheduleAlarm, or -1 if it has not been called since the alarm was disabled
+     */
+    public synchronized long getScheduledDelayInMilliseconds() {
+        return scheduledDelayInMilliseconds;
+    }
+
+    /**
+     * @return true if the alarm given to the last call to scheduleAlarm wakes the device up
+     */
+    public synchronized boolean willScheduledAlarmWakeDevice() {
+        return willScheduledAlarmWakeDevice;
+    }
 }
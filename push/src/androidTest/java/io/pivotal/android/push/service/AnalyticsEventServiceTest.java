@@ -74,24 +74,25 @@ public class AnalyticsEventServiceTest extends ServiceTestCase<AnalyticsEventSer
         alarmProvider.enableAlarm();
 
         AnalyticsEventService.semaphore = new Semaphore(0);
-        AnalyticsEventService.networkWrapper = networkWrapper;
-        AnalyticsEventService.serviceStarter = serviceStarter;
-        AnalyticsEventService.eventsStorage = eventsStorage;
-        AnalyticsEventService.pushPreferences = pushPreferences;
-        AnalyticsEventService.sendAnalyticsRequestProvider = new PCFPushSendAnalyticsApiRequestProvider(apiRequest);
-        AnalyticsEventService.alarmProvider = alarmProvider;
-        AnalyticsEventService.listOfCompletedJobs = listOfCompletedJobs;
+        AnalyticsJobExecutor.networkWrapper = networkWrapper;
+        AnalyticsJobExecutor.serviceStarter = serviceStarter;
+        AnalyticsJobExecutor.eventsStorage = eventsStorage;
+        AnalyticsJobExecutor.pushPreferences = pushPreferences;
+        AnalyticsJobExecutor.sendAnalyticsRequestProvider = new PCFPushSendAnalyticsApiRequestProvider(apiRequest);
+        AnalyticsJobExecutor.alarmProvider = alarmProvider;
+        AnalyticsJobExecutor.listOfCompletedJobs = listOfCompletedJobs;
     }
 
     @Override
     protected void tearDown() throws Exception {
         AnalyticsEventService.semaphore = null;
-        AnalyticsEventService.networkWrapper = null;
-        AnalyticsEventService.serviceStarter = null;
-        AnalyticsEventService.eventsStorage = null;
-        AnalyticsEventService.pushPreferences = null;
-        AnalyticsEventService.alarmProvider = null;
-        AnalyticsEventService.sendAnalyticsRequestProvider = null;
+        AnalyticsJobExecutor.networkWrapper = null;
+        AnalyticsJobExecutor.serviceStarter = null;
+        AnalyticsJobExecutor.eventsStorage = null;
+        AnalyticsJobExecutor.pushPreferences = null;
+        AnalyticsJobExecutor.alarmProvider = null;
+        AnalyticsJobExecutor.sendAnalyticsRequestProvider = null;
+        AnalyticsJobExecutor.listOfCompletedJobs = null;
 
         reset(pushPreferences);
         super.tearDown();
@@ -179,7 +180,7 @@ public class AnalyticsEventServiceTest extends ServiceTestCase<AnalyticsEventSer
     }
 
     public void testRunsPrepareDatabaseJobIfReceivingAFreshDatabaseInstanceAndAnalyticsAreEnabled() throws InterruptedException {
-        AnalyticsEventService.eventsStorage = null;
+        AnalyticsJobExecutor.eventsStorage = null;
         DatabaseWrapper.removeDatabaseInstance();
         final DummyJob inputJob = new DummyJob();
         final Intent intent = AnalyticsEventService.getIntentToRunJob(getContext(), inputJob);
@@ -194,7 +195,7 @@ public class AnalyticsEventServiceTest extends ServiceTestCase<AnalyticsEventSer
     public void testDoesNotRunPrepareDatabaseJobIfReceivingAFreshDatabaseInstanceAndAnalyticsAreDisabled() throws InterruptedException {
         when(pushPreferences.areAnalyticsEnabled()).thenReturn(false);
 
-        AnalyticsEventService.eventsStorage = null;
+        AnalyticsJobExecutor.eventsStorage = null;
         DatabaseWrapper.removeDatabaseInstance();
         final DummyJob inputJob = new DummyJob();
         final Intent intent = AnalyticsEventService.getIntentToRunJob(getContext(), inputJob);
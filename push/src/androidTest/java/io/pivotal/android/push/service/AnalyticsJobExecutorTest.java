@@ -0,0 +1,159 @@
+package io.pivotal.android.push.service;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import android.content.ContextWrapper;
+import android.content.Intent;
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import io.pivotal.android.push.analytics.jobs.DummyJob;
+import io.pivotal.android.push.analytics.jobs.JobParams;
+import io.pivotal.android.push.backend.analytics.FakePCFPushSendAnalyticsApiRequest;
+import io.pivotal.android.push.backend.analytics.PCFPushSendAnalyticsApiRequestProvider;
+import io.pivotal.android.push.database.FakeAnalyticsEventsStorage;
+import io.pivotal.android.push.prefs.PushPreferences;
+import io.pivotal.android.push.receiver.FakeAnalyticsEventsSenderAlarmProvider;
+import io.pivotal.android.push.util.FakeNetworkWrapper;
+import io.pivotal.android.push.util.FakeServiceStarter;
+import io.pivotal.android.push.util.TimeProvider;
+
+public class AnalyticsJobExecutorTest extends AndroidTestCase {
+
+    private static final int DUMMY_RESULT_CODE = 1337;
+
+    private List<String> listOfCompletedJobs;
+    private FakeAnalyticsEventsStorage eventsStorage;
+    private PushPreferences pushPreferences;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        eventsStorage = new FakeAnalyticsEventsStorage();
+        listOfCompletedJobs = new ArrayList<>();
+
+        pushPreferences = mock(PushPreferences.class);
+        when(pushPreferences.areAnalyticsEnabled()).thenReturn(true);
+
+        AnalyticsJobExecutor.networkWrapper = new FakeNetworkWrapper();
+        AnalyticsJobExecutor.serviceStarter = new FakeServiceStarter();
+        AnalyticsJobExecutor.eventsStorage = eventsStorage;
+        AnalyticsJobExecutor.pushPreferences = pushPreferences;
+        AnalyticsJobExecutor.sendAnalyticsRequestProvider = new PCFPushSendAnalyticsApiRequestProvider(new FakePCFPushSendAnalyticsApiRequest());
+        AnalyticsJobExecutor.alarmProvider = new FakeAnalyticsEventsSenderAlarmProvider();
+        AnalyticsJobExecutor.listOfCompletedJobs = listOfCompletedJobs;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        AnalyticsJobExecutor.networkWrapper = null;
+        AnalyticsJobExecutor.serviceStarter = null;
+        AnalyticsJobExecutor.eventsStorage = null;
+        AnalyticsJobExecutor.pushPreferences = null;
+        AnalyticsJobExecutor.alarmProvider = null;
+        AnalyticsJobExecutor.sendAnalyticsRequestProvider = null;
+        AnalyticsJobExecutor.listOfCompletedJobs = null;
+        super.tearDown();
+    }
+
+    public void testRunJob() throws InterruptedException {
+        final DummyJob job = new DummyJob();
+        job.setResultCode(DUMMY_RESULT_CODE);
+        assertEquals(DUMMY_RESULT_CODE, AnalyticsJobExecutor.getInstance(getContext()).runJob(job));
+        assertEquals(1, listOfCompletedJobs.size());
+        assertEquals(job.toString(), listOfCompletedJobs.get(0));
+    }
+
+    public void testRunJobWithAnalyticsDisabled() throws InterruptedException {
+        when(pushPreferences.areAnalyticsEnabled()).thenReturn(false);
+        assertEquals(AnalyticsEventService.ANALYTICS_DISABLED, AnalyticsJobExecutor.getInstance(getContext()).runJob(new DummyJob()));
+        assertEquals(0, listOfCompletedJobs.size());
+    }
+
+    public void testSubmittedJobsRunBeforeLaterJobs() throws InterruptedException {
+        final AnalyticsJobExecutor executor = AnalyticsJobExecutor.getInstance(getContext());
+        executor.submit(new DummyJob());
+        executor.submit(new DummyJob());
+        executor.runJob(new DummyJob());
+        assertEquals(3, listOfCompletedJobs.size());
+    }
+
+    public void testKeepsDependenciesBetweenJobs() throws InterruptedException {
+        final AnalyticsJobExecutor executor = AnalyticsJobExecutor.getInstance(getContext());
+        executor.runJob(new DummyJob());
+        final TimeProvider timeProvider = AnalyticsJobExecutor.timeProvider;
+        assertNotNull(timeProvider);
+
+        executor.runJob(new DummyJob());
+        assertSame(timeProvider, AnalyticsJobExecutor.timeProvider);
+        assertSame(eventsStorage, AnalyticsJobExecutor.eventsStorage);
+    }
+
+    public void testSubmitJobFromIntent() throws InterruptedException {
+        final Intent intent = AnalyticsEventService.getIntentToRunJob(getContext(), new DummyJob());
+        assertTrue(AnalyticsJobExecutor.submitJobFromIntent(getContext(), intent));
+        AnalyticsJobExecutor.getInstance(getContext()).runJob(new DummyJob());
+        assertEquals(2, listOfCompletedJobs.size());
+    }
+
+    public void testSubmitJobFromIntentIgnoresIntentsWithoutJobs() throws InterruptedException {
+        assertFalse(AnalyticsJobExecutor.submitJobFromIntent(getContext(), null));
+        assertFalse(AnalyticsJobExecutor.submitJobFromIntent(getContext(), AnalyticsEventService.getIntentToRunJob(getContext(), null)));
+        AnalyticsJobExecutor.getInstance(getContext()).runJob(new DummyJob());
+        assertEquals(1, listOfCompletedJobs.size());
+    }
+
+    public void testSubmitJobFromIntentIgnoresIntentsForOtherComponents() throws InterruptedException {
+        final Intent intent = new Intent("io.pivotal.android.push.TEST_ACTION");
+        intent.putExtra(AnalyticsEventService.KEY_JOB, new DummyJob());
+        assertFalse(AnalyticsJobExecutor.submitJobFromIntent(getContext(), intent));
+        AnalyticsJobExecutor.getInstance(getContext()).runJob(new DummyJob());
+        assertEquals(1, listOfCompletedJobs.size());
+    }
+
+    public void testJobSubmittedFromFinishedComponentCompletes() throws InterruptedException {
+        final CountDownLatch isJobRunning = new CountDownLatch(1);
+        final CountDownLatch canJobFinish = new CountDownLatch(1);
+        final DummyJob job = new DummyJob() {
+            @Override
+            public void run(JobParams jobParams) {
+                isJobRunning.countDown();
+                try {
+                    canJobFinish.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    // Finish anyway
+                }
+                super.run(jobParams);
+            }
+        };
+
+        // The component submits the job and is gone before the job has run
+        ContextWrapper component = new ContextWrapper(getContext());
+        assertTrue(AnalyticsJobExecutor.submitJobFromIntent(component, AnalyticsEventService.getIntentToRunJob(component, job)));
+        component = null;
+
+        final AnalyticsJobExecutor executor = AnalyticsJobExecutor.getInstance(getContext());
+        assertTrue(isJobRunning.await(5, TimeUnit.SECONDS));
+        assertTrue(executor.isHoldingWakeLock());
+
+        canJobFinish.countDown();
+        executor.runJob(new DummyJob());
+        assertEquals(2, listOfCompletedJobs.size());
+        assertFalse(executor.isHoldingWakeLock());
+    }
+
+    public void testSubmitRequiresJob() {
+        try {
+            AnalyticsJobExecutor.getInstance(getContext()).submit(null);
+            fail("should have thrown");
+        } catch (IllegalArgumentException e) {
+            // success
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package io.pivotal.android.push.service;
+
+import android.test.AndroidTestCase;
+
+import io.pivotal.android.push.analytics.jobs.DummyJob;
+import io.pivotal.android.push.analytics.jobs.EnqueueAnalyticsEventJob;
+import io.pivotal.android.push.analytics.jobs.PrepareDatabaseJob;
+import io.pivotal.android.push.analytics.jobs.SendAnalyticsEventsJob;
+import io.pivotal.android.push.model.analytics.AnalyticsEvent;
+import io.pivotal.android.push.model.analytics.AnalyticsEventTest;
+
+public class AnalyticsJobQueueTest extends AndroidTestCase {
+
+    private AnalyticsJobQueue queue;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        queue = new AnalyticsJobQueue();
+    }
+
+    public void testRequiresJob() {
+        try {
+            queue.add(null);
+            fail("should have thrown");
+        } catch (IllegalArgumentException e) {
+            // success
+        }
+    }
+
+    public void testEmptyQueue() {
+        assertEquals(0, queue.size());
+        assertNull(queue.poll());
+    }
+
+    public void testRunsJobsInPriorityOrder() {
+        final PrepareDatabaseJob prepareDatabaseJob = new PrepareDatabaseJob(true);
+        final SendAnalyticsEventsJob sendJob = new SendAnalyticsEventsJob();
+        final EnqueueAnalyticsEventJob enqueueJob = new EnqueueAnalyticsEventJob(AnalyticsEventTest.getEvent1());
+        queue.add(prepareDatabaseJob);
+        queue.add(sendJob);
+        queue.add(enqueueJob);
+        assertEquals(3, queue.size());
+        assertSame(enqueueJob, queue.poll().getJob());
+        assertSame(sendJob, queue.poll().getJob());
+        assertSame(prepareDatabaseJob, queue.poll().getJob());
+        assertNull(queue.poll());
+    }
+
+    public void testRunsJobsWithTheSamePriorityInOrder() {
+        final DummyJob job1 = new DummyJob();
+        final DummyJob job2 = new DummyJob();
+        final DummyJob job3 = new DummyJob();
+        queue.add(job1);
+        queue.add(job2);
+        queue.add(job3);
+        assertEquals(3, queue.size());
+        assertSame(job1, queue.poll().getJob());
+        assertSame(job2, queue.poll().getJob());
+        assertSame(job3, queue.poll().getJob());
+    }
+
+    public void testCombinesPendingSendJobs() {
+        final AnalyticsJobQueue.PendingJob pendingJob1 = queue.add(new SendAnalyticsEventsJob());
+        final AnalyticsJobQueue.PendingJob pendingJob2 = queue.add(new SendAnalyticsEventsJob());
+        assertSame(pendingJob1, pendingJob2);
+        assertEquals(1, queue.size());
+    }
+
+    public void testCombinesEqualPrepareDatabaseJobs() {
+        queue.add(new PrepareDatabaseJob(true));
+        queue.add(new PrepareDatabaseJob(true));
+        queue.add(new PrepareDatabaseJob(false));
+        assertEquals(2, queue.size());
+    }
+
+    public void testDoesNotCombineWithJobThatHasStarted() {
+        queue.add(new SendAnalyticsEventsJob());
+        assertNotNull(queue.poll());
+        queue.add(new SendAnalyticsEventsJob());
+        assertEquals(1, queue.size());
+    }
+
+    public void testCombinesPendingEnqueueJobs() {
+        final AnalyticsEvent event1 = AnalyticsEventTest.getEvent1();
+        final AnalyticsEvent event2 = AnalyticsEventTest.getEvent2();
+        queue.add(new SendAnalyticsEventsJob());
+        queue.add(new EnqueueAnalyticsEventJob(event1));
+        queue.add(new EnqueueAnalyticsEventJob(event2));
+        assertEquals(2, queue.size());
+
+        final EnqueueAnalyticsEventJob enqueueJob = (EnqueueAnalyticsEventJob) queue.poll().getJob();
+        assertEquals(2, enqueueJob.getEvents().size());
+        assertEquals(event1, enqueueJob.getEvents().get(0));
+        assertEquals(event2, enqueueJob.getEvents().get(1));
+        assertTrue(queue.poll().getJob() instanceof SendAnalyticsEventsJob);
+    }
+
+    public void testCombinedJobsShareTheirResult() throws InterruptedException {
+        final AnalyticsJobQueue.PendingJob pendingJob1 = queue.add(new SendAnalyticsEventsJob());
+        final AnalyticsJobQueue.PendingJob pendingJob2 = queue.add(new SendAnalyticsEventsJob());
+        queue.poll().complete(1337);
+        assertEquals(1337, pendingJob1.awaitResult());
+        assertEquals(1337, pendingJob2.awaitResult());
+    }
+}
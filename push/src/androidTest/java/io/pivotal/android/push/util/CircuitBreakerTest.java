@@ -0,0 +1,82 @@
+package io.pivotal.android.push.util;
+
+import android.test.AndroidTestCase;
+
+public class CircuitBreakerTest extends AndroidTestCase {
+
+    private FakeTimeProvider timeProvider;
+    private CircuitBreaker circuitBreaker;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        timeProvider = new FakeTimeProvider();
+        circuitBreaker = new CircuitBreaker(3, 10000L, timeProvider, new RetryPolicyTest.FixedRandom(0.5));
+    }
+
+    public void testStartsClosed() {
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertTrue(circuitBreaker.allowRequest());
+    }
+
+    public void testOpensAfterConsecutiveFailures() {
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        circuitBreaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.allowRequest());
+    }
+
+    public void testSuccessResetsTheFailureCount() {
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        circuitBreaker.onSuccess();
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    public void testStaysOpenForTheJitteredDuration() {
+        openCircuit();
+        // 10 seconds plus half of 10 seconds of jitter
+        timeProvider.advance(14999L);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        timeProvider.advance(1L);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+    }
+
+    public void testHalfOpenAllowsOneTrialRequest() {
+        openCircuit();
+        timeProvider.advance(15000L);
+        assertTrue(circuitBreaker.allowRequest());
+        assertFalse(circuitBreaker.allowRequest());
+    }
+
+    public void testSuccessfulTrialRequestClosesTheCircuit() {
+        openCircuit();
+        timeProvider.advance(15000L);
+        assertTrue(circuitBreaker.allowRequest());
+        circuitBreaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertTrue(circuitBreaker.allowRequest());
+    }
+
+    public void testFailedTrialRequestOpensTheCircuitAgain() {
+        openCircuit();
+        timeProvider.advance(15000L);
+        assertTrue(circuitBreaker.allowRequest());
+        circuitBreaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.allowRequest());
+        timeProvider.advance(15000L);
+        assertTrue(circuitBreaker.allowRequest());
+    }
+
+    private void openCircuit() {
+        for (int i = 0; i < 3; i += 1) {
+            circuitBreaker.onFailure();
+        }
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+}
@@ -27,14 +27,19 @@ public class FakeHttpURLConnection extends HttpsURLConnection {
     private static IOException connectionException;
     private static boolean willThrowConnectionException;
     private static Map<String, String> requestProperties;
+    private static Map<String, String> responseHeaders;
     private static URL url;
     private static ByteArrayOutputStream outputStream;
     private static boolean didCallSetSSLSocketFactory;
+    private static int numberOfConnections;
+    private static int numberOfDisconnects;
+    private static RuntimeException responseCodeException;
 
     protected FakeHttpURLConnection(URL url) {
         super(url);
         FakeHttpURLConnection.url = url;
         FakeHttpURLConnection.requestProperties = new HashMap<>();
+        FakeHttpURLConnection.numberOfConnections += 1;
     }
 
     public static void setResponseCode(int responseCode) {
@@ -45,10 +50,18 @@ public class FakeHttpURLConnection extends HttpsURLConnection {
         FakeHttpURLConnection.responseData = responseData;
     }
 
+    public static void setResponseHeaders(Map<String, String> responseHeaders) {
+        FakeHttpURLConnection.responseHeaders = responseHeaders;
+    }
+
     public static void setConnectionException(IOException connectionException) {
         FakeHttpURLConnection.connectionException = connectionException;
     }
 
+    public static void setResponseCodeException(RuntimeException responseCodeException) {
+        FakeHttpURLConnection.responseCodeException = responseCodeException;
+    }
+
     public static void willThrowConnectionException(boolean willThrowConnectionException) {
         FakeHttpURLConnection.willThrowConnectionException = willThrowConnectionException;
     }
@@ -70,16 +83,20 @@ public class FakeHttpURLConnection extends HttpsURLConnection {
         FakeHttpURLConnection.responseCode = 0;
         FakeHttpURLConnection.responseData = null;
         FakeHttpURLConnection.requestProperties = null;
+        FakeHttpURLConnection.responseHeaders = null;
         FakeHttpURLConnection.receivedHttpMethod = null;
         FakeHttpURLConnection.connectionException = null;
         FakeHttpURLConnection.outputStream = null;
         FakeHttpURLConnection.willThrowConnectionException = false;
         FakeHttpURLConnection.didCallSetSSLSocketFactory = false;
+        FakeHttpURLConnection.numberOfConnections = 0;
+        FakeHttpURLConnection.numberOfDisconnects = 0;
+        FakeHttpURLConnection.responseCodeException = null;
     }
 
     @Override
     public void disconnect() {
-
+        FakeHttpURLConnection.numberOfDisconnects += 1;
     }
 
     @Override
@@ -120,9 +137,20 @@ public class FakeHttpURLConnection extends HttpsURLConnection {
 
     @Override
     public int getResponseCode() {
+        if (FakeHttpURLConnection.responseCodeException != null) {
+            throw FakeHttpURLConnection.responseCodeException;
+        }
         return FakeHttpURLConnection.responseCode;
     }
 
+    @Override
+    public String getHeaderField(String name) {
+        if (responseHeaders == null) {
+            return null;
+        }
+        return responseHeaders.get(name);
+    }
+
     @Override
     public void addRequestProperty(String field, String newValue) {
         super.addRequestProperty(field, newValue);
@@ -154,6 +182,14 @@ public class FakeHttpURLConnection extends HttpsURLConnection {
         return FakeHttpURLConnection.outputStream.toByteArray();
     }
 
+    public static int getNumberOfConnections() {
+        return FakeHttpURLConnection.numberOfConnections;
+    }
+
+    public static int getNumberOfDisconnects() {
+        return FakeHttpURLConnection.numberOfDisconnects;
+    }
+
     public static boolean didCallSetSSLSocketFactory() {
         return FakeHttpURLConnection.didCallSetSSLSocketFactory;
     }
@@ -12,6 +12,7 @@ import java.net.URL;
 public class FakeNetworkWrapper implements NetworkWrapper {
 
     private final boolean isNetworkAvailable;
+    private IOException connectionException;
 
     public FakeNetworkWrapper() {
         isNetworkAvailable = true;
@@ -22,8 +23,23 @@ public class FakeNetworkWrapper implements NetworkWrapper {
         return isNetworkAvailable;
     }
 
+    /**
+     * @param exception thrown by getHttpURLConnection, or null to return connections again
+     */
+    public void setConnectionException(IOException exception) {
+        connectionException = exception;
+    }
+
     @Override
     public HttpURLConnection getHttpURLConnection(URL url) throws IOException {
+        if (connectionException != null) {
+            throw connectionException;
+        }
         return new FakeHttpURLConnection(url);
     }
+
+    @Override
+    public void releaseHttpURLConnection(HttpURLConnection urlConnection) {
+        urlConnection.disconnect();
+    }
 }
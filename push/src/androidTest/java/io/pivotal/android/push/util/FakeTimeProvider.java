@@ -0,0 +1,40 @@
+package io.pivotal.android.push.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A clock that only moves when it is told to, or when something sleeps on it.
+ */
+public class FakeTimeProvider extends TimeProvider {
+
+    private long currentTimeMillis;
+    private final List<Long> sleeps = new ArrayList<>();
+
+    public FakeTimeProvider() {
+        this(1000000L);
+    }
+
+    public FakeTimeProvider(long currentTimeMillis) {
+        this.currentTimeMillis = currentTimeMillis;
+    }
+
+    @Override
+    public synchronized long currentTimeMillis() {
+        return currentTimeMillis;
+    }
+
+    @Override
+    public synchronized void sleep(long milliseconds) {
+        sleeps.add(milliseconds);
+        currentTimeMillis += milliseconds;
+    }
+
+    public synchronized void advance(long milliseconds) {
+        currentTimeMillis += milliseconds;
+    }
+
+    public synchronized List<Long> getSleeps() {
+        return new ArrayList<>(sleeps);
+    }
+}
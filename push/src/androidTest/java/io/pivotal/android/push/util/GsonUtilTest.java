@@ -2,15 +2,28 @@ package io.pivotal.android.push.util;
 
 import android.test.AndroidTestCase;
 
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
 
+import io.pivotal.android.push.model.api.PCFPushApiRegistrationPostRequestData;
+import io.pivotal.android.push.model.api.PCFPushApiRegistrationPutRequestData;
+import io.pivotal.android.push.model.api.PCFPushApiRegistrationResponseData;
 import io.pivotal.android.push.model.geofence.PCFPushGeofenceData;
 import io.pivotal.android.push.model.geofence.PCFPushGeofenceDataList;
 import io.pivotal.android.push.model.geofence.PCFPushGeofenceLocation;
+import io.pivotal.android.push.model.geofence.PCFPushGeofenceResponseData;
+import io.pivotal.android.push.version.GeofenceStatus;
 
 public class GsonUtilTest extends AndroidTestCase {
 
@@ -117,6 +130,119 @@ public class GsonUtilTest extends AndroidTestCase {
         assertEquals("{\"date\":1424309210305}", serializeTestClass(new DateTestClass(new Date(1424309210305L))));
     }
 
+    public void testSharesOneInstance() {
+        assertSame(GsonUtil.getGson(), GsonUtil.getGson());
+        assertSame(GsonUtil.getGsonAndSerializeNulls(), GsonUtil.getGsonAndSerializeNulls());
+        assertNotSame(GsonUtil.getGson(), GsonUtil.getGsonAndSerializeNulls());
+    }
+
+    public void testWarmUp() {
+        final Gson gson = GsonUtil.getGson();
+        GsonUtil.warmUp();
+        GsonUtil.warmUpInBackground();
+        GsonUtil.warmUpInBackground();
+        assertSame(gson, GsonUtil.getGson());
+    }
+
+    public void testGeofenceResponseDataIsWrittenLikeReflection() throws IOException {
+        final PCFPushGeofenceResponseData responseData = ModelUtil.getPCFPushGeofenceResponseData(getContext(), "geofence_response_data_complex.json");
+        assertWrittenLikeReflection(responseData, PCFPushGeofenceResponseData.class);
+        assertReadsWhatItWrites(responseData, PCFPushGeofenceResponseData.class);
+    }
+
+    public void testGeofenceDataIsWrittenLikeReflection() throws IOException {
+        final PCFPushGeofenceDataList array = ModelUtil.getPCFPushGeofenceDataList(getContext(), "geofence_three_items_with_tag.json");
+        for (final PCFPushGeofenceData data : array) {
+            assertWrittenLikeReflection(data, PCFPushGeofenceData.class);
+            assertReadsWhatItWrites(data, PCFPushGeofenceData.class);
+            assertWrittenLikeReflection(data.getLocations().get(0), PCFPushGeofenceLocation.class);
+        }
+    }
+
+    public void testGeofenceDataIgnoresUnknownFieldsAndNulls() {
+        final PCFPushGeofenceData data = GsonUtil.getGson().fromJson("{\"id\":\"5\",\"pants\":{\"a\":[1]},\"expiry_time\":null,\"locations\":[{\"id\":6,\"rad\":\"12.5\"}]}", PCFPushGeofenceData.class);
+        assertEquals(5L, data.getId());
+        assertNull(data.getExpiryTime());
+        assertEquals(6L, data.getLocations().get(0).getId());
+        assertEquals(12.5f, data.getLocations().get(0).getRadius());
+    }
+
+    public void testGeofenceDataWithBadNumbers() {
+        try {
+            GsonUtil.getGson().fromJson("{\"id\":\"PANTS\"}", PCFPushGeofenceData.class);
+            fail("should have thrown");
+        } catch (JsonSyntaxException e) {
+            // success
+        }
+    }
+
+    public void testGeofenceStatusIsWrittenLikeReflection() {
+        assertWrittenLikeReflection(new GeofenceStatus(true, "Something \"bad\" happened", 5), GeofenceStatus.class);
+        assertWrittenLikeReflection(GeofenceStatus.emptyStatus(), GeofenceStatus.class);
+
+        final GeofenceStatus status = GsonUtil.getGson().fromJson("{\"isError\":true,\"errorReason\":\"reason\",\"numberCurrentlyMonitoringGeofences\":3}", GeofenceStatus.class);
+        assertTrue(status.isError());
+        assertEquals("reason", status.getErrorReason());
+        assertEquals(3, status.getNumberCurrentlyMonitoringGeofences());
+    }
+
+    public void testRegistrationRequestsAreWrittenLikeReflection() {
+        final PCFPushApiRegistrationPostRequestData postData = new PCFPushApiRegistrationPostRequestData();
+        postData.setDeviceAlias("alias");
+        postData.setOs("android");
+        postData.setRegistrationToken("token");
+        postData.setCustomUserId("");
+        postData.setTags(new LinkedHashSet<>(Arrays.asList("tag1", "tag2")));
+        assertWrittenLikeReflection(postData, PCFPushApiRegistrationPostRequestData.class);
+        assertEquals(postData.getTags(), GsonUtil.getGson().fromJson(GsonUtil.getGson().toJson(postData), PCFPushApiRegistrationPostRequestData.class).getTags());
+
+        final PCFPushApiRegistrationPutRequestData putData = new PCFPushApiRegistrationPutRequestData();
+        putData.setDeviceModel("model");
+        putData.setTags(new PCFPushApiRegistrationPutRequestData.Tags(new LinkedHashSet<>(Arrays.asList("tag3")), null));
+        assertWrittenLikeReflection(putData, PCFPushApiRegistrationPutRequestData.class);
+        final PCFPushApiRegistrationPutRequestData readPutData = GsonUtil.getGson().fromJson(GsonUtil.getGson().toJson(putData), PCFPushApiRegistrationPutRequestData.class);
+        assertEquals(putData.getTags().getSubscribeTags(), readPutData.getTags().getSubscribeTags());
+        assertNull(readPutData.getTags().getUnsubscribedTags());
+    }
+
+    public void testRegistrationResponseIsReadLikeReflection() {
+        final String json = "{\"variant_uuid\":\"variant\",\"device_uuid\":\"device\",\"os\":\"android\",\"something_new\":[1,2,3]}";
+        final PCFPushApiRegistrationResponseData responseData = GsonUtil.getGson().fromJson(json, PCFPushApiRegistrationResponseData.class);
+        assertEquals("variant", responseData.getVariantUuid());
+        assertEquals("device", responseData.getDeviceUuid());
+        assertEquals("android", responseData.getOs());
+        assertWrittenLikeReflection(responseData, PCFPushApiRegistrationResponseData.class);
+    }
+
+    private static <T> void assertWrittenLikeReflection(T model, Class<T> modelClass) {
+        assertEquals(getReflectiveGson().toJson(model, modelClass), GsonUtil.getGson().toJson(model, modelClass));
+    }
+
+    private static <T> void assertReadsWhatItWrites(T model, Class<T> modelClass) {
+        final String json = GsonUtil.getGson().toJson(model, modelClass);
+        assertEquals(json, GsonUtil.getGson().toJson(GsonUtil.getGson().fromJson(json, modelClass), modelClass));
+    }
+
+    // Writes dates in milliseconds, the same as GsonUtil, but uses reflection for everything else
+    private static Gson getReflectiveGson() {
+        return new GsonBuilder().registerTypeAdapter(Date.class, new TypeAdapter<Date>() {
+
+            @Override
+            public void write(JsonWriter out, Date date) throws IOException {
+                if (date == null) {
+                    out.nullValue();
+                } else {
+                    out.value(date.getTime());
+                }
+            }
+
+            @Override
+            public Date read(JsonReader in) throws IOException {
+                return new Date(in.nextLong());
+            }
+        }).create();
+    }
+
     private String serializeTestClass(DateTestClass testClass) {
         return GsonUtil.getGson().toJson(testClass, DateTestClass.class);
     }
@@ -0,0 +1,156 @@
+package io.pivotal.android.push.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A tiny HTTP/1.1 server running on the loopback interface, used as a stand-in for the PCF Push server
+ * in tests that need a real socket.  Every request gets the same response.  Connections are kept alive
+ * until the client closes them so that tests can count how many sockets were opened.
+ */
+public class LocalHttpServer {
+
+    private final ServerSocket serverSocket;
+    private final AtomicInteger numberOfAcceptedConnections = new AtomicInteger();
+    private final AtomicInteger numberOfRequests = new AtomicInteger();
+
+    private volatile int responseCode = 200;
+    private volatile String responseBody = "";
+
+    public LocalHttpServer() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        final Thread acceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptConnections();
+            }
+        }, "LocalHttpServer");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    public URL getUrl(String path) throws IOException {
+        return new URL("http", "127.0.0.1", serverSocket.getLocalPort(), path);
+    }
+
+    public void setResponse(int responseCode, String responseBody) {
+        this.responseCode = responseCode;
+        this.responseBody = responseBody;
+    }
+
+    public int getNumberOfAcceptedConnections() {
+        return numberOfAcceptedConnections.get();
+    }
+
+    public int getNumberOfRequests() {
+        return numberOfRequests.get();
+    }
+
+    public void shutdown() throws IOException {
+        serverSocket.close();
+    }
+
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                numberOfAcceptedConnections.incrementAndGet();
+                final Thread connectionThread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        serveConnection(socket);
+                    }
+                });
+                connectionThread.setDaemon(true);
+                connectionThread.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serveConnection(Socket socket) {
+        try {
+            final InputStream inputStream = socket.getInputStream();
+            final OutputStream outputStream = socket.getOutputStream();
+            while (true) {
+                final int contentLength = readRequestHeaders(inputStream);
+                if (contentLength < 0) {
+                    break;
+                }
+                for (int i = 0; i < contentLength; i += 1) {
+                    if (inputStream.read() < 0) {
+                        break;
+                    }
+                }
+                numberOfRequests.incrementAndGet();
+
+                final byte[] body = responseBody.getBytes("UTF-8");
+                final String headers = "HTTP/1.1 " + responseCode + " Stand-in\r\n" +
+                        "Content-Type: application/json\r\n" +
+                        "Content-Length: " + body.length + "\r\n" +
+                        "Connection: keep-alive\r\n" +
+                        "\r\n";
+                outputStream.write(headers.getBytes("UTF-8"));
+                outputStream.write(body);
+                outputStream.flush();
+            }
+        } catch (IOException e) {
+            // The client has gone away
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        }
+    }
+
+    // Returns the request Content-Length or -1 if the client closed the connection
+    private int readRequestHeaders(InputStream inputStream) throws IOException {
+        int contentLength = 0;
+        boolean isFirstLine = true;
+        while (true) {
+            final String line = readLine(inputStream);
+            if (line == null) {
+                return -1;
+            }
+            if (line.isEmpty()) {
+                if (isFirstLine) {
+                    continue;
+                }
+                return contentLength;
+            }
+            isFirstLine = false;
+            final String lowerCaseLine = line.toLowerCase(Locale.US);
+            if (lowerCaseLine.startsWith("content-length:")) {
+                contentLength = Integer.parseInt(line.substring("content-length:".length()).trim());
+            }
+        }
+    }
+
+    private String readLine(InputStream inputStream) throws IOException {
+        final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        while (true) {
+            final int c = inputStream.read();
+            if (c < 0) {
+                return null;
+            }
+            if (c == '\n') {
+                break;
+            }
+            if (c != '\r') {
+                line.write(c);
+            }
+        }
+        return line.toString("UTF-8");
+    }
+}
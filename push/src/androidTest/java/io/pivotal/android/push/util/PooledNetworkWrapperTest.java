@@ -0,0 +1,77 @@
+package io.pivotal.android.push.util;
+
+import android.test.AndroidTestCase;
+
+import java.net.HttpURLConnection;
+
+public class PooledNetworkWrapperTest extends AndroidTestCase {
+
+    private LocalHttpServer server;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        server = new LocalHttpServer();
+        server.setResponse(200, "{\"some\":\"response\"}");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        server.shutdown();
+        super.tearDown();
+    }
+
+    public void testReusesConnectionAfterRelease() throws Exception {
+        final NetworkWrapper networkWrapper = new PooledNetworkWrapper();
+
+        for (int i = 0; i < 3; i += 1) {
+            final HttpURLConnection urlConnection = networkWrapper.getHttpURLConnection(server.getUrl("/v1/geofences"));
+            assertEquals(200, urlConnection.getResponseCode());
+            // Note that the response body is not read here.  Releasing the connection has to drain it.
+            networkWrapper.releaseHttpURLConnection(urlConnection);
+        }
+
+        assertEquals(3, server.getNumberOfRequests());
+        assertEquals(1, server.getNumberOfAcceptedConnections());
+    }
+
+    public void testReusesConnectionAfterErrorResponse() throws Exception {
+        server.setResponse(500, "{\"error\":\"some error\"}");
+        final NetworkWrapper networkWrapper = new PooledNetworkWrapper();
+
+        for (int i = 0; i < 2; i += 1) {
+            final HttpURLConnection urlConnection = networkWrapper.getHttpURLConnection(server.getUrl("/v1/analytics"));
+            assertEquals(500, urlConnection.getResponseCode());
+            networkWrapper.releaseHttpURLConnection(urlConnection);
+        }
+
+        assertEquals(2, server.getNumberOfRequests());
+        assertEquals(1, server.getNumberOfAcceptedConnections());
+    }
+
+    public void testNonPooledWrapperClosesConnections() throws Exception {
+        final NetworkWrapper networkWrapper = new NetworkWrapperImpl();
+
+        for (int i = 0; i < 2; i += 1) {
+            final HttpURLConnection urlConnection = networkWrapper.getHttpURLConnection(server.getUrl("/v1/registration"));
+            assertEquals(200, urlConnection.getResponseCode());
+            networkWrapper.releaseHttpURLConnection(urlConnection);
+        }
+
+        assertEquals(2, server.getNumberOfRequests());
+        assertEquals(2, server.getNumberOfAcceptedConnections());
+    }
+
+    public void testDoesNotChangeHttpSystemProperties() throws Exception {
+        final String maxConnections = System.getProperty("http.maxConnections");
+        final String keepAliveDuration = System.getProperty("http.keepAliveDuration");
+        final NetworkWrapper networkWrapper = new PooledNetworkWrapper();
+
+        final HttpURLConnection urlConnection = networkWrapper.getHttpURLConnection(server.getUrl("/v1/geofences"));
+        assertEquals(200, urlConnection.getResponseCode());
+        networkWrapper.releaseHttpURLConnection(urlConnection);
+
+        assertEquals(maxConnections, System.getProperty("http.maxConnections"));
+        assertEquals(keepAliveDuration, System.getProperty("http.keepAliveDuration"));
+    }
+}
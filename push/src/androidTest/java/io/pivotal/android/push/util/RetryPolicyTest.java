@@ -0,0 +1,83 @@
+package io.pivotal.android.push.util;
+
+import android.test.AndroidTestCase;
+
+import java.util.Random;
+
+public class RetryPolicyTest extends AndroidTestCase {
+
+    public void testRequiresAtLeastOneAttempt() {
+        try {
+            new RetryPolicy(0, 1000L, 30000L, new Random());
+            fail();
+        } catch (IllegalArgumentException e) {
+            // success
+        }
+    }
+
+    public void testRequiresMaxDelayAtLeastBaseDelay() {
+        try {
+            new RetryPolicy(3, 1000L, 999L, new Random());
+            fail();
+        } catch (IllegalArgumentException e) {
+            // success
+        }
+    }
+
+    public void testRequiresRandom() {
+        try {
+            new RetryPolicy(3, 1000L, 30000L, null);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // success
+        }
+    }
+
+    public void testShouldRetry() {
+        final RetryPolicy retryPolicy = new RetryPolicy(3, 1000L, 30000L, new Random());
+        assertTrue(retryPolicy.shouldRetry(1));
+        assertTrue(retryPolicy.shouldRetry(2));
+        assertFalse(retryPolicy.shouldRetry(3));
+    }
+
+    public void testBackoffCapGrowsExponentiallyUpToMaxDelay() {
+        final RetryPolicy retryPolicy = new RetryPolicy(100, 1000L, 30000L, new Random());
+        assertEquals(1000L, retryPolicy.getBackoffCap(1));
+        assertEquals(2000L, retryPolicy.getBackoffCap(2));
+        assertEquals(4000L, retryPolicy.getBackoffCap(3));
+        assertEquals(16000L, retryPolicy.getBackoffCap(5));
+        assertEquals(30000L, retryPolicy.getBackoffCap(6));
+        assertEquals(30000L, retryPolicy.getBackoffCap(64));
+    }
+
+    public void testBackoffUsesFullJitter() {
+        assertEquals(0L, new RetryPolicy(3, 1000L, 30000L, new FixedRandom(0.0)).getBackoffDelay(3));
+        assertEquals(2000L, new RetryPolicy(3, 1000L, 30000L, new FixedRandom(0.5)).getBackoffDelay(3));
+        assertEquals(4000L, new RetryPolicy(3, 1000L, 30000L, new FixedRandom(0.99999999)).getBackoffDelay(3));
+    }
+
+    public void testBackoffIsNeverMoreThanTheCap() {
+        final RetryPolicy retryPolicy = new RetryPolicy(10, 1000L, 30000L, new Random(42L));
+        for (int attempt = 1; attempt < 10; attempt += 1) {
+            for (int i = 0; i < 100; i += 1) {
+                final long delay = retryPolicy.getBackoffDelay(attempt);
+                assertTrue(delay >= 0L);
+                assertTrue(delay <= retryPolicy.getBackoffCap(attempt));
+            }
+        }
+    }
+
+    public static class FixedRandom extends Random {
+
+        private final double value;
+
+        public FixedRandom(double value) {
+            this.value = value;
+        }
+
+        @Override
+        public double nextDouble() {
+            return value;
+        }
+    }
+}
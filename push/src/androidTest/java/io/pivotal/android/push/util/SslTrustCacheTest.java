@@ -0,0 +1,58 @@
+package io.pivotal.android.push.util;
+
+import android.test.AndroidTestCase;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.net.ssl.SSLSocketFactory;
+
+public class SslTrustCacheTest extends AndroidTestCase {
+
+    private static final List<String> PINNED_CERTIFICATES_1 = Arrays.asList("not-a-real-certificate-1.der");
+    private static final List<String> PINNED_CERTIFICATES_2 = Arrays.asList("not-a-real-certificate-1.der", "not-a-real-certificate-2.der");
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        SslTrustCache.reset();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        SslTrustCache.reset();
+        super.tearDown();
+    }
+
+    public void testTrustAllSocketFactoryIsShared() throws Exception {
+        final SSLSocketFactory socketFactory1 = SslTrustCache.getTrustAllSocketFactory();
+        final SSLSocketFactory socketFactory2 = SslTrustCache.getTrustAllSocketFactory();
+        assertNotNull(socketFactory1);
+        assertSame(socketFactory1, socketFactory2);
+        assertEquals(1, SslTrustCache.size());
+    }
+
+    public void testPinnedSocketFactoryIsSharedForTheSameCertificates() throws Exception {
+        final SSLSocketFactory socketFactory1 = SslTrustCache.getPinnedSocketFactory(getContext(), PINNED_CERTIFICATES_2);
+        final SSLSocketFactory socketFactory2 = SslTrustCache.getPinnedSocketFactory(getContext(), Arrays.asList("not-a-real-certificate-1.der", "not-a-real-certificate-2.der"));
+        assertNotNull(socketFactory1);
+        assertSame(socketFactory1, socketFactory2);
+        assertEquals(1, SslTrustCache.size());
+    }
+
+    public void testPinnedSocketFactoryIsDifferentForDifferentCertificates() throws Exception {
+        final SSLSocketFactory socketFactory1 = SslTrustCache.getPinnedSocketFactory(getContext(), PINNED_CERTIFICATES_1);
+        final SSLSocketFactory socketFactory2 = SslTrustCache.getPinnedSocketFactory(getContext(), PINNED_CERTIFICATES_2);
+        assertNotSame(socketFactory1, socketFactory2);
+        assertNotSame(socketFactory1, SslTrustCache.getTrustAllSocketFactory());
+        assertEquals(3, SslTrustCache.size());
+    }
+
+    public void testReset() throws Exception {
+        final SSLSocketFactory socketFactory1 = SslTrustCache.getPinnedSocketFactory(getContext(), PINNED_CERTIFICATES_1);
+        SslTrustCache.reset();
+        assertEquals(0, SslTrustCache.size());
+        final SSLSocketFactory socketFactory2 = SslTrustCache.getPinnedSocketFactory(getContext(), PINNED_CERTIFICATES_1);
+        assertNotSame(socketFactory1, socketFactory2);
+    }
+}
@@ -0,0 +1,252 @@
+package io.pivotal.android.push.backend.geofence;
+
+import android.content.Context;
+import android.test.AndroidTestCase;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.pivotal.android.push.geofence.GeofencePersistentStore;
+import io.pivotal.android.push.geofence.GeofenceSnapshotFile;
+import io.pivotal.android.push.model.geofence.PCFPushGeofenceDataList;
+import io.pivotal.android.push.util.FileHelper;
+import io.pivotal.android.push.util.ModelUtil;
+
+public class GeofenceSnapshotStoreTest extends AndroidTestCase {
+
+    private FileHelper fileHelper;
+    private GeofencePersistentStore store;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        fileHelper = new FileHelper(getContext());
+        deleteAllFiles();
+        GeofencePersistentStore.setSnapshotStoreEnabled(true);
+        store = new GeofencePersistentStore(getContext(), fileHelper);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        GeofencePersistentStore.setSnapshotStoreEnabled(false);
+        deleteAllFiles();
+        super.tearDown();
+    }
+
+    public void testEmptyGet() {
+        final PCFPushGeofenceDataList geofences = store.getCurrentlyRegisteredGeofences();
+        assertNotNull(geofences);
+        assertEquals(0, geofences.size());
+        assertFalse(snapshotExists());
+    }
+
+    public void testSaveAndGet() throws IOException {
+        final PCFPushGeofenceDataList list = ModelUtil.getPCFPushGeofenceDataList(getContext(), "geofence_three_items.json");
+
+        store.saveRegisteredGeofences(list);
+
+        assertTrue(snapshotExists());
+        assertTrue(getLegacyFiles().isEmpty());
+        assertEquals(list, store.getCurrentlyRegisteredGeofences());
+        assertEquals(list.get(9L), store.getGeofenceData(9L));
+        assertNull(store.getGeofenceData(1337L));
+    }
+
+    public void testReadsSnapshotAfterRestart() throws IOException {
+        final PCFPushGeofenceDataList list = ModelUtil.getPCFPushGeofenceDataList(getContext(), "geofence_three_items.json");
+        store.saveRegisteredGeofences(list);
+
+        simulateRestart();
+
+        assertEquals(list, store.getCurrentlyRegisteredGeofences());
+    }
+
+    public void testSaveReplacesSnapshot() throws IOException {
+        store.saveRegisteredGeofences(ModelUtil.getPCFPushGeofenceDataList(getContext(), "geofence_three_items.json"));
+        final PCFPushGeofenceDataList list = ModelUtil.getPCFPushGeofenceDataList(getContext(), "geofence_one_item.json");
+
+        store.saveRegisteredGeofences(list);
+        simulateRestart();
+
+        final PCFPushGeofenceDataList geofences = store.getCurrentlyRegisteredGeofences();
+        assertEquals(1, geofences.size());
+        assertNotNull(geofences.get(7L));
+    }
+
+    public void testReturnsCopies() throws IOException {
+        store.saveRegisteredGeofences(ModelUtil.getPCFPushGeofenceDataList(getContext(), "geofence_three_items.json"));
+
+        final PCFPushGeofenceDataList geofences = store.getCurrentlyRegisteredGeofences();
+        geofences.get(7L).getLocations().clear();
+        geofences.remove(9L);
+
+        final PCFPushGeofenceDataList geofencesAgain = store.getCurrentlyRegisteredGeofences();
+        assertEquals(3, geofencesAgain.size());
+        assertFalse(geofencesAgain.get(7L).getLocations().isEmpty());
+    }
+
+    public void testKeepsCopyOfSavedGeofences() throws IOException {
+        final PCFPushGeofenceDataList list = ModelUtil.getPCFPushGeofenceDataList(getContext(), "geofence_three_items.json");
+        store.saveRegisteredGeofences(list);
+
+        list.remove(9L);
+
+        assertEquals(3, store.getCurrentlyRegisteredGeofences().size());
+    }
+
+    public void testMovesGeofenceFilesIntoSnapshot() throws IOException {
+        copyAssetToFile("geofence_one_item_persisted_1.json", GeofencePersistentStore.GEOFENCE_PERSISTENT_STORE_FILE_PREFIX + "1.json");
+        copyAssetToFile("geofence_one_item_persisted_2.json", GeofencePersistentStore.GEOFENCE_PERSISTENT_STORE_FILE_PREFIX + "2.json");
+        copyAssetToFile("geofence_one_item_persisted_bad.json", GeofencePersistentStore.GEOFENCE_PERSISTENT_STORE_FILE_PREFIX + "9.json");
+        simulateRestart();
+
+        final PCFPushGeofenceDataList geofences = store.getCurrentlyRegisteredGeofences();
+
+        assertEquals(2, geofences.size());
+        assertNotNull(geofences.get(1L));
+        assertNotNull(geofences.get(2L));
+        assertTrue(snapshotExists());
+        assertTrue(getLegacyFiles().isEmpty());
+
+        simulateRestart();
+        assertEquals(geofences, store.getCurrentlyRegisteredGeofences());
+    }
+
+    public void testGeofencesSavedWithSnapshotStoreOffReplaceOlderSnapshot() throws IOException {
+        store.saveRegisteredGeofences(ModelUtil.getPCFPushGeofenceDataList(getContext(), "geofence_three_items.json"));
+        GeofencePersistentStore.setSnapshotStoreEnabled(false);
+        store.saveRegisteredGeofences(ModelUtil.getPCFPushGeofenceDataList(getContext(), "geofence_one_item.json"));
+        assertFalse(snapshotExists());
+
+        GeofencePersistentStore.setSnapshotStoreEnabled(true);
+        final PCFPushGeofenceDataList geofences = store.getCurrentlyRegisteredGeofences();
+
+        assertEquals(1, geofences.size());
+        assertNotNull(geofences.get(7L));
+        assertTrue(getLegacyFiles().isEmpty());
+    }
+
+    public void testLeftoverGeofenceFilesAreMergedIntoSnapshot() throws IOException {
+        copyAssetToFile("geofence_one_item_persisted_1.json", GeofencePersistentStore.GEOFENCE_PERSISTENT_STORE_FILE_PREFIX + "1.json");
+        copyAssetToFile("geofence_one_item_persisted_2.json", GeofencePersistentStore.GEOFENCE_PERSISTENT_STORE_FILE_PREFIX + "2.json");
+        copyAssetToFile("geofence_one_item_persisted_3.json", GeofencePersistentStore.GEOFENCE_PERSISTENT_STORE_FILE_PREFIX + "3.json");
+        simulateRestart();
+        assertEquals(3, store.getCurrentlyRegisteredGeofences().size());
+
+        // The process stopped after the snapshot was written, but before all of the files were deleted
+        copyAssetToFile("geofence_one_item_persisted_2.json", GeofencePersistentStore.GEOFENCE_PERSISTENT_STORE_FILE_PREFIX + "2.json");
+        simulateRestart();
+
+        final PCFPushGeofenceDataList geofences = store.getCurrentlyRegisteredGeofences();
+
+        assertEquals(3, geofences.size());
+        assertNotNull(geofences.get(1L));
+        assertNotNull(geofences.get(2L));
+        assertNotNull(geofences.get(3L));
+        assertTrue(getLegacyFiles().isEmpty());
+    }
+
+    public void testResetWithSnapshotStoreOffDeletesSnapshot() throws IOException {
+        store.saveRegisteredGeofences(ModelUtil.getPCFPushGeofenceDataList(getContext(), "geofence_three_items.json"));
+        GeofencePersistentStore.setSnapshotStoreEnabled(false);
+
+        store.reset();
+        GeofencePersistentStore.setSnapshotStoreEnabled(true);
+
+        assertFalse(snapshotExists());
+        assertEquals(0, store.getCurrentlyRegisteredGeofences().size());
+    }
+
+    public void testCorruptedSnapshot() throws IOException {
+        writeSnapshot("{\"version\":1,\"geofences\":[{\"id\":7,");
+        simulateRestart();
+
+        final PCFPushGeofenceDataList geofences = store.getCurrentlyRegisteredGeofences();
+        assertNotNull(geofences);
+        assertEquals(0, geofences.size());
+    }
+
+    public void testSnapshotWithUnknownVersion() throws IOException {
+        writeSnapshot("{\"version\":1000,\"geofences\":[{\"id\":7}]}");
+        simulateRestart();
+
+        assertEquals(0, store.getCurrentlyRegisteredGeofences().size());
+    }
+
+    public void testReset() throws IOException {
+        store.saveRegisteredGeofences(ModelUtil.getPCFPushGeofenceDataList(getContext(), "geofence_three_items.json"));
+        copyAssetToFile("geofence_one_item_persisted_1.json", GeofencePersistentStore.GEOFENCE_PERSISTENT_STORE_FILE_PREFIX + "1.json");
+
+        store.reset();
+
+        assertFalse(snapshotExists());
+        assertTrue(getLegacyFiles().isEmpty());
+        assertEquals(0, store.getCurrentlyRegisteredGeofences().size());
+        assertNull(store.getGeofenceData(7L));
+    }
+
+    public void testSnapshotFileRequiresFileHelper() {
+        try {
+            new GeofenceSnapshotFile(null);
+            fail("should have thrown");
+        } catch (IllegalArgumentException e) {
+            // success
+        }
+    }
+
+    // Forgets the cached geofences, the same as starting a new process
+    private void simulateRestart() {
+        GeofencePersistentStore.setSnapshotStoreEnabled(false);
+        GeofencePersistentStore.setSnapshotStoreEnabled(true);
+        store = new GeofencePersistentStore(getContext(), fileHelper);
+    }
+
+    private boolean snapshotExists() {
+        return getContext().getFileStreamPath(GeofenceSnapshotFile.GEOFENCE_SNAPSHOT_FILE_NAME).exists();
+    }
+
+    private List<String> getLegacyFiles() {
+        final List<String> result = new ArrayList<>();
+        for (final String filename : getContext().fileList()) {
+            if (filename.startsWith(GeofencePersistentStore.GEOFENCE_PERSISTENT_STORE_FILE_PREFIX)) {
+                result.add(filename);
+            }
+        }
+        return result;
+    }
+
+    private void writeSnapshot(String contents) throws IOException {
+        final Writer writer = fileHelper.getWriter(GeofenceSnapshotFile.GEOFENCE_SNAPSHOT_FILE_NAME);
+        try {
+            writer.write(contents);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void copyAssetToFile(String assetName, String filename) throws IOException {
+        final InputStream inputStream = getContext().getAssets().open(assetName);
+        final OutputStream outputStream = getContext().openFileOutput(filename, Context.MODE_PRIVATE);
+        try {
+            final byte[] buffer = new byte[4096];
+            int count;
+            while ((count = inputStream.read(buffer)) > 0) {
+                outputStream.write(buffer, 0, count);
+            }
+        } finally {
+            inputStream.close();
+            outputStream.close();
+        }
+    }
+
+    private void deleteAllFiles() {
+        getContext().deleteFile(GeofenceSnapshotFile.GEOFENCE_SNAPSHOT_FILE_NAME);
+        for (final String filename : getLegacyFiles()) {
+            getContext().deleteFile(filename);
+        }
+    }
+}
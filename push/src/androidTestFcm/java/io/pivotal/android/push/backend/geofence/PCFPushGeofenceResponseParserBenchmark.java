@@ -0,0 +1,171 @@
+package io.pivotal.android.push.backend.geofence;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import io.pivotal.android.push.geofence.GeofenceEngine;
+import io.pivotal.android.push.geofence.GeofencePersistentStore;
+import io.pivotal.android.push.geofence.GeofenceRegistrar;
+import io.pivotal.android.push.model.geofence.PCFPushGeofenceData;
+import io.pivotal.android.push.model.geofence.PCFPushGeofenceResponseData;
+import io.pivotal.android.push.prefs.PushPreferences;
+import io.pivotal.android.push.util.GsonUtil;
+import io.pivotal.android.push.util.TimeProvider;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Compares the peak heap usage of a geofence update, up to the point where it is committed, when the
+ * response is buffered into a String (the old approach) and when it is streamed into the update by the
+ * parser.  Both paths pass the geofences to a {@link GeofenceEngine.GeofenceUpdate}, which keeps the valid
+ * ones until it is committed, so both peaks still grow with the number of geofences.  The difference is
+ * the memory used by the response text and its copies.  The results are written to logcat with the tag
+ * "GeofenceParserBenchmark".
+ */
+public class PCFPushGeofenceResponseParserBenchmark extends AndroidTestCase {
+
+    private static final String TAG = "GeofenceParserBenchmark";
+    private static final long CURRENT_TIME = 1400000000000L; // before the expiry time of the geofences in the payload
+
+    private File payloadFile;
+    private GeofenceEngine engine;
+    private long peakUsedMemory;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        System.setProperty("dexmaker.dexcache", mContext.getCacheDir().getPath());
+        payloadFile = new File(getContext().getCacheDir(), "geofence_benchmark_payload.json");
+        final TimeProvider timeProvider = mock(TimeProvider.class);
+        when(timeProvider.currentTimeMillis()).thenReturn(CURRENT_TIME);
+        engine = new GeofenceEngine(mock(GeofenceRegistrar.class), mock(GeofencePersistentStore.class), timeProvider, mock(PushPreferences.class));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        payloadFile.delete();
+        super.tearDown();
+    }
+
+    public void test1kGeofences() throws Exception {
+        runBenchmark(1000);
+    }
+
+    public void test10kGeofences() throws Exception {
+        runBenchmark(10000);
+    }
+
+    public void test50kGeofences() throws Exception {
+        runBenchmark(50000);
+    }
+
+    private void runBenchmark(int numberOfGeofences) throws Exception {
+        writePayload(numberOfGeofences);
+
+        final long bufferedPeak = measureBuffered(numberOfGeofences);
+        final long streamingPeak = measureStreaming(numberOfGeofences);
+
+        Log.i(TAG, String.format("%d geofences (%d KB payload): buffered peak heap %d KB, streaming peak heap %d KB",
+                numberOfGeofences, payloadFile.length() / 1024, bufferedPeak / 1024, streamingPeak / 1024));
+    }
+
+    private long measureBuffered(int expectedNumberOfGeofences) throws Exception {
+        final long baseline = resetPeak();
+        final InputStream inputStream = new BufferedInputStream(new FileInputStream(payloadFile));
+        try {
+            final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[256];
+            int numberBytesRead;
+            while ((numberBytesRead = inputStream.read(buffer)) >= 0) {
+                byteArrayOutputStream.write(buffer, 0, numberBytesRead);
+            }
+            final String responseString = new String(byteArrayOutputStream.toByteArray());
+            samplePeak();
+            final PCFPushGeofenceResponseData responseData = GsonUtil.getGson().fromJson(responseString, PCFPushGeofenceResponseData.class);
+            samplePeak();
+            final GeofenceEngine.GeofenceUpdate update = engine.beginUpdate(1L, null);
+            for (final PCFPushGeofenceData geofence : responseData.getGeofences()) {
+                update.onGeofence(geofence);
+            }
+            samplePeak();
+            assertEquals(expectedNumberOfGeofences, update.getNumberOfGeofencesReceived());
+        } finally {
+            inputStream.close();
+        }
+        return peakUsedMemory - baseline;
+    }
+
+    private long measureStreaming(int expectedNumberOfGeofences) throws Exception {
+        final long baseline = resetPeak();
+        final GeofenceEngine.GeofenceUpdate update = engine.beginUpdate(1L, null);
+        final InputStream inputStream = new FileInputStream(payloadFile);
+        try {
+            new PCFPushGeofenceResponseParser().parse(inputStream, new PCFPushGeofenceResponseHandler() {
+                @Override
+                public void onGeofence(PCFPushGeofenceData geofence) {
+                    update.onGeofence(geofence);
+                    if (update.getNumberOfGeofencesReceived() % 100 == 0) {
+                        samplePeak();
+                    }
+                }
+
+                @Override
+                public void onDeletedGeofenceId(long geofenceId) {
+                    update.onDeletedGeofenceId(geofenceId);
+                }
+            });
+            samplePeak();
+        } finally {
+            inputStream.close();
+        }
+        assertEquals(expectedNumberOfGeofences, update.getNumberOfGeofencesReceived());
+        return peakUsedMemory - baseline;
+    }
+
+    private long resetPeak() throws InterruptedException {
+        System.gc();
+        Thread.sleep(100);
+        System.gc();
+        peakUsedMemory = getUsedMemory();
+        return peakUsedMemory;
+    }
+
+    private void samplePeak() {
+        peakUsedMemory = Math.max(peakUsedMemory, getUsedMemory());
+    }
+
+    private static long getUsedMemory() {
+        final Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private void writePayload(int numberOfGeofences) throws IOException {
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(payloadFile), "UTF-8"));
+        try {
+            writer.write("{\"num\":" + numberOfGeofences + ",\"last_modified\":1424309210305,\"geofences\":[");
+            for (int i = 0; i < numberOfGeofences; i += 1) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write("{\"id\":" + i + ",\"data\":{\"androidFcm\":{\"message\":\"geofence message number " + i + "\"}}," +
+                        "\"expiry_time\":1424309210305,\"trigger_type\":\"enter\",\"tags\":[\"tag1\",\"tag2\"]," +
+                        "\"locations\":[{\"id\":" + i + ",\"name\":\"location number " + i + "\",\"lat\":43.5,\"long\":-79.5,\"rad\":150}]}");
+            }
+            writer.write("],\"deleted_geofence_ids\":[]}");
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package io.pivotal.android.push.backend.geofence;
+
+import android.test.AndroidTestCase;
+
+import com.google.gson.Gson;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.pivotal.android.push.model.geofence.PCFPushGeofenceData;
+import io.pivotal.android.push.model.geofence.PCFPushGeofenceResponseData;
+import io.pivotal.android.push.util.GsonUtil;
+import io.pivotal.android.push.util.ModelUtil;
+
+public class PCFPushGeofenceResponseParserTest extends AndroidTestCase {
+
+    private PCFPushGeofenceResponseParser parser;
+    private List<PCFPushGeofenceData> geofences;
+    private List<Long> deletedGeofenceIds;
+    private PCFPushGeofenceResponseHandler handler;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        parser = new PCFPushGeofenceResponseParser();
+        geofences = new ArrayList<>();
+        deletedGeofenceIds = new ArrayList<>();
+        handler = new PCFPushGeofenceResponseHandler() {
+            @Override
+            public void onGeofence(PCFPushGeofenceData geofence) {
+                geofences.add(geofence);
+            }
+
+            @Override
+            public void onDeletedGeofenceId(long geofenceId) {
+                deletedGeofenceIds.add(geofenceId);
+            }
+        };
+    }
+
+    public void testParsesComplexResponse() throws IOException {
+        assertParsesLikeGson("geofence_response_data_complex.json");
+    }
+
+    public void testParsesOneItemResponse() throws IOException {
+        assertParsesLikeGson("geofence_response_data_one_item.json");
+    }
+
+    public void testParsesDeleteOneResponse() throws IOException {
+        assertParsesLikeGson("geofence_response_data_delete_one.json");
+    }
+
+    public void testParsesEmptyResponse() throws IOException {
+        assertParsesLikeGson("geofence_response_data_empty.json");
+    }
+
+    public void testEmptyStream() throws IOException {
+        assertNull(parser.parse(new ByteArrayInputStream(new byte[0]), handler));
+        assertTrue(geofences.isEmpty());
+        assertTrue(deletedGeofenceIds.isEmpty());
+    }
+
+    public void testNullResponse() throws IOException {
+        assertNull(parser.parse(getInputStream("null"), handler));
+    }
+
+    public void testIgnoresUnknownFieldsAndNulls() throws IOException {
+        final PCFPushGeofenceResponseData responseData = parser.parse(getInputStream("{\"num\":2,\"something_new\":{\"a\":[1,2]},\"last_modified\":null,\"geofences\":null,\"deleted_geofence_ids\":[3,null,4]}"), handler);
+        assertEquals(2, responseData.getNumber());
+        assertNull(responseData.getLastModified());
+        assertTrue(geofences.isEmpty());
+        assertEquals(2, deletedGeofenceIds.size());
+        assertEquals(3L, (long) deletedGeofenceIds.get(0));
+        assertEquals(4L, (long) deletedGeofenceIds.get(1));
+    }
+
+    public void testBadResponse() {
+        try {
+            parser.parse(getInputStream("{{{{{{{"), handler);
+            fail("Should have thrown an exception");
+        } catch (Exception e) {
+            // Success
+        }
+    }
+
+    private void assertParsesLikeGson(String filename) throws IOException {
+        final PCFPushGeofenceResponseData expected = ModelUtil.getPCFPushGeofenceResponseData(getContext(), filename);
+
+        InputStream is = null;
+        final PCFPushGeofenceResponseData header;
+        try {
+            is = getContext().getAssets().open(filename);
+            header = parser.parse(is, handler);
+        } finally {
+            if (is != null) {
+                is.close();
+            }
+        }
+
+        assertNotNull(header);
+        assertNull(header.getGeofences());
+        assertNull(header.getDeletedGeofenceIds());
+        final PCFPushGeofenceResponseData actual = new PCFPushGeofenceResponseData(header.getNumber(), header.getLastModified(),
+                expected.getGeofences() == null ? null : geofences,
+                expected.getDeletedGeofenceIds() == null ? null : deletedGeofenceIds);
+        // Note that PCFPushGeofenceData.equals compares trigger types by reference, so compare the serialized forms
+        final Gson gson = GsonUtil.getGson();
+        assertEquals(gson.toJson(expected), gson.toJson(actual));
+    }
+
+    private InputStream getInputStream(String json) throws IOException {
+        return new ByteArrayInputStream(json.getBytes("UTF-8"));
+    }
+}
@@ -8,15 +8,20 @@ import android.test.AndroidTestCase;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Random;
 
 import io.pivotal.android.push.PushParameters;
+import io.pivotal.android.push.model.geofence.PCFPushGeofenceData;
 import io.pivotal.android.push.model.geofence.PCFPushGeofenceResponseData;
 import io.pivotal.android.push.prefs.Pivotal;
+import io.pivotal.android.push.util.ApiRequestImpl;
 import io.pivotal.android.push.util.DelayedLoop;
 import io.pivotal.android.push.util.FakeHttpURLConnection;
 import io.pivotal.android.push.util.FakeNetworkWrapper;
+import io.pivotal.android.push.util.FakeTimeProvider;
 import io.pivotal.android.push.util.GsonUtil;
 import io.pivotal.android.push.util.ModelUtil;
+import io.pivotal.android.push.util.RetryPolicy;
 
 public class PCFPushGetGeofenceUpdatesApiRequestTest extends AndroidTestCase {
 
@@ -24,6 +29,8 @@ public class PCFPushGetGeofenceUpdatesApiRequestTest extends AndroidTestCase {
     private static final String TEST_PLATFORM_SECRET = "TEST_PLATFORM_SECRET";
     private static final String TEST_DEVICE_UUID = "TEST_DEVICE_UUID";
     private static final String TEST_SERVICE_URL = "http://test.com";
+    private static final String TEST_ETAG = "\"TEST_ETAG\"";
+    private static final String TEST_LAST_MODIFIED = "Thu, 19 Feb 2015 01:26:50 GMT";
     private static final long TEN_SECOND_TIMEOUT = 10000L;
 
     private FakeNetworkWrapper networkWrapper;
@@ -36,6 +43,7 @@ public class PCFPushGetGeofenceUpdatesApiRequestTest extends AndroidTestCase {
         networkWrapper = new FakeNetworkWrapper();
         delayedLoop = new DelayedLoop(TEN_SECOND_TIMEOUT);
         FakeHttpURLConnection.reset();
+        ApiRequestImpl.setRetryPolicy(new RetryPolicy(), new FakeTimeProvider(), new Random());
     }
 
     public void testRequiresContext() {
@@ -144,6 +152,131 @@ public class PCFPushGetGeofenceUpdatesApiRequestTest extends AndroidTestCase {
         assertTrue(delayedLoop.isSuccess());
     }
 
+    public void testStreamingRequestRequiresHandler() {
+        try {
+            final PCFPushGetGeofenceUpdatesApiRequest request = new PCFPushGetGeofenceUpdatesApiRequest(getContext(), new FakeNetworkWrapper());
+            makePCFPushGeofenceUpdateApiRequestListener(true, 0, TEST_DEVICE_UUID, null);
+            request.getGeofenceUpdates(0, TEST_DEVICE_UUID, getParameters(), null, listener);
+            fail("Should not have succeeded");
+        } catch (IllegalArgumentException ex) {
+            // Success
+        }
+    }
+
+    public void testSuccessfulStreamingGeofenceUpdateRequest() throws IOException {
+        makeListenersForSuccessfulRequestFromNetwork(true, 200,
+            "geofence_response_data_complex.json", 99, TEST_DEVICE_UUID, null);
+        final int[] numberOfGeofences = new int[1];
+        final PCFPushGeofenceResponseHandler handler = new PCFPushGeofenceResponseHandler() {
+            @Override
+            public void onGeofence(PCFPushGeofenceData geofence) {
+                numberOfGeofences[0] += 1;
+            }
+
+            @Override
+            public void onDeletedGeofenceId(long geofenceId) {
+            }
+        };
+        final PCFPushGetGeofenceUpdatesApiRequest request = new PCFPushGetGeofenceUpdatesApiRequest(getContext(), networkWrapper);
+        request.getGeofenceUpdates(99, TEST_DEVICE_UUID, getParameters(), handler, listener);
+        delayedLoop.startLoop();
+        assertTrue(delayedLoop.isSuccess());
+        final PCFPushGeofenceResponseData expected = ModelUtil.getPCFPushGeofenceResponseData(getContext(), "geofence_response_data_complex.json");
+        assertEquals(expected.getGeofences().size(), numberOfGeofences[0]);
+    }
+
+    public void testConditionalRequestSendsValidators() throws IOException {
+        FakeHttpURLConnection.setResponseCode(304);
+        final PCFPushGeofenceValidators validators = new PCFPushGeofenceValidators(TEST_ETAG, TEST_LAST_MODIFIED);
+        final PCFPushGetGeofenceUpdatesApiRequest request = new PCFPushGetGeofenceUpdatesApiRequest(getContext(), networkWrapper);
+        request.getGeofenceUpdates(99, TEST_DEVICE_UUID, getParameters(), validators, getFailingHandler(), new PCFPushGetConditionalGeofenceUpdatesListener() {
+
+            @Override
+            public void onPCFPushGetGeofenceUpdatesSuccess(PCFPushGeofenceResponseData responseData, PCFPushGeofenceValidators validators) {
+                delayedLoop.flagFailure();
+            }
+
+            @Override
+            public void onPCFPushGetGeofenceUpdatesNotModified() {
+                assertEquals(TEST_ETAG, FakeHttpURLConnection.getRequestPropertiesMap().get("If-None-Match"));
+                assertEquals(TEST_LAST_MODIFIED, FakeHttpURLConnection.getRequestPropertiesMap().get("If-Modified-Since"));
+                delayedLoop.flagSuccess();
+            }
+
+            @Override
+            public void onPCFPushGetGeofenceUpdatesFailed(String reason) {
+                delayedLoop.flagFailure();
+            }
+        });
+        delayedLoop.startLoop();
+        assertTrue(delayedLoop.isSuccess());
+    }
+
+    public void testConditionalRequestReturnsResponseValidators() throws IOException {
+        makeListenersForSuccessfulRequestFromNetwork(true, 200,
+            "geofence_response_data_one_item.json", 99, TEST_DEVICE_UUID, null);
+        final Map<String, String> responseHeaders = new HashMap<>();
+        responseHeaders.put("ETag", TEST_ETAG);
+        responseHeaders.put("Last-Modified", TEST_LAST_MODIFIED);
+        FakeHttpURLConnection.setResponseHeaders(responseHeaders);
+        final int[] numberOfGeofences = new int[1];
+        final PCFPushGetGeofenceUpdatesApiRequest request = new PCFPushGetGeofenceUpdatesApiRequest(getContext(), networkWrapper);
+        request.getGeofenceUpdates(99, TEST_DEVICE_UUID, getParameters(), new PCFPushGeofenceValidators("\"OLD_ETAG\"", null), new PCFPushGeofenceResponseHandler() {
+
+            @Override
+            public void onGeofence(PCFPushGeofenceData geofence) {
+                numberOfGeofences[0] += 1;
+            }
+
+            @Override
+            public void onDeletedGeofenceId(long geofenceId) {
+            }
+
+        }, new PCFPushGetConditionalGeofenceUpdatesListener() {
+
+            @Override
+            public void onPCFPushGetGeofenceUpdatesSuccess(PCFPushGeofenceResponseData responseData, PCFPushGeofenceValidators validators) {
+                assertEquals("\"OLD_ETAG\"", FakeHttpURLConnection.getRequestPropertiesMap().get("If-None-Match"));
+                assertFalse(FakeHttpURLConnection.getRequestPropertiesMap().containsKey("If-Modified-Since"));
+                assertEquals(new PCFPushGeofenceValidators(TEST_ETAG, TEST_LAST_MODIFIED), validators);
+                assertEquals(1, numberOfGeofences[0]);
+                delayedLoop.flagSuccess();
+            }
+
+            @Override
+            public void onPCFPushGetGeofenceUpdatesNotModified() {
+                delayedLoop.flagFailure();
+            }
+
+            @Override
+            public void onPCFPushGetGeofenceUpdatesFailed(String reason) {
+                delayedLoop.flagFailure();
+            }
+        });
+        delayedLoop.startLoop();
+        assertTrue(delayedLoop.isSuccess());
+    }
+
+    public void testUnconditionalRequestDoesNotSendValidators() throws IOException {
+        makeListenersForSuccessfulRequestFromNetwork(true, 200,
+            "geofence_response_data_one_item.json", 99, TEST_DEVICE_UUID, null);
+        final PCFPushGetGeofenceUpdatesApiRequest request = new PCFPushGetGeofenceUpdatesApiRequest(getContext(), networkWrapper);
+        request.getGeofenceUpdates(99, TEST_DEVICE_UUID, getParameters(), listener);
+        delayedLoop.startLoop();
+        assertTrue(delayedLoop.isSuccess());
+        assertFalse(FakeHttpURLConnection.getRequestPropertiesMap().containsKey("If-None-Match"));
+        assertFalse(FakeHttpURLConnection.getRequestPropertiesMap().containsKey("If-Modified-Since"));
+    }
+
+    public void testUnconditionalRequestTreatsNotModifiedAsFailure() throws IOException {
+        makeListenersForSuccessfulRequestFromNetwork(false, 304,
+            "geofence_response_data_one_item.json", 99, TEST_DEVICE_UUID, null);
+        final PCFPushGetGeofenceUpdatesApiRequest request = new PCFPushGetGeofenceUpdatesApiRequest(getContext(), networkWrapper);
+        request.getGeofenceUpdates(99, TEST_DEVICE_UUID, getParameters(), getFailingHandler(), listener);
+        delayedLoop.startLoop();
+        assertTrue(delayedLoop.isSuccess());
+    }
+
     public void testNewDeviceRegistrationNullResponse() {
         makeListenersForSuccessfulNullResultFromNetwork(0, TEST_DEVICE_UUID);
         final PCFPushGetGeofenceUpdatesApiRequest request = new PCFPushGetGeofenceUpdatesApiRequest(getContext(), networkWrapper);
@@ -257,6 +390,20 @@ public class PCFPushGetGeofenceUpdatesApiRequestTest extends AndroidTestCase {
         };
     }
 
+    private PCFPushGeofenceResponseHandler getFailingHandler() {
+        return new PCFPushGeofenceResponseHandler() {
+            @Override
+            public void onGeofence(PCFPushGeofenceData geofence) {
+                fail("Should not have read any geofences");
+            }
+
+            @Override
+            public void onDeletedGeofenceId(long geofenceId) {
+                fail("Should not have read any deleted geofence IDs");
+            }
+        };
+    }
+
     private PushParameters getParameters() {
         return new PushParameters(TEST_PLATFORM_UUID, TEST_PLATFORM_SECRET, TEST_SERVICE_URL, "android-fcm", null, null, null, true, true, Pivotal.SslCertValidationMode.DEFAULT, null, null);
     }
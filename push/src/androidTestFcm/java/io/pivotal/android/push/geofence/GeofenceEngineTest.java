@@ -1010,6 +1010,53 @@ public class GeofenceEngineTest {
         verify(store, never()).reset();
     }
 
+    @Test
+    public void testUncommittedUpdateWithNoTimestampDoesNothing() throws IOException {
+        final PCFPushGeofenceResponseData updateData = ModelUtil
+            .getPCFPushGeofenceResponseData(InstrumentationRegistry.getContext(),
+            "geofence_response_data_one_item.json");
+        final GeofenceEngine.GeofenceUpdate update = engine.beginUpdate(0L, EMPTY_TAGS);
+        update.onGeofence(updateData.getGeofences().get(0));
+        update.onDeletedGeofenceId(5L);
+        assertEquals(1, update.getNumberOfGeofencesReceived());
+        verifyZeroInteractions(registrar);
+        verifyZeroInteractions(store);
+    }
+
+    @Test
+    public void testStreamedUpdateDeletesOneItemWithATimestamp() throws IOException {
+        when(store.getCurrentlyRegisteredGeofences()).thenReturn(ONE_ITEM_GEOFENCE_LIST);
+        final GeofenceEngine.GeofenceUpdate update = engine.beginUpdate(50L, EMPTY_TAGS);
+        update.onDeletedGeofenceId(ONE_ITEM_GEOFENCE_LIST.first().getId());
+        update.commit();
+        assertRegisterGeofences(EMPTY_GEOFENCE_MAP);
+        assertSaveRegisteredGeofences(EMPTY_GEOFENCE_LIST);
+        verify(registrar, never()).reset();
+        verify(store, never()).reset();
+    }
+
+    @Test
+    public void testStreamedUpdateAddsOneItemWithATimestamp() throws IOException {
+        final PCFPushGeofenceResponseData updateData = ModelUtil
+            .getPCFPushGeofenceResponseData(InstrumentationRegistry.getContext(),
+            "geofence_response_data_one_item.json");
+        when(store.getCurrentlyRegisteredGeofences()).thenReturn(EMPTY_GEOFENCE_LIST);
+        final GeofenceEngine.GeofenceUpdate update = engine.beginUpdate(50L, EMPTY_TAGS);
+        update.onGeofence(updateData.getGeofences().get(0));
+        update.commit();
+
+        final PCFPushGeofenceLocationMap expectedMap = new PCFPushGeofenceLocationMap();
+        expectedMap.putLocation(updateData.getGeofences().get(0), 0);
+        assertRegisterGeofences(expectedMap);
+
+        final PCFPushGeofenceDataList expectedList = new PCFPushGeofenceDataList();
+        expectedList.put(updateData.getGeofences().get(0).getId(), updateData.getGeofences().get(0));
+        assertSaveRegisteredGeofences(expectedList);
+
+        verify(registrar, never()).reset();
+        verify(store, never()).reset();
+    }
+
     @Test
     public void testClearNullLocation() throws IOException {
         engine.clearLocations(null);
@@ -5,6 +5,7 @@ package io.pivotal.android.push.service;
 
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.eq;
@@ -22,8 +23,9 @@ import android.content.Intent;
 import android.support.test.InstrumentationRegistry;
 import android.support.test.runner.AndroidJUnit4;
 import io.pivotal.android.push.PushParameters;
+import io.pivotal.android.push.backend.geofence.PCFPushGeofenceValidators;
+import io.pivotal.android.push.backend.geofence.PCFPushGetConditionalGeofenceUpdatesListener;
 import io.pivotal.android.push.backend.geofence.PCFPushGetGeofenceUpdatesApiRequest;
-import io.pivotal.android.push.backend.geofence.PCFPushGetGeofenceUpdatesListener;
 import io.pivotal.android.push.geofence.GeofenceEngine;
 import io.pivotal.android.push.model.geofence.PCFPushGeofenceResponseData;
 import io.pivotal.android.push.prefs.Pivotal;
@@ -43,6 +45,8 @@ import org.mockito.stubbing.Answer;
 public class GeofenceServiceTest {
 
     private static final String TEST_DEVICE_UUID = "TEST_DEVICE_UUID";
+    private static final String TEST_ETAG = "\"TEST_ETAG\"";
+    private static final String TEST_LAST_MODIFIED = "Thu, 19 Feb 2015 01:26:50 GMT";
 
     private GeofenceEngine geofenceEngine;
     private PCFPushGetGeofenceUpdatesApiRequest apiRequest;
@@ -111,26 +115,28 @@ public class GeofenceServiceTest {
             context,
             "geofence_response_data_empty.json");
         final PushPreferencesFCM preferences = getPreferences(1337L, true);
+        final GeofenceEngine.GeofenceUpdate update = mockGeofenceUpdate(1337L);
 
         doAnswer(new Answer<Void>() {
 
             @Override
             public Void answer(InvocationOnMock invocation) throws Throwable {
-                final PCFPushGetGeofenceUpdatesListener listener = (PCFPushGetGeofenceUpdatesListener) invocation
-                    .getArguments()[3];
-                listener.onPCFPushGetGeofenceUpdatesSuccess(responseData);
+                final PCFPushGetConditionalGeofenceUpdatesListener listener = (PCFPushGetConditionalGeofenceUpdatesListener) invocation
+                    .getArguments()[5];
+                listener.onPCFPushGetGeofenceUpdatesSuccess(responseData, new PCFPushGeofenceValidators(null, null));
                 return null;
             }
 
         }).when(apiRequest).getGeofenceUpdates(eq(1337L), eq(TEST_DEVICE_UUID), any(PushParameters.class),
-            any(PCFPushGetGeofenceUpdatesListener.class));
+            any(PCFPushGeofenceValidators.class), eq(update), any(PCFPushGetConditionalGeofenceUpdatesListener.class));
 
         service.setPushPreferences(preferences);
         service.onHandleIntent(intent);
 
-        verify(geofenceEngine, times(1)).processResponseData(eq(1337L), eq(responseData), any(Set.class));
+        verify(geofenceEngine, times(1)).beginUpdate(eq(1337L), any(Set.class));
+        verify(update, times(1)).commit();
         verify(apiRequest, times(1)).getGeofenceUpdates(eq(1337L), eq(TEST_DEVICE_UUID), any(PushParameters.class),
-            any(PCFPushGetGeofenceUpdatesListener.class));
+            any(PCFPushGeofenceValidators.class), eq(update), any(PCFPushGetConditionalGeofenceUpdatesListener.class));
         verifyNoMoreInteractions(apiRequest);
         verifyNoMoreInteractions(geofenceEngine);
         verify(preferences).setLastGeofenceUpdate(eq(0L));
@@ -144,29 +150,70 @@ public class GeofenceServiceTest {
         final PCFPushGeofenceResponseData responseData = ModelUtil.getPCFPushGeofenceResponseData(context,
             "geofence_response_data_complex.json");
         final PushPreferencesFCM preferences = getPreferences(1337L, true);
+        final GeofenceEngine.GeofenceUpdate update = mockGeofenceUpdate(1337L);
 
         doAnswer(new Answer<Void>() {
 
             @Override
             public Void answer(InvocationOnMock invocation) throws Throwable {
-                final PCFPushGetGeofenceUpdatesListener listener = (PCFPushGetGeofenceUpdatesListener) invocation
-                    .getArguments()[3];
-                listener.onPCFPushGetGeofenceUpdatesSuccess(responseData);
+                final PCFPushGetConditionalGeofenceUpdatesListener listener = (PCFPushGetConditionalGeofenceUpdatesListener) invocation
+                    .getArguments()[5];
+                listener.onPCFPushGetGeofenceUpdatesSuccess(responseData, new PCFPushGeofenceValidators(TEST_ETAG, TEST_LAST_MODIFIED));
                 return null;
             }
 
         }).when(apiRequest).getGeofenceUpdates(eq(1337L), eq(TEST_DEVICE_UUID), any(PushParameters.class),
-            any(PCFPushGetGeofenceUpdatesListener.class));
+            any(PCFPushGeofenceValidators.class), eq(update), any(PCFPushGetConditionalGeofenceUpdatesListener.class));
 
         service.setPushPreferences(preferences);
         service.onHandleIntent(intent);
 
-        verify(geofenceEngine, times(1)).processResponseData(eq(1337L), eq(responseData), any(Set.class));
+        verify(geofenceEngine, times(1)).beginUpdate(eq(1337L), any(Set.class));
+        verify(update, times(1)).commit();
         verify(apiRequest, times(1)).getGeofenceUpdates(eq(1337L), eq(TEST_DEVICE_UUID), any(PushParameters.class),
-            any(PCFPushGetGeofenceUpdatesListener.class));
+            any(PCFPushGeofenceValidators.class), eq(update), any(PCFPushGetConditionalGeofenceUpdatesListener.class));
         verifyNoMoreInteractions(apiRequest);
         verifyNoMoreInteractions(geofenceEngine);
         verify(preferences).setLastGeofenceUpdate(eq(1424309210305L));
+        verify(preferences).setGeofenceUpdateETag(eq(TEST_ETAG));
+        verify(preferences).setGeofenceUpdateLastModified(eq(TEST_LAST_MODIFIED));
+    }
+
+    @Test
+    public void testSendsSavedValidatorsAndSkipsUpdateWhenNotModified() throws IOException {
+        final Intent intent = GeofenceServiceTest
+            .createGeofenceUpdateSilentPushIntent(InstrumentationRegistry.getContext(), FakeGeofenceService.class);
+        final PushPreferencesFCM preferences = getPreferences(1337L, true);
+        when(preferences.getGeofenceUpdateETag()).thenReturn(TEST_ETAG);
+        when(preferences.getGeofenceUpdateLastModified()).thenReturn(TEST_LAST_MODIFIED);
+        final GeofenceEngine.GeofenceUpdate update = mockGeofenceUpdate(1337L);
+        final PCFPushGeofenceValidators expectedValidators = new PCFPushGeofenceValidators(TEST_ETAG, TEST_LAST_MODIFIED);
+
+        doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                final PCFPushGetConditionalGeofenceUpdatesListener listener = (PCFPushGetConditionalGeofenceUpdatesListener) invocation
+                    .getArguments()[5];
+                listener.onPCFPushGetGeofenceUpdatesNotModified();
+                return null;
+            }
+
+        }).when(apiRequest).getGeofenceUpdates(eq(1337L), eq(TEST_DEVICE_UUID), any(PushParameters.class),
+            eq(expectedValidators), eq(update), any(PCFPushGetConditionalGeofenceUpdatesListener.class));
+
+        service.setPushPreferences(preferences);
+        service.onHandleIntent(intent);
+
+        verify(apiRequest, times(1)).getGeofenceUpdates(eq(1337L), eq(TEST_DEVICE_UUID), any(PushParameters.class),
+            eq(expectedValidators), eq(update), any(PCFPushGetConditionalGeofenceUpdatesListener.class));
+        verifyNoMoreInteractions(apiRequest);
+        verify(geofenceEngine, times(1)).beginUpdate(eq(1337L), any(Set.class));
+        verifyNoMoreInteractions(geofenceEngine);
+        verifyZeroInteractions(update);
+        verify(preferences, never()).setLastGeofenceUpdate(anyLong());
+        verify(preferences, never()).setGeofenceUpdateETag(anyString());
+        verify(preferences, never()).setGeofenceUpdateLastModified(anyString());
     }
 
     @Test
@@ -174,32 +221,39 @@ public class GeofenceServiceTest {
         final Intent intent = GeofenceServiceTest
             .createGeofenceUpdateSilentPushIntent(InstrumentationRegistry.getContext(), FakeGeofenceService.class);
         final PushPreferencesFCM preferences = getPreferences(1337L, true);
+        final GeofenceEngine.GeofenceUpdate update = mockGeofenceUpdate(1337L);
 
         doAnswer(new Answer<Void>() {
 
             @Override
             public Void answer(InvocationOnMock invocation) throws Throwable {
-                final PCFPushGetGeofenceUpdatesListener listener = (PCFPushGetGeofenceUpdatesListener) invocation
-                    .getArguments()[3];
+                final PCFPushGetConditionalGeofenceUpdatesListener listener = (PCFPushGetConditionalGeofenceUpdatesListener) invocation
+                    .getArguments()[5];
                 listener.onPCFPushGetGeofenceUpdatesFailed("Fake request failed fakely.");
                 return null;
             }
 
         }).when(apiRequest).getGeofenceUpdates(eq(1337L), eq(TEST_DEVICE_UUID), any(PushParameters.class),
-            any(PCFPushGetGeofenceUpdatesListener.class));
+            any(PCFPushGeofenceValidators.class), eq(update), any(PCFPushGetConditionalGeofenceUpdatesListener.class));
 
         service.setPushPreferences(preferences);
         service.onHandleIntent(intent);
 
-        verify(geofenceEngine, never())
-            .processResponseData(eq(1337L), any(PCFPushGeofenceResponseData.class), any(Set.class));
+        verify(update, never()).commit();
         verify(apiRequest, times(1)).getGeofenceUpdates(eq(1337L), eq(TEST_DEVICE_UUID), any(PushParameters.class),
-            any(PCFPushGetGeofenceUpdatesListener.class));
+            any(PCFPushGeofenceValidators.class), eq(update), any(PCFPushGetConditionalGeofenceUpdatesListener.class));
         verifyNoMoreInteractions(apiRequest);
+        verify(geofenceEngine, times(1)).beginUpdate(eq(1337L), any(Set.class));
         verifyNoMoreInteractions(geofenceEngine);
         verify(preferences, never()).setLastGeofenceUpdate(anyLong());
     }
 
+    private GeofenceEngine.GeofenceUpdate mockGeofenceUpdate(long timestamp) {
+        final GeofenceEngine.GeofenceUpdate update = mock(GeofenceEngine.GeofenceUpdate.class);
+        when(geofenceEngine.beginUpdate(eq(timestamp), any(Set.class))).thenReturn(update);
+        return update;
+    }
+
     private PushPreferencesFCM getPreferences(long timestamp, boolean areGeofencesEnabled) {
         final PushPreferencesFCM pushPreferences = mock(PushPreferencesFCM.class);
         when(pushPreferences.getPCFPushDeviceRegistrationId()).thenReturn(TEST_DEVICE_UUID);
@@ -13,6 +13,7 @@ import com.baidu.android.pushservice.PushConstants;
 import com.baidu.android.pushservice.PushManager;
 
 import io.pivotal.android.push.analytics.jobs.PrepareDatabaseJob;
+import io.pivotal.android.push.backend.analytics.PCFPushSendAnalyticsApiRequestImpl;
 import io.pivotal.android.push.backend.api.PCFPushUnregisterDeviceApiRequest;
 import io.pivotal.android.push.backend.api.PCFPushUnregisterDeviceApiRequestImpl;
 import io.pivotal.android.push.backend.api.PCFPushUnregisterDeviceApiRequestProvider;
@@ -24,7 +25,7 @@ import io.pivotal.android.push.registration.SubscribeToTagsListener;
 import io.pivotal.android.push.registration.UnregistrationListener;
 import io.pivotal.android.push.service.AnalyticsEventService;
 import io.pivotal.android.push.util.NetworkWrapper;
-import io.pivotal.android.push.util.NetworkWrapperImpl;
+import io.pivotal.android.push.util.PooledNetworkWrapper;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -36,6 +37,7 @@ import io.pivotal.android.push.prefs.Pivotal;
 import io.pivotal.android.push.prefs.PushRequestHeaders;
 import io.pivotal.android.push.baidu.RegistrationEngine;
 import io.pivotal.android.push.registration.RegistrationListener;
+import io.pivotal.android.push.util.GsonUtil;
 import io.pivotal.android.push.util.Logger;
 import io.pivotal.android.push.util.ServiceStarter;
 import io.pivotal.android.push.util.ServiceStarterImpl;
@@ -71,6 +73,7 @@ public class Push {
             this.context = context.getApplicationContext();
         }
 
+        GsonUtil.warmUpInBackground();
         Logger.i("Push SDK initialized.");
     }
 
@@ -349,7 +352,7 @@ public class Push {
 
         verifyUnregistrationArguments(this.parameters);
 
-        final NetworkWrapper networkWrapper = new NetworkWrapperImpl();
+        final NetworkWrapper networkWrapper = new PooledNetworkWrapper();
         final PCFPushUnregisterDeviceApiRequest unregisterDeviceApiRequest = new PCFPushUnregisterDeviceApiRequestImpl(context, networkWrapper);
         final PCFPushUnregisterDeviceApiRequestProvider pcfPushUnregisterDeviceApiRequestProvider = new PCFPushUnregisterDeviceApiRequestProvider(unregisterDeviceApiRequest);
 
@@ -406,6 +409,9 @@ public class Push {
      */
     public void setPushServiceInfo(@Nullable final PushServiceInfo pushServiceInfo) {
         this.pushServiceInfo = pushServiceInfo;
+        if (pushServiceInfo != null) {
+            PCFPushSendAnalyticsApiRequestImpl.configureCompression(pushServiceInfo.isAnalyticsCompressionEnabled(), pushServiceInfo.getAnalyticsCompressionThresholdInBytes());
+        }
     }
 
     /**
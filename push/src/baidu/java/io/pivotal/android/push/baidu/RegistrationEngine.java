@@ -20,7 +20,7 @@ import io.pivotal.android.push.prefs.PushRequestHeaders;
 import io.pivotal.android.push.registration.RegistrationListener;
 import io.pivotal.android.push.util.Logger;
 import io.pivotal.android.push.util.NetworkWrapper;
-import io.pivotal.android.push.util.NetworkWrapperImpl;
+import io.pivotal.android.push.util.PooledNetworkWrapper;
 import io.pivotal.android.push.util.Util;
 
 /**
@@ -71,7 +71,7 @@ public class RegistrationEngine {
     public static RegistrationEngine getRegistrationEngine(Context context) {
         final PushPreferencesBaidu pushPreferences = new PushPreferencesBaidu(context);
         final PushRequestHeaders pushRequestHeaders = PushRequestHeaders.getInstance(context);
-        final NetworkWrapper networkWrapper = new NetworkWrapperImpl();
+        final NetworkWrapper networkWrapper = new PooledNetworkWrapper();
         final PCFPushRegistrationApiRequest pushRegistrationApiRequest = new PCFPushRegistrationApiRequestImpl(context, networkWrapper);
         final PCFPushRegistrationApiRequestProvider PCFPushRegistrationApiRequestProvider = new PCFPushRegistrationApiRequestProvider(pushRegistrationApiRequest);
 
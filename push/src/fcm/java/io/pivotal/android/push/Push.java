@@ -29,6 +29,7 @@ import java.util.concurrent.Executors;
 
 import io.pivotal.android.push.analytics.AnalyticsEventLogger;
 import io.pivotal.android.push.analytics.jobs.PrepareDatabaseJob;
+import io.pivotal.android.push.backend.analytics.PCFPushSendAnalyticsApiRequestImpl;
 import io.pivotal.android.push.backend.api.PCFPushUnregisterDeviceApiRequest;
 import io.pivotal.android.push.backend.api.PCFPushUnregisterDeviceApiRequestImpl;
 import io.pivotal.android.push.backend.api.PCFPushUnregisterDeviceApiRequestProvider;
@@ -48,9 +49,10 @@ import io.pivotal.android.push.registration.UnregistrationEngine;
 import io.pivotal.android.push.registration.UnregistrationListener;
 import io.pivotal.android.push.service.AnalyticsEventService;
 import io.pivotal.android.push.util.FileHelper;
+import io.pivotal.android.push.util.GsonUtil;
 import io.pivotal.android.push.util.Logger;
 import io.pivotal.android.push.util.NetworkWrapper;
-import io.pivotal.android.push.util.NetworkWrapperImpl;
+import io.pivotal.android.push.util.PooledNetworkWrapper;
 import io.pivotal.android.push.util.ServiceStarter;
 import io.pivotal.android.push.util.ServiceStarterImpl;
 import io.pivotal.android.push.util.TimeProvider;
@@ -100,6 +102,7 @@ public class Push {
         verifyArguments(context);
         saveArguments(context);
 
+        GsonUtil.warmUpInBackground();
         Logger.i("Push SDK initialized.");
     }
 
@@ -378,7 +381,7 @@ public class Push {
 
         verifyUnregistrationArguments(this.parameters);
 
-        final NetworkWrapper networkWrapper = new NetworkWrapperImpl();
+        final NetworkWrapper networkWrapper = new PooledNetworkWrapper();
         final PCFPushUnregisterDeviceApiRequest dummyPCFPushUnregisterDeviceApiRequest = new PCFPushUnregisterDeviceApiRequestImpl(context, networkWrapper);
         final PCFPushUnregisterDeviceApiRequestProvider pcfPushUnregisterDeviceApiRequestProvider = new PCFPushUnregisterDeviceApiRequestProvider(dummyPCFPushUnregisterDeviceApiRequest);
         final PCFPushGetGeofenceUpdatesApiRequest geofenceUpdatesApiRequest = new PCFPushGetGeofenceUpdatesApiRequest(context, networkWrapper);
@@ -577,6 +580,9 @@ public class Push {
      */
     public void setPushServiceInfo(@Nullable final PushServiceInfo pushServiceInfo) {
         this.pushServiceInfo = pushServiceInfo;
+        if (pushServiceInfo != null) {
+            PCFPushSendAnalyticsApiRequestImpl.configureCompression(pushServiceInfo.isAnalyticsCompressionEnabled(), pushServiceInfo.getAnalyticsCompressionThresholdInBytes());
+        }
     }
 
     /**
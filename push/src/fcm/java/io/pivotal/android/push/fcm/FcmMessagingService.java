@@ -52,7 +52,12 @@ public class FcmMessagingService extends FirebaseMessagingService {
 
         initializeDependencies();
 
-        handleReceivedMessage(remoteMessage.getNotification(), new HashMap<>(remoteMessage.getData()));
+        try {
+            handleReceivedMessage(remoteMessage.getNotification(), new HashMap<>(remoteMessage.getData()));
+        } finally {
+            // The process may be stopped once this message has been handled
+            AnalyticsEventLogger.flushEvents();
+        }
     }
 
     @Override
@@ -2,9 +2,11 @@ package io.pivotal.android.push.geofence;
 
 import io.pivotal.android.push.prefs.PushPreferences;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import io.pivotal.android.push.backend.geofence.PCFPushGeofenceResponseHandler;
 import io.pivotal.android.push.model.geofence.PCFPushGeofenceData;
 import io.pivotal.android.push.model.geofence.PCFPushGeofenceDataList;
 import io.pivotal.android.push.model.geofence.PCFPushGeofenceLocation;
@@ -49,38 +51,121 @@ public class GeofenceEngine {
 
     public void processResponseData(final long lastUpdatedTimestamp, final PCFPushGeofenceResponseData responseData, Set<String> subscribedTags) {
 
-        // If the last updated lastUpdatedTimestamp is zero then we need to reset our stored data.
-        if (lastUpdatedTimestamp == 0L) {
-            store.reset();
-            registrar.reset();
-        }
-
         if (responseData == null) {
+            // If the last updated lastUpdatedTimestamp is zero then we need to reset our stored data.
+            if (lastUpdatedTimestamp == 0L) {
+                store.reset();
+                registrar.reset();
+            }
             return;
         }
 
-        final PCFPushGeofenceDataList storedGeofences;
+        final GeofenceUpdate update = beginUpdate(lastUpdatedTimestamp, subscribedTags);
+        if (responseData.getGeofences() != null) {
+            for (final PCFPushGeofenceData geofence : responseData.getGeofences()) {
+                if (geofence != null) {
+                    update.onGeofence(geofence);
+                }
+            }
+        }
+        if (responseData.getDeletedGeofenceIds() != null) {
+            for (final Long geofenceId : responseData.getDeletedGeofenceIds()) {
+                if (geofenceId != null) {
+                    update.onDeletedGeofenceId(geofenceId);
+                }
+            }
+        }
+        update.commit();
+    }
 
-        if (lastUpdatedTimestamp != 0L) {
-            storedGeofences = store.getCurrentlyRegisteredGeofences();
-        } else {
-            storedGeofences = new PCFPushGeofenceDataList();
+    /**
+     * Starts processing a geofence update whose items will be provided one at a time (e.g. while the
+     * server response is being parsed).  Nothing is changed in the store or the registrar until
+     * {@link GeofenceUpdate#commit()} is called, so an update that fails part way through can simply be
+     * dropped.  The valid geofences are kept in memory until then, so the memory used by an update still
+     * grows with the number of geofences in the response.
+     */
+    public GeofenceUpdate beginUpdate(final long lastUpdatedTimestamp, Set<String> subscribedTags) {
+        return new GeofenceUpdate(lastUpdatedTimestamp, subscribedTags);
+    }
+
+    public class GeofenceUpdate implements PCFPushGeofenceResponseHandler {
+
+        private final long lastUpdatedTimestamp;
+        private final Set<String> subscribedTags;
+        private final PCFPushGeofenceDataList validUpdatedGeofences = new PCFPushGeofenceDataList();
+        private final Set<Long> updatedGeofenceIds = new HashSet<>();
+        private final Set<Long> deletedGeofenceIds = new HashSet<>();
+        private int numberOfGeofencesReceived = 0;
+
+        private GeofenceUpdate(long lastUpdatedTimestamp, Set<String> subscribedTags) {
+            this.lastUpdatedTimestamp = lastUpdatedTimestamp;
+            this.subscribedTags = subscribedTags;
         }
 
-        if (!hasDataToPersist(responseData, storedGeofences)) {
-            return;
+        @Override
+        public void onGeofence(PCFPushGeofenceData geofence) {
+            numberOfGeofencesReceived += 1;
+            updatedGeofenceIds.add(geofence.getId());
+            if (isValidUpdatedItem(geofence)) {
+                validUpdatedGeofences.put(geofence.getId(), geofence);
+            }
         }
 
-        final PCFPushGeofenceDataList geofencesToStore = new PCFPushGeofenceDataList();
-        final PCFPushGeofenceLocationMap geofencesToRegister = new PCFPushGeofenceLocationMap();
-        addValidGeofencesFromStore(geofencesToStore, storedGeofences, responseData);
-        addValidGeofencesFromUpdate(geofencesToStore, responseData.getGeofences());
+        @Override
+        public void onDeletedGeofenceId(long geofenceId) {
+            deletedGeofenceIds.add(geofenceId);
+        }
 
-        selectGeofencesToRegister(geofencesToRegister, geofencesToStore, subscribedTags);
+        public int getNumberOfGeofencesReceived() {
+            return numberOfGeofencesReceived;
+        }
 
-        Logger.i("GeofenceEngine: going to register " + geofencesToRegister.size() + " geofences.");
-        registrar.registerGeofences(geofencesToRegister, geofencesToStore);
-        store.saveRegisteredGeofences(geofencesToStore);
+        public void commit() {
+
+            final PCFPushGeofenceDataList storedGeofences;
+
+            // If the last updated lastUpdatedTimestamp is zero then we need to reset our stored data.
+            if (lastUpdatedTimestamp == 0L) {
+                store.reset();
+                registrar.reset();
+                storedGeofences = new PCFPushGeofenceDataList();
+            } else {
+                storedGeofences = store.getCurrentlyRegisteredGeofences();
+            }
+
+            if (!hasDataToPersist(storedGeofences)) {
+                return;
+            }
+
+            final PCFPushGeofenceDataList geofencesToStore = new PCFPushGeofenceDataList();
+            final PCFPushGeofenceLocationMap geofencesToRegister = new PCFPushGeofenceLocationMap();
+            addValidGeofencesFromStore(geofencesToStore, storedGeofences);
+            geofencesToStore.addAll(validUpdatedGeofences);
+
+            selectGeofencesToRegister(geofencesToRegister, geofencesToStore, subscribedTags);
+
+            Logger.i("GeofenceEngine: going to register " + geofencesToRegister.size() + " geofences.");
+            registrar.registerGeofences(geofencesToRegister, geofencesToStore);
+            store.saveRegisteredGeofences(geofencesToStore);
+        }
+
+        private boolean hasDataToPersist(PCFPushGeofenceDataList storedGeofences) {
+            return (storedGeofences != null && storedGeofences.size() > 0) || numberOfGeofencesReceived > 0;
+        }
+
+        private void addValidGeofencesFromStore(final PCFPushGeofenceDataList requiredGeofences, final PCFPushGeofenceDataList storedGeofences) {
+            requiredGeofences.addFiltered(storedGeofences, new PCFPushGeofenceDataList.Filter() {
+
+                @Override
+                public boolean filterItem(final PCFPushGeofenceData item) {
+                    return !deletedGeofenceIds.contains(item.getId()) &&
+                            !isExpiredItem(item) &&
+                            !updatedGeofenceIds.contains(item.getId()) &&
+                            areLocationsValid(item);
+                }
+            });
+        }
     }
 
     private void selectGeofencesToRegister(PCFPushGeofenceLocationMap geofencesToRegister, PCFPushGeofenceDataList geofencesToStore, final Set<String> subscribedTags) {
@@ -122,38 +207,6 @@ public class GeofenceEngine {
         store.reset();
     }
 
-    private boolean hasDataToPersist(PCFPushGeofenceResponseData responseData, PCFPushGeofenceDataList storedGeofences) {
-        return (storedGeofences != null && storedGeofences.size() > 0) ||
-               (responseData.getGeofences() != null && responseData.getGeofences().size() > 0);
-    }
-
-    private void addValidGeofencesFromStore(final PCFPushGeofenceDataList requiredGeofences, final PCFPushGeofenceDataList storedGeofences, final PCFPushGeofenceResponseData responseData) {
-        requiredGeofences.addFiltered(storedGeofences, new PCFPushGeofenceDataList.Filter() {
-
-            @Override
-            public boolean filterItem(final PCFPushGeofenceData item) {
-                return !isDeletedItem(item, responseData) &&
-                        !isExpiredItem(item) &&
-                        !isUpdatedItem(item, responseData) &&
-                        areLocationsValid(item);
-            }
-        });
-    }
-
-    private boolean isUpdatedItem(PCFPushGeofenceData item, PCFPushGeofenceResponseData responseData) {
-        if (item == null || responseData == null || responseData.getGeofences() == null) {
-            return false;
-        }
-        for (PCFPushGeofenceData data : responseData.getGeofences()) {
-            if (data.getId() == item.getId()) return true;
-        }
-        return false;
-    }
-
-    private boolean isDeletedItem(PCFPushGeofenceData item, PCFPushGeofenceResponseData responseData) {
-        return responseData.getDeletedGeofenceIds() != null && responseData.getDeletedGeofenceIds().contains(item.getId());
-    }
-
     private boolean isExpiredItem(PCFPushGeofenceData item) {
         if (item.getExpiryTime() == null) return true;
         if (item.getExpiryTime().getTime() <= timeProvider.currentTimeMillis()) {
@@ -184,39 +237,29 @@ public class GeofenceEngine {
         return true;
     }
 
-    private void addValidGeofencesFromUpdate(PCFPushGeofenceDataList requiredGeofences, List<PCFPushGeofenceData> newGeofences) {
-        requiredGeofences.addFiltered(newGeofences, new PCFPushGeofenceDataList.Filter() {
-
-            @Override
-            public boolean filterItem(PCFPushGeofenceData item) {
-                return isItemValid(item);
-            }
-
-            private boolean isItemValid(PCFPushGeofenceData item) {
-                if (item.getExpiryTime() == null) {
-                    Logger.w(String.format("Filtering out item %d with no expiry time", item.getId()));
-                    return false;
-                }
-                if (isExpiredItem(item)) {
-                    Logger.w(String.format("Filtering out item %d with elapsed expiry time %d", item.getId(), item.getExpiryTime().getTime()));
-                    return false;
-                }
-                if (!areLocationsValid(item)) return false;
-                if (item.getPayload() == null || item.getPayload().getAndroidFcm() == null || item.getPayload().getAndroidFcm().size() <= 0) {
-                    Logger.w(String.format("Filtering out item %d with no payload", item.getId()));
-                    return false;
-                }
-                if (item.getTriggerType() == null) {
-                    Logger.w(String.format("Filtering out item %d with no trigger type", item.getId()));
-                    return false;
-                }
-                if (!(item.getTriggerType().equalsIgnoreCase("enter") || item.getTriggerType().equalsIgnoreCase("exit"))) {
-                    Logger.w(String.format("Filtering out item %d with invalid trigger type '%s'", item.getId(), item.getTriggerType()));
-                    return false;
-                }
-                return true;
-            }
-        });
+    private boolean isValidUpdatedItem(PCFPushGeofenceData item) {
+        if (item.getExpiryTime() == null) {
+            Logger.w(String.format("Filtering out item %d with no expiry time", item.getId()));
+            return false;
+        }
+        if (isExpiredItem(item)) {
+            Logger.w(String.format("Filtering out item %d with elapsed expiry time %d", item.getId(), item.getExpiryTime().getTime()));
+            return false;
+        }
+        if (!areLocationsValid(item)) return false;
+        if (item.getPayload() == null || item.getPayload().getAndroidFcm() == null || item.getPayload().getAndroidFcm().size() <= 0) {
+            Logger.w(String.format("Filtering out item %d with no payload", item.getId()));
+            return false;
+        }
+        if (item.getTriggerType() == null) {
+            Logger.w(String.format("Filtering out item %d with no trigger type", item.getId()));
+            return false;
+        }
+        if (!(item.getTriggerType().equalsIgnoreCase("enter") || item.getTriggerType().equalsIgnoreCase("exit"))) {
+            Logger.w(String.format("Filtering out item %d with invalid trigger type '%s'", item.getId(), item.getTriggerType()));
+            return false;
+        }
+        return true;
     }
 
     private void filterClearedLocations(final PCFPushGeofenceLocationMap locationsToClear,
@@ -22,12 +22,23 @@ import io.pivotal.android.push.util.FileHelper;
 import io.pivotal.android.push.util.GsonUtil;
 import io.pivotal.android.push.util.Logger;
 
+/**
+ * Keeps the geofences that are currently registered.  By default each geofence is kept in its own file.  When
+ * the snapshot store is enabled (see {@link #setSnapshotStoreEnabled}) all of the geofences are kept in one
+ * {@link GeofenceSnapshotFile} instead, and a copy of them is kept in memory so that they are only read from
+ * the file once per process.
+ */
 public class GeofencePersistentStore {
 
     public static final String GEOFENCE_PERSISTENT_STORE_FILE_PREFIX = "pivotal.push.geofence.";
 
     private static final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
 
+    // Guarded by the lock
+    private static boolean isSnapshotStoreEnabled = false;
+    private static PCFPushGeofenceDataList cachedGeofences;
+    private static boolean areGeofenceFilesMigrated = false;
+
     private final Context context;
     private final FileHelper fileHelper;
     private final Gson gson = GsonUtil.getGson();
@@ -38,6 +49,37 @@ public class GeofencePersistentStore {
         this.fileHelper = fileHelper;
     }
 
+    /**
+     * Chooses whether all of the geofences are kept together in one snapshot file (true), or each geofence is
+     * kept in its own file (false).  It is false by default.  The first time the snapshot store is used, any
+     * geofences that were kept in their own files are moved into the snapshot.  Geofences are not moved back
+     * out of the snapshot if it is turned off again, and the snapshot is deleted the next time that the
+     * geofences are saved or reset.
+     *
+     * This should be called before the store is used, e.g.: in your application's onCreate method.
+     */
+    public static void setSnapshotStoreEnabled(boolean isEnabled) {
+        lock.writeLock().lock();
+        try {
+            if (isSnapshotStoreEnabled != isEnabled) {
+                isSnapshotStoreEnabled = isEnabled;
+                cachedGeofences = null;
+                areGeofenceFilesMigrated = false;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public static boolean isSnapshotStoreEnabled() {
+        lock.readLock().lock();
+        try {
+            return isSnapshotStoreEnabled;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
     public void reset() {
 
         lock.writeLock().lock();
@@ -46,7 +88,21 @@ public class GeofencePersistentStore {
 
         try {
 
-            deleteFiles(Arrays.asList(getFiles()));
+            final boolean[] isSnapshotFound = new boolean[1];
+            final String[] files = getFiles(isSnapshotFound);
+
+            // A snapshot left from when the snapshot store was turned on is deleted too, so that it can't
+            // bring back the geofences if the snapshot store is turned on again
+            if (isSnapshotStoreEnabled || isSnapshotFound[0]) {
+                new GeofenceSnapshotFile(fileHelper).delete();
+            }
+            if (isSnapshotStoreEnabled) {
+                cachedGeofences = new PCFPushGeofenceDataList();
+                areGeofenceFilesMigrated = true;
+            }
+            if (files != null) {
+                deleteFiles(Arrays.asList(files));
+            }
 
         } finally {
             lock.writeLock().unlock();
@@ -55,6 +111,14 @@ public class GeofencePersistentStore {
 
     public PCFPushGeofenceDataList getCurrentlyRegisteredGeofences() {
 
+        if (isSnapshotStoreEnabled()) {
+            final PCFPushGeofenceDataList result = new PCFPushGeofenceDataList();
+            for (final PCFPushGeofenceData geofence : getSnapshot()) {
+                result.put(geofence.getId(), geofence.newCopy());
+            }
+            return result;
+        }
+
         lock.readLock().lock();
 
         try {
@@ -83,7 +147,13 @@ public class GeofencePersistentStore {
         lock.writeLock().lock();
 
         try {
-            final Set<String> existingFiles = new HashSet<>(Arrays.asList(getFiles()));
+            if (isSnapshotStoreEnabled) {
+                saveSnapshot(geofences);
+                return;
+            }
+
+            final boolean[] isSnapshotFound = new boolean[1];
+            final Set<String> existingFiles = new HashSet<>(Arrays.asList(getFiles(isSnapshotFound)));
 
             for (final PCFPushGeofenceData geofence : geofences) {
                 final String filename = GEOFENCE_PERSISTENT_STORE_FILE_PREFIX + geofence.getId() + ".json";
@@ -93,6 +163,11 @@ public class GeofencePersistentStore {
 
             deleteFiles(existingFiles);
 
+            // The files hold all of the geofences now, so an older snapshot must not be merged with them later
+            if (isSnapshotFound[0]) {
+                new GeofenceSnapshotFile(fileHelper).delete();
+            }
+
         } finally {
             lock.writeLock().unlock();
         }
@@ -100,6 +175,11 @@ public class GeofencePersistentStore {
 
     public PCFPushGeofenceData getGeofenceData(long id) {
 
+        if (isSnapshotStoreEnabled()) {
+            final PCFPushGeofenceData geofence = getSnapshot().get(id);
+            return geofence != null ? geofence.newCopy() : null;
+        }
+
         lock.readLock().lock();
 
         try {
@@ -111,12 +191,95 @@ public class GeofencePersistentStore {
         }
     }
 
+    // Returns the cached geofences, reading them from the snapshot first if they are not in memory yet.
+    // Callers must copy the geofences before handing them out.
+    private PCFPushGeofenceDataList getSnapshot() {
+
+        lock.readLock().lock();
+        try {
+            if (isSnapshotStoreEnabled && cachedGeofences != null) {
+                return cachedGeofences;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (cachedGeofences == null) {
+                cachedGeofences = readSnapshot();
+            }
+            return cachedGeofences;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Must be called while holding the write lock.  Geofences kept in their own files are merged over the
+    // snapshot, since some of them may be left over from an earlier move that was stopped before all of the
+    // files were deleted.  Saving geofences to their own files deletes the snapshot, so a snapshot that
+    // exists along with the files is never older than them.
+    private PCFPushGeofenceDataList readSnapshot() {
+        final GeofenceSnapshotFile snapshotFile = new GeofenceSnapshotFile(fileHelper);
+        final PCFPushGeofenceDataList snapshot = snapshotFile.read();
+        final PCFPushGeofenceDataList geofences = snapshot != null ? snapshot : new PCFPushGeofenceDataList();
+        final String[] files = getFiles();
+
+        if (files == null || files.length == 0) {
+            areGeofenceFilesMigrated = true;
+            return geofences;
+        }
+
+        Logger.i("Moving " + files.length + " stored geofence file(s) into the geofence snapshot.");
+        for (final String filename : files) {
+            addFile(geofences, filename);
+        }
+        if (snapshotFile.write(geofences)) {
+            deleteFiles(Arrays.asList(files));
+            areGeofenceFilesMigrated = true;
+        }
+        return geofences;
+    }
+
+    // Must be called while holding the write lock
+    private void saveSnapshot(PCFPushGeofenceDataList geofences) {
+        final PCFPushGeofenceDataList copy = new PCFPushGeofenceDataList();
+        for (final PCFPushGeofenceData geofence : geofences) {
+            if (geofence != null) {
+                copy.put(geofence.getId(), geofence.newCopy());
+            }
+        }
+
+        if (!new GeofenceSnapshotFile(fileHelper).write(copy)) {
+            // Read the snapshot again next time, so that the cache doesn't hold geofences that weren't saved
+            cachedGeofences = null;
+            return;
+        }
+
+        cachedGeofences = copy;
+        if (!areGeofenceFilesMigrated) {
+            final String[] files = getFiles();
+            if (files != null) {
+                deleteFiles(Arrays.asList(files));
+            }
+            areGeofenceFilesMigrated = true;
+        }
+    }
+
     private String[] getFiles() {
+        return getFiles(null);
+    }
+
+    // Also notes whether there is a snapshot file, if isSnapshotFound is not null, without listing the files again
+    private String[] getFiles(final boolean[] isSnapshotFound) {
         final File filesDir = context.getFilesDir();
 
         return filesDir.list(new FilenameFilter() {
             @Override
             public boolean accept(File dir, String filename) {
+                if (isSnapshotFound != null && GeofenceSnapshotFile.GEOFENCE_SNAPSHOT_FILE_NAME.equals(filename)) {
+                    isSnapshotFound[0] = true;
+                }
                 return filename.startsWith(GEOFENCE_PERSISTENT_STORE_FILE_PREFIX);
             }
         });
@@ -0,0 +1,144 @@
+package io.pivotal.android.push.geofence;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+import io.pivotal.android.push.model.geofence.PCFPushGeofenceData;
+import io.pivotal.android.push.model.geofence.PCFPushGeofenceDataList;
+import io.pivotal.android.push.util.FileHelper;
+import io.pivotal.android.push.util.GsonUtil;
+import io.pivotal.android.push.util.Logger;
+
+/**
+ * Keeps all of the stored geofences together in a single file, e.g.:
+ *
+ *     {"version":1,"geofences":[{"id":7,...},{"id":9,...}]}
+ *
+ * The file is written to a temporary file first and then renamed, so a snapshot is never left partly written.
+ * This class does not lock anything: the {@link GeofencePersistentStore} that uses it does.
+ */
+public class GeofenceSnapshotFile {
+
+    public static final String GEOFENCE_SNAPSHOT_FILE_NAME = "pivotal.push.geofence_snapshot.json";
+    public static final int VERSION = 1;
+
+    private static final String VERSION_FIELD = "version";
+    private static final String GEOFENCES_FIELD = "geofences";
+    private static final int INPUT_BUFFER_SIZE = 8192;
+
+    private final FileHelper fileHelper;
+    private final TypeAdapter<PCFPushGeofenceData> geofenceAdapter;
+
+    public GeofenceSnapshotFile(FileHelper fileHelper) {
+        if (fileHelper == null) {
+            throw new IllegalArgumentException("fileHelper may not be null");
+        }
+        this.fileHelper = fileHelper;
+        this.geofenceAdapter = GsonUtil.getGson().getAdapter(PCFPushGeofenceData.class);
+    }
+
+    /**
+     * @return the geofences in the snapshot, or null if there is no snapshot file.  A snapshot that can not be
+     *         read (e.g.: it is corrupted, or was written by a newer version) is treated as having no geofences.
+     */
+    public PCFPushGeofenceDataList read() {
+        final Reader reader;
+        try {
+            reader = fileHelper.getReader(GEOFENCE_SNAPSHOT_FILE_NAME);
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+
+        try {
+            final JsonReader jsonReader = new JsonReader(new BufferedReader(reader, INPUT_BUFFER_SIZE));
+            return readSnapshot(jsonReader);
+
+        } catch (IOException e) {
+            Logger.w("Bad/corrupted geofence snapshot found, error: " + e.getLocalizedMessage());
+        } catch (JsonParseException e) {
+            Logger.w("Bad/corrupted geofence snapshot found, error: " + e.getLocalizedMessage());
+        } catch (IllegalStateException e) {
+            Logger.w("Bad/corrupted geofence snapshot found, error: " + e.getLocalizedMessage());
+        } finally {
+            try {
+                reader.close();
+            } catch (IOException e) {}
+        }
+
+        return new PCFPushGeofenceDataList();
+    }
+
+    private PCFPushGeofenceDataList readSnapshot(JsonReader jsonReader) throws IOException {
+        final PCFPushGeofenceDataList geofences = new PCFPushGeofenceDataList();
+        int version = 0;
+
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            final String name = jsonReader.nextName();
+            if (name.equals(VERSION_FIELD)) {
+                version = jsonReader.nextInt();
+            } else if (name.equals(GEOFENCES_FIELD) && version == VERSION) {
+                jsonReader.beginArray();
+                while (jsonReader.hasNext()) {
+                    final PCFPushGeofenceData geofence = geofenceAdapter.read(jsonReader);
+                    if (geofence != null) {
+                        geofences.put(geofence.getId(), geofence);
+                    }
+                }
+                jsonReader.endArray();
+            } else {
+                jsonReader.skipValue();
+            }
+        }
+        jsonReader.endObject();
+
+        if (version != VERSION) {
+            Logger.w("Ignoring geofence snapshot with unknown version " + version + ".");
+            return new PCFPushGeofenceDataList();
+        }
+        return geofences;
+    }
+
+    /**
+     * @return true if the snapshot was written.  If it was not written then the old snapshot is left as it was.
+     */
+    public boolean write(final PCFPushGeofenceDataList geofences) {
+        try {
+            fileHelper.writeAtomically(GEOFENCE_SNAPSHOT_FILE_NAME, new FileHelper.ContentWriter() {
+
+                @Override
+                public void write(Writer writer) throws IOException {
+                    final JsonWriter jsonWriter = new JsonWriter(writer);
+                    jsonWriter.setSerializeNulls(false);
+                    jsonWriter.beginObject();
+                    jsonWriter.name(VERSION_FIELD).value(VERSION);
+                    jsonWriter.name(GEOFENCES_FIELD);
+                    jsonWriter.beginArray();
+                    for (int i = 0; i < geofences.size(); i += 1) {
+                        geofenceAdapter.write(jsonWriter, geofences.valueAt(i));
+                    }
+                    jsonWriter.endArray();
+                    jsonWriter.endObject();
+                    jsonWriter.flush();
+                }
+            });
+            return true;
+
+        } catch (IOException e) {
+            Logger.w("Error writing geofence snapshot, error: " + e.getLocalizedMessage());
+            return false;
+        }
+    }
+
+    public void delete() {
+        fileHelper.delete(GEOFENCE_SNAPSHOT_FILE_NAME);
+    }
+}
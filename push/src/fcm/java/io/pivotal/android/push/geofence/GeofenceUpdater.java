@@ -8,8 +8,9 @@ import io.pivotal.android.push.prefs.PushPreferences;
 import java.util.Set;
 
 import io.pivotal.android.push.PushParameters;
+import io.pivotal.android.push.backend.geofence.PCFPushGeofenceValidators;
+import io.pivotal.android.push.backend.geofence.PCFPushGetConditionalGeofenceUpdatesListener;
 import io.pivotal.android.push.backend.geofence.PCFPushGetGeofenceUpdatesApiRequest;
-import io.pivotal.android.push.backend.geofence.PCFPushGetGeofenceUpdatesListener;
 import io.pivotal.android.push.model.geofence.PCFPushGeofenceResponseData;
 import io.pivotal.android.push.prefs.Pivotal;
 import io.pivotal.android.push.prefs.PushRequestHeaders;
@@ -80,16 +81,24 @@ public class GeofenceUpdater {
                     pushRequestHeaders.getRequestHeaders());
             final String deviceUuid = pushPreferences.getPCFPushDeviceRegistrationId();
 
-            apiRequest.getGeofenceUpdates(timestamp, deviceUuid, parameters, new PCFPushGetGeofenceUpdatesListener() {
+            // The geofences in the response are fed into the engine while the response is being read.
+            final GeofenceEngine.GeofenceUpdate update = geofenceEngine.beginUpdate(timestamp, pushPreferences.getTags());
+
+            apiRequest.getGeofenceUpdates(timestamp, deviceUuid, parameters, getValidators(timestamp), update, new PCFPushGetConditionalGeofenceUpdatesListener() {
 
                 @Override
-                public void onPCFPushGetGeofenceUpdatesSuccess(final PCFPushGeofenceResponseData responseData) {
-                    onSuccessfullyFetchedUpdates(timestamp, responseData, listener);
+                public void onPCFPushGetGeofenceUpdatesSuccess(final PCFPushGeofenceResponseData responseData, final PCFPushGeofenceValidators validators) {
+                    onSuccessfullyStreamedUpdates(update, responseData, validators, listener);
+                }
+
+                @Override
+                public void onPCFPushGetGeofenceUpdatesNotModified() {
+                    onGeofencesNotModified(listener);
                 }
 
                 @Override
                 public void onPCFPushGetGeofenceUpdatesFailed(final String reason) {
-                    // TODO - consider a retry mechanism for failed requests.
+                    // Transient failures have already been retried by the request
                     final String message = "Error fetching geofence updates: " + reason;
                     Logger.w(message);
                     onFailedToFetchUpdates(reason, listener);
@@ -126,12 +135,45 @@ public class GeofenceUpdater {
             final Set<String> subscribedTags = pushPreferences.getTags();
             geofenceEngine.processResponseData(timestamp, responseData, subscribedTags);
             pushPreferences.setLastGeofenceUpdate(responseData.getLastModified() == null ? 0 : responseData.getLastModified().getTime());
+            saveValidators(null);
             if (listener != null) {
                 listener.onSuccess();
             }
         }
     }
 
+    private void onSuccessfullyStreamedUpdates(final GeofenceEngine.GeofenceUpdate update, final PCFPushGeofenceResponseData responseData, final PCFPushGeofenceValidators validators, final GeofenceUpdaterListener listener) {
+        Logger.i("Successfully fetched geofence updates. Received " + update.getNumberOfGeofencesReceived() + " items.");
+        update.commit();
+        pushPreferences.setLastGeofenceUpdate(responseData.getLastModified() == null ? 0 : responseData.getLastModified().getTime());
+        saveValidators(validators);
+        if (listener != null) {
+            listener.onSuccess();
+        }
+    }
+
+    private void onGeofencesNotModified(final GeofenceUpdaterListener listener) {
+        Logger.i("Successfully fetched geofence updates. Geofences have not been modified.");
+        if (listener != null) {
+            listener.onSuccess();
+        }
+    }
+
+    // The validators are only sent with incremental updates.  A full update (i.e.: one with no timestamp)
+    // always needs the whole list of geofences since the store may have been cleared.
+    private PCFPushGeofenceValidators getValidators(final long timestamp) {
+        if (timestamp == GeofenceConstants.NEVER_UPDATED_GEOFENCES) {
+            return null;
+        }
+        final PCFPushGeofenceValidators validators = new PCFPushGeofenceValidators(pushPreferences.getGeofenceUpdateETag(), pushPreferences.getGeofenceUpdateLastModified());
+        return validators.isEmpty() ? null : validators;
+    }
+
+    private void saveValidators(final PCFPushGeofenceValidators validators) {
+        pushPreferences.setGeofenceUpdateETag(validators == null ? null : validators.getETag());
+        pushPreferences.setGeofenceUpdateLastModified(validators == null ? null : validators.getLastModified());
+    }
+
     private void onFailedToFetchUpdates(final String reason, final GeofenceUpdaterListener listener) {
         final GeofenceStatusUtil geofenceStatusUtil = new GeofenceStatusUtil(context);
         final GeofenceStatus previousStatus = geofenceStatusUtil.loadGeofenceStatus();
@@ -29,7 +29,7 @@ import io.pivotal.android.push.prefs.PushRequestHeaders;
 import io.pivotal.android.push.util.FileHelper;
 import io.pivotal.android.push.util.Logger;
 import io.pivotal.android.push.util.NetworkWrapper;
-import io.pivotal.android.push.util.NetworkWrapperImpl;
+import io.pivotal.android.push.util.PooledNetworkWrapper;
 import io.pivotal.android.push.util.TimeProvider;
 import io.pivotal.android.push.util.Util;
 import io.pivotal.android.push.version.GeofenceStatus;
@@ -86,7 +86,7 @@ public class RegistrationEngine {
     public static RegistrationEngine getRegistrationEngine(Context context) {
         final PushPreferencesFCM pushPreferences = new PushPreferencesFCM(context);
         final PushRequestHeaders pushRequestHeaders = PushRequestHeaders.getInstance(context);
-        final NetworkWrapper networkWrapper = new NetworkWrapperImpl();
+        final NetworkWrapper networkWrapper = new PooledNetworkWrapper();
         final PCFPushRegistrationApiRequest dummyPCFPushRegistrationApiRequest = new PCFPushRegistrationApiRequestImpl(context, networkWrapper);
         final PCFPushRegistrationApiRequestProvider PCFPushRegistrationApiRequestProvider = new PCFPushRegistrationApiRequestProvider(dummyPCFPushRegistrationApiRequest);
         final PCFPushGetGeofenceUpdatesApiRequest geofenceUpdatesApiRequest = new PCFPushGetGeofenceUpdatesApiRequest(context, networkWrapper);
@@ -28,7 +28,7 @@ import io.pivotal.android.push.util.FileHelper;
 import io.pivotal.android.push.util.GeofenceHelper;
 import io.pivotal.android.push.util.Logger;
 import io.pivotal.android.push.util.NetworkWrapper;
-import io.pivotal.android.push.util.NetworkWrapperImpl;
+import io.pivotal.android.push.util.PooledNetworkWrapper;
 import io.pivotal.android.push.util.ServiceStarter;
 import io.pivotal.android.push.util.ServiceStarterImpl;
 import io.pivotal.android.push.util.TimeProvider;
@@ -91,6 +91,8 @@ public class GeofenceService extends IntentService {
                 onReceive(intent);
             }
         } finally {
+            // Save any logged events before the wake lock is released
+            AnalyticsEventLogger.flushEvents();
             if (intent != null) {
                 GeofenceBroadcastReceiver.completeWakefulIntent(intent);
             }
@@ -144,7 +146,7 @@ public class GeofenceService extends IntentService {
 
     private void initializeDependencies(Intent intent) {
         if (apiRequest == null) {
-            final NetworkWrapper networkWrapper = new NetworkWrapperImpl();
+            final NetworkWrapper networkWrapper = new PooledNetworkWrapper();
             apiRequest = new PCFPushGetGeofenceUpdatesApiRequest(this, networkWrapper);
         }
         if (helper == null) {
@@ -3,6 +3,7 @@ package io.pivotal.android.push;
 import java.util.ArrayList;
 import java.util.List;
 
+import io.pivotal.android.push.backend.analytics.PCFPushSendAnalyticsApiRequestImpl;
 import io.pivotal.android.push.prefs.Pivotal;
 
 import static com.google.gson.internal.$Gson$Preconditions.checkArgument;
@@ -17,6 +18,8 @@ public class PushServiceInfo {
     private final Pivotal.SslCertValidationMode sslCertValidationMode;
     private final List<String> pinnedSslCertificateNames;
     private final boolean areAnalyticsEnabled;
+    private final boolean isAnalyticsCompressionEnabled;
+    private final int analyticsCompressionThresholdInBytes;
 
     /**
      * Sets up platform information used by the Pivotal CF Mobile Services Push SDK.
@@ -26,10 +29,11 @@ public class PushServiceInfo {
      * @param platformUuid The platform UUID as defined by Push Notification Service for PCF for your platform.
      * @param platformSecret The platform secret as defined by Push Notification Service for PCF for your platform.
      */
-    private PushServiceInfo(String serviceUrl, String platformUuid, String platformSecret, Pivotal.SslCertValidationMode sslCertValidationMode, List<String> pinnedSslCertificateNames, boolean areAnalyticsEnabled) {
+    private PushServiceInfo(String serviceUrl, String platformUuid, String platformSecret, Pivotal.SslCertValidationMode sslCertValidationMode, List<String> pinnedSslCertificateNames, boolean areAnalyticsEnabled, boolean isAnalyticsCompressionEnabled, int analyticsCompressionThresholdInBytes) {
         checkArgument(serviceUrl != null);
         checkArgument(platformUuid != null);
         checkArgument(platformSecret != null);
+        checkArgument(analyticsCompressionThresholdInBytes >= 0);
 
         this.serviceUrl = serviceUrl;
         this.platformUuid = platformUuid;
@@ -37,6 +41,8 @@ public class PushServiceInfo {
         this.sslCertValidationMode = sslCertValidationMode;
         this.pinnedSslCertificateNames = pinnedSslCertificateNames;
         this.areAnalyticsEnabled = areAnalyticsEnabled;
+        this.isAnalyticsCompressionEnabled = isAnalyticsCompressionEnabled;
+        this.analyticsCompressionThresholdInBytes = analyticsCompressionThresholdInBytes;
     }
 
     public String getServiceUrl() {
@@ -63,6 +69,14 @@ public class PushServiceInfo {
         return areAnalyticsEnabled;
     }
 
+    public boolean isAnalyticsCompressionEnabled() {
+        return isAnalyticsCompressionEnabled;
+    }
+
+    public int getAnalyticsCompressionThresholdInBytes() {
+        return analyticsCompressionThresholdInBytes;
+    }
+
     public static PushServiceInfoBuilder Builder() {
         return new PushServiceInfoBuilder();
     }
@@ -74,11 +88,15 @@ public class PushServiceInfo {
         private Pivotal.SslCertValidationMode sslCertValidationMode;
         private List<String> pinnedSslCertificateNames;
         private Boolean areAnalyticsEnabled;
+        private boolean isAnalyticsCompressionEnabled;
+        private int analyticsCompressionThresholdInBytes;
 
         private PushServiceInfoBuilder() {
             sslCertValidationMode = Pivotal.SslCertValidationMode.DEFAULT;
             areAnalyticsEnabled = true;
             pinnedSslCertificateNames = new ArrayList<>();
+            isAnalyticsCompressionEnabled = false;
+            analyticsCompressionThresholdInBytes = PCFPushSendAnalyticsApiRequestImpl.DEFAULT_COMPRESSION_THRESHOLD_IN_BYTES;
         }
 
         public PushServiceInfo build() {
@@ -87,7 +105,9 @@ public class PushServiceInfo {
                     platformSecret,
                     sslCertValidationMode,
                     pinnedSslCertificateNames,
-                    areAnalyticsEnabled);
+                    areAnalyticsEnabled,
+                    isAnalyticsCompressionEnabled,
+                    analyticsCompressionThresholdInBytes);
         }
 
         public PushServiceInfoBuilder setServiceUrl(final String serviceUrl) {
@@ -119,5 +139,22 @@ public class PushServiceInfo {
             this.areAnalyticsEnabled = areAnalyticsEnabled;
             return this;
         }
+
+        /**
+         * Sets whether analytics events are gzipped when they are uploaded to the PCF Push server.  Off by default.
+         * If the server responds with HTTP status 415 then the events are sent uncompressed instead.
+         */
+        public PushServiceInfoBuilder setAnalyticsCompressionEnabled(final boolean isAnalyticsCompressionEnabled) {
+            this.isAnalyticsCompressionEnabled = isAnalyticsCompressionEnabled;
+            return this;
+        }
+
+        /**
+         * Sets the minimum size of an analytics upload before it is compressed.
+         */
+        public PushServiceInfoBuilder setAnalyticsCompressionThreshold(final int analyticsCompressionThresholdInBytes) {
+            this.analyticsCompressionThresholdInBytes = analyticsCompressionThresholdInBytes;
+            return this;
+        }
     }
-}
+}
\ No newline at end of file
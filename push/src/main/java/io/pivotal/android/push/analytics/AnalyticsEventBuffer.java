@@ -0,0 +1,129 @@
+package io.pivotal.android.push.analytics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import io.pivotal.android.push.model.analytics.AnalyticsEvent;
+import io.pivotal.android.push.util.Logger;
+
+/**
+ * Holds logged analytics events in memory so that bursts of events can be saved together.  The
+ * buffered events are passed to a {@link Listener} all at once when the buffer fills up, when the
+ * oldest buffered event has waited for the maximum latency, or when {@link #flush} is called.
+ */
+public class AnalyticsEventBuffer {
+
+    public static final int DEFAULT_CAPACITY = 32;
+    public static final long DEFAULT_MAX_LATENCY_IN_MILLISECONDS = 1000L;
+
+    public interface Listener {
+        void onFlush(List<AnalyticsEvent> events);
+    }
+
+    private final AnalyticsEvent[] events;
+    private final long maxLatencyInMilliseconds;
+    private final Listener listener;
+    private final ScheduledExecutorService executor;
+    private int numberOfEvents;
+    private ScheduledFuture<?> scheduledFlush;
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    /**
+     * @param capacity the number of events held before they are flushed.  A capacity of 1 flushes every event as soon as it is added.
+     * @param maxLatencyInMilliseconds how long an event may wait in the buffer before it is flushed.  Zero means events wait
+     *                                 until the buffer fills up or is flushed explicitly.
+     * @param listener receives the flushed events
+     * @param executor used to schedule flushes after the maximum latency
+     */
+    public AnalyticsEventBuffer(int capacity, long maxLatencyInMilliseconds, Listener listener, ScheduledExecutorService executor) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        if (maxLatencyInMilliseconds < 0) {
+            throw new IllegalArgumentException("maxLatencyInMilliseconds may not be negative");
+        }
+        if (listener == null) {
+            throw new IllegalArgumentException("listener may not be null");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("executor may not be null");
+        }
+        this.events = new AnalyticsEvent[capacity];
+        this.maxLatencyInMilliseconds = maxLatencyInMilliseconds;
+        this.listener = listener;
+        this.executor = executor;
+    }
+
+    public void add(AnalyticsEvent event) {
+        if (event == null) {
+            throw new IllegalArgumentException("event may not be null");
+        }
+        final List<AnalyticsEvent> flushedEvents;
+        synchronized (this) {
+            events[numberOfEvents] = event;
+            numberOfEvents += 1;
+            if (numberOfEvents < events.length) {
+                if (numberOfEvents == 1 && maxLatencyInMilliseconds > 0) {
+                    scheduledFlush = executor.schedule(flushRunnable, maxLatencyInMilliseconds, TimeUnit.MILLISECONDS);
+                }
+                return;
+            }
+            flushedEvents = takeEvents();
+        }
+        onFlush(flushedEvents);
+    }
+
+    /**
+     * Passes all of the buffered events to the listener.  Does nothing if the buffer is empty.  The listener
+     * is called after the events are taken out of the buffer, so other threads may keep adding events meanwhile.
+     */
+    public void flush() {
+        final List<AnalyticsEvent> flushedEvents;
+        synchronized (this) {
+            flushedEvents = takeEvents();
+        }
+        if (flushedEvents != null) {
+            onFlush(flushedEvents);
+        }
+    }
+
+    // Must be called while holding the monitor.  Returns null if the buffer is empty.
+    private List<AnalyticsEvent> takeEvents() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        if (numberOfEvents == 0) {
+            return null;
+        }
+
+        final List<AnalyticsEvent> flushedEvents = new ArrayList<>(numberOfEvents);
+        for (int i = 0; i < numberOfEvents; i += 1) {
+            flushedEvents.add(events[i]);
+            events[i] = null;
+        }
+        numberOfEvents = 0;
+        return flushedEvents;
+    }
+
+    private void onFlush(List<AnalyticsEvent> flushedEvents) {
+        try {
+            listener.onFlush(flushedEvents);
+        } catch (Exception e) {
+            Logger.ex("Could not flush " + flushedEvents.size() + " analytics event(s)", e);
+        }
+    }
+
+    public synchronized int getNumberOfEvents() {
+        return numberOfEvents;
+    }
+}
@@ -1,12 +1,17 @@
 package io.pivotal.android.push.analytics;
 
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 
 import io.pivotal.android.push.prefs.PushPreferences;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 
 import io.pivotal.android.push.BuildConfig;
 import io.pivotal.android.push.analytics.jobs.EnqueueAnalyticsEventJob;
@@ -15,6 +20,7 @@ import io.pivotal.android.push.model.analytics.AnalyticsEvent;
 import io.pivotal.android.push.service.AnalyticsEventService;
 import io.pivotal.android.push.util.Logger;
 import io.pivotal.android.push.util.ServiceStarter;
+import io.pivotal.android.push.util.TimeProvider;
 
 public class AnalyticsEventLogger {
 
@@ -23,6 +29,13 @@ public class AnalyticsEventLogger {
     public static final String PCF_PUSH_EVENT_TYPE_GEOFENCE_LOCATION_TRIGGERED = "pcf_push_event_type_geofence_location_triggered";
     public static final String PCF_PUSH_EVENT_TYPE_HEARTBEAT = "pcf_push_event_type_heartbeat";
 
+    private static AnalyticsEventBuffer eventBuffer;
+    private static int eventBufferCapacity = AnalyticsEventBuffer.DEFAULT_CAPACITY;
+    private static long eventBufferMaxLatencyInMilliseconds = AnalyticsEventBuffer.DEFAULT_MAX_LATENCY_IN_MILLISECONDS;
+    private static AnalyticsSendScheduler sendScheduler;
+    private static long sendWindowInMilliseconds = AnalyticsSendScheduler.DEFAULT_SEND_WINDOW_IN_MILLISECONDS;
+    private static ScheduledExecutorService executor;
+
     private Context context;
     private ServiceStarter serviceStarter;
     private PushPreferences preferencesProvider;
@@ -50,6 +63,94 @@ public class AnalyticsEventLogger {
         this.context = context;
     }
 
+    /**
+     * Configures how logged events are buffered in memory before they are saved.  Events are saved
+     * together once the given number of events have been logged, or once the oldest unsaved event
+     * is the given age, whichever comes first.  Any events already in the buffer are flushed first.
+     *
+     * @param capacity the number of events saved together.  A capacity of 1 saves each event as soon as it is logged.
+     * @param maxLatencyInMilliseconds the longest time that an event waits in memory before it is saved.
+     */
+    public static synchronized void configureEventBuffer(int capacity, long maxLatencyInMilliseconds) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        if (maxLatencyInMilliseconds < 0) {
+            throw new IllegalArgumentException("maxLatencyInMilliseconds may not be negative");
+        }
+        flushEvents();
+        eventBufferCapacity = capacity;
+        eventBufferMaxLatencyInMilliseconds = maxLatencyInMilliseconds;
+        eventBuffer = null;
+    }
+
+    /**
+     * Saves any buffered events now.  Called when a wakeful service finishes its work, since the
+     * process may be killed once its wake lock is released.
+     */
+    public static synchronized void flushEvents() {
+        if (eventBuffer != null) {
+            eventBuffer.flush();
+        }
+    }
+
+    /**
+     * Configures how often the saved events are sent to the server.  A send is started as soon as events
+     * are saved, but any further sends are put off until the given window has passed since the last one
+     * started, and until the last one has finished.  Any events already in the buffer are flushed first.
+     *
+     * @param sendWindowInMilliseconds the shortest time between the starts of two sends.
+     */
+    public static synchronized void configureSendScheduler(long sendWindowInMilliseconds) {
+        if (sendWindowInMilliseconds < 0) {
+            throw new IllegalArgumentException("sendWindowInMilliseconds may not be negative");
+        }
+        flushEvents();
+        if (sendScheduler != null) {
+            sendScheduler.cancel();
+        }
+        AnalyticsEventLogger.sendWindowInMilliseconds = sendWindowInMilliseconds;
+        sendScheduler = null;
+        eventBuffer = null;
+    }
+
+    /**
+     * Called by the {@link AnalyticsEventService} when a {@link SendAnalyticsEventsJob} finishes so that
+     * the next coalesced send can start.
+     */
+    public static synchronized void onSendAnalyticsEventsJobComplete() {
+        if (sendScheduler != null) {
+            sendScheduler.onSendComplete();
+        }
+    }
+
+    private static synchronized AnalyticsEventBuffer getEventBuffer(Context context, ServiceStarter serviceStarter) {
+        if (eventBuffer == null) {
+            if (executor == null) {
+                executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        final Thread thread = new Thread(runnable, "AnalyticsEventLogger");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            }
+            final Context applicationContext = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+            if (sendScheduler == null) {
+                sendScheduler = new AnalyticsSendScheduler(sendWindowInMilliseconds,
+                        new SendEventsJobSender(applicationContext, serviceStarter),
+                        executor,
+                        new TimeProvider());
+            }
+            eventBuffer = new AnalyticsEventBuffer(eventBufferCapacity,
+                    eventBufferMaxLatencyInMilliseconds,
+                    new EnqueueEventsListener(applicationContext, serviceStarter, sendScheduler),
+                    executor);
+        }
+        return eventBuffer;
+    }
+
     public void logReceivedNotification(String receiptId) {
         Map<String, String> fields = new HashMap<>();
         fields.put("receiptId", receiptId);
@@ -62,6 +163,8 @@ public class AnalyticsEventLogger {
         fields.put("receiptId", receiptId);
         fields.put("deviceUuid", preferencesProvider.getPCFPushDeviceRegistrationId());
         logEvent(PCF_PUSH_EVENT_TYPE_PUSH_NOTIFICATION_OPENED, fields);
+        // Notifications are opened in the app's own components, which don't flush the buffer when they finish
+        flushEvents();
     }
 
     public void logGeofenceTriggered(String geofenceId, String locationId) {
@@ -79,11 +182,17 @@ public class AnalyticsEventLogger {
         logEvent(PCF_PUSH_EVENT_TYPE_HEARTBEAT, fields);
     }
 
+    /**
+     * Buffers an event in memory until it is saved (see {@link #configureEventBuffer}).  The
+     * FcmMessagingService and GeofenceService save their buffered events before they finish.  Events
+     * logged anywhere else may wait in memory for up to the buffer's maximum latency, and are lost if the
+     * process is killed before then.  Call {@link #flushEvents} afterwards to save them right away.
+     */
     public void logEvent(String eventType, Map<String, String> fields) {
         if (preferencesProvider.areAnalyticsEnabled()) {
             final AnalyticsEvent event = getEvent(eventType, fields);
-            enqueueAnalyticsEventJob(event);
-            enqueueSendEventsJob();
+            Logger.i("Logging analytics event: " + event);
+            getEventBuffer(context, serviceStarter).add(event);
         } else {
             Logger.w("Event not logged. Analytics is either not set up or disabled.");
         }
@@ -104,17 +213,51 @@ public class AnalyticsEventLogger {
         return event;
     }
 
-    private void enqueueAnalyticsEventJob(AnalyticsEvent event) {
-        Logger.i("Logging analytics event: " + event);
-        final EnqueueAnalyticsEventJob job = new EnqueueAnalyticsEventJob(event);
-        final Intent intent = AnalyticsEventService.getIntentToRunJob(context, job);
-        serviceStarter.startService(context, intent);
+    // Saves each batch of buffered events with a single service start and database transaction
+    private static class EnqueueEventsListener implements AnalyticsEventBuffer.Listener {
+
+        private final Context context;
+        private final ServiceStarter serviceStarter;
+        private final AnalyticsSendScheduler sendScheduler;
+
+        private EnqueueEventsListener(Context context, ServiceStarter serviceStarter, AnalyticsSendScheduler sendScheduler) {
+            this.context = context;
+            this.serviceStarter = serviceStarter;
+            this.sendScheduler = sendScheduler;
+        }
+
+        @Override
+        public void onFlush(List<AnalyticsEvent> events) {
+            enqueueAnalyticsEventJob(events);
+            sendScheduler.requestSend();
+        }
+
+        private void enqueueAnalyticsEventJob(List<AnalyticsEvent> events) {
+            Logger.i("Enqueueing " + events.size() + " analytics event(s).");
+            final EnqueueAnalyticsEventJob job = new EnqueueAnalyticsEventJob(events.toArray(new AnalyticsEvent[events.size()]));
+            final Intent intent = AnalyticsEventService.getIntentToRunJob(context, job);
+            serviceStarter.startService(context, intent);
+        }
+
     }
 
-    private void enqueueSendEventsJob() {
-        Logger.i("Enqueueing SendAnalyticsEventsJob.");
-        final SendAnalyticsEventsJob job = new SendAnalyticsEventsJob();
-        final Intent intent = AnalyticsEventService.getIntentToRunJob(context, job);
-        serviceStarter.startService(context, intent);
+    private static class SendEventsJobSender implements AnalyticsSendScheduler.Sender {
+
+        private final Context context;
+        private final ServiceStarter serviceStarter;
+
+        private SendEventsJobSender(Context context, ServiceStarter serviceStarter) {
+            this.context = context;
+            this.serviceStarter = serviceStarter;
+        }
+
+        @Override
+        public boolean send() {
+            Logger.i("Enqueueing SendAnalyticsEventsJob.");
+            final SendAnalyticsEventsJob job = new SendAnalyticsEventsJob();
+            final Intent intent = AnalyticsEventService.getIntentToRunJob(context, job);
+            final ComponentName componentName = serviceStarter.startService(context, intent);
+            return componentName != null;
+        }
     }
 }
\ No newline at end of file
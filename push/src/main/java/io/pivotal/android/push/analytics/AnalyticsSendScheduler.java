@@ -0,0 +1,143 @@
+package io.pivotal.android.push.analytics;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import io.pivotal.android.push.util.Logger;
+import io.pivotal.android.push.util.TimeProvider;
+
+/**
+ * Coalesces requests to send the saved analytics events to the server.  The first request starts a
+ * send right away.  Requests made while a send is in flight, or within the send window after the
+ * last send started, are combined into a single send once the window has passed.  At most one send
+ * is in flight at a time, and no send is started unless events were saved since the last one.
+ */
+public class AnalyticsSendScheduler {
+
+    public static final long DEFAULT_SEND_WINDOW_IN_MILLISECONDS = 60000L;
+
+    public interface Sender {
+
+        /**
+         * Starts sending the saved events.
+         *
+         * @return true if the send was started.  {@link #onSendComplete} must be called once it finishes.
+         */
+        boolean send();
+    }
+
+    private final long sendWindowInMilliseconds;
+    private final Sender sender;
+    private final ScheduledExecutorService executor;
+    private final TimeProvider timeProvider;
+    private boolean isDirty;
+    private boolean isSendInFlight;
+    private boolean isCancelled;
+    private long nextSendTime;
+    private ScheduledFuture<?> pendingSend;
+
+    private final Runnable sendRunnable = new Runnable() {
+        @Override
+        public void run() {
+            sendPendingEvents();
+        }
+    };
+
+    /**
+     * @param sendWindowInMilliseconds the shortest time between the starts of two sends.  Zero means sends are only
+     *                                 coalesced while another send is in flight.
+     * @param sender starts each send
+     * @param executor used to start sends that have been put off until the end of the window
+     * @param timeProvider the clock used to measure the window
+     */
+    public AnalyticsSendScheduler(long sendWindowInMilliseconds, Sender sender, ScheduledExecutorService executor, TimeProvider timeProvider) {
+        if (sendWindowInMilliseconds < 0) {
+            throw new IllegalArgumentException("sendWindowInMilliseconds may not be negative");
+        }
+        if (sender == null) {
+            throw new IllegalArgumentException("sender may not be null");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("executor may not be null");
+        }
+        if (timeProvider == null) {
+            throw new IllegalArgumentException("timeProvider may not be null");
+        }
+        this.sendWindowInMilliseconds = sendWindowInMilliseconds;
+        this.sender = sender;
+        this.executor = executor;
+        this.timeProvider = timeProvider;
+    }
+
+    /**
+     * Called after events have been saved.  Starts a send now or schedules one for later.
+     */
+    public synchronized void requestSend() {
+        isDirty = true;
+        scheduleSend();
+    }
+
+    /**
+     * Called when a send finishes, whether or not it succeeded.  Starts the next send if events were saved
+     * while it was in flight.
+     */
+    public synchronized void onSendComplete() {
+        isSendInFlight = false;
+        scheduleSend();
+    }
+
+    /**
+     * Stops any scheduled send from starting.  The scheduler does nothing once it has been cancelled.
+     */
+    public synchronized void cancel() {
+        isCancelled = true;
+        if (pendingSend != null) {
+            pendingSend.cancel(false);
+            pendingSend = null;
+        }
+    }
+
+    public synchronized boolean isSendPending() {
+        return pendingSend != null;
+    }
+
+    public synchronized boolean isSendInFlight() {
+        return isSendInFlight;
+    }
+
+    private void scheduleSend() {
+        if (isCancelled || !isDirty || isSendInFlight || pendingSend != null) {
+            return;
+        }
+        final long delay = nextSendTime - timeProvider.currentTimeMillis();
+        if (delay > 0) {
+            Logger.fd("Sending analytics events in %d ms.", delay);
+            pendingSend = executor.schedule(sendRunnable, delay, TimeUnit.MILLISECONDS);
+        } else {
+            send();
+        }
+    }
+
+    private synchronized void sendPendingEvents() {
+        pendingSend = null;
+        if (!isCancelled && isDirty && !isSendInFlight) {
+            send();
+        }
+    }
+
+    private void send() {
+        isDirty = false;
+        nextSendTime = timeProvider.currentTimeMillis() + sendWindowInMilliseconds;
+        try {
+            isSendInFlight = sender.send();
+        } catch (Exception e) {
+            Logger.ex("Could not start sending analytics events", e);
+            isSendInFlight = false;
+        }
+        if (!isSendInFlight) {
+            // The events are still waiting to be sent
+            isDirty = true;
+        }
+    }
+}
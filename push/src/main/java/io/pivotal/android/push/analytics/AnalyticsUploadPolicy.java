@@ -0,0 +1,255 @@
+package io.pivotal.android.push.analytics;
+
+import java.util.Date;
+import java.util.Random;
+
+import io.pivotal.android.push.database.EventQueueStatistics;
+import io.pivotal.android.push.util.RetryPolicy;
+import io.pivotal.android.push.util.TimeProvider;
+
+/**
+ * Decides when the saved analytics events should be sent to the server.  Events are sent once enough
+ * of them have been saved, or once the oldest one has waited long enough.  Nothing is sent while the
+ * device is offline, or while earlier sends are backing off after failing.  A large backlog waits for
+ * an unmetered network or for the device to be charging, unless its oldest event has already waited
+ * too long.
+ *
+ * Only uses the given clock and device conditions, so it can be run without a device.  The failure
+ * count is kept in memory, and starts again at zero when the process is restarted.
+ */
+public class AnalyticsUploadPolicy {
+
+    public static final int DEFAULT_FLUSH_EVENT_COUNT = 100;
+    public static final long DEFAULT_MAX_PENDING_AGE_IN_MILLISECONDS = 60 * 60 * 1000L; // 1 hour
+    public static final int DEFAULT_LARGE_BACKLOG_EVENT_COUNT = 1000;
+    public static final long DEFAULT_MAX_LARGE_BACKLOG_AGE_IN_MILLISECONDS = 6 * 60 * 60 * 1000L; // 6 hours
+    public static final long DEFAULT_RECHECK_INTERVAL_IN_MILLISECONDS = 15 * 60 * 1000L; // 15 minutes
+    public static final long DEFAULT_BASE_BACKOFF_IN_MILLISECONDS = 60 * 1000L; // 1 minute
+    public static final long DEFAULT_MAX_BACKOFF_IN_MILLISECONDS = 3 * 60 * 60 * 1000L; // 3 hours
+
+    /**
+     * The state of the device that the policy depends on.
+     */
+    public interface DeviceConditions {
+
+        boolean isNetworkAvailable();
+
+        /**
+         * @return true if the active network is not metered (e.g.: Wi-Fi)
+         */
+        boolean isNetworkUnmetered();
+
+        boolean isCharging();
+    }
+
+    /**
+     * What to do with the saved events.
+     */
+    public static class Decision {
+
+        private final boolean shouldSendNow;
+        private final long delayInMilliseconds;
+        private final boolean shouldWakeDevice;
+        private final String reason;
+
+        private Decision(boolean shouldSendNow, long delayInMilliseconds, String reason) {
+            this(shouldSendNow, delayInMilliseconds, true, reason);
+        }
+
+        private Decision(boolean shouldSendNow, long delayInMilliseconds, boolean shouldWakeDevice, String reason) {
+            this.shouldSendNow = shouldSendNow;
+            this.delayInMilliseconds = delayInMilliseconds;
+            this.shouldWakeDevice = shouldWakeDevice;
+            this.reason = reason;
+        }
+
+        public boolean shouldSendNow() {
+            return shouldSendNow;
+        }
+
+        /**
+         * @return true if there are no events waiting to be sent
+         */
+        public boolean isIdle() {
+            return !shouldSendNow && delayInMilliseconds < 0;
+        }
+
+        /**
+         * @return how long to wait before asking again, if the events should not be sent now and there are events waiting
+         */
+        public long getDelayInMilliseconds() {
+            return delayInMilliseconds;
+        }
+
+        /**
+         * @return true if the device should be woken up to ask again after the delay (e.g.: when backing off, or when
+         *         the oldest event will have waited too long).  False if asking again can wait until the device is
+         *         awake anyway (e.g.: while offline).
+         */
+        public boolean shouldWakeDevice() {
+            return shouldWakeDevice;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            if (shouldSendNow) {
+                return "send now (" + reason + ")";
+            } else if (isIdle()) {
+                return "idle (" + reason + ")";
+            } else {
+                return "wait " + delayInMilliseconds + " ms" + (shouldWakeDevice ? "" : " without waking the device") + " (" + reason + ")";
+            }
+        }
+    }
+
+    private final TimeProvider timeProvider;
+    private final DeviceConditions deviceConditions;
+    private final int flushEventCount;
+    private final long maxPendingAgeInMilliseconds;
+    private final int largeBacklogEventCount;
+    private final long maxLargeBacklogAgeInMilliseconds;
+    private final long recheckIntervalInMilliseconds;
+    private final RetryPolicy backoffPolicy;
+    private int numberOfConsecutiveFailures;
+    private long nextAttemptTime;
+
+    public AnalyticsUploadPolicy(TimeProvider timeProvider, DeviceConditions deviceConditions) {
+        this(timeProvider,
+                deviceConditions,
+                DEFAULT_FLUSH_EVENT_COUNT,
+                DEFAULT_MAX_PENDING_AGE_IN_MILLISECONDS,
+                DEFAULT_LARGE_BACKLOG_EVENT_COUNT,
+                DEFAULT_MAX_LARGE_BACKLOG_AGE_IN_MILLISECONDS,
+                DEFAULT_RECHECK_INTERVAL_IN_MILLISECONDS,
+                new RetryPolicy(Integer.MAX_VALUE, DEFAULT_BASE_BACKOFF_IN_MILLISECONDS, DEFAULT_MAX_BACKOFF_IN_MILLISECONDS, new Random()));
+    }
+
+    /**
+     * @param timeProvider the clock compared to the times of the saved events
+     * @param deviceConditions the network and power state of the device
+     * @param flushEventCount the events are sent once at least this many are waiting.  Must be positive.
+     * @param maxPendingAgeInMilliseconds the events are sent once the oldest one has waited this long.
+     * @param largeBacklogEventCount backlogs of at least this many events wait for an unmetered network or for charging.  Must be positive.
+     * @param maxLargeBacklogAgeInMilliseconds a large backlog is sent anyway once its oldest event has waited this long.
+     * @param recheckIntervalInMilliseconds how long to wait before asking again while offline or waiting for better conditions.  Must be positive.
+     * @param backoffPolicy how long to wait after a failed send.  Only the backoff delays are used.
+     */
+    public AnalyticsUploadPolicy(TimeProvider timeProvider,
+                                 DeviceConditions deviceConditions,
+                                 int flushEventCount,
+                                 long maxPendingAgeInMilliseconds,
+                                 int largeBacklogEventCount,
+                                 long maxLargeBacklogAgeInMilliseconds,
+                                 long recheckIntervalInMilliseconds,
+                                 RetryPolicy backoffPolicy) {
+
+        if (timeProvider == null) {
+            throw new IllegalArgumentException("timeProvider may not be null");
+        }
+        if (deviceConditions == null) {
+            throw new IllegalArgumentException("deviceConditions may not be null");
+        }
+        if (flushEventCount <= 0) {
+            throw new IllegalArgumentException("flushEventCount must be positive");
+        }
+        if (maxPendingAgeInMilliseconds < 0) {
+            throw new IllegalArgumentException("maxPendingAgeInMilliseconds may not be negative");
+        }
+        if (largeBacklogEventCount <= 0) {
+            throw new IllegalArgumentException("largeBacklogEventCount must be positive");
+        }
+        if (maxLargeBacklogAgeInMilliseconds < 0) {
+            throw new IllegalArgumentException("maxLargeBacklogAgeInMilliseconds may not be negative");
+        }
+        if (recheckIntervalInMilliseconds <= 0) {
+            throw new IllegalArgumentException("recheckIntervalInMilliseconds must be positive");
+        }
+        if (backoffPolicy == null) {
+            throw new IllegalArgumentException("backoffPolicy may not be null");
+        }
+        this.timeProvider = timeProvider;
+        this.deviceConditions = deviceConditions;
+        this.flushEventCount = flushEventCount;
+        this.maxPendingAgeInMilliseconds = maxPendingAgeInMilliseconds;
+        this.largeBacklogEventCount = largeBacklogEventCount;
+        this.maxLargeBacklogAgeInMilliseconds = maxLargeBacklogAgeInMilliseconds;
+        this.recheckIntervalInMilliseconds = recheckIntervalInMilliseconds;
+        this.backoffPolicy = backoffPolicy;
+    }
+
+    /**
+     * @param statistics the events waiting in the backing store
+     */
+    public synchronized Decision decide(EventQueueStatistics statistics) {
+        if (statistics == null) {
+            throw new IllegalArgumentException("statistics may not be null");
+        }
+
+        final int numberOfPendingEvents = statistics.getNumberOfPendingEvents();
+        if (numberOfPendingEvents <= 0) {
+            return new Decision(false, -1, "no events waiting");
+        }
+
+        final long now = timeProvider.currentTimeMillis();
+        if (numberOfConsecutiveFailures > 0 && now < nextAttemptTime) {
+            return new Decision(false, nextAttemptTime - now, "backing off after " + numberOfConsecutiveFailures + " failure(s)");
+        }
+
+        // Nothing can be sent until the device is back online, so there is no reason to wake it up to check
+        if (!deviceConditions.isNetworkAvailable()) {
+            return new Decision(false, recheckIntervalInMilliseconds, false, "offline");
+        }
+
+        final long age = getAge(statistics.getOldestPendingEventTime(), now);
+
+        if (numberOfPendingEvents >= largeBacklogEventCount && age < maxLargeBacklogAgeInMilliseconds) {
+            if (!deviceConditions.isNetworkUnmetered() && !deviceConditions.isCharging()) {
+                // The device is only woken up if the backlog will have waited too long by then
+                final long timeUntilTooOld = maxLargeBacklogAgeInMilliseconds - age;
+                final long delay = Math.min(recheckIntervalInMilliseconds, timeUntilTooOld);
+                return new Decision(false, delay, delay == timeUntilTooOld, "waiting for an unmetered network or charging to send " + numberOfPendingEvents + " events");
+            }
+        }
+
+        if (numberOfPendingEvents >= flushEventCount) {
+            return new Decision(true, 0, numberOfPendingEvents + " events waiting");
+        }
+        if (age >= maxPendingAgeInMilliseconds) {
+            return new Decision(true, 0, "oldest event waited " + age + " ms");
+        }
+        return new Decision(false, maxPendingAgeInMilliseconds - age, numberOfPendingEvents + " events waiting");
+    }
+
+    public synchronized void onSendSucceeded() {
+        numberOfConsecutiveFailures = 0;
+        nextAttemptTime = 0;
+    }
+
+    /**
+     * @return how long to wait before trying again
+     */
+    public synchronized long onSendFailed() {
+        if (numberOfConsecutiveFailures < Integer.MAX_VALUE) {
+            numberOfConsecutiveFailures += 1;
+        }
+        final long delay = Math.max(backoffPolicy.getBackoffDelay(numberOfConsecutiveFailures), 1);
+        nextAttemptTime = timeProvider.currentTimeMillis() + delay;
+        return delay;
+    }
+
+    public synchronized int getNumberOfConsecutiveFailures() {
+        return numberOfConsecutiveFailures;
+    }
+
+    // Events without a time are treated as old enough to send
+    private long getAge(Date oldestPendingEventTime, long now) {
+        if (oldestPendingEventTime == null) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, now - oldestPendingEventTime.getTime());
+    }
+}
@@ -0,0 +1,40 @@
+package io.pivotal.android.push.analytics;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+
+import io.pivotal.android.push.util.NetworkUtil;
+
+public class DeviceConditionsImpl implements AnalyticsUploadPolicy.DeviceConditions {
+
+    private final Context context;
+
+    public DeviceConditionsImpl(Context context) {
+        if (context == null) {
+            throw new IllegalArgumentException("context may not be null");
+        }
+        this.context = context;
+    }
+
+    @Override
+    public boolean isNetworkAvailable() {
+        return NetworkUtil.getInstance(context).isNetworkAvailable();
+    }
+
+    @Override
+    public boolean isNetworkUnmetered() {
+        return NetworkUtil.getInstance(context).isNetworkUnmetered();
+    }
+
+    // Reads the sticky battery broadcast, so no receiver is registered
+    @Override
+    public boolean isCharging() {
+        final Intent batteryStatus = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (batteryStatus == null) {
+            return false;
+        }
+        return batteryStatus.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+    }
+}
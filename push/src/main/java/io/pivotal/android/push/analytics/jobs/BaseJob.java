@@ -5,6 +5,11 @@ import android.os.Parcelable;
 
 public abstract class BaseJob implements Job, Parcelable {
 
+    // Jobs waiting to run with lower priority values are run first
+    public static final int PRIORITY_HIGH = 0;
+    public static final int PRIORITY_NORMAL = 1;
+    public static final int PRIORITY_LOW = 2;
+
     public BaseJob() {
     }
 
@@ -12,6 +17,23 @@ public abstract class BaseJob implements Job, Parcelable {
         jobParams.listener.onJobComplete(resultCode);
     }
 
+    /**
+     * @return the priority of this job.  Jobs with the same priority are run in the order they were started.
+     */
+    public int getPriority() {
+        return PRIORITY_NORMAL;
+    }
+
+    /**
+     * Combines this job with a job of the same priority that is still waiting to run.
+     *
+     * @param pendingJob the job that is waiting to run
+     * @return the job to run in place of both jobs, or null if the jobs can not be combined
+     */
+    public BaseJob coalesceWith(BaseJob pendingJob) {
+        return null;
+    }
+
     // Parcelable stuff
 
     protected BaseJob(Parcel in) {
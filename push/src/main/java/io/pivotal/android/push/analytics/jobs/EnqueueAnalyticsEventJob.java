@@ -3,6 +3,9 @@ package io.pivotal.android.push.analytics.jobs;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import java.util.Arrays;
+import java.util.List;
+
 import io.pivotal.android.push.model.analytics.AnalyticsEvent;
 import io.pivotal.android.push.util.Logger;
 
@@ -10,41 +13,52 @@ public class EnqueueAnalyticsEventJob extends BaseJob {
 
     public static final int RESULT_COULD_NOT_SAVE_EVENT_TO_STORAGE = 200;
 
-    private AnalyticsEvent event;
+    private AnalyticsEvent[] events;
 
-    public EnqueueAnalyticsEventJob(AnalyticsEvent event) {
+    public EnqueueAnalyticsEventJob(AnalyticsEvent... events) {
         super();
-        verifyArguments(event);
-        saveArguments(event);
+        verifyArguments(events);
+        saveArguments(events);
     }
 
-    private void verifyArguments(AnalyticsEvent event) {
-        if (event == null) {
-            throw new IllegalArgumentException("event may not be null");
+    private void verifyArguments(AnalyticsEvent[] events) {
+        if (events == null || events.length == 0) {
+            throw new IllegalArgumentException("events may not be null or empty");
+        }
+        for (final AnalyticsEvent event : events) {
+            if (event == null) {
+                throw new IllegalArgumentException("event may not be null");
+            }
         }
     }
 
-    private void saveArguments(AnalyticsEvent event) {
-        this.event = event;
+    private void saveArguments(AnalyticsEvent[] events) {
+        this.events = events;
     }
 
     public AnalyticsEvent getEvent() {
-        return this.event;
+        return this.events[0];
+    }
+
+    public List<AnalyticsEvent> getEvents() {
+        return Arrays.asList(this.events);
     }
 
     @Override
     public void run(final JobParams jobParams) {
-        if (saveEvent(jobParams)) {
+        if (saveEvents(jobParams)) {
             sendJobResult(JobResultListener.RESULT_SUCCESS, jobParams);
         } else {
             sendJobResult(EnqueueAnalyticsEventJob.RESULT_COULD_NOT_SAVE_EVENT_TO_STORAGE, jobParams);
         }
     }
 
-    private boolean saveEvent(JobParams jobParams) {
-        if (jobParams.eventsStorage.saveEvent(event) != null) {
-            Logger.fd("EnqueueEventJob: Enqueuing event with type '%s'. There are now %d events queued to send to the server.",
-                    event.getEventType(),
+    // All of the events are saved in a single transaction
+    private boolean saveEvents(JobParams jobParams) {
+        if (jobParams.eventsStorage.saveEvents(getEvents()) != null) {
+            Logger.fd("EnqueueEventJob: Enqueuing %d event(s) with type '%s'. There are now %d events queued to send to the server.",
+                    events.length,
+                    events[0].getEventType(),
                     jobParams.eventsStorage.getNumberOfEvents());
             return true;
         } else {
@@ -52,6 +66,23 @@ public class EnqueueAnalyticsEventJob extends BaseJob {
         }
     }
 
+    @Override
+    public int getPriority() {
+        return PRIORITY_HIGH;
+    }
+
+    // Saves the events of both jobs in a single transaction, after the events of the pending job
+    @Override
+    public BaseJob coalesceWith(BaseJob pendingJob) {
+        if (!(pendingJob instanceof EnqueueAnalyticsEventJob)) {
+            return null;
+        }
+        final AnalyticsEvent[] pendingEvents = ((EnqueueAnalyticsEventJob) pendingJob).events;
+        final AnalyticsEvent[] allEvents = Arrays.copyOf(pendingEvents, pendingEvents.length + events.length);
+        System.arraycopy(events, 0, allEvents, pendingEvents.length, events.length);
+        return new EnqueueAnalyticsEventJob(allEvents);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (o == null) {
@@ -64,17 +95,7 @@ public class EnqueueAnalyticsEventJob extends BaseJob {
 
         final EnqueueAnalyticsEventJob otherJob = (EnqueueAnalyticsEventJob) o;
 
-        if (event == null && otherJob.event != null) {
-            return false;
-        }
-        if (event != null && otherJob.event == null) {
-            return false;
-        }
-        if (event != null && otherJob.event != null && !event.equals(otherJob.event)) {
-            return false;
-        }
-
-        return true;
+        return Arrays.equals(events, otherJob.events);
     }
 
     // Parcelable stuff
@@ -92,16 +113,12 @@ public class EnqueueAnalyticsEventJob extends BaseJob {
 
     private EnqueueAnalyticsEventJob(Parcel in) {
         super(in);
-        event = readEventFromParcel(in);
-    }
-
-    private AnalyticsEvent readEventFromParcel(Parcel parcel) {
-        return parcel.readParcelable(AnalyticsEvent.class.getClassLoader());
+        events = in.createTypedArray(AnalyticsEvent.CREATOR);
     }
 
     @Override
     public void writeToParcel(Parcel out, int flags) {
         super.writeToParcel(out, flags);
-        out.writeParcelable(event, flags);
+        out.writeTypedArray(events, flags);
     }
 }
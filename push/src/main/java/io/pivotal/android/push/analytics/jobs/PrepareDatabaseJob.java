@@ -1,12 +1,10 @@
 package io.pivotal.android.push.analytics.jobs;
 
 import android.content.Intent;
-import android.net.Uri;
 import android.os.Parcel;
 import android.os.Parcelable;
 
-import java.util.List;
-
+import io.pivotal.android.push.database.EventQueueStatistics;
 import io.pivotal.android.push.model.analytics.AnalyticsEvent;
 import io.pivotal.android.push.service.AnalyticsEventService;
 import io.pivotal.android.push.util.Logger;
@@ -39,31 +37,26 @@ public class PrepareDatabaseJob extends BaseJob {
     }
 
     private int fixEventsWithStatus(int status, JobParams jobParams) {
-        final List<Uri> uris = jobParams.eventsStorage.getEventUrisWithStatus(status);
-        if (uris.size() > 0) {
-            for (final Uri uri : uris) {
-                jobParams.eventsStorage.setEventStatus(uri, AnalyticsEvent.Status.NOT_POSTED);
-            }
-            Logger.fd("PrepareDatabaseJob: set %d '%s' events to status '%s'", uris.size(), AnalyticsEvent.statusString(status), AnalyticsEvent.statusString(AnalyticsEvent.Status.NOT_POSTED));
+        final int numberOfEvents = jobParams.eventsStorage.updateStatus(new int[] { status }, AnalyticsEvent.Status.NOT_POSTED, Long.MAX_VALUE);
+        if (numberOfEvents > 0) {
+            Logger.fd("PrepareDatabaseJob: set %d '%s' events to status '%s'", numberOfEvents, AnalyticsEvent.statusString(status), AnalyticsEvent.statusString(AnalyticsEvent.Status.NOT_POSTED));
         }
-        return uris.size();
+        return Math.max(numberOfEvents, 0);
     }
 
     private int deleteEventsWithStatus(int status, JobParams jobParams) {
-        final List<Uri> uris = jobParams.eventsStorage.getEventUrisWithStatus(status);
-        jobParams.eventsStorage.deleteEvents(uris);
-        if (uris.size() > 0) {
-            Logger.fd("PrepareDatabaseJob: deleted %d events with status '%s'", uris.size(), AnalyticsEvent.statusString(status));
+        final int numberOfEvents = jobParams.eventsStorage.deleteEvents(new int[] { status }, Long.MAX_VALUE);
+        if (numberOfEvents > 0) {
+            Logger.fd("PrepareDatabaseJob: deleted %d events with status '%s'", numberOfEvents, AnalyticsEvent.statusString(status));
         }
-        return uris.size();
+        return Math.max(numberOfEvents, 0);
     }
 
     private void sendEventsIfRequired(JobParams jobParams) {
-        int numberOfPendingMessageReceipts = 0;
-        numberOfPendingMessageReceipts += jobParams.eventsStorage.getEventUrisWithStatus(AnalyticsEvent.Status.NOT_POSTED).size();
-        numberOfPendingMessageReceipts += jobParams.eventsStorage.getEventUrisWithStatus(AnalyticsEvent.Status.POSTING_ERROR).size();
+        final EventQueueStatistics statistics = jobParams.eventsStorage.getQueueStatistics();
+        final int numberOfPendingMessageReceipts = statistics.getNumberOfPendingEvents();
         if (numberOfPendingMessageReceipts > 0) {
-            Logger.fd("PrepareDatabaseJob: There are %d events(s) queued for sending. Enqueueing SendAnalyticsEventsJob.", numberOfPendingMessageReceipts);
+            Logger.fd("PrepareDatabaseJob: There are %d events(s) queued for sending, the oldest from %s. Enqueueing SendAnalyticsEventsJob.", numberOfPendingMessageReceipts, statistics.getOldestPendingEventTime());
             enqueueSendEventsJob(jobParams);
         } else {
             Logger.d("PrepareDatabaseJob: There are no events queued for sending. Disabling alarm.");
@@ -77,6 +70,16 @@ public class PrepareDatabaseJob extends BaseJob {
         jobParams.serviceStarter.startService(jobParams.context, intent);
     }
 
+    @Override
+    public int getPriority() {
+        return PRIORITY_LOW;
+    }
+
+    @Override
+    public BaseJob coalesceWith(BaseJob pendingJob) {
+        return equals(pendingJob) ? pendingJob : null;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (o == null) {
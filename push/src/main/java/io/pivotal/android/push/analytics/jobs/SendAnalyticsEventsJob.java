@@ -1,14 +1,23 @@
 package io.pivotal.android.push.analytics.jobs;
 
+import android.content.ContentUris;
 import android.net.Uri;
 import android.os.Parcel;
 import android.os.Parcelable;
+import android.os.SystemClock;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
+import io.pivotal.android.push.analytics.AnalyticsUploadPolicy;
 import io.pivotal.android.push.backend.analytics.PCFPushSendAnalyticsApiRequest;
 import io.pivotal.android.push.backend.analytics.PCFPushSendAnalyticsListener;
+import io.pivotal.android.push.database.AnalyticsEventsHandler;
+import io.pivotal.android.push.database.EventIdRange;
 import io.pivotal.android.push.model.analytics.AnalyticsEvent;
 import io.pivotal.android.push.util.Logger;
 
@@ -16,52 +25,281 @@ public class SendAnalyticsEventsJob extends BaseJob {
 
     public static final int RESULT_NO_WORK_TO_DO = 100;
     public static final int RESULT_FAILED_TO_SEND_RECEIPTS = 101;
+    public static final int RESULT_DEFERRED = 102;
+
+    public static final int DEFAULT_MAX_EVENTS_PER_BATCH = 100;
+    public static final long DEFAULT_MAX_BYTES_PER_BATCH = 64 * 1024;
+
+    private static final int[] UNPOSTED_STATUSES = new int[] { AnalyticsEvent.Status.NOT_POSTED, AnalyticsEvent.Status.POSTING_ERROR };
+
+    private static int maxEventsPerBatch = DEFAULT_MAX_EVENTS_PER_BATCH;
+    private static long maxBytesPerBatch = DEFAULT_MAX_BYTES_PER_BATCH;
+    private static BatchListener batchListener;
+    private static AnalyticsUploadPolicy uploadPolicy;
+
+    /**
+     * Reports the result of each batch of events sent to the server.
+     */
+    public interface BatchListener {
+
+        /**
+         * @param numberOfEvents the number of events in the batch
+         * @param approximateBytes roughly the size of the events in the batch, once serialized
+         * @param latencyInMilliseconds the time taken to send the batch and receive the response
+         * @param isSuccessful true if the server accepted the batch
+         */
+        void onBatchSent(int numberOfEvents, long approximateBytes, long latencyInMilliseconds, boolean isSuccessful);
+    }
+
+    // The events in a batch are sent in one request and deleted together once the server accepts them.  A batch
+    // gets its ID just before it is first sent, and keeps it until it has been accepted.
+    private static class Batch {
+        private final List<Uri> uris = new ArrayList<>();
+        private String batchId;
+        private long approximateBytes;
+        private List<EventIdRange> idRanges;
+
+        private Batch(String batchId) {
+            this.batchId = batchId;
+        }
+
+        private void add(Uri uri, int size) {
+            uris.add(uri);
+            approximateBytes += size;
+        }
+
+        private int size() {
+            return uris.size();
+        }
+
+        // Events that were saved one after another share a range, so the batch can be updated and deleted with a few statements
+        private List<EventIdRange> getIdRanges() {
+            if (idRanges == null) {
+                final long[] ids = new long[uris.size()];
+                int i = 0;
+                for (final Uri uri : uris) {
+                    ids[i++] = ContentUris.parseId(uri);
+                }
+                idRanges = EventIdRange.fromIds(ids);
+            }
+            return idRanges;
+        }
+    }
 
     public SendAnalyticsEventsJob() {
         super();
     }
 
+    /**
+     * Sets the limits on each batch of events sent to the server.  Unsent events are split into
+     * batches that are sent one after another.  A single event larger than maxBytesPerBatch is
+     * sent in a batch by itself.
+     *
+     * @param maxEventsPerBatch the largest number of events in one request
+     * @param maxBytesPerBatch roughly the largest size of the events in one request, before any compression
+     */
+    public static synchronized void configureBatches(int maxEventsPerBatch, long maxBytesPerBatch) {
+        if (maxEventsPerBatch <= 0) {
+            throw new IllegalArgumentException("maxEventsPerBatch must be positive");
+        }
+        if (maxBytesPerBatch <= 0) {
+            throw new IllegalArgumentException("maxBytesPerBatch must be positive");
+        }
+        SendAnalyticsEventsJob.maxEventsPerBatch = maxEventsPerBatch;
+        SendAnalyticsEventsJob.maxBytesPerBatch = maxBytesPerBatch;
+    }
+
+    /**
+     * @param listener notified after each batch is sent.  May be null.
+     */
+    public static synchronized void setBatchListener(BatchListener listener) {
+        batchListener = listener;
+    }
+
+    private static synchronized BatchListener getBatchListener() {
+        return batchListener;
+    }
+
+    /**
+     * @param policy decides whether the events are sent when the job runs, and when to try again.  If null then the
+     *               events are always sent, and a repeating alarm tries again after a failure.
+     */
+    public static synchronized void setUploadPolicy(AnalyticsUploadPolicy policy) {
+        uploadPolicy = policy;
+    }
+
+    public static synchronized AnalyticsUploadPolicy getUploadPolicy() {
+        return uploadPolicy;
+    }
+
     @Override
     public void run(JobParams jobParams) {
 
-        final List<Uri> uris = getUnpostedEvents(jobParams);
-        Logger.fd("SendAnalyticsEventsJob: package %s: events available to send: %d", getPackageName(jobParams), uris.size());
+        final AnalyticsUploadPolicy policy = getUploadPolicy();
+        if (policy != null && !shouldSendNow(jobParams, policy)) {
+            return;
+        }
+
+        final List<Batch> batches;
+        try {
+            batches = getBatches(jobParams);
+        } catch (IOException e) {
+            Logger.ex("SendAnalyticsEventsJob: could not read events to send", e);
+            scheduleRetry(jobParams);
+            sendJobResult(RESULT_FAILED_TO_SEND_RECEIPTS, jobParams);
+            return;
+        }
 
-        if (uris.size() > 0) {
-            setStatusForEvents(jobParams, uris, AnalyticsEvent.Status.POSTING);
-            sendEvents(jobParams, uris);
+        if (batches.size() > 0) {
+            sendBatches(jobParams, batches);
         } else {
+            Logger.fd("SendAnalyticsEventsJob: package %s: events available to send: 0", getPackageName(jobParams));
+            jobParams.alarmProvider.disableAlarm();
+            sendJobResult(RESULT_NO_WORK_TO_DO, jobParams);
+        }
+    }
+
+    // Sends the job result if the events are not sent now
+    private boolean shouldSendNow(JobParams jobParams, AnalyticsUploadPolicy policy) {
+        final AnalyticsUploadPolicy.Decision decision = policy.decide(jobParams.eventsStorage.getQueueStatistics());
+        Logger.fd("SendAnalyticsEventsJob: package %s: upload policy: %s", getPackageName(jobParams), decision);
+        if (decision.shouldSendNow()) {
+            return true;
+        }
+        if (decision.isIdle()) {
             jobParams.alarmProvider.disableAlarm();
             sendJobResult(RESULT_NO_WORK_TO_DO, jobParams);
+        } else {
+            jobParams.alarmProvider.scheduleAlarm(decision.getDelayInMilliseconds(), decision.shouldWakeDevice());
+            sendJobResult(RESULT_DEFERRED, jobParams);
+        }
+        return false;
+    }
+
+    private void scheduleRetry(JobParams jobParams) {
+        final AnalyticsUploadPolicy policy = getUploadPolicy();
+        if (policy != null) {
+            jobParams.alarmProvider.scheduleAlarm(policy.onSendFailed());
+        } else {
+            jobParams.alarmProvider.enableAlarmIfDisabled();
         }
     }
 
-    private void setStatusForEvents(JobParams jobParams, List<Uri> uris, int status) {
-        for (final Uri uri : uris) {
-            jobParams.eventsStorage.setEventStatus(uri, status);
+    // Events that were already sent in a batch that failed are sent again in the same batch, so that the server
+    // can recognize it.  The other events are split into new batches in ID order.
+    private List<Batch> getBatches(JobParams jobParams) throws IOException {
+        final int maxEvents;
+        final long maxBytes;
+        synchronized (SendAnalyticsEventsJob.class) {
+            maxEvents = maxEventsPerBatch;
+            maxBytes = maxBytesPerBatch;
         }
+
+        final List<Batch> batches = new ArrayList<>();
+        final Map<String, Batch> failedBatches = new HashMap<>();
+        final Batch[] newBatch = new Batch[1];
+        final int[] numberOfEvents = new int[1];
+        jobParams.eventsStorage.streamEventsWithStatuses(new AnalyticsEventsHandler() {
+
+            @Override
+            public void onEvent(Uri uri, AnalyticsEvent event) {
+                final int size = event.getApproximateSerializedSize();
+                Batch batch;
+                if (event.getBatchId() != null) {
+                    batch = failedBatches.get(event.getBatchId());
+                    if (batch == null) {
+                        batch = new Batch(event.getBatchId());
+                        failedBatches.put(event.getBatchId(), batch);
+                        batches.add(batch);
+                    }
+                } else {
+                    batch = newBatch[0];
+                    if (batch == null || batch.size() >= maxEvents || batch.approximateBytes + size > maxBytes) {
+                        batch = new Batch(null);
+                        newBatch[0] = batch;
+                        batches.add(batch);
+                    }
+                }
+                batch.add(uri, size);
+                numberOfEvents[0] += 1;
+            }
+        }, UNPOSTED_STATUSES);
+
+        if (numberOfEvents[0] > 0) {
+            Logger.fd("SendAnalyticsEventsJob: package %s: events available to send: %d in %d batch(es)", getPackageName(jobParams), numberOfEvents[0], batches.size());
+        }
+        return batches;
     }
 
-    private void sendEvents(final JobParams jobParams, final List<Uri> uris) {
+    // Only the events in the batch are in its ranges, so events saved after the batches were made are not affected
+    private void setStatusForEvents(JobParams jobParams, Batch batch, int toStatus) {
+        int numberOfEvents = 0;
+        for (final EventIdRange idRange : batch.getIdRanges()) {
+            numberOfEvents += Math.max(0, jobParams.eventsStorage.updateStatus(idRange, toStatus));
+        }
+        Logger.fd("SendAnalyticsEventsJob: set %d events to status '%s'", numberOfEvents, AnalyticsEvent.statusString(toStatus));
+    }
 
+    // Each batch is sent once the previous one has been accepted.  A failed batch leaves the later ones unsent,
+    // but the events in the batches before it have already been deleted.
+    private void sendBatches(JobParams jobParams, List<Batch> batches) {
+        for (int index = 0; index < batches.size(); index += 1) {
+            if (!sendBatch(jobParams, batches, index)) {
+                scheduleRetry(jobParams);
+                sendJobResult(RESULT_FAILED_TO_SEND_RECEIPTS, jobParams);
+                return;
+            }
+        }
+
+        final AnalyticsUploadPolicy policy = getUploadPolicy();
+        if (policy != null) {
+            policy.onSendSucceeded();
+        }
+        jobParams.alarmProvider.disableAlarm();
+        sendJobResult(JobResultListener.RESULT_SUCCESS, jobParams);
+    }
+
+    // The request calls the listener before it returns, so the result is known once startSendEvents is done
+    private boolean sendBatch(final JobParams jobParams, final List<Batch> batches, final int index) {
+
+        final Batch batch = batches.get(index);
+        if (batch.batchId == null) {
+            // Saved before the request is made, since the server may receive the batch even if the request fails
+            batch.batchId = UUID.randomUUID().toString();
+            jobParams.eventsStorage.setBatchId(batch.getIdRanges(), batch.batchId);
+        }
+        setStatusForEvents(jobParams, batch, AnalyticsEvent.Status.POSTING);
+
+        final boolean[] isSuccessful = new boolean[1];
+        final long startTime = SystemClock.elapsedRealtime();
         final PCFPushSendAnalyticsApiRequest request = jobParams.sendAnalyticsRequestProvider.getRequest();
-        request.startSendEvents(uris, new PCFPushSendAnalyticsListener() {
+        request.startSendEvents(batch.batchId, batch.uris, new PCFPushSendAnalyticsListener() {
 
             public void onBackEndSendEventsSuccess() {
-                if (uris != null) {
-                    jobParams.eventsStorage.deleteEvents(uris);
-                }
-                jobParams.alarmProvider.disableAlarm();
-                sendJobResult(JobResultListener.RESULT_SUCCESS, jobParams);
+                jobParams.eventsStorage.deleteEventsInRanges(batch.getIdRanges());
+                onBatchSent(batches, index, startTime, true);
+                isSuccessful[0] = true;
             }
 
             @Override
             public void onBackEndSendEventsFailed(String reason) {
-                setStatusForEvents(jobParams, uris, AnalyticsEvent.Status.POSTING_ERROR);
-                jobParams.alarmProvider.enableAlarmIfDisabled();
-                sendJobResult(RESULT_FAILED_TO_SEND_RECEIPTS, jobParams);
+                setStatusForEvents(jobParams, batch, AnalyticsEvent.Status.POSTING_ERROR);
+                onBatchSent(batches, index, startTime, false);
             }
         });
+        return isSuccessful[0];
+    }
+
+    private void onBatchSent(List<Batch> batches, int index, long startTime, boolean isSuccessful) {
+        final Batch batch = batches.get(index);
+        final long latency = SystemClock.elapsedRealtime() - startTime;
+        Logger.fd("SendAnalyticsEventsJob: batch %d of %d (%s) with %d events (~%d bytes) %s after %d ms", index + 1, batches.size(),
+                batch.batchId, batch.size(), batch.approximateBytes, isSuccessful ? "sent" : "failed", latency);
+
+        final BatchListener listener = getBatchListener();
+        if (listener != null) {
+            listener.onBatchSent(batch.size(), batch.approximateBytes, latency, isSuccessful);
+        }
     }
 
     private String getPackageName(JobParams jobParams) {
@@ -69,12 +307,10 @@ public class SendAnalyticsEventsJob extends BaseJob {
         return packageName;
     }
 
-    private List<Uri> getUnpostedEvents(JobParams jobParams) {
-        final List<Uri> uris1 = jobParams.eventsStorage.getEventUrisWithStatus(AnalyticsEvent.Status.NOT_POSTED);
-        final List<Uri> uris2 = jobParams.eventsStorage.getEventUrisWithStatus(AnalyticsEvent.Status.POSTING_ERROR);
-        final List<Uri> uris = new ArrayList<>(uris1);
-        uris.addAll(uris2);
-        return uris;
+    // Sends every unposted event, so one pending send covers all of them
+    @Override
+    public BaseJob coalesceWith(BaseJob pendingJob) {
+        return equals(pendingJob) ? pendingJob : null;
     }
 
     @Override
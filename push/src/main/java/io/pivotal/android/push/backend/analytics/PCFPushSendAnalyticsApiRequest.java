@@ -7,5 +7,13 @@ import java.util.List;
 public interface PCFPushSendAnalyticsApiRequest {
 
     void startSendEvents(List<Uri> eventUris, PCFPushSendAnalyticsListener listener);
+
+    /**
+     * Sends the events as one batch.  A batch that is sent again after a failure must have the same batch ID,
+     * so that the server can ignore it if it had already received it.
+     *
+     * @param batchId identifies the batch to the server.  May be null if the batch does not need to be identified.
+     */
+    void startSendEvents(String batchId, List<Uri> eventUris, PCFPushSendAnalyticsListener listener);
     PCFPushSendAnalyticsApiRequest copy();
 }
@@ -1,32 +1,51 @@
 package io.pivotal.android.push.backend.analytics;
 
+import android.content.ContentUris;
 import android.content.Context;
 import android.net.Uri;
 
-import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
 
 import io.pivotal.android.push.prefs.PushPreferences;
-import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.LinkedList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import io.pivotal.android.push.PushParameters;
+import io.pivotal.android.push.database.AnalyticsEventsHandler;
 import io.pivotal.android.push.database.AnalyticsEventsStorage;
+import io.pivotal.android.push.database.EventIdRange;
 import io.pivotal.android.push.model.analytics.AnalyticsEvent;
 import io.pivotal.android.push.model.analytics.AnalyticsEventList;
 import io.pivotal.android.push.prefs.PushRequestHeaders;
 import io.pivotal.android.push.util.ApiRequestImpl;
 import io.pivotal.android.push.util.Const;
+import io.pivotal.android.push.util.DeferredGzipOutputStream;
+import io.pivotal.android.push.util.GsonUtil;
 import io.pivotal.android.push.util.Logger;
 import io.pivotal.android.push.util.NetworkWrapper;
 
 public class PCFPushSendAnalyticsApiRequestImpl extends ApiRequestImpl implements PCFPushSendAnalyticsApiRequest {
 
+    public static final int DEFAULT_COMPRESSION_THRESHOLD_IN_BYTES = 1024;
+
+    // Lets the server recognize a batch that it has already received, e.g.: if the connection dropped before the response arrived
+    public static final String BATCH_ID_HEADER = "Idempotency-Key";
+
+    private static final int HTTP_UNSUPPORTED_MEDIA_TYPE = 415;
+
+    private static final TypeAdapter<AnalyticsEvent> eventAdapter = GsonUtil.getGson().getAdapter(AnalyticsEvent.class);
+
+    private static boolean isCompressionEnabled = false;
+    private static int compressionThresholdInBytes = DEFAULT_COMPRESSION_THRESHOLD_IN_BYTES;
+    private static boolean isCompressionRejectedByServer = false;
+
     private Context context;
     private AnalyticsEventsStorage eventsStorage;
     private PushRequestHeaders pushRequestHeaders;
@@ -67,10 +86,42 @@ public class PCFPushSendAnalyticsApiRequestImpl extends ApiRequestImpl implement
         this.pushRequestHeaders = pushRequestHeaders;
     }
 
+    /**
+     * Configures whether event batches are gzipped when they are uploaded.  Compression is off by default.
+     *
+     * @param isEnabled if true then request bodies at least the given size are gzipped.
+     * @param thresholdInBytes the minimum size of a request body before it is compressed.
+     */
+    public static synchronized void configureCompression(boolean isEnabled, int thresholdInBytes) {
+        if (thresholdInBytes < 0) {
+            throw new IllegalArgumentException("thresholdInBytes may not be negative");
+        }
+        isCompressionEnabled = isEnabled;
+        compressionThresholdInBytes = thresholdInBytes;
+        isCompressionRejectedByServer = false;
+    }
+
+    private static synchronized boolean shouldCompress() {
+        return isCompressionEnabled && !isCompressionRejectedByServer;
+    }
+
+    private static synchronized int getCompressionThresholdInBytes() {
+        return compressionThresholdInBytes;
+    }
+
+    private static synchronized void onCompressionRejectedByServer() {
+        isCompressionRejectedByServer = true;
+    }
+
     @Override
     public void startSendEvents(List<Uri> eventUris, PCFPushSendAnalyticsListener listener) {
+        startSendEvents(null, eventUris, listener);
+    }
+
+    @Override
+    public void startSendEvents(String batchId, List<Uri> eventUris, PCFPushSendAnalyticsListener listener) {
         verifyRequestArguments(eventUris, listener);
-        processRequest(eventUris, listener);
+        processRequest(batchId, eventUris, listener, shouldCompress());
     }
 
     private void verifyRequestArguments(List<Uri> uris, PCFPushSendAnalyticsListener listener) {
@@ -82,41 +133,81 @@ public class PCFPushSendAnalyticsApiRequestImpl extends ApiRequestImpl implement
         }
     }
 
-    private void processRequest(List<Uri> uris, PCFPushSendAnalyticsListener listener) {
-        OutputStream outputStream = null;
-
+    private void processRequest(final String batchId, final List<Uri> uris, PCFPushSendAnalyticsListener listener, final boolean isCompressionAllowed) {
         try {
 
             final URL url = getUrl(parameters);
-            final HttpURLConnection urlConnection = getHttpURLConnection(url, parameters);
+            final boolean[] wasCompressed = new boolean[1];
+            final List<EventIdRange> idRanges = getIdRanges(uris);
 
-            urlConnection.addRequestProperty("Content-Type", "application/json");
-            urlConnection.addRequestProperty("Authorization", getBasicAuthorizationValue(parameters));
-            urlConnection.setRequestMethod("POST");
-            urlConnection.setDoInput(true);
-            urlConnection.connect();
+            // Check for missing events before connecting so that the server never receives a partial batch
+            final int numberOfEventsFound = eventsStorage.getNumberOfEventsInRanges(idRanges);
+            if (numberOfEventsFound < uris.size()) {
+                throw new IOException("Could not find " + (uris.size() - numberOfEventsFound) + " of the " + uris.size() + " event(s) to send.");
+            }
 
-            outputStream = new BufferedOutputStream(urlConnection.getOutputStream());
+            Logger.v("Making network request to post " + uris.size() + " event(s) to the back-end server" + (batchId != null ? " in batch " + batchId : "") + ".");
+            final String endpoint = parameters.getServiceUrl() + "/" + Const.PCF_PUSH_ANALYTICS_REQUEST_ENDPOINT;
+            // The server ignores a batch that it has already received, so sending it again is safe
+            final HttpURLConnection urlConnection = sendRequest(endpoint, batchId != null, new RequestSender() {
 
-            final String requestBodyData = getRequestBodyData(uris);
-            Logger.v("Making network request to post event data to the back-end server: " + requestBodyData);
-            writeOutput(requestBodyData, outputStream);
+                @Override
+                public HttpURLConnection openConnection() throws Exception {
+                    final HttpURLConnection urlConnection = getHttpURLConnection(url, parameters);
+                    urlConnection.addRequestProperty("Content-Type", "application/json");
+                    urlConnection.addRequestProperty("Authorization", getBasicAuthorizationValue(parameters));
+                    if (batchId != null) {
+                        urlConnection.addRequestProperty(BATCH_ID_HEADER, batchId);
+                    }
+                    urlConnection.setRequestMethod("POST");
+                    urlConnection.setDoInput(true);
+                    urlConnection.setChunkedStreamingMode(0);
+                    return urlConnection;
+                }
+
+                @Override
+                public void writeRequest(HttpURLConnection urlConnection) throws IOException {
+                    final OutputStream outputStream;
+                    DeferredGzipOutputStream compressedOutputStream = null;
+                    if (isCompressionAllowed) {
+                        // The connection is opened once the stream knows whether the body reaches the compression threshold
+                        compressedOutputStream = new DeferredGzipOutputStream(urlConnection, getCompressionThresholdInBytes());
+                        outputStream = compressedOutputStream;
+                    } else {
+                        urlConnection.connect();
+                        outputStream = urlConnection.getOutputStream();
+                    }
+                    boolean isRequestBodyWritten = false;
+                    try {
+                        writeRequestBodyData(uris, idRanges, outputStream);
+                        isRequestBodyWritten = true;
+                    } finally {
+                        if (isRequestBodyWritten) {
+                            outputStream.close();
+                        } else {
+                            // Closing the stream would end the chunked body normally, so drop the connection instead
+                            urlConnection.disconnect();
+                        }
+                    }
+                    wasCompressed[0] = compressedOutputStream != null && compressedOutputStream.isCompressed();
+                }
+            });
 
             final int statusCode = urlConnection.getResponseCode();
-            urlConnection.disconnect();
+            releaseHttpURLConnection(urlConnection);
+
+            if (statusCode == HTTP_UNSUPPORTED_MEDIA_TYPE && wasCompressed[0]) {
+                Logger.w("Back-end server does not accept compressed event data. Sending uncompressed event data instead.");
+                onCompressionRejectedByServer();
+                processRequest(batchId, uris, listener, false);
+                return;
+            }
 
             onSuccessfulNetworkRequest(statusCode, listener);
 
         } catch (Exception e) {
             Logger.ex("Sending event data to back-end server failed", e);
             listener.onBackEndSendEventsFailed(e.getLocalizedMessage());
-
-        } finally {
-            if (outputStream != null) {
-                try {
-                    outputStream.close();
-                } catch (IOException e) {}
-            }
         }
     }
 
@@ -129,22 +220,40 @@ public class PCFPushSendAnalyticsApiRequestImpl extends ApiRequestImpl implement
         }
     }
 
-    private String getRequestBodyData(List<Uri> uris) {
-        final List<AnalyticsEvent> events = getEvents(uris);
-        final AnalyticsEventList eventList = new AnalyticsEventList();
-        eventList.setEvents(events);
-        final Gson gson = new Gson();
-        final String requestBodyData = gson.toJson(eventList);
-        return requestBodyData;
+    private static List<EventIdRange> getIdRanges(List<Uri> uris) {
+        final long[] ids = new long[uris.size()];
+        int i = 0;
+        for (final Uri uri : uris) {
+            ids[i++] = ContentUris.parseId(uri);
+        }
+        return EventIdRange.fromIds(ids);
     }
 
-    private List<AnalyticsEvent> getEvents(List<Uri> uris) {
-        final List<AnalyticsEvent> events = new LinkedList<>();
-        for (final Uri uri : uris) {
-            final AnalyticsEvent event = eventsStorage.readEvent(uri);
-            events.add(event);
+    // Writes the same JSON as serializing an AnalyticsEventList.  Only the events in the batch are read
+    // from the backing store, with one query for each range of IDs, and they are serialized one at a
+    // time as they are read, so that the whole batch is never held in memory at once.
+    private void writeRequestBodyData(List<Uri> uris, List<EventIdRange> idRanges, OutputStream outputStream) throws IOException {
+        final Set<Uri> remainingUris = new HashSet<>(uris);
+        final JsonWriter jsonWriter = getJsonWriter(outputStream);
+        jsonWriter.beginObject();
+        jsonWriter.name(AnalyticsEventList.EVENTS);
+        jsonWriter.beginArray();
+        eventsStorage.streamEvents(idRanges, new AnalyticsEventsHandler() {
+
+            @Override
+            public void onEvent(Uri uri, AnalyticsEvent event) throws IOException {
+                if (remainingUris.remove(uri)) {
+                    eventAdapter.write(jsonWriter, event);
+                }
+            }
+        });
+        if (!remainingUris.isEmpty()) {
+            // The event was deleted after the batch was checked
+            throw new IOException("Could not find event with Uri " + remainingUris.iterator().next().getPath());
         }
-        return events;
+        jsonWriter.endArray();
+        jsonWriter.endObject();
+        jsonWriter.close();
     }
 
     private void onSuccessfulNetworkRequest(int statusCode, PCFPushSendAnalyticsListener listener) {
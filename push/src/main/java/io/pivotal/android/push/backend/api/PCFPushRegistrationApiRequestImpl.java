@@ -6,10 +6,7 @@ package io.pivotal.android.push.backend.api;
 import android.content.Context;
 import android.os.Build;
 
-import com.google.gson.Gson;
-
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -25,6 +22,7 @@ import io.pivotal.android.push.model.api.PCFPushApiRegistrationPutRequestData;
 import io.pivotal.android.push.model.api.PCFPushApiRegistrationResponseData;
 import io.pivotal.android.push.util.ApiRequestImpl;
 import io.pivotal.android.push.util.Const;
+import io.pivotal.android.push.util.GsonUtil;
 import io.pivotal.android.push.util.Logger;
 import io.pivotal.android.push.util.NetworkWrapper;
 import io.pivotal.android.push.util.TagsHelper;
@@ -88,42 +86,59 @@ public class PCFPushRegistrationApiRequestImpl extends ApiRequestImpl implements
         }
     }
 
-    private void handleRequest(String fcmDeviceRegistrationId,
+    private void handleRequest(final String fcmDeviceRegistrationId,
                                String previousPCFPushDeviceRegistrationId,
-                               Set<String> savedTags,
-                               PushParameters parameters,
+                               final Set<String> savedTags,
+                               final PushParameters parameters,
                                PCFPushRegistrationListener listener,
-                               boolean isUpdate) {
+                               final boolean isUpdate) {
 
-        OutputStream outputStream = null;
         try {
             final URL url = getURL(isUpdate, previousPCFPushDeviceRegistrationId, parameters);
-            final HttpURLConnection urlConnection = getHttpURLConnection(url, parameters);
-
-            urlConnection.setDoOutput(true);
-            urlConnection.setDoInput(true);
-            urlConnection.setRequestMethod(getRequestMethod(isUpdate));
-            urlConnection.addRequestProperty("Content-Type", "application/json");
-            urlConnection.addRequestProperty("Authorization", getBasicAuthorizationValue(parameters));
-            urlConnection.connect();
-
-            outputStream = new BufferedOutputStream(urlConnection.getOutputStream());
-
-            final String requestBodyData = getRequestBodyData(
+            final BasePCFPushApiRegistrationRequestData requestBodyData = getPCFPushApiRegistrationRequestData(
                     fcmDeviceRegistrationId,
                     savedTags,
                     parameters,
                     isUpdate);
 
-            Logger.v("Making network request to register this device with the PCF Push server: " + requestBodyData);
-            writeOutput(requestBodyData, outputStream);
+            Logger.v("Making network request to register this device with the PCF Push server.");
+            final String endpoint = parameters.getServiceUrl() + "/" + Const.PCF_PUSH_REGISTRATION_REQUEST_ENDPOINT;
+            // A PUT replaces the registration so it may be sent again, but a POST could register the device twice
+            final HttpURLConnection urlConnection = sendRequest(endpoint, isUpdate, new RequestSender() {
+
+                @Override
+                public HttpURLConnection openConnection() throws Exception {
+                    final HttpURLConnection urlConnection = getHttpURLConnection(url, parameters);
+                    urlConnection.setDoOutput(true);
+                    urlConnection.setChunkedStreamingMode(0);
+                    urlConnection.setDoInput(true);
+                    urlConnection.setRequestMethod(getRequestMethod(isUpdate));
+                    urlConnection.addRequestProperty("Content-Type", "application/json");
+                    urlConnection.addRequestProperty("Authorization", getBasicAuthorizationValue(parameters));
+                    return urlConnection;
+                }
 
-            final int statusCode = urlConnection.getResponseCode();
+                @Override
+                public void writeRequest(HttpURLConnection urlConnection) throws IOException {
+                    urlConnection.connect();
+                    final OutputStream outputStream = urlConnection.getOutputStream();
+                    try {
+                        writeOutput(GsonUtil.getGson(), requestBodyData, outputStream);
+                    } finally {
+                        outputStream.close();
+                    }
+                }
+            });
 
-            final InputStream inputStream = new BufferedInputStream(urlConnection.getInputStream());
-            final String responseString = readInput(inputStream);
+            final int statusCode = urlConnection.getResponseCode();
 
-            urlConnection.disconnect();
+            final String responseString;
+            try {
+                final InputStream inputStream = new BufferedInputStream(urlConnection.getInputStream());
+                responseString = readInput(inputStream);
+            } finally {
+                releaseHttpURLConnection(urlConnection);
+            }
 
             onSuccessfulNetworkRequest(statusCode, responseString, listener);
 
@@ -139,14 +154,6 @@ public class PCFPushRegistrationApiRequestImpl extends ApiRequestImpl implements
                 }
             }
         }
-
-        finally {
-            if (outputStream != null) {
-                try {
-                    outputStream.close();
-                } catch (IOException e) {}
-            }
-        }
     }
 
     private URL getURL(boolean isUpdate,
@@ -184,10 +191,9 @@ public class PCFPushRegistrationApiRequestImpl extends ApiRequestImpl implements
             return;
         }
 
-        final Gson gson = new Gson();
         final PCFPushApiRegistrationResponseData responseData;
         try {
-            responseData = gson.fromJson(responseString, PCFPushApiRegistrationResponseData.class);
+            responseData = GsonUtil.getGson().fromJson(responseString, PCFPushApiRegistrationResponseData.class);
             if (responseData == null) {
                 throw new Exception("unable to parse server response");
             }
@@ -210,22 +216,6 @@ public class PCFPushRegistrationApiRequestImpl extends ApiRequestImpl implements
         listener.onPCFPushRegistrationSuccess(deviceUuid);
     }
 
-    private String getRequestBodyData(String deviceRegistrationId,
-                                      Set<String> savedTags,
-                                      PushParameters parameters,
-                                      boolean isUpdate) {
-
-
-        final BasePCFPushApiRegistrationRequestData data = getPCFPushApiRegistrationRequestData(
-                deviceRegistrationId,
-                savedTags,
-                parameters,
-                isUpdate);
-
-        final Gson gson = new Gson();
-        return gson.toJson(data);
-    }
-
     private BasePCFPushApiRegistrationRequestData getPCFPushApiRegistrationRequestData(String deviceRegistrationId,
                                                                                        Set<String> savedTags,
                                                                                        PushParameters parameters,
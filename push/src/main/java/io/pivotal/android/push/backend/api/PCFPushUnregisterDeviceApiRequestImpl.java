@@ -5,6 +5,7 @@ package io.pivotal.android.push.backend.api;
 
 import android.content.Context;
 
+import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
 
@@ -24,22 +25,33 @@ public class PCFPushUnregisterDeviceApiRequestImpl extends ApiRequestImpl implem
     }
 
     @Override
-    public void startUnregisterDevice(String pcfPushDeviceRegistrationId, PushParameters parameters, PCFPushUnregisterDeviceListener listener) {
+    public void startUnregisterDevice(String pcfPushDeviceRegistrationId, final PushParameters parameters, PCFPushUnregisterDeviceListener listener) {
 
         verifyUnregistrationArguments(pcfPushDeviceRegistrationId, parameters, listener);
 
         try {
             Logger.v("Making network request to the PCF Push server to unregister the device ID:" + pcfPushDeviceRegistrationId);
             final URL url = new URL(parameters.getServiceUrl() + "/" + Const.PCF_PUSH_REGISTRATION_REQUEST_ENDPOINT + "/" + pcfPushDeviceRegistrationId);
-            final HttpURLConnection urlConnection = getHttpURLConnection(url, parameters);
-
-            urlConnection.setRequestMethod("DELETE");
-            urlConnection.addRequestProperty("Authorization", ApiRequestImpl.getBasicAuthorizationValue(parameters));
-            urlConnection.connect();
+            final String endpoint = parameters.getServiceUrl() + "/" + Const.PCF_PUSH_REGISTRATION_REQUEST_ENDPOINT;
+            final HttpURLConnection urlConnection = sendRequest(endpoint, true, new RequestSender() {
+
+                @Override
+                public HttpURLConnection openConnection() throws Exception {
+                    final HttpURLConnection urlConnection = getHttpURLConnection(url, parameters);
+                    urlConnection.setRequestMethod("DELETE");
+                    urlConnection.addRequestProperty("Authorization", ApiRequestImpl.getBasicAuthorizationValue(parameters));
+                    return urlConnection;
+                }
+
+                @Override
+                public void writeRequest(HttpURLConnection urlConnection) throws IOException {
+                    urlConnection.connect();
+                }
+            });
 
             final int statusCode = urlConnection.getResponseCode();
 
-            urlConnection.disconnect();
+            releaseHttpURLConnection(urlConnection);
 
             onSuccessfulRequest(statusCode, listener);
 
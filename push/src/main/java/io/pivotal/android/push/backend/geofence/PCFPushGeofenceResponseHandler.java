@@ -0,0 +1,14 @@
+/*
+ * Copyright (C) 2014 Pivotal Software, Inc. All rights reserved.
+ */
+package io.pivotal.android.push.backend.geofence;
+
+import io.pivotal.android.push.model.geofence.PCFPushGeofenceData;
+
+/**
+ * Receives the items of a geofence update response one at a time while the response is being parsed.
+ */
+public interface PCFPushGeofenceResponseHandler {
+    void onGeofence(PCFPushGeofenceData geofence);
+    void onDeletedGeofenceId(long geofenceId);
+}
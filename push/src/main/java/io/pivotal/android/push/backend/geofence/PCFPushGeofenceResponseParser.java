@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2014 Pivotal Software, Inc. All rights reserved.
+ */
+package io.pivotal.android.push.backend.geofence;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Date;
+
+import io.pivotal.android.push.model.geofence.PCFPushGeofenceData;
+import io.pivotal.android.push.model.geofence.PCFPushGeofenceResponseData;
+import io.pivotal.android.push.util.GsonUtil;
+
+/**
+ * Parses a geofence update response directly from an input stream.  Geofences and deleted
+ * geofence IDs are passed to a {@link PCFPushGeofenceResponseHandler} as soon as they are read,
+ * so the response is never held in memory as a whole String or byte buffer.  The parser itself only
+ * holds one geofence at a time, but anything the handler keeps (e.g.: the valid geofences that a
+ * geofence engine update keeps until it is committed) still grows with the size of the response.
+ */
+public class PCFPushGeofenceResponseParser {
+
+    private static final int INPUT_BUFFER_SIZE = 8192;
+
+    private final TypeAdapter<PCFPushGeofenceData> geofenceAdapter;
+    private final TypeAdapter<Date> dateAdapter;
+
+    public PCFPushGeofenceResponseParser() {
+        final Gson gson = GsonUtil.getGson();
+        geofenceAdapter = gson.getAdapter(PCFPushGeofenceData.class);
+        dateAdapter = gson.getAdapter(Date.class);
+    }
+
+    /**
+     * Parses the response in the given input stream.  The input stream is not closed.
+     *
+     * @return the response header fields (i.e.: the number and last modified time) without any geofences
+     *         or deleted geofence IDs, or null if the response is empty.
+     */
+    public PCFPushGeofenceResponseData parse(InputStream inputStream, PCFPushGeofenceResponseHandler handler) throws IOException {
+        final JsonReader reader = new JsonReader(new BufferedReader(new InputStreamReader(inputStream, "UTF-8"), INPUT_BUFFER_SIZE));
+        reader.setLenient(true);
+
+        try {
+            if (reader.peek() == JsonToken.NULL) {
+                return null;
+            }
+        } catch (EOFException e) {
+            // An empty response
+            return null;
+        }
+
+        long number = 0;
+        Date lastModified = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+            } else if (name.equals(PCFPushGeofenceResponseData.NUMBER)) {
+                number = reader.nextLong();
+            } else if (name.equals(PCFPushGeofenceResponseData.LAST_MODIFIED)) {
+                lastModified = dateAdapter.read(reader);
+            } else if (name.equals(PCFPushGeofenceResponseData.GEOFENCES)) {
+                readGeofences(reader, handler);
+            } else if (name.equals(PCFPushGeofenceResponseData.DELETED_GEOFENCE_IDS)) {
+                readDeletedGeofenceIds(reader, handler);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new PCFPushGeofenceResponseData(number, lastModified, null, null);
+    }
+
+    private void readGeofences(JsonReader reader, PCFPushGeofenceResponseHandler handler) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            final PCFPushGeofenceData geofence = geofenceAdapter.read(reader);
+            if (geofence != null) {
+                handler.onGeofence(geofence);
+            }
+        }
+        reader.endArray();
+    }
+
+    private void readDeletedGeofenceIds(JsonReader reader, PCFPushGeofenceResponseHandler handler) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+            } else {
+                handler.onDeletedGeofenceId(reader.nextLong());
+            }
+        }
+        reader.endArray();
+    }
+}
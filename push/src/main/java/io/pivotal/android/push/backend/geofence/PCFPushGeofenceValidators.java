@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2014 Pivotal Software, Inc. All rights reserved.
+ */
+package io.pivotal.android.push.backend.geofence;
+
+/**
+ * The HTTP validators ("ETag" and "Last-Modified" response headers) of a geofence update response.  They are
+ * sent back with the next update request so that the server can reply "304 Not Modified" if nothing changed.
+ */
+public class PCFPushGeofenceValidators {
+
+    private final String eTag;
+    private final String lastModified;
+
+    /**
+     * @param eTag the value of the "ETag" header.  May be null.
+     * @param lastModified the value of the "Last-Modified" header.  May be null.
+     */
+    public PCFPushGeofenceValidators(String eTag, String lastModified) {
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public boolean isEmpty() {
+        return eTag == null && lastModified == null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final PCFPushGeofenceValidators other = (PCFPushGeofenceValidators) o;
+        if (eTag != null ? !eTag.equals(other.eTag) : other.eTag != null) {
+            return false;
+        }
+        return lastModified != null ? lastModified.equals(other.lastModified) : other.lastModified == null;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = eTag != null ? eTag.hashCode() : 0;
+        result = 31 * result + (lastModified != null ? lastModified.hashCode() : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "PCFPushGeofenceValidators{eTag=" + eTag + ", lastModified=" + lastModified + "}";
+    }
+}
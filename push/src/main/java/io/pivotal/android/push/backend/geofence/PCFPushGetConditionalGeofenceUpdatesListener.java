@@ -0,0 +1,12 @@
+/*
+ * Copyright (C) 2014 Pivotal Software, Inc. All rights reserved.
+ */
+package io.pivotal.android.push.backend.geofence;
+
+import io.pivotal.android.push.model.geofence.PCFPushGeofenceResponseData;
+
+public interface PCFPushGetConditionalGeofenceUpdatesListener {
+    void onPCFPushGetGeofenceUpdatesSuccess(PCFPushGeofenceResponseData responseData, PCFPushGeofenceValidators validators);
+    void onPCFPushGetGeofenceUpdatesNotModified();
+    void onPCFPushGetGeofenceUpdatesFailed(String reason);
+}
@@ -5,40 +5,109 @@ package io.pivotal.android.push.backend.geofence;
 
 import android.content.Context;
 
-import com.google.gson.Gson;
-
-import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
 
 import io.pivotal.android.push.PushParameters;
+import io.pivotal.android.push.model.geofence.PCFPushGeofenceData;
 import io.pivotal.android.push.model.geofence.PCFPushGeofenceResponseData;
 import io.pivotal.android.push.util.ApiRequestImpl;
 import io.pivotal.android.push.util.Const;
-import io.pivotal.android.push.util.GsonUtil;
 import io.pivotal.android.push.util.Logger;
 import io.pivotal.android.push.util.NetworkWrapper;
 
 public class PCFPushGetGeofenceUpdatesApiRequest extends ApiRequestImpl {
 
+    private static final int HTTP_NOT_MODIFIED = 304;
+
     public PCFPushGetGeofenceUpdatesApiRequest(Context context, NetworkWrapper networkWrapper) {
         super(context, networkWrapper);
     }
 
+    /**
+     * Fetches the geofence updates.  The complete response (including all of the geofences and deleted
+     * geofence IDs) is passed to the listener.
+     */
+    public void getGeofenceUpdates(long timestamp,
+                                   String deviceUuid,
+                                   PushParameters parameters,
+                                   final PCFPushGetGeofenceUpdatesListener listener) {
+
+        verifyArguments(timestamp, deviceUuid, parameters, listener);
+
+        final List<PCFPushGeofenceData> geofences = new ArrayList<>();
+        final List<Long> deletedGeofenceIds = new ArrayList<>();
+
+        handleRequest(timestamp, deviceUuid, parameters, null, new PCFPushGeofenceResponseHandler() {
+
+            @Override
+            public void onGeofence(PCFPushGeofenceData geofence) {
+                geofences.add(geofence);
+            }
+
+            @Override
+            public void onDeletedGeofenceId(long geofenceId) {
+                deletedGeofenceIds.add(geofenceId);
+            }
+
+        }, new UnconditionalListener(listener) {
+
+            @Override
+            public void onPCFPushGetGeofenceUpdatesSuccess(PCFPushGeofenceResponseData responseData, PCFPushGeofenceValidators validators) {
+                listener.onPCFPushGetGeofenceUpdatesSuccess(new PCFPushGeofenceResponseData(responseData.getNumber(), responseData.getLastModified(), geofences, deletedGeofenceIds));
+            }
+        });
+    }
+
+    /**
+     * Fetches the geofence updates and passes each geofence and deleted geofence ID to the given handler while
+     * the response is being read, without holding the whole response in memory.  The response data given to
+     * the listener afterwards only contains the number and last modified time.  If the request fails
+     * then the items already passed to the handler should be discarded.
+     */
     public void getGeofenceUpdates(long timestamp,
                                    String deviceUuid,
                                    PushParameters parameters,
+                                   PCFPushGeofenceResponseHandler handler,
                                    PCFPushGetGeofenceUpdatesListener listener) {
 
         verifyArguments(timestamp, deviceUuid, parameters, listener);
-        handleRequest(timestamp, deviceUuid, parameters, listener);
+        verifyHandler(handler);
+        handleRequest(timestamp, deviceUuid, parameters, null, handler, new UnconditionalListener(listener));
     }
 
-    private void verifyArguments(long timestamp, String deviceUuid, PushParameters parameters, PCFPushGetGeofenceUpdatesListener listener) {
+    /**
+     * Fetches the geofence updates like {@link #getGeofenceUpdates(long, String, PushParameters, PCFPushGeofenceResponseHandler, PCFPushGetGeofenceUpdatesListener)},
+     * but sends the validators saved from the previous response as "If-None-Match" and "If-Modified-Since" headers.
+     * If the server replies "304 Not Modified" then nothing is passed to the handler and the listener is told
+     * that the geofences have not changed.  The validators of a successful response are passed to the listener.
+     *
+     * @param validators the validators from the previous response.  May be null.
+     */
+    public void getGeofenceUpdates(long timestamp,
+                                   String deviceUuid,
+                                   PushParameters parameters,
+                                   PCFPushGeofenceValidators validators,
+                                   PCFPushGeofenceResponseHandler handler,
+                                   PCFPushGetConditionalGeofenceUpdatesListener listener) {
+
+        verifyArguments(timestamp, deviceUuid, parameters, listener);
+        verifyHandler(handler);
+        handleRequest(timestamp, deviceUuid, parameters, validators, handler, listener);
+    }
+
+    private void verifyHandler(PCFPushGeofenceResponseHandler handler) {
+        if (handler == null) {
+            throw new IllegalArgumentException("handler may not be null");
+        }
+    }
+
+    private void verifyArguments(long timestamp, String deviceUuid, PushParameters parameters, Object listener) {
         if (timestamp < 0) {
             throw new IllegalArgumentException("timestamp must be non-negative");
         }
@@ -53,73 +122,97 @@ public class PCFPushGetGeofenceUpdatesApiRequest extends ApiRequestImpl {
         }
     }
 
-    private void handleRequest(long timestamp, String deviceUuid, PushParameters parameters, PCFPushGetGeofenceUpdatesListener listener) {
-        OutputStream outputStream = null;
+    private void handleRequest(long timestamp, String deviceUuid, final PushParameters parameters, final PCFPushGeofenceValidators validators, PCFPushGeofenceResponseHandler handler, PCFPushGetConditionalGeofenceUpdatesListener listener) {
         try {
             final URL url = getURL(timestamp, deviceUuid, parameters);
-            final HttpURLConnection urlConnection = getHttpURLConnection(url, parameters);
-
-            urlConnection.setDoInput(true);
-            urlConnection.setRequestMethod("GET");
-            urlConnection.addRequestProperty("Authorization", getBasicAuthorizationValue(parameters));
-            urlConnection.connect();
+            final boolean isConditionalRequest = validators != null && !validators.isEmpty();
 
             Logger.v("Making network request to get updated geofences with url: " + url.toString());
 
+            final String endpoint = parameters.getServiceUrl() + "/" + Const.PCF_PUSH_GEOFENCE_UPDATE_REQUEST_ENDPOINT;
+            final HttpURLConnection urlConnection = sendRequest(endpoint, true, new RequestSender() {
+
+                @Override
+                public HttpURLConnection openConnection() throws Exception {
+                    final HttpURLConnection urlConnection = getHttpURLConnection(url, parameters);
+                    urlConnection.setDoInput(true);
+                    urlConnection.setRequestMethod("GET");
+                    urlConnection.addRequestProperty("Authorization", getBasicAuthorizationValue(parameters));
+                    addValidatorsToRequest(validators, urlConnection);
+                    return urlConnection;
+                }
+
+                @Override
+                public void writeRequest(HttpURLConnection urlConnection) throws IOException {
+                    urlConnection.connect();
+                }
+            });
+
             final int statusCode = urlConnection.getResponseCode();
 
-            final InputStream inputStream = new BufferedInputStream(urlConnection.getInputStream());
-            final String responseString = readInput(inputStream);
+            if (isConditionalRequest && statusCode == HTTP_NOT_MODIFIED) {
+                releaseHttpURLConnection(urlConnection);
+                Logger.i("PCF Push get geofence updates succeeded. Geofences have not been modified.");
+                listener.onPCFPushGetGeofenceUpdatesNotModified();
+                return;
+            }
+
+            if (isFailureStatusCode(statusCode)) {
+                releaseHttpURLConnection(urlConnection);
+                Logger.e("PCF Push get geofence updates failed: server returned HTTP status " + statusCode);
+                listener.onPCFPushGetGeofenceUpdatesFailed("PCF Push server returned HTTP status " + statusCode);
+                return;
+            }
+
+            final PCFPushGeofenceValidators responseValidators = new PCFPushGeofenceValidators(urlConnection.getHeaderField("ETag"), urlConnection.getHeaderField("Last-Modified"));
 
-            urlConnection.disconnect();
+            final InputStream inputStream = urlConnection.getInputStream();
+            if (inputStream == null) {
+                releaseHttpURLConnection(urlConnection);
+                Logger.e("PCF Push get geofence updates failed: server response empty");
+                listener.onPCFPushGetGeofenceUpdatesFailed("PCF Push server response empty");
+                return;
+            }
+
+            final PCFPushGeofenceResponseData responseData;
+            try {
+                responseData = new PCFPushGeofenceResponseParser().parse(inputStream, handler);
+            } finally {
+                releaseHttpURLConnection(urlConnection);
+            }
 
-            onSuccessfulNetworkRequest(statusCode, responseString, listener);
+            onSuccessfulNetworkRequest(responseData, responseValidators, listener);
 
         } catch (Exception e) {
             Logger.ex("PCF Push get geofence updates request failed", e);
             listener.onPCFPushGetGeofenceUpdatesFailed(e.getClass().getCanonicalName() + " " + e.getLocalizedMessage());
         }
-
-        finally {
-            if (outputStream != null) {
-                try {
-                    outputStream.close();
-                } catch (IOException e) {}
-            }
-        }
     }
 
-    public void onSuccessfulNetworkRequest(int statusCode,
-                                           String responseString,
-                                           final PCFPushGetGeofenceUpdatesListener listener) {
-
-        if (isFailureStatusCode(statusCode)) {
-            Logger.e("PCF Push get geofence updates failed: server returned HTTP status " + statusCode);
-            listener.onPCFPushGetGeofenceUpdatesFailed("PCF Push server returned HTTP status " + statusCode);
+    private void addValidatorsToRequest(PCFPushGeofenceValidators validators, HttpURLConnection urlConnection) {
+        if (validators == null) {
             return;
         }
-
-        if (responseString == null) {
-            Logger.e("PCF Push get geofence updates failed: server response empty");
-            listener.onPCFPushGetGeofenceUpdatesFailed("PCF Push server response empty");
-            return;
+        if (validators.getETag() != null) {
+            urlConnection.addRequestProperty("If-None-Match", validators.getETag());
+        }
+        if (validators.getLastModified() != null) {
+            urlConnection.addRequestProperty("If-Modified-Since", validators.getLastModified());
         }
+    }
 
-        final Gson gson = GsonUtil.getGson();
-        final PCFPushGeofenceResponseData responseData;
-        try {
-            responseData = gson.fromJson(responseString, PCFPushGeofenceResponseData.class);
-            if (responseData == null) {
-                throw new Exception("unable to parse server response");
-            }
-        } catch (Exception e) {
-            Logger.e("PCF Push get geofence updates failed: " + e.getLocalizedMessage());
-            listener.onPCFPushGetGeofenceUpdatesFailed(e.getLocalizedMessage());
+    private void onSuccessfulNetworkRequest(PCFPushGeofenceResponseData responseData,
+                                            PCFPushGeofenceValidators validators,
+                                            final PCFPushGetConditionalGeofenceUpdatesListener listener) {
+
+        if (responseData == null) {
+            Logger.e("PCF Push get geofence updates failed: unable to parse server response");
+            listener.onPCFPushGetGeofenceUpdatesFailed("unable to parse server response");
             return;
         }
 
         Logger.i("PCF Push get geofence updates succeeded.");
-        listener.onPCFPushGetGeofenceUpdatesSuccess(responseData);
+        listener.onPCFPushGetGeofenceUpdatesSuccess(responseData, validators);
     }
 
     private URL getURL(long timestamp,
@@ -166,4 +259,30 @@ public class PCFPushGetGeofenceUpdatesApiRequest extends ApiRequestImpl {
         builder.append('=');
         builder.append(Const.PCF_PUSH_GEOFENCE_UPDATE_REQUEST_ANDROID_FCM);
     }
+
+    // Requests made without validators never get a "304 Not Modified" reply, so callers
+    // that don't use them only need to hear about successes and failures.
+    private static class UnconditionalListener implements PCFPushGetConditionalGeofenceUpdatesListener {
+
+        private final PCFPushGetGeofenceUpdatesListener listener;
+
+        private UnconditionalListener(PCFPushGetGeofenceUpdatesListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void onPCFPushGetGeofenceUpdatesSuccess(PCFPushGeofenceResponseData responseData, PCFPushGeofenceValidators validators) {
+            listener.onPCFPushGetGeofenceUpdatesSuccess(responseData);
+        }
+
+        @Override
+        public void onPCFPushGetGeofenceUpdatesNotModified() {
+            // Not possible without validators
+        }
+
+        @Override
+        public void onPCFPushGetGeofenceUpdatesFailed(String reason) {
+            listener.onPCFPushGetGeofenceUpdatesFailed(reason);
+        }
+    }
 }
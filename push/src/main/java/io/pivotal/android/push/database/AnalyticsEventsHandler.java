@@ -0,0 +1,21 @@
+package io.pivotal.android.push.database;
+
+import android.net.Uri;
+
+import java.io.IOException;
+
+import io.pivotal.android.push.model.analytics.AnalyticsEvent;
+
+/**
+ * Receives the {@link AnalyticsEvent}s read by {@link AnalyticsEventsStorage#streamEventsWithStatuses} one at a time.
+ */
+public interface AnalyticsEventsHandler {
+
+    /**
+     * Called once for each event that is read.
+     *
+     * @param uri  the {@link android.net.Uri} of the event
+     * @param event  the {@link AnalyticsEvent} object.  It is not kept by the backing store after this call returns.
+     */
+    void onEvent(Uri uri, AnalyticsEvent event) throws IOException;
+}
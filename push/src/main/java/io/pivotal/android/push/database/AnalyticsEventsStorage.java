@@ -2,6 +2,7 @@ package io.pivotal.android.push.database;
 
 import android.net.Uri;
 
+import java.io.IOException;
 import java.util.List;
 
 import io.pivotal.android.push.model.analytics.AnalyticsEvent;
@@ -15,6 +16,13 @@ public interface AnalyticsEventsStorage {
      */
     public Uri saveEvent(AnalyticsEvent event);
 
+    /**
+     * Saves all of the given event objects to the backing store at once.  Either all of the events are saved or none of them are.
+     * @param events  the {@link AnalyticsEvent} objects to save
+     * @return the {@link android.net.Uri}s of the newly created {@link AnalyticsEvent}s, in the same order, if created successfully.  Otherwise null.
+     */
+    public List<Uri> saveEvents(List<AnalyticsEvent> events);
+
     /**
      * Gets the list of Event URIs from the backing store.
      *
@@ -47,18 +55,79 @@ public interface AnalyticsEventsStorage {
      */
     public AnalyticsEvent readEvent(Uri uri);
 
+    /**
+     * Reads all of the {@link AnalyticsEvent}s with any of the given statuses from the backing store,
+     * in the order that they were saved, and passes them to the given handler one at a time.
+     * This reads the events in a single query instead of one query for each event.
+     *
+     * @param handler  the {@link AnalyticsEventsHandler} that receives each event
+     * @param statuses  the {@link AnalyticsEvent.Status} values to query
+     * @throws IOException if the handler throws it.  No more events are read.
+     */
+    public void streamEventsWithStatuses(AnalyticsEventsHandler handler, int... statuses) throws IOException;
+
+    /**
+     * Reads all of the {@link AnalyticsEvent}s with IDs in the given ranges from the backing store, whatever
+     * their status is, in the order that they were saved, and passes them to the given handler one at a time.
+     * Only the rows in the ranges are read, so this costs the same however many other events are in the backing store.
+     *
+     * @param idRanges  the {@link EventIdRange}s of the events to read
+     * @param handler  the {@link AnalyticsEventsHandler} that receives each event
+     * @throws IOException if the handler throws it.  No more events are read.
+     */
+    public void streamEvents(List<EventIdRange> idRanges, AnalyticsEventsHandler handler) throws IOException;
+
     /**
      * Deletes the given {@link AnalyticsEvent} (with the given {@link Uri}s from the backing store
      * @param eventUris  the list of {@link android.net.Uri}s of {@link AnalyticsEvent} object to delete from the backing store.
      */
     public void deleteEvents(List<Uri> eventUris);
 
+    /**
+     * Deletes all of the {@link AnalyticsEvent}s with any of the given statuses and an ID no greater than
+     * the given maximum from the backing store in a single statement, without building a list of {@link Uri}s.
+     * @param statuses  the {@link AnalyticsEvent.Status} values of the events to delete
+     * @param maxId  events with larger IDs are not deleted
+     * @return the number of events deleted
+     */
+    public int deleteEvents(int[] statuses, long maxId);
+
+    /**
+     * Deletes all of the {@link AnalyticsEvent}s in the given ranges of IDs from the backing store in a single
+     * transaction, with one statement for each range.  Use this to delete a batch of events once it has been sent.
+     * @param idRanges  the {@link EventIdRange}s of the events to delete
+     * @return the number of events deleted
+     */
+    public int deleteEventsInRanges(List<EventIdRange> idRanges);
+
     /**
      * Gets the number of {@link AnalyticsEvent} currently in the backing store.
      * @return the number of {@link AnalyticsEvent} currently in the backing store.
      */
     public int getNumberOfEvents();
 
+    /**
+     * Gets the number of {@link AnalyticsEvent} currently in the backing store with the given status.
+     * @param status  a {@link AnalyticsEvent.Status} value to count
+     * @return the number of {@link AnalyticsEvent} currently in the backing store with the given status.
+     */
+    public int getNumberOfEventsWithStatus(int status);
+
+    /**
+     * Gets the number of {@link AnalyticsEvent} currently in the backing store with IDs in the given ranges,
+     * with one count for each range.  Use this to check that a batch of events still exists before sending it.
+     * @param idRanges  the {@link EventIdRange}s of the events to count
+     * @return the number of {@link AnalyticsEvent} currently in the backing store with IDs in the given ranges.
+     */
+    public int getNumberOfEventsInRanges(List<EventIdRange> idRanges);
+
+    /**
+     * Gets the number of {@link AnalyticsEvent} with each status, the time of the oldest event that still needs
+     * to be sent and the approximate size of the backing store.  This is cheaper than reading the events.
+     * @return the {@link EventQueueStatistics} for the backing store.
+     */
+    public EventQueueStatistics getQueueStatistics();
+
     /**
      * Deletes all {@link AnalyticsEvent}s from the backing store
      */
@@ -70,4 +139,35 @@ public interface AnalyticsEventsStorage {
      * @param status the {@link AnalyticsEvent.Status} value to set
      */
     public void setEventStatus(Uri eventUri, int status);
+
+    /**
+     * Sets the status of all the {@link AnalyticsEvent}s that have any of the given statuses and
+     * an ID no greater than the given ID.  The events are updated all at once.
+     *
+     * @param fromStatuses the {@link AnalyticsEvent.Status} values of the events to update
+     * @param toStatus the {@link AnalyticsEvent.Status} value to set
+     * @param maxId the largest ID of the events to update
+     * @return the number of events updated, or -1 if the update failed
+     */
+    public int updateStatus(int[] fromStatuses, int toStatus, long maxId);
+
+    /**
+     * Sets the status of all the {@link AnalyticsEvent}s with IDs in the given range, whatever their
+     * current status is.  The events are updated all at once.
+     *
+     * @param idRange the {@link EventIdRange} of the events to update
+     * @param toStatus the {@link AnalyticsEvent.Status} value to set
+     * @return the number of events updated, or -1 if the update failed
+     */
+    public int updateStatus(EventIdRange idRange, int toStatus);
+
+    /**
+     * Saves the ID of the batch that the {@link AnalyticsEvent}s with IDs in the given ranges are being sent in,
+     * so that the same batch ID is used if they need to be sent again.  The events are updated in a single transaction.
+     *
+     * @param idRanges the {@link EventIdRange}s of the events in the batch
+     * @param batchId the batch ID, or null to clear it
+     * @return the number of events updated
+     */
+    public int setBatchId(List<EventIdRange> idRanges, String batchId);
 }
@@ -7,6 +7,7 @@ import android.database.sqlite.SQLiteDatabase.CursorFactory;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.net.Uri;
 
+import java.util.LinkedList;
 import java.util.List;
 
 import io.pivotal.android.push.model.analytics.AnalyticsEvent;
@@ -14,10 +15,12 @@ import io.pivotal.android.push.util.Logger;
 
 public class Database extends SQLiteOpenHelper {
 
-    public static final int DATABASE_VERSION = 3;
+    public static final int DATABASE_VERSION = 6;
     public static final String DATABASE_FILENAME = "io.pivotal.android.push.events.db";
     public static final String AUTHORITY = "io.pivotal.android.push.providers.EventsDatabase";
     public static final String EVENTS_TABLE_NAME = "events";
+    public static final String EVENTS_VIEW_NAME = "events_view";
+    public static final String STRINGS_TABLE_NAME = "event_strings";
     public static final Uri EVENTS_CONTENT_URI = Uri.parse("content://" + AUTHORITY + "/" + EVENTS_TABLE_NAME);
     private final int databaseVersion;
 
@@ -28,10 +31,14 @@ public class Database extends SQLiteOpenHelper {
 
     @Override
     public void onCreate(final SQLiteDatabase db) {
-        final String[] createTableStatements = new String[] {
-            AnalyticsEvent.getCreateTableSqlStatement(databaseVersion)
-        };
-        for (final String sql : createTableStatements) {
+        final List<String> createStatements = new LinkedList<>();
+        createStatements.add(AnalyticsEvent.getCreateTableSqlStatement(databaseVersion));
+        if (databaseVersion >= 5) {
+            createStatements.add(StringDictionary.getCreateTableSqlStatement());
+            createStatements.add(AnalyticsEvent.getCreateViewSqlStatement(databaseVersion));
+        }
+        createStatements.addAll(AnalyticsEvent.getCreateIndexSqlStatements(databaseVersion));
+        for (final String sql : createStatements) {
             db.execSQL(sql);
         }
     }
@@ -69,7 +76,9 @@ public class Database extends SQLiteOpenHelper {
 
     private void recreateDatabase(SQLiteDatabase db) {
         final String[] dropTableStatements = new String[] {
-                AnalyticsEvent.getDropTableSqlStatement()
+                AnalyticsEvent.getDropViewSqlStatement(),
+                AnalyticsEvent.getDropTableSqlStatement(),
+                StringDictionary.getDropTableSqlStatement()
         };
         for (final String dropTableStatement : dropTableStatements) {
             db.execSQL(dropTableStatement);
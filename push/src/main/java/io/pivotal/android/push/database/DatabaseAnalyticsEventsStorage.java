@@ -1,17 +1,34 @@
 package io.pivotal.android.push.database;
 
+import android.content.ContentUris;
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.net.Uri;
+import android.provider.BaseColumns;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import io.pivotal.android.push.model.analytics.AnalyticsEvent;
 
 
 public class DatabaseAnalyticsEventsStorage implements AnalyticsEventsStorage {
 
+	// Only the row IDs are needed to build event URIs
+	private static final String[] ID_PROJECTION = new String[] { BaseColumns._ID };
+
+	// Both queries only read the status index, apart from the single row looked up by ID
+	private static final String COUNT_EVENTS_BY_STATUS_QUERY = "SELECT " + AnalyticsEvent.Columns.STATUS + ", COUNT(*) FROM " +
+			Database.EVENTS_TABLE_NAME + " GROUP BY " + AnalyticsEvent.Columns.STATUS;
+	private static final String OLDEST_PENDING_EVENT_TIME_QUERY = "SELECT " + AnalyticsEvent.Columns.EVENT_TIME + " FROM " +
+			Database.EVENTS_TABLE_NAME + " WHERE " + BaseColumns._ID + " = (SELECT MIN(" + BaseColumns._ID + ") FROM " +
+			Database.EVENTS_TABLE_NAME + " WHERE " + AnalyticsEvent.Columns.STATUS + " IN (?,?))";
+
 	public DatabaseAnalyticsEventsStorage() {
 	}
 
@@ -22,18 +39,27 @@ public class DatabaseAnalyticsEventsStorage implements AnalyticsEventsStorage {
 		return uri;
 	}
 
+	@Override
+	public List<Uri> saveEvents(List<AnalyticsEvent> events) {
+		final List<ContentValues> contentValues = new ArrayList<>(events.size());
+		for (final AnalyticsEvent event : events) {
+			contentValues.add(event.getContentValues(Database.DATABASE_VERSION));
+		}
+		return DatabaseWrapper.insert(Database.EVENTS_CONTENT_URI, contentValues);
+	}
+
 	@Override
 	public List<Uri> getEventUris() {
-        return getGeneralQuery(null, null, null, null);
+        return getGeneralQuery(ID_PROJECTION, null, null, null);
 	}
 
 	public List<Uri> getEventUrisWithStatus(int status) {
-        return getGeneralQuery(null, "status = ?", new String[] { String.valueOf(status) }, null);
+        return getGeneralQuery(ID_PROJECTION, "status = ?", new String[] { String.valueOf(status) }, null);
 	}
 
 	@Override
 	public List<Uri> getEventUrisWithType(String eventType) {
-		return getGeneralQuery(null, "eventType = ?", new String[] { eventType }, null);
+		return getGeneralQuery(ID_PROJECTION, "eventType = ?", new String[] { eventType }, null);
 	}
 
 	private List<Uri> getGeneralQuery(String[] projection, String selection, String[] selectionArgs, String sortOrder) {
@@ -62,19 +88,60 @@ public class DatabaseAnalyticsEventsStorage implements AnalyticsEventsStorage {
 
 	@Override
 	public int getNumberOfEvents() {
+		return (int) DatabaseWrapper.countEvents();
+	}
+
+	@Override
+	public int getNumberOfEventsWithStatus(int status) {
+		return (int) DatabaseWrapper.countEventsWithStatus(status);
+	}
+
+	@Override
+	public int getNumberOfEventsInRanges(List<EventIdRange> idRanges) {
+		long numberOfEvents = 0;
+		for (final EventIdRange idRange : idRanges) {
+			numberOfEvents += DatabaseWrapper.countEventsInRange(idRange.getFirstId(), idRange.getLastId());
+		}
+		return (int) numberOfEvents;
+	}
+
+	@Override
+	public EventQueueStatistics getQueueStatistics() {
+		final Map<Integer, Integer> numberOfEventsByStatus = new HashMap<>();
 		Cursor cursor = null;
 		try {
-			cursor = DatabaseWrapper.query(Database.EVENTS_CONTENT_URI, null, null, null, null);
+			cursor = DatabaseWrapper.rawQuery(COUNT_EVENTS_BY_STATUS_QUERY, null);
+			while (cursor.moveToNext()) {
+				numberOfEventsByStatus.put(cursor.getInt(0), cursor.getInt(1));
+			}
+		} finally {
 			if (cursor != null) {
-				cursor.moveToFirst();
-				return cursor.getCount();
+				cursor.close();
+			}
+		}
+		return new EventQueueStatistics(numberOfEventsByStatus, getOldestPendingEventTime(), DatabaseWrapper.getUsedBytes());
+	}
+
+	private Date getOldestPendingEventTime() {
+		final String[] selectionArgs = new String[] { String.valueOf(AnalyticsEvent.Status.NOT_POSTED), String.valueOf(AnalyticsEvent.Status.POSTING_ERROR) };
+		Cursor cursor = null;
+		try {
+			cursor = DatabaseWrapper.rawQuery(OLDEST_PENDING_EVENT_TIME_QUERY, selectionArgs);
+			if (!cursor.moveToFirst() || cursor.isNull(0)) {
+				return null;
+			}
+			// Event times are saved in milliseconds since version 4 of the database, and in seconds before that
+			if (cursor.getType(0) == Cursor.FIELD_TYPE_INTEGER) {
+				return new Date(cursor.getLong(0));
 			}
+			return new Date(Long.parseLong(cursor.getString(0)) * 1000L);
+		} catch (NumberFormatException e) {
+			return null;
 		} finally {
 			if (cursor != null) {
 				cursor.close();
 			}
 		}
-		return 0;
 	}
 
 	@Override
@@ -97,9 +164,71 @@ public class DatabaseAnalyticsEventsStorage implements AnalyticsEventsStorage {
 		}
 	}
 
+	@Override
+	public void streamEventsWithStatuses(AnalyticsEventsHandler handler, int... statuses) throws IOException {
+		if (statuses == null || statuses.length == 0) {
+			return;
+		}
+
+		final String[] selectionArgs = new String[statuses.length];
+		final String selection = DatabaseWrapper.getWhereInClause(AnalyticsEvent.Columns.STATUS, statuses, selectionArgs);
+
+		streamEvents(selection, selectionArgs, handler);
+	}
+
+	@Override
+	public void streamEvents(List<EventIdRange> idRanges, AnalyticsEventsHandler handler) throws IOException {
+		// One query for each range, so that the ID index limits the rows read
+		for (final EventIdRange idRange : idRanges) {
+			final String[] selectionArgs = new String[] { String.valueOf(idRange.getFirstId()), String.valueOf(idRange.getLastId()) };
+			streamEvents(BaseColumns._ID + " BETWEEN ? AND ?", selectionArgs, handler);
+		}
+	}
+
+	private void streamEvents(String selection, String[] selectionArgs, AnalyticsEventsHandler handler) throws IOException {
+		Cursor cursor = null;
+		try {
+			cursor = DatabaseWrapper.query(Database.EVENTS_CONTENT_URI, null, selection, selectionArgs, BaseColumns._ID);
+			if (cursor != null) {
+				final AnalyticsEvent.ColumnIndexes columnIndexes = new AnalyticsEvent.ColumnIndexes(cursor);
+				for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+					final AnalyticsEvent event = new AnalyticsEvent(cursor, columnIndexes);
+					final Uri uri = Uri.withAppendedPath(Database.EVENTS_CONTENT_URI, String.valueOf(event.getId()));
+					handler.onEvent(uri, event);
+				}
+			}
+		} finally {
+			if (cursor != null) {
+				cursor.close();
+			}
+		}
+	}
+
 	@Override
 	public void deleteEvents(List<Uri> eventUris) {
-		DatabaseWrapper.delete(eventUris, null, null);
+		final long[] ids = new long[eventUris.size()];
+		int i = 0;
+		for (final Uri uri : eventUris) {
+			ids[i++] = ContentUris.parseId(uri);
+		}
+		// Events that were saved one after another are deleted with a single statement
+		DatabaseWrapper.deleteEvents(EventIdRange.fromIds(ids));
+	}
+
+	@Override
+	public int deleteEvents(int[] statuses, long maxId) {
+		if (statuses == null || statuses.length == 0) {
+			return 0;
+		}
+		final String[] whereArgs = new String[statuses.length + 1];
+		final String whereClause = DatabaseWrapper.getWhereInClause(AnalyticsEvent.Columns.STATUS, statuses, whereArgs) + " AND " + BaseColumns._ID + " <= ?";
+		whereArgs[statuses.length] = String.valueOf(maxId);
+		return DatabaseWrapper.delete(Database.EVENTS_CONTENT_URI, whereClause, whereArgs);
+	}
+
+	@Override
+	public int deleteEventsInRanges(List<EventIdRange> idRanges) {
+		return DatabaseWrapper.deleteEvents(idRanges);
 	}
 
 	@Override
@@ -116,4 +245,34 @@ public class DatabaseAnalyticsEventsStorage implements AnalyticsEventsStorage {
 			throw new IllegalArgumentException("Could not find event with Uri " + eventUri.getPath());
 		}
 	}
+
+	@Override
+	public int updateStatus(int[] fromStatuses, int toStatus, long maxId) {
+		if (fromStatuses == null || fromStatuses.length == 0) {
+			return 0;
+		}
+		final String[] whereArgs = new String[fromStatuses.length + 1];
+		final String whereClause = DatabaseWrapper.getWhereInClause(AnalyticsEvent.Columns.STATUS, fromStatuses, whereArgs) + " AND " + BaseColumns._ID + " <= ?";
+		whereArgs[fromStatuses.length] = String.valueOf(maxId);
+		return updateStatus(whereClause, whereArgs, toStatus);
+	}
+
+	@Override
+	public int updateStatus(EventIdRange idRange, int toStatus) {
+		return DatabaseWrapper.updateEventStatus(idRange, toStatus);
+	}
+
+	@Override
+	public int setBatchId(List<EventIdRange> idRanges, String batchId) {
+		final ContentValues values = new ContentValues();
+		values.put(AnalyticsEvent.Columns.BATCH_ID, batchId);
+		return DatabaseWrapper.updateEvents(idRanges, values);
+	}
+
+	// A single UPDATE statement, so all of the events are updated in one transaction
+	private int updateStatus(String whereClause, String[] whereArgs, int toStatus) {
+		final ContentValues values = new ContentValues();
+		values.put(AnalyticsEvent.Columns.STATUS, toStatus);
+		return DatabaseWrapper.update(Database.EVENTS_CONTENT_URI, values, whereClause, whereArgs);
+	}
 }
@@ -4,6 +4,7 @@ import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteCursor;
 import android.database.sqlite.SQLiteCursorDriver;
@@ -13,14 +14,23 @@ import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteFullException;
 import android.database.sqlite.SQLiteQuery;
 import android.net.Uri;
+import android.provider.BaseColumns;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import io.pivotal.android.push.database.urihelpers.DatabaseUriHelper;
 import io.pivotal.android.push.database.urihelpers.DeleteParams;
 import io.pivotal.android.push.database.urihelpers.QueryParams;
 import io.pivotal.android.push.database.urihelpers.UpdateParams;
+import io.pivotal.android.push.model.analytics.AnalyticsEvent;
 import io.pivotal.android.push.util.DebugUtil;
 import io.pivotal.android.push.util.Logger;
 
@@ -28,8 +38,27 @@ public class DatabaseWrapper {
 
     private static final int MAX_DATABASE_SIZE_RELEASE = 1024 * 1024; // 1 MB
     private static final int MAX_DATABASE_SIZE_DEBUG = 32 * 1024; // 32 kB
+    private static final int ROWS_INSERTED_BETWEEN_SIZE_CHECKS = 16;
     private static final Object lock = new Object();
     private static SQLiteDatabase database;
+    private static EventEvictor eventEvictor = new EventEvictor(new PriorityEvictionPolicy());
+    private static ExecutorService evictionExecutor;
+    private static boolean isHighThroughputModeEnabled;
+    private static EventStatements eventStatements;
+
+    // Kept up to date on every insert and delete so that the table doesn't have to be counted before each eviction check
+    private static final AtomicLong numberOfEvents = new AtomicLong();
+    private static final AtomicBoolean isEvictionScheduled = new AtomicBoolean();
+
+    // The size of the database is only read every few inserts, since it takes two queries.  The page size and
+    // the maximum size don't change once the database has been opened.
+    private static final AtomicInteger rowsInsertedSinceSizeCheck = new AtomicInteger();
+    private static volatile long pageSize;
+    private static volatile long maximumBytes;
+
+    // The changes to the number of events made by the current thread's transaction.  They are only applied
+    // once the transaction commits, since a rolled back transaction doesn't change the table.
+    private static final ThreadLocal<EventCountChange> transactionEventCountChange = new ThreadLocal<>();
 
     private static SQLiteDatabase getDatabase() {
         synchronized (lock) {
@@ -52,7 +81,12 @@ public class DatabaseWrapper {
                 } else {
                     maxDatabaseSize = MAX_DATABASE_SIZE_RELEASE;
                 }
-                database.setMaximumSize(maxDatabaseSize);
+                maximumBytes = database.setMaximumSize(maxDatabaseSize);
+                pageSize = database.getPageSize();
+                numberOfEvents.set(Math.max(0, getNumberOfRowsInTable(Database.EVENTS_TABLE_NAME)));
+                if (isHighThroughputModeEnabled) {
+                    applyHighThroughputMode(true);
+                }
                 Logger.fd("Database has been initialized for package '%s' with maximum size %d kB.", context.getPackageName(), maxDatabaseSize / 1024);
                 return true;
             } else {
@@ -61,16 +95,131 @@ public class DatabaseWrapper {
         }
     }
 
+    /**
+     * Turns the high-throughput mode on or off.  In high-throughput mode the database uses write-ahead
+     * logging, so reading events to send them doesn't block saving new ones, and the statements run for
+     * every event are compiled once and reused.  It is off by default.
+     *
+     * This should be called before the database is used, since the journal mode can't be changed
+     * while a transaction is open.
+     */
+    public static void setHighThroughputModeEnabled(boolean isEnabled) {
+        synchronized (lock) {
+            if (isHighThroughputModeEnabled != isEnabled) {
+                isHighThroughputModeEnabled = isEnabled;
+                if (database != null) {
+                    applyHighThroughputMode(isEnabled);
+                }
+            }
+        }
+    }
+
+    public static boolean isHighThroughputModeEnabled() {
+        synchronized (lock) {
+            return isHighThroughputModeEnabled;
+        }
+    }
+
+    // Must be called while holding the lock
+    private static void applyHighThroughputMode(boolean isEnabled) {
+        if (eventStatements != null) {
+            eventStatements.close();
+            eventStatements = null;
+        }
+        if (isEnabled) {
+            if (!database.enableWriteAheadLogging()) {
+                Logger.w("Could not enable write-ahead logging for the database.");
+            }
+            eventStatements = new EventStatements(database);
+        } else {
+            database.disableWriteAheadLogging();
+        }
+        Logger.fd("Database high-throughput mode is %s.", isEnabled ? "on" : "off");
+    }
+
+    private static EventStatements getEventStatements() {
+        synchronized (lock) {
+            return eventStatements;
+        }
+    }
+
+    /**
+     * Sets the policy that decides when analytics events are evicted and which are evicted first.
+     * The default is a {@link PriorityEvictionPolicy}.
+     */
+    public static void setEvictionPolicy(EvictionPolicy policy) {
+        if (policy == null) {
+            throw new IllegalArgumentException("policy may not be null");
+        }
+        synchronized (lock) {
+            eventEvictor = new EventEvictor(policy);
+        }
+    }
+
+    private static EventEvictor getEventEvictor() {
+        synchronized (lock) {
+            return eventEvictor;
+        }
+    }
+
+    private static ExecutorService getEvictionExecutor() {
+        synchronized (lock) {
+            if (evictionExecutor == null) {
+                evictionExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        final Thread thread = new Thread(runnable, "DatabaseEviction");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            }
+            return evictionExecutor;
+        }
+    }
+
+    public static long getNumberOfEvents() {
+        return numberOfEvents.get();
+    }
+
     // Only used by unit tests
     public static void removeDatabaseInstance() {
         synchronized (lock) {
+            if (eventStatements != null) {
+                eventStatements.close();
+                eventStatements = null;
+            }
             database = null;
         }
     }
 
     public static Cursor query(final Uri uri, final String[] projection, final String whereClause, final String[] whereArgs, final String sortOrder) {
         final QueryParams queryParams = DatabaseUriHelper.getUriHelper(uri).getQueryParams(uri, projection, whereClause, whereArgs, sortOrder);
-        return getDatabase().query(DatabaseUriHelper.getUriHelper(uri).getDefaultTableName(), queryParams.projection, queryParams.whereClause, queryParams.whereArgs, null, null, queryParams.sortOrder);
+        return getDatabase().query(DatabaseUriHelper.getUriHelper(uri).getQueryTableName(), queryParams.projection, queryParams.whereClause, queryParams.whereArgs, null, null, queryParams.sortOrder);
+    }
+
+    public static Cursor rawQuery(final String sql, final String[] selectionArgs) {
+        return getDatabase().rawQuery(sql, selectionArgs);
+    }
+
+    /**
+     * @return the approximate number of bytes used by the database
+     */
+    public static long getUsedBytes() {
+        return EventEvictor.getUsedBytes(getDatabase());
+    }
+
+    /**
+     * Builds a where clause that matches the rows where the given column has any of the given values
+     * (e.g.: "status IN (?,?)").  The values are copied to the start of whereArgs, which must be at least as long as values.
+     */
+    public static String getWhereInClause(String column, int[] values, String[] whereArgs) {
+        final StringBuilder sb = new StringBuilder(column).append(" IN (");
+        for (int i = 0; i < values.length; i += 1) {
+            sb.append(i == 0 ? "?" : ",?");
+            whereArgs[i] = String.valueOf(values[i]);
+        }
+        return sb.append(')').toString();
     }
 
     public static int update(Uri uri, ContentValues values, String whereClause, String[] whereArgs) {
@@ -88,14 +237,126 @@ public class DatabaseWrapper {
         return -1;
     }
 
+    /**
+     * Sets the status of all of the events in the given range of IDs.
+     *
+     * @return the number of events updated, or -1 if they could not be updated
+     */
+    public static int updateEventStatus(EventIdRange idRange, int status) {
+        final EventStatements statements = getEventStatements();
+        if (statements == null) {
+            final ContentValues values = new ContentValues();
+            values.put(AnalyticsEvent.Columns.STATUS, status);
+            final String[] whereArgs = new String[] { String.valueOf(idRange.getFirstId()), String.valueOf(idRange.getLastId()) };
+            return update(Database.EVENTS_CONTENT_URI, values, BaseColumns._ID + " BETWEEN ? AND ?", whereArgs);
+        }
+        try {
+            return statements.updateStatus(idRange, status);
+        } catch (SQLiteFullException e) {
+            Logger.w("Note: database is full. Cleaning up");
+            if (cleanup()) {
+                return statements.updateStatus(idRange, status);
+            }
+        } catch (SQLException e) {
+            Logger.ex("Caught error upon updating into table " + Database.EVENTS_TABLE_NAME, e);
+        }
+        return -1;
+    }
+
+    /**
+     * Updates all of the events in the given ranges of IDs in a single transaction, with one statement for each range.
+     *
+     * @return the number of events updated
+     */
+    public static int updateEvents(final List<EventIdRange> idRanges, final ContentValues values) {
+        final int[] rowsUpdated = new int[1];
+        runInTransaction(new Runnable() {
+
+            @Override
+            public void run() {
+                for (final EventIdRange idRange : idRanges) {
+                    final String[] whereArgs = new String[] { String.valueOf(idRange.getFirstId()), String.valueOf(idRange.getLastId()) };
+                    rowsUpdated[0] += Math.max(0, update(Database.EVENTS_CONTENT_URI, values, BaseColumns._ID + " BETWEEN ? AND ?", whereArgs));
+                }
+            }
+        });
+        return rowsUpdated[0];
+    }
+
     private static int tryUpdate(Uri uri, ContentValues values, String whereClause, String[] whereArgs) {
         final UpdateParams updateParams = DatabaseUriHelper.getUriHelper(uri).getUpdateParams(uri, whereClause, whereArgs);
-        return getDatabase().update(DatabaseUriHelper.getUriHelper(uri).getDefaultTableName(), values, updateParams.whereClause, updateParams.whereArgs);
+        final String tableName = DatabaseUriHelper.getUriHelper(uri).getDefaultTableName();
+        return getDatabase().update(tableName, encodeStrings(tableName, values), updateParams.whereClause, updateParams.whereArgs);
     }
 
     public static int delete(Uri uri, String whereClause, String[] whereArgs) {
         final DeleteParams deleteParams = DatabaseUriHelper.getUriHelper(uri).getDeleteParams(uri, whereClause, whereArgs);
-        return getDatabase().delete(DatabaseUriHelper.getUriHelper(uri).getDefaultTableName(), deleteParams.whereClause, deleteParams.whereArgs);
+        final String tableName = DatabaseUriHelper.getUriHelper(uri).getDefaultTableName();
+        final int rowsDeleted = getDatabase().delete(tableName, deleteParams.whereClause, deleteParams.whereArgs);
+        if (deleteParams.whereClause == null) {
+            // Older versions of SQLite report 0 rows when every row is deleted
+            onTableChanged(tableName);
+        } else {
+            onRowsDeleted(tableName, rowsDeleted);
+        }
+        return rowsDeleted;
+    }
+
+    /**
+     * Deletes all of the events in the given range of IDs.
+     *
+     * @return the number of events deleted
+     */
+    public static int deleteEvents(EventIdRange idRange) {
+        final EventStatements statements = getEventStatements();
+        final int rowsDeleted;
+        if (statements != null) {
+            rowsDeleted = statements.deleteEvents(idRange);
+        } else {
+            final String[] whereArgs = new String[] { String.valueOf(idRange.getFirstId()), String.valueOf(idRange.getLastId()) };
+            rowsDeleted = getDatabase().delete(Database.EVENTS_TABLE_NAME, BaseColumns._ID + " BETWEEN ? AND ?", whereArgs);
+        }
+        onRowsDeleted(Database.EVENTS_TABLE_NAME, rowsDeleted);
+        return rowsDeleted;
+    }
+
+    /**
+     * Deletes all of the events in the given ranges of IDs in a single transaction, with one statement for each range.
+     *
+     * @return the number of events deleted
+     */
+    public static int deleteEvents(final List<EventIdRange> idRanges) {
+        final int[] rowsDeleted = new int[1];
+        runInTransaction(new Runnable() {
+
+            @Override
+            public void run() {
+                for (final EventIdRange idRange : idRanges) {
+                    rowsDeleted[0] += deleteEvents(idRange);
+                }
+            }
+        });
+        return rowsDeleted[0];
+    }
+
+    public static long countEvents() {
+        final EventStatements statements = getEventStatements();
+        if (statements != null) {
+            return statements.countEvents();
+        }
+        return DatabaseUtils.queryNumEntries(getDatabase(), Database.EVENTS_TABLE_NAME);
+    }
+
+    public static long countEventsWithStatus(int status) {
+        final EventStatements statements = getEventStatements();
+        if (statements != null) {
+            return statements.countEventsWithStatus(status);
+        }
+        return DatabaseUtils.queryNumEntries(getDatabase(), Database.EVENTS_TABLE_NAME, AnalyticsEvent.Columns.STATUS + " = ?", new String[] { String.valueOf(status) });
+    }
+
+    public static long countEventsInRange(long firstId, long lastId) {
+        return DatabaseUtils.queryNumEntries(getDatabase(), Database.EVENTS_TABLE_NAME, BaseColumns._ID + " BETWEEN ? AND ?", new String[] { String.valueOf(firstId), String.valueOf(lastId) });
     }
 
     public static void delete(final List<Uri> eventUris, final String whereClause, final String[] whereArgs) {
@@ -112,18 +373,38 @@ public class DatabaseWrapper {
     }
 
     private static void runInTransaction(Runnable runnable) {
-        SQLiteDatabase db = getDatabase();
+        final SQLiteDatabase db = getDatabase();
+        final EventCountChange outerEventCountChange = transactionEventCountChange.get();
+        final EventCountChange eventCountChange = new EventCountChange();
 
-        db.beginTransaction();
+        beginTransaction(db);
+        transactionEventCountChange.set(eventCountChange);
         try {
             runnable.run();
             db.setTransactionSuccessful();
         } finally {
+            transactionEventCountChange.set(outerEventCountChange);
             db.endTransaction();
         }
+
+        // Only reached if the transaction committed.  A nested transaction passes its changes on to the
+        // outer transaction, which applies them once it commits too.
+        if (eventCountChange.isRecountNeeded) {
+            onTableChanged(Database.EVENTS_TABLE_NAME);
+        } else {
+            addToNumberOfEvents(eventCountChange.numberOfEvents);
+        }
     }
 
     public static Uri insert(final Uri uri, final ContentValues values) {
+        final Uri result = insertOrCleanup(uri, values);
+        if (result != null) {
+            onRowsInserted(uri, 1);
+        }
+        return result;
+    }
+
+    private static Uri insertOrCleanup(final Uri uri, final ContentValues values) {
         try {
             return tryInsert(uri, values);
         } catch (SQLiteFullException e) {
@@ -144,17 +425,175 @@ public class DatabaseWrapper {
         return null;
     }
 
+    /**
+     * Inserts all of the given rows in a single transaction.  Either all of the rows are inserted or none of them are.
+     *
+     * @return the URIs of the new rows, in the same order as the given values, or null if the rows could not be inserted.
+     */
+    public static List<Uri> insert(final Uri uri, final List<ContentValues> valuesList) {
+        final List<Uri> result = insertOrCleanup(uri, valuesList);
+        if (result != null) {
+            onRowsInserted(uri, result.size());
+        }
+        return result;
+    }
+
+    private static List<Uri> insertOrCleanup(final Uri uri, final List<ContentValues> valuesList) {
+        try {
+            return tryInsert(uri, valuesList);
+        } catch (SQLiteFullException e) {
+            Logger.w("Note: database is full. Cleaning up");
+            if (cleanup()) {
+                return tryInsert(uri, valuesList);
+            }
+        } catch (SQLiteException e) {
+            if (e.getMessage().contains("cannot commit")) {
+                Logger.w("Note: database is full. Cleaning up");
+                if (cleanup()) {
+                    return tryInsert(uri, valuesList);
+                }
+            } else {
+                Logger.ex("Caught error upon inserting into table " + DatabaseUriHelper.getUriHelper(uri).getDefaultTableName(), e);
+            }
+        }
+        return null;
+    }
+
+    private static List<Uri> tryInsert(final Uri uri, final List<ContentValues> valuesList) {
+        final List<Uri> uris = new ArrayList<>(valuesList.size());
+        runInTransaction(new Runnable() {
+
+            @Override
+            public void run() {
+                for (final ContentValues values : valuesList) {
+                    uris.add(tryInsert(uri, values));
+                }
+            }
+        });
+        return uris;
+    }
+
+    // In write-ahead logging mode an immediate transaction lets readers carry on while it is open
+    private static void beginTransaction(SQLiteDatabase db) {
+        if (isHighThroughputModeEnabled()) {
+            db.beginTransactionNonExclusive();
+        } else {
+            db.beginTransaction();
+        }
+    }
+
     private static Uri tryInsert(final Uri uri, final ContentValues values) {
-        long rowId = getDatabase().insertOrThrow(DatabaseUriHelper.getUriHelper(uri).getDefaultTableName(), null, values);
+        final String tableName = DatabaseUriHelper.getUriHelper(uri).getDefaultTableName();
+        final ContentValues encodedValues = encodeStrings(tableName, values);
+        final EventStatements statements = getEventStatements();
+        final long rowId;
+        if (statements != null && Database.EVENTS_TABLE_NAME.equals(tableName) && EventStatements.canInsertEvent(encodedValues)) {
+            rowId = statements.insertEvent(encodedValues);
+        } else {
+            rowId = getDatabase().insertOrThrow(tableName, null, encodedValues);
+        }
         return ContentUris.withAppendedId(uri, rowId);
     }
 
-    private static boolean cleanup() {
-        boolean largestTableCleanUp = cleanupLargestTable();
-        return largestTableCleanUp;
+    // Repeated event values are saved once in the strings table.  The caller's values are not changed.
+    private static ContentValues encodeStrings(final String tableName, final ContentValues values) {
+        if (!Database.EVENTS_TABLE_NAME.equals(tableName)) {
+            return values;
+        }
+        final ContentValues encodedValues = new ContentValues(values);
+        StringDictionary.encode(getDatabase(), getEventStatements(), encodedValues, AnalyticsEvent.DICTIONARY_COLUMNS, AnalyticsEvent.DICTIONARY_REFERENCE_COLUMNS);
+        return encodedValues;
+    }
+
+    private static void onRowsInserted(final Uri uri, final int rowsInserted) {
+        if (!Database.EVENTS_TABLE_NAME.equals(DatabaseUriHelper.getUriHelper(uri).getDefaultTableName())) {
+            return;
+        }
+        addToNumberOfEvents(rowsInserted);
+        scheduleEvictionIfNeeded(rowsInserted);
     }
 
-    private static boolean cleanupLargestTable() {
+    private static void onRowsDeleted(final String tableName, final int rowsDeleted) {
+        if (Database.EVENTS_TABLE_NAME.equals(tableName) && rowsDeleted > 0) {
+            addToNumberOfEvents(-rowsDeleted);
+        }
+    }
+
+    // Counts the events again after a delete whose number of rows can't be relied on
+    private static void onTableChanged(final String tableName) {
+        if (!Database.EVENTS_TABLE_NAME.equals(tableName)) {
+            return;
+        }
+        final EventCountChange eventCountChange = transactionEventCountChange.get();
+        if (eventCountChange != null) {
+            eventCountChange.isRecountNeeded = true;
+            return;
+        }
+        final int rowsInTable = getNumberOfRowsInTable(Database.EVENTS_TABLE_NAME);
+        if (rowsInTable >= 0) {
+            numberOfEvents.set(rowsInTable);
+        }
+    }
+
+    private static void addToNumberOfEvents(final long delta) {
+        final EventCountChange eventCountChange = transactionEventCountChange.get();
+        if (eventCountChange != null) {
+            eventCountChange.numberOfEvents += delta;
+        } else if (delta != 0) {
+            numberOfEvents.addAndGet(delta);
+        }
+    }
+
+    // Evicts events in the background once the database is nearly full so that inserts rarely have to wait for a cleanup
+    private static void scheduleEvictionIfNeeded(final int rowsInserted) {
+        final EventEvictor evictor = getEventEvictor();
+        if (!evictor.canStartEviction(numberOfEvents.get(), maximumBytes)) {
+            return;
+        }
+        if (rowsInsertedSinceSizeCheck.addAndGet(rowsInserted) < ROWS_INSERTED_BETWEEN_SIZE_CHECKS) {
+            return;
+        }
+        rowsInsertedSinceSizeCheck.set(0);
+
+        final SQLiteDatabase db = getDatabase();
+        try {
+            if (!evictor.shouldStartEviction(db, numberOfEvents.get(), pageSize, maximumBytes) || !isEvictionScheduled.compareAndSet(false, true)) {
+                return;
+            }
+        } catch (SQLException e) {
+            Logger.ex("Could not check the size of the database", e);
+            return;
+        }
+        getEvictionExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    evict(db, evictor, false);
+                } catch (Exception e) {
+                    Logger.ex("Could not evict analytics events", e);
+                } finally {
+                    isEvictionScheduled.set(false);
+                }
+            }
+        });
+    }
+
+    private static int evict(SQLiteDatabase db, EventEvictor evictor, boolean isFull) {
+        final int evictedEvents = evictor.evict(db, numberOfEvents.get(), isFull);
+        onRowsDeleted(Database.EVENTS_TABLE_NAME, evictedEvents);
+        return evictedEvents;
+    }
+
+    // Called when the database is full.  Events are evicted by priority first, and the oldest half of the
+    // largest table is deleted if that doesn't free anything.
+    private static boolean cleanup() {
+        try {
+            if (evict(getDatabase(), getEventEvictor(), true) > 0) {
+                return true;
+            }
+        } catch (SQLException e) {
+            Logger.ex("Could not evict analytics events", e);
+        }
         final String largestTableName = getLargestTable();
         return (largestTableName != null && cleanup(largestTableName));
     }
@@ -208,6 +647,7 @@ public class DatabaseWrapper {
             avgRowId = c1.getInt(0);
 
             rowsDeleted = getDatabase().delete(tableName, "ROWID <= ?", new String[]{String.valueOf(avgRowId)});
+            onTableChanged(tableName);
         } catch (Exception e) {
             Logger.w(e);
             return false;
@@ -220,6 +660,11 @@ public class DatabaseWrapper {
         return true;
     }
 
+    private static class EventCountChange {
+        private long numberOfEvents;
+        private boolean isRecountNeeded;
+    }
+
     private static class DebugCursorFactory implements CursorFactory {
         @Override
         @SuppressWarnings("deprecation")
@@ -0,0 +1,139 @@
+package io.pivotal.android.push.database;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.provider.BaseColumns;
+
+import io.pivotal.android.push.model.analytics.AnalyticsEvent;
+import io.pivotal.android.push.util.Logger;
+
+/**
+ * Deletes analytics events in the order given by an {@link EvictionPolicy}.  Events are deleted in
+ * chunks, each in its own short transaction, so that other writers are not held up for long.
+ *
+ * The size of the database is read from the page counts in the database header instead of by
+ * counting rows.
+ */
+public class EventEvictor {
+
+    private static final String PAGE_COUNT_QUERY = "PRAGMA page_count;";
+    private static final String FREELIST_COUNT_QUERY = "PRAGMA freelist_count;";
+
+    // Events that are being sent, or that were sent in a batch that the server may already have, are left alone
+    private static final String NOT_IN_FLIGHT = AnalyticsEvent.Columns.STATUS + " != " + AnalyticsEvent.Status.POSTING +
+            " AND " + AnalyticsEvent.Columns.BATCH_ID + " IS NULL";
+
+    private static final String EVENT_TYPE_CHUNK_SELECTION = BaseColumns._ID + " IN (SELECT " + BaseColumns._ID +
+            " FROM " + Database.EVENTS_TABLE_NAME + " WHERE " + AnalyticsEvent.Columns.EVENT_TYPE + " = ? AND " +
+            NOT_IN_FLIGHT + " ORDER BY " + BaseColumns._ID + " LIMIT ?)";
+
+    private static final String OLDEST_CHUNK_SELECTION = BaseColumns._ID + " IN (SELECT " + BaseColumns._ID +
+            " FROM " + Database.EVENTS_TABLE_NAME + " WHERE " + NOT_IN_FLIGHT + " ORDER BY " + BaseColumns._ID + " LIMIT ?)";
+
+    private static final String OLDEST_IN_FLIGHT_CHUNK_SELECTION = BaseColumns._ID + " IN (SELECT " + BaseColumns._ID +
+            " FROM " + Database.EVENTS_TABLE_NAME + " ORDER BY " + BaseColumns._ID + " LIMIT ?)";
+
+    private final EvictionPolicy policy;
+
+    public EventEvictor(EvictionPolicy policy) {
+        if (policy == null) {
+            throw new IllegalArgumentException("policy may not be null");
+        }
+        this.policy = policy;
+    }
+
+    public EvictionPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return the number of bytes in use by the database, not counting free pages
+     */
+    public static long getUsedBytes(SQLiteDatabase db) {
+        return getUsedBytes(db, db.getPageSize());
+    }
+
+    /**
+     * @param pageSize the page size of the database, which doesn't change once it has been created
+     * @return the number of bytes in use by the database, not counting free pages
+     */
+    public static long getUsedBytes(SQLiteDatabase db, long pageSize) {
+        final long pageCount = DatabaseUtils.longForQuery(db, PAGE_COUNT_QUERY, null);
+        final long freelistCount = DatabaseUtils.longForQuery(db, FREELIST_COUNT_QUERY, null);
+        return (pageCount - freelistCount) * pageSize;
+    }
+
+    /**
+     * Checks the number of events without reading the size of the database.
+     *
+     * @return false if the policy would not start eviction with this many events, however full the database is
+     */
+    public boolean canStartEviction(long numberOfEvents, long maximumBytes) {
+        return policy.shouldStartEviction(numberOfEvents, Long.MAX_VALUE, maximumBytes);
+    }
+
+    /**
+     * @param pageSize the page size of the database
+     * @param maximumBytes the maximum size of the database
+     */
+    public boolean shouldStartEviction(SQLiteDatabase db, long numberOfEvents, long pageSize, long maximumBytes) {
+        return policy.shouldStartEviction(numberOfEvents, getUsedBytes(db, pageSize), maximumBytes);
+    }
+
+    /**
+     * Evicts events until the policy says to stop.  No more than half of the events are evicted at a time.
+     *
+     * @param db the database
+     * @param numberOfEvents the number of events in the database
+     * @param isFull true if the database is already full, in which case at least one chunk is evicted
+     * @return the number of events evicted
+     */
+    public int evict(SQLiteDatabase db, long numberOfEvents, boolean isFull) {
+        final long maximumBytes = db.getMaximumSize();
+        long remainingEvents = numberOfEvents;
+        int evictedEvents = 0;
+        if (!isFull && policy.shouldStopEviction(remainingEvents, getUsedBytes(db), maximumBytes)) {
+            return 0;
+        }
+        do {
+            final long chunkSize = Math.max(1, Math.min(policy.getChunkSize(), remainingEvents - numberOfEvents / 2));
+            final int chunk = evictChunk(db, chunkSize, isFull);
+            if (chunk == 0) {
+                break;
+            }
+            evictedEvents += chunk;
+            remainingEvents -= chunk;
+        } while (remainingEvents > numberOfEvents / 2 && !policy.shouldStopEviction(remainingEvents, getUsedBytes(db), maximumBytes));
+
+        Logger.i("Database eviction removed " + evictedEvents + " events from table " + Database.EVENTS_TABLE_NAME);
+        return evictedEvents;
+    }
+
+    /**
+     * Deletes up to one chunk of events, taking the oldest events of the first event type in the
+     * eviction order that still has any.  Events that are being sent, or that already have a batch ID,
+     * are not deleted.
+     *
+     * @return the number of events deleted
+     */
+    public int evictChunk(SQLiteDatabase db, long chunkSize) {
+        return evictChunk(db, chunkSize, false);
+    }
+
+    // In-flight events are only deleted once nothing else is left and the database is full, since
+    // deleting them makes the batch that is being sent fail
+    private int evictChunk(SQLiteDatabase db, long chunkSize, boolean canEvictInFlightEvents) {
+        final String limit = String.valueOf(chunkSize);
+        for (final String eventType : policy.getEventTypesInEvictionOrder()) {
+            final int rowsDeleted = db.delete(Database.EVENTS_TABLE_NAME, EVENT_TYPE_CHUNK_SELECTION, new String[] { eventType, limit });
+            if (rowsDeleted > 0) {
+                return rowsDeleted;
+            }
+        }
+        final int rowsDeleted = db.delete(Database.EVENTS_TABLE_NAME, OLDEST_CHUNK_SELECTION, new String[] { limit });
+        if (rowsDeleted > 0 || !canEvictInFlightEvents) {
+            return rowsDeleted;
+        }
+        return db.delete(Database.EVENTS_TABLE_NAME, OLDEST_IN_FLIGHT_CHUNK_SELECTION, new String[] { limit });
+    }
+}
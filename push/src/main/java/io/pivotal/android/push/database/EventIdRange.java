@@ -0,0 +1,80 @@
+package io.pivotal.android.push.database;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An inclusive range of event row IDs in the backing store.
+ */
+public class EventIdRange {
+
+    private final long firstId;
+    private final long lastId;
+
+    public EventIdRange(long firstId, long lastId) {
+        if (firstId > lastId) {
+            throw new IllegalArgumentException("firstId may not be greater than lastId");
+        }
+        this.firstId = firstId;
+        this.lastId = lastId;
+    }
+
+    /**
+     * Combines the given IDs into as few ranges as possible.  IDs that follow each other share a range.
+     *
+     * @param ids the IDs, in any order.  The array is not changed.
+     * @return the ranges, in order of ID
+     */
+    public static List<EventIdRange> fromIds(long[] ids) {
+        final long[] sortedIds = Arrays.copyOf(ids, ids.length);
+        Arrays.sort(sortedIds);
+        final List<EventIdRange> ranges = new ArrayList<>();
+        int first = 0;
+        for (int i = 1; i <= sortedIds.length; i += 1) {
+            if (i == sortedIds.length || sortedIds[i] > sortedIds[i - 1] + 1) {
+                ranges.add(new EventIdRange(sortedIds[first], sortedIds[i - 1]));
+                first = i;
+            }
+        }
+        return ranges;
+    }
+
+    public long getFirstId() {
+        return firstId;
+    }
+
+    public long getLastId() {
+        return lastId;
+    }
+
+    public boolean contains(long id) {
+        return id >= firstId && id <= lastId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        EventIdRange that = (EventIdRange) o;
+
+        if (firstId != that.firstId) return false;
+        return lastId == that.lastId;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (firstId ^ (firstId >>> 32));
+        result = 31 * result + (int) (lastId ^ (lastId >>> 32));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "EventIdRange{" +
+                "firstId=" + firstId +
+                ", lastId=" + lastId +
+                '}';
+    }
+}
@@ -0,0 +1,70 @@
+package io.pivotal.android.push.database;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.pivotal.android.push.model.analytics.AnalyticsEvent;
+
+/**
+ * A snapshot of the analytics events waiting in the backing store.  Read with
+ * {@link AnalyticsEventsStorage#getQueueStatistics}.
+ */
+public class EventQueueStatistics {
+
+    private final Map<Integer, Integer> numberOfEventsByStatus;
+    private final Date oldestPendingEventTime;
+    private final long approximateBytes;
+
+    /**
+     * @param numberOfEventsByStatus the number of events with each {@link AnalyticsEvent.Status}.  Statuses that are missing have no events.
+     * @param oldestPendingEventTime the time of the oldest event that still needs to be sent, or null if there are none
+     * @param approximateBytes the approximate size of the backing store
+     */
+    public EventQueueStatistics(Map<Integer, Integer> numberOfEventsByStatus, Date oldestPendingEventTime, long approximateBytes) {
+        if (numberOfEventsByStatus == null) {
+            throw new IllegalArgumentException("numberOfEventsByStatus may not be null");
+        }
+        this.numberOfEventsByStatus = Collections.unmodifiableMap(new HashMap<>(numberOfEventsByStatus));
+        this.oldestPendingEventTime = oldestPendingEventTime;
+        this.approximateBytes = approximateBytes;
+    }
+
+    public int getNumberOfEvents() {
+        int numberOfEvents = 0;
+        for (final Integer count : numberOfEventsByStatus.values()) {
+            numberOfEvents += count;
+        }
+        return numberOfEvents;
+    }
+
+    public int getNumberOfEventsWithStatus(int status) {
+        final Integer count = numberOfEventsByStatus.get(status);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * @return the number of events that still need to be sent, i.e.: those that have not been posted or failed to post
+     */
+    public int getNumberOfPendingEvents() {
+        return getNumberOfEventsWithStatus(AnalyticsEvent.Status.NOT_POSTED) + getNumberOfEventsWithStatus(AnalyticsEvent.Status.POSTING_ERROR);
+    }
+
+    public Date getOldestPendingEventTime() {
+        return oldestPendingEventTime;
+    }
+
+    public long getApproximateBytes() {
+        return approximateBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "EventQueueStatistics{" +
+                "numberOfEventsByStatus=" + numberOfEventsByStatus +
+                ", oldestPendingEventTime=" + oldestPendingEventTime +
+                ", approximateBytes=" + approximateBytes +
+                '}';
+    }
+}
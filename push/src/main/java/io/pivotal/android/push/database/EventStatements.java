@@ -0,0 +1,196 @@
+package io.pivotal.android.push.database;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.provider.BaseColumns;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import io.pivotal.android.push.model.analytics.AnalyticsEvent;
+
+/**
+ * Precompiled statements for the operations that run for every analytics event.  Each statement is
+ * compiled once and then bound with new arguments every time it runs, instead of building and
+ * compiling the SQL again for every call.
+ *
+ * A statement holds its bound arguments, so each one is only used by one thread at a time.
+ */
+public class EventStatements {
+
+    private static final List<String> INSERT_COLUMNS = Collections.unmodifiableList(Arrays.asList(
+            AnalyticsEvent.Columns.RECEIPT_ID,
+            AnalyticsEvent.Columns.EVENT_TYPE,
+            AnalyticsEvent.Columns.EVENT_TIME,
+            AnalyticsEvent.Columns.DEVICE_UUID,
+            AnalyticsEvent.Columns.GEOFENCE_ID,
+            AnalyticsEvent.Columns.LOCATION_ID,
+            AnalyticsEvent.Columns.SDK_VERSION,
+            AnalyticsEvent.Columns.PLATFORM_TYPE,
+            AnalyticsEvent.Columns.PLATFORM_UUID,
+            AnalyticsEvent.Columns.STATUS,
+            AnalyticsEvent.Columns.DEVICE_UUID_REF,
+            AnalyticsEvent.Columns.SDK_VERSION_REF,
+            AnalyticsEvent.Columns.PLATFORM_TYPE_REF,
+            AnalyticsEvent.Columns.PLATFORM_UUID_REF,
+            AnalyticsEvent.Columns.BATCH_ID));
+
+    private static final Set<String> INSERT_COLUMN_SET = new HashSet<>(INSERT_COLUMNS);
+
+    private final SQLiteStatement insertEventStatement;
+    private final SQLiteStatement updateStatusStatement;
+    private final SQLiteStatement deleteEventsStatement;
+    private final SQLiteStatement countEventsStatement;
+    private final SQLiteStatement countEventsWithStatusStatement;
+    private final SQLiteStatement findStringStatement;
+    private final SQLiteStatement insertStringStatement;
+
+    public EventStatements(SQLiteDatabase db) {
+        if (db == null) {
+            throw new IllegalArgumentException("db may not be null");
+        }
+        insertEventStatement = db.compileStatement(getInsertEventSqlStatement());
+        updateStatusStatement = db.compileStatement("UPDATE " + Database.EVENTS_TABLE_NAME + " SET " + AnalyticsEvent.Columns.STATUS +
+                " = ? WHERE " + BaseColumns._ID + " BETWEEN ? AND ?");
+        deleteEventsStatement = db.compileStatement("DELETE FROM " + Database.EVENTS_TABLE_NAME + " WHERE " + BaseColumns._ID + " BETWEEN ? AND ?");
+        countEventsStatement = db.compileStatement("SELECT COUNT(*) FROM " + Database.EVENTS_TABLE_NAME);
+        countEventsWithStatusStatement = db.compileStatement("SELECT COUNT(*) FROM " + Database.EVENTS_TABLE_NAME + " WHERE " +
+                AnalyticsEvent.Columns.STATUS + " = ?");
+        // Always returns a row so that a missing string doesn't throw
+        findStringStatement = db.compileStatement("SELECT IFNULL((SELECT " + BaseColumns._ID + " FROM " + Database.STRINGS_TABLE_NAME +
+                " WHERE " + StringDictionary.Columns.VALUE + " = ?), -1)");
+        insertStringStatement = db.compileStatement("INSERT OR IGNORE INTO " + Database.STRINGS_TABLE_NAME + " (" + StringDictionary.Columns.VALUE + ") VALUES (?)");
+    }
+
+    private static String getInsertEventSqlStatement() {
+        final StringBuilder sb = new StringBuilder("INSERT INTO ").append(Database.EVENTS_TABLE_NAME).append(" (");
+        for (int i = 0; i < INSERT_COLUMNS.size(); i += 1) {
+            sb.append(i == 0 ? "" : ", ").append(INSERT_COLUMNS.get(i));
+        }
+        sb.append(") VALUES (");
+        for (int i = 0; i < INSERT_COLUMNS.size(); i += 1) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        return sb.append(')').toString();
+    }
+
+    /**
+     * @return true if the given row only has columns that {@link #insertEvent} can bind
+     */
+    public static boolean canInsertEvent(ContentValues values) {
+        return INSERT_COLUMN_SET.containsAll(values.keySet());
+    }
+
+    /**
+     * @param values a row that has already had its strings encoded.  Columns that are missing are inserted as NULL.
+     * @return the ID of the new row
+     */
+    public long insertEvent(ContentValues values) {
+        synchronized (insertEventStatement) {
+            try {
+                for (int i = 0; i < INSERT_COLUMNS.size(); i += 1) {
+                    bind(insertEventStatement, i + 1, values.get(INSERT_COLUMNS.get(i)));
+                }
+                return insertEventStatement.executeInsert();
+            } finally {
+                insertEventStatement.clearBindings();
+            }
+        }
+    }
+
+    /**
+     * @return the number of events updated
+     */
+    public int updateStatus(EventIdRange idRange, int status) {
+        synchronized (updateStatusStatement) {
+            updateStatusStatement.bindLong(1, status);
+            updateStatusStatement.bindLong(2, idRange.getFirstId());
+            updateStatusStatement.bindLong(3, idRange.getLastId());
+            return updateStatusStatement.executeUpdateDelete();
+        }
+    }
+
+    /**
+     * @return the number of events deleted
+     */
+    public int deleteEvents(EventIdRange idRange) {
+        synchronized (deleteEventsStatement) {
+            deleteEventsStatement.bindLong(1, idRange.getFirstId());
+            deleteEventsStatement.bindLong(2, idRange.getLastId());
+            return deleteEventsStatement.executeUpdateDelete();
+        }
+    }
+
+    public long countEvents() {
+        synchronized (countEventsStatement) {
+            return countEventsStatement.simpleQueryForLong();
+        }
+    }
+
+    public long countEventsWithStatus(int status) {
+        synchronized (countEventsWithStatusStatement) {
+            countEventsWithStatusStatement.bindLong(1, status);
+            return countEventsWithStatusStatement.simpleQueryForLong();
+        }
+    }
+
+    /**
+     * @return the ID of the given string in the strings table, or -1 if it is not there
+     */
+    public long findString(String value) {
+        synchronized (findStringStatement) {
+            try {
+                findStringStatement.bindString(1, value);
+                return findStringStatement.simpleQueryForLong();
+            } finally {
+                findStringStatement.clearBindings();
+            }
+        }
+    }
+
+    /**
+     * Adds the string to the strings table unless it is already there.
+     *
+     * @return the ID of the new string, or -1 if the string was already in the table
+     */
+    public long insertString(String value) {
+        synchronized (insertStringStatement) {
+            try {
+                insertStringStatement.bindString(1, value);
+                return insertStringStatement.executeInsert();
+            } finally {
+                insertStringStatement.clearBindings();
+            }
+        }
+    }
+
+    public void close() {
+        final SQLiteStatement[] statements = new SQLiteStatement[] { insertEventStatement, updateStatusStatement, deleteEventsStatement,
+                countEventsStatement, countEventsWithStatusStatement, findStringStatement, insertStringStatement };
+        for (final SQLiteStatement statement : statements) {
+            synchronized (statement) {
+                statement.close();
+            }
+        }
+    }
+
+    private static void bind(SQLiteStatement statement, int index, Object value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            statement.bindLong(index, ((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            statement.bindDouble(index, ((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            statement.bindLong(index, (Boolean) value ? 1 : 0);
+        } else if (value instanceof byte[]) {
+            statement.bindBlob(index, (byte[]) value);
+        } else {
+            statement.bindString(index, value.toString());
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package io.pivotal.android.push.database;
+
+import java.util.List;
+
+/**
+ * Decides when analytics events are evicted to keep the database under its maximum size, and which
+ * events are evicted first.  Set with {@link DatabaseWrapper#setEvictionPolicy}.
+ */
+public interface EvictionPolicy {
+
+    /**
+     * Called after events are saved.  Eviction runs in the background, before the database is full.
+     * It is first called with usedBytes set to Long.MAX_VALUE to check the number of events alone, and
+     * the size of the database is only read if that returns true, so a full database must not return false.
+     *
+     * @param numberOfEvents the number of events in the database
+     * @param usedBytes the number of bytes used by the database
+     * @param maximumBytes the maximum size of the database
+     * @return true if events should be evicted now
+     */
+    boolean shouldStartEviction(long numberOfEvents, long usedBytes, long maximumBytes);
+
+    /**
+     * Called after each chunk of events is evicted.
+     *
+     * @param numberOfEvents the number of events in the database now
+     * @param usedBytes the number of bytes used by the database now
+     * @param maximumBytes the maximum size of the database
+     * @return true once enough events have been evicted
+     */
+    boolean shouldStopEviction(long numberOfEvents, long usedBytes, long maximumBytes);
+
+    /**
+     * @return the largest number of events deleted in one transaction
+     */
+    int getChunkSize();
+
+    /**
+     * @return the event types that are evicted before any others, cheapest to lose first.  Events of each type
+     * are evicted oldest first.  Events of any other type are evicted oldest first once these are all gone.
+     */
+    List<String> getEventTypesInEvictionOrder();
+}
@@ -0,0 +1,86 @@
+package io.pivotal.android.push.database;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import io.pivotal.android.push.analytics.AnalyticsEventLogger;
+
+/**
+ * Starts evicting events once the database is nearly full and stops once there is room again.  Heartbeats
+ * are evicted first and notification opened events last.  A small number of events is always kept, so that
+ * a database that is mostly taken up by its schema is not emptied.
+ */
+public class PriorityEvictionPolicy implements EvictionPolicy {
+
+    public static final double DEFAULT_START_FRACTION = 0.9;
+    public static final double DEFAULT_STOP_FRACTION = 0.75;
+    public static final int DEFAULT_MINIMUM_NUMBER_OF_EVENTS = 100;
+    public static final int DEFAULT_CHUNK_SIZE = 50;
+
+    public static final List<String> DEFAULT_EVENT_TYPES_IN_EVICTION_ORDER = Collections.unmodifiableList(Arrays.asList(
+            AnalyticsEventLogger.PCF_PUSH_EVENT_TYPE_HEARTBEAT,
+            AnalyticsEventLogger.PCF_PUSH_EVENT_TYPE_GEOFENCE_LOCATION_TRIGGERED,
+            AnalyticsEventLogger.PCF_PUSH_EVENT_TYPE_PUSH_NOTIFICATION_RECEIVED,
+            AnalyticsEventLogger.PCF_PUSH_EVENT_TYPE_PUSH_NOTIFICATION_OPENED));
+
+    private final double startFraction;
+    private final double stopFraction;
+    private final int minimumNumberOfEvents;
+    private final int chunkSize;
+    private final List<String> eventTypesInEvictionOrder;
+
+    public PriorityEvictionPolicy() {
+        this(DEFAULT_START_FRACTION, DEFAULT_STOP_FRACTION, DEFAULT_MINIMUM_NUMBER_OF_EVENTS, DEFAULT_CHUNK_SIZE, DEFAULT_EVENT_TYPES_IN_EVICTION_ORDER);
+    }
+
+    /**
+     * @param startFraction eviction starts once this fraction of the maximum database size is used
+     * @param stopFraction eviction stops once no more than this fraction of the maximum database size is used
+     * @param minimumNumberOfEvents eviction never leaves fewer events than this
+     * @param chunkSize the largest number of events deleted in one transaction
+     * @param eventTypesInEvictionOrder the event types that are evicted first, cheapest to lose first
+     */
+    public PriorityEvictionPolicy(double startFraction, double stopFraction, int minimumNumberOfEvents, int chunkSize, List<String> eventTypesInEvictionOrder) {
+        if (startFraction <= 0.0 || startFraction > 1.0) {
+            throw new IllegalArgumentException("startFraction must be greater than 0 and no more than 1");
+        }
+        if (stopFraction < 0.0 || stopFraction >= startFraction) {
+            throw new IllegalArgumentException("stopFraction must be at least 0 and less than startFraction");
+        }
+        if (minimumNumberOfEvents < 0) {
+            throw new IllegalArgumentException("minimumNumberOfEvents may not be negative");
+        }
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be at least 1");
+        }
+        if (eventTypesInEvictionOrder == null) {
+            throw new IllegalArgumentException("eventTypesInEvictionOrder may not be null");
+        }
+        this.startFraction = startFraction;
+        this.stopFraction = stopFraction;
+        this.minimumNumberOfEvents = minimumNumberOfEvents;
+        this.chunkSize = chunkSize;
+        this.eventTypesInEvictionOrder = eventTypesInEvictionOrder;
+    }
+
+    @Override
+    public boolean shouldStartEviction(long numberOfEvents, long usedBytes, long maximumBytes) {
+        return numberOfEvents > minimumNumberOfEvents && usedBytes >= startFraction * maximumBytes;
+    }
+
+    @Override
+    public boolean shouldStopEviction(long numberOfEvents, long usedBytes, long maximumBytes) {
+        return numberOfEvents <= minimumNumberOfEvents || usedBytes <= stopFraction * maximumBytes;
+    }
+
+    @Override
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    @Override
+    public List<String> getEventTypesInEvictionOrder() {
+        return eventTypesInEvictionOrder;
+    }
+}
@@ -0,0 +1,102 @@
+package io.pivotal.android.push.database;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.provider.BaseColumns;
+
+/**
+ * Stores each distinct string once in the strings table so that rows in other tables can refer to
+ * it by ID.  Used for values that are repeated in almost every row, like the device UUID.
+ */
+public class StringDictionary {
+
+    public static class Columns {
+        public static final String VALUE = "value";
+    }
+
+    private static final String[] ID_PROJECTION = new String[] { BaseColumns._ID };
+    private static final String VALUE_SELECTION = Columns.VALUE + " = ?";
+
+    public static String getCreateTableSqlStatement() {
+        return "CREATE TABLE IF NOT EXISTS '" + Database.STRINGS_TABLE_NAME + "' ('" +
+                BaseColumns._ID + "' INTEGER PRIMARY KEY, '" +
+                Columns.VALUE + "' TEXT NOT NULL UNIQUE);";
+    }
+
+    public static String getDropTableSqlStatement() {
+        return "DROP TABLE IF EXISTS '" + Database.STRINGS_TABLE_NAME + "';";
+    }
+
+    /**
+     * Moves the given columns out of the content values and into the strings table.  Each column is
+     * replaced by its reference column, which holds the ID of the string.  The original columns are
+     * set to NULL so that any value that was saved inline before is no longer used.
+     *
+     * @param db the database.  Strings added for a row that then fails to save are left in the table, which is harmless.
+     * @param statements the precompiled statements used to look up and add strings, or null to build them each time
+     * @param values the row to be inserted or updated.  It is changed in place.
+     * @param columns the columns to encode
+     * @param referenceColumns the reference column for each of the given columns
+     */
+    public static void encode(SQLiteDatabase db, EventStatements statements, ContentValues values, String[] columns, String[] referenceColumns) {
+        for (int i = 0; i < columns.length; i += 1) {
+            if (values.containsKey(columns[i])) {
+                final String value = values.getAsString(columns[i]);
+                values.putNull(columns[i]);
+                if (value != null) {
+                    values.put(referenceColumns[i], statements != null ? getId(statements, value) : getId(db, value));
+                } else {
+                    values.putNull(referenceColumns[i]);
+                }
+            }
+        }
+    }
+
+    // Another thread may add the same string between the lookup and the insert.  Its insert is then ignored
+    // and the string is looked up again, instead of failing on the UNIQUE constraint and losing the row.
+    private static long getId(EventStatements statements, String value) {
+        final long id = statements.findString(value);
+        if (id != -1) {
+            return id;
+        }
+        final long insertedId = statements.insertString(value);
+        return insertedId != -1 ? insertedId : getExistingId(value, statements.findString(value));
+    }
+
+    // IDs are not cached since the transaction that adds a string may still be rolled back
+    private static long getId(SQLiteDatabase db, String value) {
+        final long id = findId(db, value);
+        if (id != -1) {
+            return id;
+        }
+        final ContentValues contentValues = new ContentValues();
+        contentValues.put(Columns.VALUE, value);
+        final long insertedId = db.insertWithOnConflict(Database.STRINGS_TABLE_NAME, null, contentValues, SQLiteDatabase.CONFLICT_IGNORE);
+        return insertedId != -1 ? insertedId : getExistingId(value, findId(db, value));
+    }
+
+    private static long findId(SQLiteDatabase db, String value) {
+        final String[] selectionArgs = new String[] { value };
+        Cursor cursor = null;
+        try {
+            cursor = db.query(Database.STRINGS_TABLE_NAME, ID_PROJECTION, VALUE_SELECTION, selectionArgs, null, null, null);
+            if (cursor.moveToFirst()) {
+                return cursor.getLong(0);
+            }
+            return -1;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    private static long getExistingId(String value, long id) {
+        if (id == -1) {
+            throw new SQLException("Could not add string to " + Database.STRINGS_TABLE_NAME + ": " + value);
+        }
+        return id;
+    }
+}
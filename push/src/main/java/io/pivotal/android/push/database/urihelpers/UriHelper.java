@@ -6,6 +6,7 @@ public interface UriHelper {
 
 	public String getType();
 	public String getDefaultTableName();
+	public String getQueryTableName();
 	public QueryParams getQueryParams(Uri uri, String[] projection, String whereClause, String[] whereArgs, String sortOrder);
 	public UpdateParams getUpdateParams(Uri uri, String whereClause, String[] whereArgs);
 	public DeleteParams getDeleteParams(Uri uri, String whereClause, String[] whereArgs);
@@ -6,7 +6,6 @@ import android.os.Parcel;
 import android.os.Parcelable;
 import android.provider.BaseColumns;
 
-import com.google.gson.Gson;
 import com.google.gson.annotations.SerializedName;
 import com.google.gson.reflect.TypeToken;
 
@@ -17,6 +16,8 @@ import java.util.LinkedList;
 import java.util.List;
 
 import io.pivotal.android.push.database.Database;
+import io.pivotal.android.push.database.StringDictionary;
+import io.pivotal.android.push.util.GsonUtil;
 
 public class AnalyticsEvent implements Parcelable {
 
@@ -31,8 +32,20 @@ public class AnalyticsEvent implements Parcelable {
         public static final String SDK_VERSION = "sdkVersion";
         public static final String PLATFORM_TYPE = "platformType";
         public static final String PLATFORM_UUID = "platformUuid";
+        public static final String DEVICE_UUID_REF = "deviceUuidRef";
+        public static final String SDK_VERSION_REF = "sdkVersionRef";
+        public static final String PLATFORM_TYPE_REF = "platformTypeRef";
+        public static final String PLATFORM_UUID_REF = "platformUuidRef";
+        public static final String BATCH_ID = "batchId";
     }
 
+    // Since version 5 these values, which are the same in almost every event, are kept in the strings
+    // table.  The events table holds references to them, and the events view joins them back in.
+    public static final String[] DICTIONARY_COLUMNS = new String[] {
+            Columns.DEVICE_UUID, Columns.SDK_VERSION, Columns.PLATFORM_TYPE, Columns.PLATFORM_UUID };
+    public static final String[] DICTIONARY_REFERENCE_COLUMNS = new String[] {
+            Columns.DEVICE_UUID_REF, Columns.SDK_VERSION_REF, Columns.PLATFORM_TYPE_REF, Columns.PLATFORM_UUID_REF };
+
     public static class Status {
         public static final int NOT_POSTED = 0;
         public static final int POSTING = 1;
@@ -56,6 +69,7 @@ public class AnalyticsEvent implements Parcelable {
 
     private transient int status;
     private transient int id;
+    private transient String batchId;
 
     @SerializedName(Columns.RECEIPT_ID)
     private String receiptId;
@@ -87,67 +101,97 @@ public class AnalyticsEvent implements Parcelable {
     public AnalyticsEvent() {
     }
 
+    /**
+     * The positions of the event columns in a cursor.  Resolve them once when reading many
+     * rows from the same cursor so that the columns are not looked up by name for every row.
+     */
+    public static class ColumnIndexes {
+        private final int id;
+        private final int status;
+        private final int receiptId;
+        private final int eventType;
+        private final int eventTime;
+        private final int deviceUuid;
+        private final int geofenceId;
+        private final int locationId;
+        private final int sdkVersion;
+        private final int platformType;
+        private final int platformUuid;
+        private final int batchId;
+
+        public ColumnIndexes(Cursor cursor) {
+            id = cursor.getColumnIndex(BaseColumns._ID);
+            status = cursor.getColumnIndex(Columns.STATUS);
+            receiptId = cursor.getColumnIndex(Columns.RECEIPT_ID);
+            eventType = cursor.getColumnIndex(Columns.EVENT_TYPE);
+            eventTime = cursor.getColumnIndex(Columns.EVENT_TIME);
+            deviceUuid = cursor.getColumnIndex(Columns.DEVICE_UUID);
+            geofenceId = cursor.getColumnIndex(Columns.GEOFENCE_ID);
+            locationId = cursor.getColumnIndex(Columns.LOCATION_ID);
+            sdkVersion = cursor.getColumnIndex(Columns.SDK_VERSION);
+            platformType = cursor.getColumnIndex(Columns.PLATFORM_TYPE);
+            platformUuid = cursor.getColumnIndex(Columns.PLATFORM_UUID);
+            batchId = cursor.getColumnIndex(Columns.BATCH_ID);
+        }
+    }
+
     // Construct from cursor
     public AnalyticsEvent(Cursor cursor) {
-        int columnIndex;
+        this(cursor, new ColumnIndexes(cursor));
+    }
 
-        columnIndex = cursor.getColumnIndex(BaseColumns._ID);
-        if (columnIndex >= 0) {
-            setId(cursor.getInt(columnIndex));
+    // Construct from cursor, using column indexes that have already been resolved
+    public AnalyticsEvent(Cursor cursor, ColumnIndexes columnIndexes) {
+        if (columnIndexes.id >= 0) {
+            setId(cursor.getInt(columnIndexes.id));
         } else {
             setId(0);
         }
 
-        columnIndex = cursor.getColumnIndex(Columns.STATUS);
-        if (columnIndex >= 0) {
-            setStatus(cursor.getInt(columnIndex));
+        if (columnIndexes.status >= 0) {
+            setStatus(cursor.getInt(columnIndexes.status));
         } else {
             setStatus(Status.NOT_POSTED);
         }
 
-        columnIndex = cursor.getColumnIndex(Columns.RECEIPT_ID);
-        if (columnIndex >= 0) {
-            setReceiptId(cursor.getString(columnIndex));
+        if (columnIndexes.receiptId >= 0) {
+            setReceiptId(cursor.getString(columnIndexes.receiptId));
         }
 
-        columnIndex = cursor.getColumnIndex(Columns.EVENT_TYPE);
-        if (columnIndex >= 0) {
-            setEventType(cursor.getString(columnIndex));
+        if (columnIndexes.eventType >= 0) {
+            setEventType(cursor.getString(columnIndexes.eventType));
         }
 
-        columnIndex = cursor.getColumnIndex(Columns.EVENT_TIME);
-        if (columnIndex >= 0) {
-            setEventTime(cursor.getString(columnIndex));
+        if (columnIndexes.eventTime >= 0) {
+            setEventTime(getEventTimeFromCursor(cursor, columnIndexes.eventTime));
         }
 
-        columnIndex = cursor.getColumnIndex(Columns.DEVICE_UUID);
-        if (columnIndex >= 0) {
-            setDeviceUuid(cursor.getString(columnIndex));
+        if (columnIndexes.deviceUuid >= 0) {
+            setDeviceUuid(cursor.getString(columnIndexes.deviceUuid));
         }
 
-        columnIndex = cursor.getColumnIndex(Columns.GEOFENCE_ID);
-        if (columnIndex >= 0) {
-            setGeofenceId(cursor.getString(columnIndex));
+        if (columnIndexes.geofenceId >= 0) {
+            setGeofenceId(cursor.getString(columnIndexes.geofenceId));
         }
 
-        columnIndex = cursor.getColumnIndex(Columns.LOCATION_ID);
-        if (columnIndex >= 0) {
-            setLocationId(cursor.getString(columnIndex));
+        if (columnIndexes.locationId >= 0) {
+            setLocationId(cursor.getString(columnIndexes.locationId));
         }
 
-        columnIndex = cursor.getColumnIndex(Columns.SDK_VERSION);
-        if (columnIndex >= 0) {
-            setSdkVersion(cursor.getString(columnIndex));
+        if (columnIndexes.sdkVersion >= 0) {
+            setSdkVersion(cursor.getString(columnIndexes.sdkVersion));
         }
 
-        columnIndex = cursor.getColumnIndex(Columns.PLATFORM_TYPE);
-        if (columnIndex >= 0) {
-            setPlatformType(cursor.getString(columnIndex));
+        if (columnIndexes.platformType >= 0) {
+            setPlatformType(cursor.getString(columnIndexes.platformType));
         }
 
-        columnIndex = cursor.getColumnIndex(Columns.PLATFORM_UUID);
-        if (columnIndex >= 0) {
-            setPlatformUuid(cursor.getString(columnIndex));
+        if (columnIndexes.platformUuid >= 0) {
+            setPlatformUuid(cursor.getString(columnIndexes.platformUuid));
+        }
+
+        if (columnIndexes.batchId >= 0) {
+            setBatchId(cursor.getString(columnIndexes.batchId));
         }
     }
 
@@ -164,6 +208,7 @@ public class AnalyticsEvent implements Parcelable {
         this.sdkVersion = source.sdkVersion;
         this.platformType = source.platformType;
         this.platformUuid = source.platformUuid;
+        this.batchId = source.batchId;
     }
 
     public int getId() {
@@ -185,6 +230,18 @@ public class AnalyticsEvent implements Parcelable {
         this.status = status;
     }
 
+    /**
+     * @return the ID of the batch that this event was last sent in, or null if it has not been sent.  A batch
+     * that is sent again keeps its ID so that the server can tell that it has already received it.
+     */
+    public String getBatchId() {
+        return batchId;
+    }
+
+    public void setBatchId(String batchId) {
+        this.batchId = batchId;
+    }
+
     public String getReceiptId() {
         return receiptId;
     }
@@ -265,6 +322,29 @@ public class AnalyticsEvent implements Parcelable {
         this.platformUuid = platformUuid;
     }
 
+    /**
+     * @return roughly the number of bytes this event takes up when serialized to JSON.  Characters that
+     * need to be escaped are not accounted for.
+     */
+    public int getApproximateSerializedSize() {
+        int size = 2; // {}
+        size += getApproximateSerializedSize(Columns.RECEIPT_ID, receiptId);
+        size += getApproximateSerializedSize(Columns.EVENT_TYPE, eventType);
+        size += getApproximateSerializedSize(Columns.EVENT_TIME, eventTime);
+        size += getApproximateSerializedSize(Columns.DEVICE_UUID, deviceUuid);
+        size += getApproximateSerializedSize(Columns.GEOFENCE_ID, geofenceId);
+        size += getApproximateSerializedSize(Columns.LOCATION_ID, locationId);
+        size += getApproximateSerializedSize(Columns.SDK_VERSION, sdkVersion);
+        size += getApproximateSerializedSize(Columns.PLATFORM_TYPE, platformType);
+        size += getApproximateSerializedSize(Columns.PLATFORM_UUID, platformUuid);
+        return size;
+    }
+
+    // "name":"value", -- null fields are left out
+    private static int getApproximateSerializedSize(String name, String value) {
+        return value == null ? 0 : name.length() + value.length() + 6;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -325,34 +405,40 @@ public class AnalyticsEvent implements Parcelable {
 
 // JSON helpers
 
+    private static final Type LIST_TYPE = new TypeToken<List<AnalyticsEvent>>() {}.getType();
+
     public static List<AnalyticsEvent> jsonStringToList(String str) {
-        final Gson gson = new Gson();
-        final Type type = getTypeToken();
-        return gson.fromJson(str, type);
+        return GsonUtil.getGson().fromJson(str, LIST_TYPE);
     }
 
     public static String listToJsonString(List<AnalyticsEvent> list) {
         if (list == null) {
             return null;
         } else {
-            final Gson gson = new Gson();
-            final Type type = getTypeToken();
-            return gson.toJson(list, type);
+            return GsonUtil.getGson().toJson(list, LIST_TYPE);
         }
     }
 
-    private static Type getTypeToken() {
-        return new TypeToken<List<AnalyticsEvent>>() {}.getType();
-    }
-
     // Database helpers
 
+    public static final String STATUS_AND_ID_INDEX_NAME = "events_status_id_index";
+    public static final String EVENT_TYPE_INDEX_NAME = "events_event_type_index";
+
+    private static final String MIGRATION_TABLE_NAME = "events_migration";
+
     public ContentValues getContentValues(int databaseVersion) {
         // NOTE - do not save the 'id' field to the ContentValues. Let the database
         // figure out the 'id' itself.
         final ContentValues cv = new ContentValues();
         cv.put(Columns.RECEIPT_ID, getReceiptId());
-        cv.put(Columns.EVENT_TIME, getEventTime());
+
+        // Since version 4 the event time is stored as an INTEGER number of milliseconds since the epoch
+        final Long eventTimeInMilliseconds = getEventTimeInMilliseconds();
+        if (databaseVersion >= 4 && eventTimeInMilliseconds != null) {
+            cv.put(Columns.EVENT_TIME, eventTimeInMilliseconds);
+        } else {
+            cv.put(Columns.EVENT_TIME, getEventTime());
+        }
         cv.put(Columns.EVENT_TYPE, getEventType());
         cv.put(Columns.DEVICE_UUID, getDeviceUuid());
         cv.put(Columns.GEOFENCE_ID, getGeofenceId());
@@ -368,14 +454,48 @@ public class AnalyticsEvent implements Parcelable {
             cv.put(Columns.PLATFORM_UUID, getPlatformUuid());
         }
 
+        // Left out when there is none, so that new events can use the precompiled insert
+        if (databaseVersion >= 6 && getBatchId() != null) {
+            cv.put(Columns.BATCH_ID, getBatchId());
+        }
+
         return cv;
     }
 
+    // The event time is kept in seconds, which is what the server expects.  Returns null if it is not a number.
+    private Long getEventTimeInMilliseconds() {
+        if (eventTime == null || eventTime.isEmpty()) {
+            return null;
+        }
+        for (int i = 0; i < eventTime.length(); i += 1) {
+            if (!Character.isDigit(eventTime.charAt(i))) {
+                return null;
+            }
+        }
+        try {
+            return Long.parseLong(eventTime) * 1000L;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // Handles both the INTEGER milliseconds stored since version 4 and the TEXT seconds stored before
+    private static String getEventTimeFromCursor(Cursor cursor, int columnIndex) {
+        if (cursor.getType(columnIndex) == Cursor.FIELD_TYPE_INTEGER) {
+            return String.valueOf(cursor.getLong(columnIndex) / 1000L);
+        }
+        return cursor.getString(columnIndex);
+    }
+
     public static String getCreateTableSqlStatement(int databaseVersion) {
+        return getCreateTableSqlStatement(Database.EVENTS_TABLE_NAME, databaseVersion);
+    }
+
+    private static String getCreateTableSqlStatement(String tableName, int databaseVersion) {
         final StringBuilder sb = new StringBuilder();
         sb.append("CREATE TABLE IF NOT EXISTS ");
         sb.append('\'');
-        sb.append(Database.EVENTS_TABLE_NAME);
+        sb.append(tableName);
         sb.append("\' ('");
         sb.append(BaseColumns._ID);
         sb.append("' INTEGER PRIMARY KEY AUTOINCREMENT, '");
@@ -384,7 +504,7 @@ public class AnalyticsEvent implements Parcelable {
         sb.append(Columns.EVENT_TYPE);
         sb.append("' TEXT, '");
         sb.append(Columns.EVENT_TIME);
-        sb.append("' TEXT, '");
+        sb.append(databaseVersion >= 4 ? "' INTEGER, '" : "' TEXT, '");
         sb.append(Columns.DEVICE_UUID);
         sb.append("' TEXT, '");
         sb.append(Columns.GEOFENCE_ID);
@@ -402,10 +522,64 @@ public class AnalyticsEvent implements Parcelable {
             sb.append("' TEXT, '");
         }
         sb.append(Columns.STATUS);
-        sb.append("' INT);");
+        sb.append("' INT");
+        if (databaseVersion >= 5) {
+            for (final String referenceColumn : DICTIONARY_REFERENCE_COLUMNS) {
+                sb.append(", '");
+                sb.append(referenceColumn);
+                sb.append("' INTEGER");
+            }
+        }
+        if (databaseVersion >= 6) {
+            sb.append(", '");
+            sb.append(Columns.BATCH_ID);
+            sb.append("' TEXT");
+        }
+        sb.append(");");
+        return sb.toString();
+    }
+
+    // Values saved inline, before version 5 or by writing to the events table directly, are used if there is no reference
+    public static String getCreateViewSqlStatement(int databaseVersion) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("CREATE VIEW IF NOT EXISTS '");
+        sb.append(Database.EVENTS_VIEW_NAME);
+        sb.append("' AS SELECT e.");
+        sb.append(BaseColumns._ID).append(" AS ").append(BaseColumns._ID);
+        for (final String column : new String[] { Columns.RECEIPT_ID, Columns.EVENT_TYPE, Columns.EVENT_TIME, Columns.GEOFENCE_ID, Columns.LOCATION_ID, Columns.STATUS }) {
+            sb.append(", e.").append(column).append(" AS ").append(column);
+        }
+        if (databaseVersion >= 6) {
+            sb.append(", e.").append(Columns.BATCH_ID).append(" AS ").append(Columns.BATCH_ID);
+        }
+        for (int i = 0; i < DICTIONARY_COLUMNS.length; i += 1) {
+            sb.append(", COALESCE(s").append(i).append('.').append(StringDictionary.Columns.VALUE);
+            sb.append(", e.").append(DICTIONARY_COLUMNS[i]).append(") AS ").append(DICTIONARY_COLUMNS[i]);
+        }
+        sb.append(" FROM '").append(Database.EVENTS_TABLE_NAME).append("' e");
+        for (int i = 0; i < DICTIONARY_COLUMNS.length; i += 1) {
+            sb.append(" LEFT JOIN '").append(Database.STRINGS_TABLE_NAME).append("' s").append(i);
+            sb.append(" ON s").append(i).append('.').append(BaseColumns._ID);
+            sb.append(" = e.").append(DICTIONARY_REFERENCE_COLUMNS[i]);
+        }
+        sb.append(';');
         return sb.toString();
     }
 
+    public static String getDropViewSqlStatement() {
+        return "DROP VIEW IF EXISTS '" + Database.EVENTS_VIEW_NAME + "';";
+    }
+
+    public static List<String> getCreateIndexSqlStatements(int databaseVersion) {
+        final List<String> createIndexStatements = new LinkedList<>();
+        if (databaseVersion >= 4) {
+            // Used by the queries for events with given statuses, which are read in ID order
+            createIndexStatements.add("CREATE INDEX IF NOT EXISTS '" + STATUS_AND_ID_INDEX_NAME + "' ON '" + Database.EVENTS_TABLE_NAME + "' (" + Columns.STATUS + ", " + BaseColumns._ID + ");");
+            createIndexStatements.add("CREATE INDEX IF NOT EXISTS '" + EVENT_TYPE_INDEX_NAME + "' ON '" + Database.EVENTS_TABLE_NAME + "' (" + Columns.EVENT_TYPE + ");");
+        }
+        return createIndexStatements;
+    }
+
     public static String getDropTableSqlStatement() {
         return "DROP TABLE IF EXISTS '" + Database.EVENTS_TABLE_NAME + "';";
     }
@@ -420,18 +594,23 @@ public class AnalyticsEvent implements Parcelable {
         } else if (oldVersion == newVersion) {
             return upgradeStatements;
 
-        } else if (oldVersion == 1 && newVersion == 2) {
-
-            upgradeStatements.addAll(AnalyticsEvent.getMigrateVersion1ToVersion2Statement());
-
-        } else if (oldVersion == 2 && newVersion == 3) {
-
-            upgradeStatements.addAll(AnalyticsEvent.getMigrateVersion2ToVersion3Statement());
-
-        } else if (oldVersion == 1 && newVersion == 3) {
-
-            upgradeStatements.addAll(AnalyticsEvent.getMigrateVersion1ToVersion2Statement());
-            upgradeStatements.addAll(AnalyticsEvent.getMigrateVersion2ToVersion3Statement());
+        } else if (oldVersion >= 1 && newVersion <= 6) {
+
+            if (oldVersion < 2) {
+                upgradeStatements.addAll(AnalyticsEvent.getMigrateVersion1ToVersion2Statement());
+            }
+            if (oldVersion < 3 && newVersion >= 3) {
+                upgradeStatements.addAll(AnalyticsEvent.getMigrateVersion2ToVersion3Statement());
+            }
+            if (oldVersion < 4 && newVersion >= 4) {
+                upgradeStatements.addAll(AnalyticsEvent.getMigrateVersion3ToVersion4Statement());
+            }
+            if (oldVersion < 5 && newVersion >= 5) {
+                upgradeStatements.addAll(AnalyticsEvent.getMigrateVersion4ToVersion5Statement());
+            }
+            if (oldVersion < 6 && newVersion >= 6) {
+                upgradeStatements.addAll(AnalyticsEvent.getMigrateVersion5ToVersion6Statement());
+            }
         }
 
         return upgradeStatements;
@@ -446,6 +625,56 @@ public class AnalyticsEvent implements Parcelable {
                 "ALTER TABLE '" + Database.EVENTS_TABLE_NAME + "' " + "ADD COLUMN '" + Columns.PLATFORM_UUID + "' TEXT;");
     }
 
+    // SQLite can not change the type of a column, so the table is rebuilt.  The rows keep their IDs.
+    // All of the statements run in the upgrade transaction opened by the SQLiteOpenHelper.
+    private static List<String> getMigrateVersion3ToVersion4Statement() {
+        final String otherColumns = Columns.DEVICE_UUID + ", " + Columns.GEOFENCE_ID + ", " + Columns.LOCATION_ID + ", " + Columns.SDK_VERSION + ", " +
+                Columns.PLATFORM_TYPE + ", " + Columns.PLATFORM_UUID + ", " + Columns.STATUS;
+        final String columns = BaseColumns._ID + ", " + Columns.RECEIPT_ID + ", " + Columns.EVENT_TYPE + ", " + Columns.EVENT_TIME + ", " + otherColumns;
+        final String eventTimeInMilliseconds = "CASE WHEN " + Columns.EVENT_TIME + " GLOB '[0-9]*' AND " + Columns.EVENT_TIME + " NOT GLOB '*[^0-9]*' " +
+                "THEN CAST(" + Columns.EVENT_TIME + " AS INTEGER) * 1000 ELSE " + Columns.EVENT_TIME + " END";
+        final String selectColumns = BaseColumns._ID + ", " + Columns.RECEIPT_ID + ", " + Columns.EVENT_TYPE + ", " + eventTimeInMilliseconds + ", " + otherColumns;
+
+        final List<String> statements = new LinkedList<>();
+        statements.add("DROP TABLE IF EXISTS '" + MIGRATION_TABLE_NAME + "';");
+        statements.add(getCreateTableSqlStatement(MIGRATION_TABLE_NAME, 4));
+        statements.add("INSERT INTO '" + MIGRATION_TABLE_NAME + "' (" + columns + ") SELECT " + selectColumns + " FROM '" + Database.EVENTS_TABLE_NAME + "';");
+        statements.add(getDropTableSqlStatement());
+        statements.add("ALTER TABLE '" + MIGRATION_TABLE_NAME + "' RENAME TO '" + Database.EVENTS_TABLE_NAME + "';");
+        statements.addAll(getCreateIndexSqlStatements(4));
+        return statements;
+    }
+
+    // Moves the existing values into the strings table in place
+    private static List<String> getMigrateVersion4ToVersion5Statement() {
+        final String eventsTable = "'" + Database.EVENTS_TABLE_NAME + "'";
+        final String stringsTable = "'" + Database.STRINGS_TABLE_NAME + "'";
+        final List<String> statements = new LinkedList<>();
+        statements.add(StringDictionary.getCreateTableSqlStatement());
+        for (final String referenceColumn : DICTIONARY_REFERENCE_COLUMNS) {
+            statements.add("ALTER TABLE " + eventsTable + " ADD COLUMN '" + referenceColumn + "' INTEGER;");
+        }
+        for (final String column : DICTIONARY_COLUMNS) {
+            statements.add("INSERT OR IGNORE INTO " + stringsTable + " (" + StringDictionary.Columns.VALUE + ") " +
+                    "SELECT DISTINCT " + column + " FROM " + eventsTable + " WHERE " + column + " IS NOT NULL;");
+        }
+        for (int i = 0; i < DICTIONARY_COLUMNS.length; i += 1) {
+            final String column = DICTIONARY_COLUMNS[i];
+            statements.add("UPDATE " + eventsTable + " SET " + DICTIONARY_REFERENCE_COLUMNS[i] + " = " +
+                    "(SELECT " + BaseColumns._ID + " FROM " + stringsTable + " WHERE " + StringDictionary.Columns.VALUE + " = " + Database.EVENTS_TABLE_NAME + "." + column + "), " +
+                    column + " = NULL WHERE " + column + " IS NOT NULL;");
+        }
+        statements.add(getCreateViewSqlStatement(5));
+        return statements;
+    }
+
+    // The view lists its columns, so it is created again to pick up the new one
+    private static List<String> getMigrateVersion5ToVersion6Statement() {
+        return Arrays.asList(getDropViewSqlStatement(),
+                "ALTER TABLE '" + Database.EVENTS_TABLE_NAME + "' ADD COLUMN '" + Columns.BATCH_ID + "' TEXT;",
+                getCreateViewSqlStatement(6));
+    }
+
     public static int getRowIdFromCursor(final Cursor cursor) {
         final int idColumn = cursor.getColumnIndex(BaseColumns._ID);
         if (idColumn < 0) {
@@ -480,6 +709,7 @@ public class AnalyticsEvent implements Parcelable {
         sdkVersion = in.readString();
         platformType = in.readString();
         platformUuid = in.readString();
+        batchId = in.readString();
     }
 
     @Override
@@ -500,5 +730,6 @@ public class AnalyticsEvent implements Parcelable {
         out.writeString(sdkVersion);
         out.writeString(platformType);
         out.writeString(platformUuid);
+        out.writeString(batchId);
     }
 }
@@ -7,7 +7,7 @@ import java.util.List;
 
 public class AnalyticsEventList {
 
-    private static final String EVENTS = "events";
+    public static final String EVENTS = "events";
 
     @SerializedName(EVENTS)
     private List<AnalyticsEvent> events;
@@ -16,6 +16,11 @@ public class AnalyticsEventList {
         return Collections.unmodifiableList(events);
     }
 
+    // Used by the type adapter, which writes nothing for a list that was never set
+    /* package */ List<AnalyticsEvent> getEventsOrNull() {
+        return events;
+    }
+
     public void setEvents(List<AnalyticsEvent> events) {
         this.events = events;
     }
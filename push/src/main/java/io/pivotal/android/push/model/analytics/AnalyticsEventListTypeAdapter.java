@@ -0,0 +1,70 @@
+package io.pivotal.android.push.model.analytics;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes an {@link AnalyticsEventList} without reflection, using the given adapter for each event.
+ * A list without any events is written as an empty object, the same as Gson's reflective adapter.
+ */
+public class AnalyticsEventListTypeAdapter extends TypeAdapter<AnalyticsEventList> {
+
+    private final TypeAdapter<AnalyticsEvent> eventAdapter;
+
+    public AnalyticsEventListTypeAdapter(TypeAdapter<AnalyticsEvent> eventAdapter) {
+        if (eventAdapter == null) {
+            throw new IllegalArgumentException("eventAdapter may not be null");
+        }
+        this.eventAdapter = eventAdapter;
+    }
+
+    @Override
+    public void write(JsonWriter out, AnalyticsEventList eventList) throws IOException {
+        if (eventList == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        final List<AnalyticsEvent> events = eventList.getEventsOrNull();
+        if (events != null) {
+            out.name(AnalyticsEventList.EVENTS);
+            out.beginArray();
+            for (int i = 0; i < events.size(); i += 1) {
+                eventAdapter.write(out, events.get(i));
+            }
+            out.endArray();
+        }
+        out.endObject();
+    }
+
+    @Override
+    public AnalyticsEventList read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        final AnalyticsEventList eventList = new AnalyticsEventList();
+        in.beginObject();
+        while (in.hasNext()) {
+            if (AnalyticsEventList.EVENTS.equals(in.nextName()) && in.peek() != JsonToken.NULL) {
+                final List<AnalyticsEvent> events = new ArrayList<>();
+                in.beginArray();
+                while (in.hasNext()) {
+                    events.add(eventAdapter.read(in));
+                }
+                in.endArray();
+                eventList.setEvents(events);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return eventList;
+    }
+}
@@ -0,0 +1,90 @@
+package io.pivotal.android.push.model.analytics;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import io.pivotal.android.push.model.analytics.AnalyticsEvent.Columns;
+import io.pivotal.android.push.util.JsonStreamUtil;
+
+/**
+ * Reads and writes an {@link AnalyticsEvent} without reflection.  Writes the same JSON as Gson's reflective
+ * adapter: the serialized fields in the order they are declared, with null fields left out.  The fields that
+ * are only kept in the database (e.g.: the status) are not written.
+ */
+public class AnalyticsEventTypeAdapter extends TypeAdapter<AnalyticsEvent> {
+
+    @Override
+    public void write(JsonWriter out, AnalyticsEvent event) throws IOException {
+        if (event == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        writeField(out, Columns.RECEIPT_ID, event.getReceiptId());
+        writeField(out, Columns.EVENT_TYPE, event.getEventType());
+        writeField(out, Columns.EVENT_TIME, event.getEventTime());
+        writeField(out, Columns.DEVICE_UUID, event.getDeviceUuid());
+        writeField(out, Columns.GEOFENCE_ID, event.getGeofenceId());
+        writeField(out, Columns.LOCATION_ID, event.getLocationId());
+        writeField(out, Columns.SDK_VERSION, event.getSdkVersion());
+        writeField(out, Columns.PLATFORM_TYPE, event.getPlatformType());
+        writeField(out, Columns.PLATFORM_UUID, event.getPlatformUuid());
+        out.endObject();
+    }
+
+    private static void writeField(JsonWriter out, String name, String value) throws IOException {
+        if (value != null) {
+            out.name(name).value(value);
+        }
+    }
+
+    @Override
+    public AnalyticsEvent read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        final AnalyticsEvent event = new AnalyticsEvent();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case Columns.RECEIPT_ID:
+                    event.setReceiptId(JsonStreamUtil.readString(in));
+                    break;
+                case Columns.EVENT_TYPE:
+                    event.setEventType(JsonStreamUtil.readString(in));
+                    break;
+                case Columns.EVENT_TIME:
+                    event.setEventTime(JsonStreamUtil.readString(in));
+                    break;
+                case Columns.DEVICE_UUID:
+                    event.setDeviceUuid(JsonStreamUtil.readString(in));
+                    break;
+                case Columns.GEOFENCE_ID:
+                    event.setGeofenceId(JsonStreamUtil.readString(in));
+                    break;
+                case Columns.LOCATION_ID:
+                    event.setLocationId(JsonStreamUtil.readString(in));
+                    break;
+                case Columns.SDK_VERSION:
+                    event.setSdkVersion(JsonStreamUtil.readString(in));
+                    break;
+                case Columns.PLATFORM_TYPE:
+                    event.setPlatformType(JsonStreamUtil.readString(in));
+                    break;
+                case Columns.PLATFORM_UUID:
+                    event.setPlatformUuid(JsonStreamUtil.readString(in));
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return event;
+    }
+}
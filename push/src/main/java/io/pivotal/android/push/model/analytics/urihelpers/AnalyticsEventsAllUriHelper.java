@@ -20,6 +20,12 @@ public class AnalyticsEventsAllUriHelper implements UriHelper {
 	public String getDefaultTableName() {
 		return Database.EVENTS_TABLE_NAME;
 	}
+
+	// Reads go through the view so that the values kept in the strings table are joined back in
+	@Override
+	public String getQueryTableName() {
+		return Database.EVENTS_VIEW_NAME;
+	}
 	
 	@Override
 	public UriMatcherParams getUriMatcherParams() {
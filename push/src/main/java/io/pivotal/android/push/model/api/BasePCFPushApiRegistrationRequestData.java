@@ -8,25 +8,33 @@ import com.google.gson.annotations.SerializedName;
 
 public abstract class BasePCFPushApiRegistrationRequestData {
 
-    @SerializedName("device_alias")
+    public static final String DEVICE_ALIAS = "device_alias";
+    public static final String DEVICE_MANUFACTURER = "device_manufacturer";
+    public static final String DEVICE_MODEL = "device_model";
+    public static final String OS = "os";
+    public static final String OS_VERSION = "os_version";
+    public static final String REGISTRATION_TOKEN = "registration_token";
+    public static final String CUSTOM_USER_ID = "custom_user_id";
+
+    @SerializedName(DEVICE_ALIAS)
     private String deviceAlias;
 
-    @SerializedName("device_manufacturer")
+    @SerializedName(DEVICE_MANUFACTURER)
     private String deviceManufacturer;
 
-    @SerializedName("device_model")
+    @SerializedName(DEVICE_MODEL)
     private String deviceModel;
 
-    @SerializedName("os")
+    @SerializedName(OS)
     private String os;
 
-    @SerializedName("os_version")
+    @SerializedName(OS_VERSION)
     private String osVersion;
 
-    @SerializedName("registration_token")
+    @SerializedName(REGISTRATION_TOKEN)
     private String registrationToken;
 
-    @SerializedName("custom_user_id")
+    @SerializedName(CUSTOM_USER_ID)
     private String customUserId;
 
     public String getDeviceAlias() {
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2014 Pivotal Software, Inc. All rights reserved.
+ */
+package io.pivotal.android.push.model.api;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import io.pivotal.android.push.util.JsonStreamUtil;
+
+/**
+ * Reads and writes the fields shared by the device registration requests without reflection.  Gson's
+ * reflective adapter writes the fields of the subclass before these ones, so subclasses write their own
+ * fields first to produce the same JSON.
+ */
+public abstract class BasePCFPushApiRegistrationRequestDataTypeAdapter<T extends BasePCFPushApiRegistrationRequestData> extends TypeAdapter<T> {
+
+    protected abstract T newData();
+
+    protected abstract void writeFields(JsonWriter out, T data) throws IOException;
+
+    /**
+     * @return true if the field was read, or false if it is not a field of the subclass
+     */
+    protected abstract boolean readField(JsonReader in, String fieldName, T data) throws IOException;
+
+    @Override
+    public void write(JsonWriter out, T data) throws IOException {
+        if (data == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        writeFields(out, data);
+        out.name(BasePCFPushApiRegistrationRequestData.DEVICE_ALIAS).value(data.getDeviceAlias());
+        out.name(BasePCFPushApiRegistrationRequestData.DEVICE_MANUFACTURER).value(data.getDeviceManufacturer());
+        out.name(BasePCFPushApiRegistrationRequestData.DEVICE_MODEL).value(data.getDeviceModel());
+        out.name(BasePCFPushApiRegistrationRequestData.OS).value(data.getOs());
+        out.name(BasePCFPushApiRegistrationRequestData.OS_VERSION).value(data.getOsVersion());
+        out.name(BasePCFPushApiRegistrationRequestData.REGISTRATION_TOKEN).value(data.getRegistrationToken());
+        out.name(BasePCFPushApiRegistrationRequestData.CUSTOM_USER_ID).value(data.getCustomUserId());
+        out.endObject();
+    }
+
+    @Override
+    public T read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        final T data = newData();
+        in.beginObject();
+        while (in.hasNext()) {
+            final String fieldName = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (fieldName) {
+                case BasePCFPushApiRegistrationRequestData.DEVICE_ALIAS:
+                    data.setDeviceAlias(JsonStreamUtil.readString(in));
+                    break;
+                case BasePCFPushApiRegistrationRequestData.DEVICE_MANUFACTURER:
+                    data.setDeviceManufacturer(JsonStreamUtil.readString(in));
+                    break;
+                case BasePCFPushApiRegistrationRequestData.DEVICE_MODEL:
+                    data.setDeviceModel(JsonStreamUtil.readString(in));
+                    break;
+                case BasePCFPushApiRegistrationRequestData.OS:
+                    data.setOs(JsonStreamUtil.readString(in));
+                    break;
+                case BasePCFPushApiRegistrationRequestData.OS_VERSION:
+                    data.setOsVersion(JsonStreamUtil.readString(in));
+                    break;
+                case BasePCFPushApiRegistrationRequestData.REGISTRATION_TOKEN:
+                    data.setRegistrationToken(JsonStreamUtil.readString(in));
+                    break;
+                case BasePCFPushApiRegistrationRequestData.CUSTOM_USER_ID:
+                    data.setCustomUserId(JsonStreamUtil.readString(in));
+                    break;
+                default:
+                    if (!readField(in, fieldName, data)) {
+                        in.skipValue();
+                    }
+                    break;
+            }
+        }
+        in.endObject();
+        return data;
+    }
+}
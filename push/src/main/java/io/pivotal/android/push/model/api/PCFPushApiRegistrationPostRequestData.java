@@ -24,7 +24,9 @@ import java.util.Set;
  */
 public class PCFPushApiRegistrationPostRequestData extends BasePCFPushApiRegistrationRequestData {
 
-    @SerializedName("tags")
+    public static final String TAGS = "tags";
+
+    @SerializedName(TAGS)
     private Set<String> tags;
 
     public PCFPushApiRegistrationPostRequestData() {
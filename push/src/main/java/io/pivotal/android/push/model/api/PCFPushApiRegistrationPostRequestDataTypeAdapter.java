@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2014 Pivotal Software, Inc. All rights reserved.
+ */
+package io.pivotal.android.push.model.api;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import io.pivotal.android.push.util.JsonStreamUtil;
+
+/**
+ * Reads and writes a {@link PCFPushApiRegistrationPostRequestData} without reflection.
+ */
+public class PCFPushApiRegistrationPostRequestDataTypeAdapter extends BasePCFPushApiRegistrationRequestDataTypeAdapter<PCFPushApiRegistrationPostRequestData> {
+
+    @Override
+    protected PCFPushApiRegistrationPostRequestData newData() {
+        return new PCFPushApiRegistrationPostRequestData();
+    }
+
+    @Override
+    protected void writeFields(JsonWriter out, PCFPushApiRegistrationPostRequestData data) throws IOException {
+        out.name(PCFPushApiRegistrationPostRequestData.TAGS);
+        JsonStreamUtil.writeStrings(out, data.getTags());
+    }
+
+    @Override
+    protected boolean readField(JsonReader in, String fieldName, PCFPushApiRegistrationPostRequestData data) throws IOException {
+        if (fieldName.equals(PCFPushApiRegistrationPostRequestData.TAGS)) {
+            data.setTags(JsonStreamUtil.readStringSet(in));
+            return true;
+        }
+        return false;
+    }
+}
@@ -27,7 +27,9 @@ import java.util.Set;
  */
 public class PCFPushApiRegistrationPutRequestData extends BasePCFPushApiRegistrationRequestData {
 
-    @SerializedName("tags")
+    public static final String TAGS = "tags";
+
+    @SerializedName(TAGS)
     private Tags tags;
 
     public PCFPushApiRegistrationPutRequestData() {
@@ -43,10 +45,13 @@ public class PCFPushApiRegistrationPutRequestData extends BasePCFPushApiRegistra
 
     public static class Tags {
 
-        @SerializedName("subscribe")
+        public static final String SUBSCRIBE = "subscribe";
+        public static final String UNSUBSCRIBE = "unsubscribe";
+
+        @SerializedName(SUBSCRIBE)
         private Set<String> subscribe;
 
-        @SerializedName("unsubscribe")
+        @SerializedName(UNSUBSCRIBE)
         private Set<String> unsubscribe;
 
         public Tags(Set<String> subscribe, Set<String> unsubscribe) {
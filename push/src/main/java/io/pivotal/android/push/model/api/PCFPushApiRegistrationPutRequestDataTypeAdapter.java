@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2014 Pivotal Software, Inc. All rights reserved.
+ */
+package io.pivotal.android.push.model.api;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Set;
+
+import io.pivotal.android.push.util.JsonStreamUtil;
+
+/**
+ * Reads and writes a {@link PCFPushApiRegistrationPutRequestData} without reflection.
+ */
+public class PCFPushApiRegistrationPutRequestDataTypeAdapter extends BasePCFPushApiRegistrationRequestDataTypeAdapter<PCFPushApiRegistrationPutRequestData> {
+
+    @Override
+    protected PCFPushApiRegistrationPutRequestData newData() {
+        return new PCFPushApiRegistrationPutRequestData();
+    }
+
+    @Override
+    protected void writeFields(JsonWriter out, PCFPushApiRegistrationPutRequestData data) throws IOException {
+        out.name(PCFPushApiRegistrationPutRequestData.TAGS);
+        final PCFPushApiRegistrationPutRequestData.Tags tags = data.getTags();
+        if (tags == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name(PCFPushApiRegistrationPutRequestData.Tags.SUBSCRIBE);
+        JsonStreamUtil.writeStrings(out, tags.getSubscribeTags());
+        out.name(PCFPushApiRegistrationPutRequestData.Tags.UNSUBSCRIBE);
+        JsonStreamUtil.writeStrings(out, tags.getUnsubscribedTags());
+        out.endObject();
+    }
+
+    @Override
+    protected boolean readField(JsonReader in, String fieldName, PCFPushApiRegistrationPutRequestData data) throws IOException {
+        if (!fieldName.equals(PCFPushApiRegistrationPutRequestData.TAGS)) {
+            return false;
+        }
+
+        Set<String> subscribe = null;
+        Set<String> unsubscribe = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            final String tagsFieldName = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+            } else if (tagsFieldName.equals(PCFPushApiRegistrationPutRequestData.Tags.SUBSCRIBE)) {
+                subscribe = JsonStreamUtil.readStringSet(in);
+            } else if (tagsFieldName.equals(PCFPushApiRegistrationPutRequestData.Tags.UNSUBSCRIBE)) {
+                unsubscribe = JsonStreamUtil.readStringSet(in);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        data.setTags(new PCFPushApiRegistrationPutRequestData.Tags(subscribe, unsubscribe));
+        return true;
+    }
+}
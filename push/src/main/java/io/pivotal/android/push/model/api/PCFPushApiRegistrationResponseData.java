@@ -21,28 +21,37 @@ import com.google.gson.annotations.SerializedName;
  */
 public class PCFPushApiRegistrationResponseData {
 
-    @SerializedName("variant_uuid")
+    public static final String VARIANT_UUID = "variant_uuid";
+    public static final String DEVICE_UUID = "device_uuid";
+    public static final String DEVICE_ALIAS = "device_alias";
+    public static final String DEVICE_MANUFACTURER = "device_manufacturer";
+    public static final String DEVICE_MODEL = "device_model";
+    public static final String OS = "os";
+    public static final String OS_VERSION = "os_version";
+    public static final String REGISTRATION_TOKEN = "registration_token";
+
+    @SerializedName(VARIANT_UUID)
     private String variantUuid;
 
-    @SerializedName("device_uuid")
+    @SerializedName(DEVICE_UUID)
     private String deviceUuid;
 
-    @SerializedName("device_alias")
+    @SerializedName(DEVICE_ALIAS)
     private String deviceAlias;
 
-    @SerializedName("device_manufacturer")
+    @SerializedName(DEVICE_MANUFACTURER)
     private String deviceManufacturer;
 
-    @SerializedName("device_model")
+    @SerializedName(DEVICE_MODEL)
     private String deviceModel;
 
-    @SerializedName("os")
+    @SerializedName(OS)
     private String os;
 
-    @SerializedName("os_version")
+    @SerializedName(OS_VERSION)
     private String osVersion;
 
-    @SerializedName("registration_token")
+    @SerializedName(REGISTRATION_TOKEN)
     private String registrationToken;
 
     public PCFPushApiRegistrationResponseData() {
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2014 Pivotal Software, Inc. All rights reserved.
+ */
+package io.pivotal.android.push.model.api;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import io.pivotal.android.push.util.JsonStreamUtil;
+
+/**
+ * Reads and writes a {@link PCFPushApiRegistrationResponseData} without reflection.  Writes the same JSON as
+ * Gson's reflective adapter.
+ */
+public class PCFPushApiRegistrationResponseDataTypeAdapter extends TypeAdapter<PCFPushApiRegistrationResponseData> {
+
+    @Override
+    public void write(JsonWriter out, PCFPushApiRegistrationResponseData data) throws IOException {
+        if (data == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name(PCFPushApiRegistrationResponseData.VARIANT_UUID).value(data.getVariantUuid());
+        out.name(PCFPushApiRegistrationResponseData.DEVICE_UUID).value(data.getDeviceUuid());
+        out.name(PCFPushApiRegistrationResponseData.DEVICE_ALIAS).value(data.getDeviceAlias());
+        out.name(PCFPushApiRegistrationResponseData.DEVICE_MANUFACTURER).value(data.getDeviceManufacturer());
+        out.name(PCFPushApiRegistrationResponseData.DEVICE_MODEL).value(data.getDeviceModel());
+        out.name(PCFPushApiRegistrationResponseData.OS).value(data.getOs());
+        out.name(PCFPushApiRegistrationResponseData.OS_VERSION).value(data.getOsVersion());
+        out.name(PCFPushApiRegistrationResponseData.REGISTRATION_TOKEN).value(data.getRegistrationToken());
+        out.endObject();
+    }
+
+    @Override
+    public PCFPushApiRegistrationResponseData read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        final PCFPushApiRegistrationResponseData data = new PCFPushApiRegistrationResponseData();
+        in.beginObject();
+        while (in.hasNext()) {
+            final String fieldName = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (fieldName) {
+                case PCFPushApiRegistrationResponseData.VARIANT_UUID:
+                    data.setVariantUuid(JsonStreamUtil.readString(in));
+                    break;
+                case PCFPushApiRegistrationResponseData.DEVICE_UUID:
+                    data.setDeviceUuid(JsonStreamUtil.readString(in));
+                    break;
+                case PCFPushApiRegistrationResponseData.DEVICE_ALIAS:
+                    data.setDeviceAlias(JsonStreamUtil.readString(in));
+                    break;
+                case PCFPushApiRegistrationResponseData.DEVICE_MANUFACTURER:
+                    data.setDeviceManufacturer(JsonStreamUtil.readString(in));
+                    break;
+                case PCFPushApiRegistrationResponseData.DEVICE_MODEL:
+                    data.setDeviceModel(JsonStreamUtil.readString(in));
+                    break;
+                case PCFPushApiRegistrationResponseData.OS:
+                    data.setOs(JsonStreamUtil.readString(in));
+                    break;
+                case PCFPushApiRegistrationResponseData.OS_VERSION:
+                    data.setOsVersion(JsonStreamUtil.readString(in));
+                    break;
+                case PCFPushApiRegistrationResponseData.REGISTRATION_TOKEN:
+                    data.setRegistrationToken(JsonStreamUtil.readString(in));
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return data;
+    }
+}
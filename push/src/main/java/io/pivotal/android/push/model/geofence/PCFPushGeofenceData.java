@@ -8,24 +8,48 @@ import java.util.List;
 
 public final class PCFPushGeofenceData {
 
-    @SerializedName("id")
+    public static final String ID = "id";
+    public static final String EXPIRY_TIME = "expiry_time";
+    public static final String LOCATIONS = "locations";
+    public static final String PAYLOAD = "data";
+    public static final String TAGS = "tags";
+    public static final String TRIGGER_TYPE = "trigger_type";
+
+    @SerializedName(ID)
     private long id;
 
-    @SerializedName("expiry_time")
+    @SerializedName(EXPIRY_TIME)
     private Date expiryTime;
 
-    @SerializedName("locations")
+    @SerializedName(LOCATIONS)
     private List<PCFPushGeofenceLocation> locations;
 
-    @SerializedName("data")
+    @SerializedName(PAYLOAD)
     private PCFPushGeofencePayload payload;
 
-    @SerializedName("tags")
+    @SerializedName(TAGS)
     private List<String> tags;
 
-    @SerializedName("trigger_type")
+    @SerializedName(TRIGGER_TYPE)
     private String triggerType;
 
+    public PCFPushGeofenceData() {
+    }
+
+    /* package */ PCFPushGeofenceData(long id,
+                                      Date expiryTime,
+                                      List<PCFPushGeofenceLocation> locations,
+                                      PCFPushGeofencePayload payload,
+                                      List<String> tags,
+                                      String triggerType) {
+        this.id = id;
+        this.expiryTime = expiryTime;
+        this.locations = locations;
+        this.payload = payload;
+        this.tags = tags;
+        this.triggerType = triggerType;
+    }
+
     public long getId() {
         return id;
     }
@@ -63,6 +87,16 @@ public final class PCFPushGeofenceData {
         return null;
     }
 
+    public PCFPushGeofenceData newCopy() {
+        final PCFPushGeofenceData newItem = newCopyWithoutLocations();
+        if (locations != null) {
+            newItem.locations.addAll(locations);
+        } else {
+            newItem.locations = null;
+        }
+        return newItem;
+    }
+
     public PCFPushGeofenceData newCopyWithoutLocations() {
         final PCFPushGeofenceData newItem = new PCFPushGeofenceData();
         newItem.id = id;
@@ -92,7 +126,7 @@ public final class PCFPushGeofenceData {
         if (expiryTime != null ? !expiryTime.equals(other.expiryTime) : other.expiryTime != null) return false;
         if (locations != null ? !locations.equals(other.locations) : other.locations != null) return false;
         if (tags != null ? !tags.equals(other.tags) : other.tags != null) return false;
-        if (triggerType != other.triggerType) return false;
+        if (triggerType != null ? !triggerType.equals(other.triggerType) : other.triggerType != null) return false;
 
         return true;
     }
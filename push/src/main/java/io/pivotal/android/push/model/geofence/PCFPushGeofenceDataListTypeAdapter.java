@@ -0,0 +1,58 @@
+package io.pivotal.android.push.model.geofence;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Reads and writes a {@link PCFPushGeofenceDataList} as a JSON array of geofences, using the given adapter
+ * for each geofence.  The geofences are keyed by their IDs when they are read.
+ */
+public class PCFPushGeofenceDataListTypeAdapter extends TypeAdapter<PCFPushGeofenceDataList> {
+
+    private final TypeAdapter<PCFPushGeofenceData> geofenceAdapter;
+
+    public PCFPushGeofenceDataListTypeAdapter(TypeAdapter<PCFPushGeofenceData> geofenceAdapter) {
+        if (geofenceAdapter == null) {
+            throw new IllegalArgumentException("geofenceAdapter may not be null");
+        }
+        this.geofenceAdapter = geofenceAdapter;
+    }
+
+    @Override
+    public void write(JsonWriter out, PCFPushGeofenceDataList array) throws IOException {
+        if (array == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginArray();
+        for (int i = 0; i < array.size(); i += 1) {
+            geofenceAdapter.write(out, array.valueAt(i));
+        }
+        out.endArray();
+    }
+
+    @Override
+    public PCFPushGeofenceDataList read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        if (in.peek() != JsonToken.BEGIN_ARRAY) {
+            throw new IOException("Parsing PCFPushGeofenceDataList. Expected JsonToken.BEGIN_ARRAY");
+        }
+        final PCFPushGeofenceDataList result = new PCFPushGeofenceDataList();
+        in.beginArray();
+        while (in.hasNext()) {
+            final PCFPushGeofenceData item = geofenceAdapter.read(in);
+            if (item != null) {
+                result.put(item.getId(), item);
+            }
+        }
+        in.endArray();
+        return result;
+    }
+}
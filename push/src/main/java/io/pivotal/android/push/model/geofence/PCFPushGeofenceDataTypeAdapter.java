@@ -0,0 +1,127 @@
+package io.pivotal.android.push.model.geofence;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import io.pivotal.android.push.util.JsonStreamUtil;
+
+/**
+ * Reads and writes a {@link PCFPushGeofenceData} without reflection, using the given adapters for its
+ * locations and payload.  Writes the same JSON as Gson's reflective adapter, with the expiry time in
+ * milliseconds.
+ */
+public class PCFPushGeofenceDataTypeAdapter extends TypeAdapter<PCFPushGeofenceData> {
+
+    private final TypeAdapter<PCFPushGeofenceLocation> locationAdapter;
+    private final TypeAdapter<PCFPushGeofencePayload> payloadAdapter;
+
+    public PCFPushGeofenceDataTypeAdapter(TypeAdapter<PCFPushGeofenceLocation> locationAdapter,
+                                          TypeAdapter<PCFPushGeofencePayload> payloadAdapter) {
+        if (locationAdapter == null) {
+            throw new IllegalArgumentException("locationAdapter may not be null");
+        }
+        if (payloadAdapter == null) {
+            throw new IllegalArgumentException("payloadAdapter may not be null");
+        }
+        this.locationAdapter = locationAdapter;
+        this.payloadAdapter = payloadAdapter;
+    }
+
+    @Override
+    public void write(JsonWriter out, PCFPushGeofenceData geofence) throws IOException {
+        if (geofence == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name(PCFPushGeofenceData.ID).value(geofence.getId());
+        out.name(PCFPushGeofenceData.EXPIRY_TIME);
+        JsonStreamUtil.writeDate(out, geofence.getExpiryTime());
+        out.name(PCFPushGeofenceData.LOCATIONS);
+        writeLocations(out, geofence.getLocations());
+        out.name(PCFPushGeofenceData.PAYLOAD);
+        payloadAdapter.write(out, geofence.getPayload());
+        out.name(PCFPushGeofenceData.TAGS);
+        JsonStreamUtil.writeStrings(out, geofence.getTags());
+        out.name(PCFPushGeofenceData.TRIGGER_TYPE).value(geofence.getTriggerType());
+        out.endObject();
+    }
+
+    private void writeLocations(JsonWriter out, List<PCFPushGeofenceLocation> locations) throws IOException {
+        if (locations == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginArray();
+        for (int i = 0; i < locations.size(); i += 1) {
+            locationAdapter.write(out, locations.get(i));
+        }
+        out.endArray();
+    }
+
+    @Override
+    public PCFPushGeofenceData read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        long id = 0;
+        Date expiryTime = null;
+        List<PCFPushGeofenceLocation> locations = null;
+        PCFPushGeofencePayload payload = null;
+        List<String> tags = null;
+        String triggerType = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            final String fieldName = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (fieldName) {
+                case PCFPushGeofenceData.ID:
+                    id = JsonStreamUtil.readLong(in);
+                    break;
+                case PCFPushGeofenceData.EXPIRY_TIME:
+                    expiryTime = JsonStreamUtil.readDate(in);
+                    break;
+                case PCFPushGeofenceData.LOCATIONS:
+                    locations = readLocations(in);
+                    break;
+                case PCFPushGeofenceData.PAYLOAD:
+                    payload = payloadAdapter.read(in);
+                    break;
+                case PCFPushGeofenceData.TAGS:
+                    tags = JsonStreamUtil.readStringList(in);
+                    break;
+                case PCFPushGeofenceData.TRIGGER_TYPE:
+                    triggerType = JsonStreamUtil.readString(in);
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return new PCFPushGeofenceData(id, expiryTime, locations, payload, tags, triggerType);
+    }
+
+    private List<PCFPushGeofenceLocation> readLocations(JsonReader in) throws IOException {
+        final List<PCFPushGeofenceLocation> locations = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            locations.add(locationAdapter.read(in));
+        }
+        in.endArray();
+        return locations;
+    }
+}
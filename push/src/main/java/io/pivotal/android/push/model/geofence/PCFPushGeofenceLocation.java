@@ -4,21 +4,38 @@ import com.google.gson.annotations.SerializedName;
 
 public final class PCFPushGeofenceLocation {
 
-    @SerializedName("id")
+    public static final String ID = "id";
+    public static final String NAME = "name";
+    public static final String LATITUDE = "lat";
+    public static final String LONGITUDE = "long";
+    public static final String RADIUS = "rad";
+
+    @SerializedName(ID)
     private long id;
 
-    @SerializedName("name")
+    @SerializedName(NAME)
     private String name;
 
-    @SerializedName("lat")
+    @SerializedName(LATITUDE)
     private double latitude;
 
-    @SerializedName("long")
+    @SerializedName(LONGITUDE)
     private double longitude;
 
-    @SerializedName("rad")
+    @SerializedName(RADIUS)
     private float radius;
 
+    public PCFPushGeofenceLocation() {
+    }
+
+    /* package */ PCFPushGeofenceLocation(long id, String name, double latitude, double longitude, float radius) {
+        this.id = id;
+        this.name = name;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.radius = radius;
+    }
+
     public long getId() {
         return id;
     }
@@ -0,0 +1,78 @@
+package io.pivotal.android.push.model.geofence;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import io.pivotal.android.push.util.JsonStreamUtil;
+
+/**
+ * Reads and writes a {@link PCFPushGeofenceLocation} without reflection.  Writes the same JSON as Gson's
+ * reflective adapter.
+ */
+public class PCFPushGeofenceLocationTypeAdapter extends TypeAdapter<PCFPushGeofenceLocation> {
+
+    @Override
+    public void write(JsonWriter out, PCFPushGeofenceLocation location) throws IOException {
+        if (location == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name(PCFPushGeofenceLocation.ID).value(location.getId());
+        out.name(PCFPushGeofenceLocation.NAME).value(location.getName());
+        out.name(PCFPushGeofenceLocation.LATITUDE).value(location.getLatitude());
+        out.name(PCFPushGeofenceLocation.LONGITUDE).value(location.getLongitude());
+        // Written as a Float so that it has the same digits as Gson writes for float fields
+        out.name(PCFPushGeofenceLocation.RADIUS).value(Float.valueOf(location.getRadius()));
+        out.endObject();
+    }
+
+    @Override
+    public PCFPushGeofenceLocation read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        long id = 0;
+        String name = null;
+        double latitude = 0.0;
+        double longitude = 0.0;
+        float radius = 0.0f;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            final String fieldName = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (fieldName) {
+                case PCFPushGeofenceLocation.ID:
+                    id = JsonStreamUtil.readLong(in);
+                    break;
+                case PCFPushGeofenceLocation.NAME:
+                    name = JsonStreamUtil.readString(in);
+                    break;
+                case PCFPushGeofenceLocation.LATITUDE:
+                    latitude = JsonStreamUtil.readDouble(in);
+                    break;
+                case PCFPushGeofenceLocation.LONGITUDE:
+                    longitude = JsonStreamUtil.readDouble(in);
+                    break;
+                case PCFPushGeofenceLocation.RADIUS:
+                    radius = (float) JsonStreamUtil.readDouble(in);
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return new PCFPushGeofenceLocation(id, name, latitude, longitude, radius);
+    }
+}
@@ -7,7 +7,9 @@ import java.util.Map;
 
 public final class PCFPushGeofencePayload {
 
-    @SerializedName("androidFcm")
+    public static final String ANDROID_FCM = "androidFcm";
+
+    @SerializedName(ANDROID_FCM)
     private Map<String, String> androidFcm = new HashMap<>();
 
     public Map<String, String> getAndroidFcm() {
@@ -15,7 +17,15 @@ public final class PCFPushGeofencePayload {
     }
 
     public PCFPushGeofencePayload(PCFPushGeofencePayload payload) {
-        this.androidFcm = new HashMap<>(payload.androidFcm);
+        if (payload.androidFcm != null) {
+            this.androidFcm = new HashMap<>(payload.androidFcm);
+        } else {
+            this.androidFcm = null;
+        }
+    }
+
+    /* package */ PCFPushGeofencePayload(Map<String, String> androidFcm) {
+        this.androidFcm = androidFcm;
     }
 
     @Override
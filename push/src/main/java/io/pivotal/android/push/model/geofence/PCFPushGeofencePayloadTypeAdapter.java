@@ -0,0 +1,68 @@
+package io.pivotal.android.push.model.geofence;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.pivotal.android.push.util.JsonStreamUtil;
+
+/**
+ * Reads and writes a {@link PCFPushGeofencePayload} without reflection.  Writes the same JSON as Gson's
+ * reflective adapter.
+ */
+public class PCFPushGeofencePayloadTypeAdapter extends TypeAdapter<PCFPushGeofencePayload> {
+
+    @Override
+    public void write(JsonWriter out, PCFPushGeofencePayload payload) throws IOException {
+        if (payload == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name(PCFPushGeofencePayload.ANDROID_FCM);
+        final Map<String, String> androidFcm = payload.getAndroidFcm();
+        if (androidFcm == null) {
+            out.nullValue();
+        } else {
+            out.beginObject();
+            for (final Map.Entry<String, String> entry : androidFcm.entrySet()) {
+                out.name(String.valueOf(entry.getKey())).value(entry.getValue());
+            }
+            out.endObject();
+        }
+        out.endObject();
+    }
+
+    @Override
+    public PCFPushGeofencePayload read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        Map<String, String> androidFcm = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            final String fieldName = in.nextName();
+            if (fieldName.equals(PCFPushGeofencePayload.ANDROID_FCM) && in.peek() != JsonToken.NULL) {
+                androidFcm = new LinkedHashMap<>();
+                in.beginObject();
+                while (in.hasNext()) {
+                    final String key = in.nextName();
+                    androidFcm.put(key, JsonStreamUtil.readString(in));
+                }
+                in.endObject();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return new PCFPushGeofencePayload(androidFcm);
+    }
+}
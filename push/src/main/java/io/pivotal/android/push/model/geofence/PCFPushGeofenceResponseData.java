@@ -7,18 +7,33 @@ import java.util.List;
 
 public final class PCFPushGeofenceResponseData {
 
-    @SerializedName("num")
+    public static final String NUMBER = "num";
+    public static final String LAST_MODIFIED = "last_modified";
+    public static final String GEOFENCES = "geofences";
+    public static final String DELETED_GEOFENCE_IDS = "deleted_geofence_ids";
+
+    @SerializedName(NUMBER)
     private long number;
 
-    @SerializedName("last_modified")
+    @SerializedName(LAST_MODIFIED)
     private Date lastModified;
 
-    @SerializedName("geofences")
+    @SerializedName(GEOFENCES)
     private List<PCFPushGeofenceData> geofences;
 
-    @SerializedName("deleted_geofence_ids")
+    @SerializedName(DELETED_GEOFENCE_IDS)
     private List<Long> deletedGeofenceIds;
 
+    public PCFPushGeofenceResponseData() {
+    }
+
+    public PCFPushGeofenceResponseData(long number, Date lastModified, List<PCFPushGeofenceData> geofences, List<Long> deletedGeofenceIds) {
+        this.number = number;
+        this.lastModified = lastModified;
+        this.geofences = geofences;
+        this.deletedGeofenceIds = deletedGeofenceIds;
+    }
+
     public long getNumber() {
         return number;
     }
@@ -0,0 +1,111 @@
+package io.pivotal.android.push.model.geofence;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import io.pivotal.android.push.util.JsonStreamUtil;
+
+/**
+ * Reads and writes a whole {@link PCFPushGeofenceResponseData} without reflection, using the given adapter
+ * for each geofence.  Writes the same JSON as Gson's reflective adapter, with the last modified time in
+ * milliseconds.  Large responses from the server should be read with the streaming
+ * {@link io.pivotal.android.push.backend.geofence.PCFPushGeofenceResponseParser} instead.
+ */
+public class PCFPushGeofenceResponseDataTypeAdapter extends TypeAdapter<PCFPushGeofenceResponseData> {
+
+    private final TypeAdapter<PCFPushGeofenceData> geofenceAdapter;
+
+    public PCFPushGeofenceResponseDataTypeAdapter(TypeAdapter<PCFPushGeofenceData> geofenceAdapter) {
+        if (geofenceAdapter == null) {
+            throw new IllegalArgumentException("geofenceAdapter may not be null");
+        }
+        this.geofenceAdapter = geofenceAdapter;
+    }
+
+    @Override
+    public void write(JsonWriter out, PCFPushGeofenceResponseData responseData) throws IOException {
+        if (responseData == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name(PCFPushGeofenceResponseData.NUMBER).value(responseData.getNumber());
+        out.name(PCFPushGeofenceResponseData.LAST_MODIFIED);
+        JsonStreamUtil.writeDate(out, responseData.getLastModified());
+        out.name(PCFPushGeofenceResponseData.GEOFENCES);
+        writeGeofences(out, responseData.getGeofences());
+        out.name(PCFPushGeofenceResponseData.DELETED_GEOFENCE_IDS);
+        JsonStreamUtil.writeLongs(out, responseData.getDeletedGeofenceIds());
+        out.endObject();
+    }
+
+    private void writeGeofences(JsonWriter out, List<PCFPushGeofenceData> geofences) throws IOException {
+        if (geofences == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginArray();
+        for (int i = 0; i < geofences.size(); i += 1) {
+            geofenceAdapter.write(out, geofences.get(i));
+        }
+        out.endArray();
+    }
+
+    @Override
+    public PCFPushGeofenceResponseData read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        long number = 0;
+        Date lastModified = null;
+        List<PCFPushGeofenceData> geofences = null;
+        List<Long> deletedGeofenceIds = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            final String fieldName = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (fieldName) {
+                case PCFPushGeofenceResponseData.NUMBER:
+                    number = JsonStreamUtil.readLong(in);
+                    break;
+                case PCFPushGeofenceResponseData.LAST_MODIFIED:
+                    lastModified = JsonStreamUtil.readDate(in);
+                    break;
+                case PCFPushGeofenceResponseData.GEOFENCES:
+                    geofences = readGeofences(in);
+                    break;
+                case PCFPushGeofenceResponseData.DELETED_GEOFENCE_IDS:
+                    deletedGeofenceIds = JsonStreamUtil.readLongList(in);
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return new PCFPushGeofenceResponseData(number, lastModified, geofences, deletedGeofenceIds);
+    }
+
+    private List<PCFPushGeofenceData> readGeofences(JsonReader in) throws IOException {
+        final List<PCFPushGeofenceData> geofences = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            geofences.add(geofenceAdapter.read(in));
+        }
+        in.endArray();
+        return geofences;
+    }
+}
@@ -23,6 +23,8 @@ public class PushPreferences {
     protected static final String PROPERTY_SERVICE_URL = "base_server_url";
     protected static final String PROPERTY_TAGS = "tags";
     protected static final String PROPERTY_GEOFENCE_UPDATE = "geofence_update";
+    protected static final String PROPERTY_GEOFENCE_UPDATE_ETAG = "geofence_update_etag";
+    protected static final String PROPERTY_GEOFENCE_UPDATE_LAST_MODIFIED = "geofence_update_last_modified";
     protected static final String PROPERTY_ARE_GEOFENCES_ENABLED = "are_geofences_enabled";
     protected static final String PROPERTY_CUSTOM_USER_ID = "custom_user_id";
     protected static final String PROPERTY_ARE_ANALYTICS_ENABLED = "are_analytics_enabled";
@@ -117,6 +119,22 @@ public class PushPreferences {
         editor.commit();
     }
 
+    public String getGeofenceUpdateETag() {
+        return getSharedPreferences().getString(PROPERTY_GEOFENCE_UPDATE_ETAG, null);
+    }
+
+    public void setGeofenceUpdateETag(String eTag) {
+        saveSharedPreferenceString(PROPERTY_GEOFENCE_UPDATE_ETAG, eTag);
+    }
+
+    public String getGeofenceUpdateLastModified() {
+        return getSharedPreferences().getString(PROPERTY_GEOFENCE_UPDATE_LAST_MODIFIED, null);
+    }
+
+    public void setGeofenceUpdateLastModified(String lastModified) {
+        saveSharedPreferenceString(PROPERTY_GEOFENCE_UPDATE_LAST_MODIFIED, lastModified);
+    }
+
     public boolean areGeofencesEnabled() {
         return getSharedPreferences().getBoolean(PROPERTY_ARE_GEOFENCES_ENABLED, false);
     }
@@ -6,4 +6,6 @@ public interface AnalyticsEventsSenderAlarmProvider {
     void disableAlarm();
     boolean isAlarmEnabled();
     void enableAlarmIfDisabled(); // Thread safe way to ensure alarm gets enabled
+    void scheduleAlarm(long delayInMilliseconds); // Replaces any alarm with a single one after the given delay
+    void scheduleAlarm(long delayInMilliseconds, boolean shouldWakeDevice); // Same, but doesn't wake the device up if shouldWakeDevice is false
 }
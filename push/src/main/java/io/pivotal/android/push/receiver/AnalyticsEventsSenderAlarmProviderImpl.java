@@ -31,6 +31,25 @@ public class AnalyticsEventsSenderAlarmProviderImpl implements AnalyticsEventsSe
         alarmManager.setInexactRepeating(AlarmManager.ELAPSED_REALTIME_WAKEUP, triggerMillis, intervalMillis, intent);
     }
 
+    @Override
+    public synchronized void scheduleAlarm(long delayInMilliseconds) {
+        scheduleAlarm(delayInMilliseconds, true);
+    }
+
+    // Inexact on KitKat and later, so the device can wake up for it along with other alarms.  An alarm that
+    // doesn't wake the device goes off the next time that the device is awake after the delay.
+    @Override
+    public synchronized void scheduleAlarm(long delayInMilliseconds, boolean shouldWakeDevice) {
+        if (delayInMilliseconds < 0) {
+            throw new IllegalArgumentException("delayInMilliseconds may not be negative");
+        }
+        final PendingIntent intent = AnalyticsEventsSenderAlarmReceiver.getPendingIntent(context, PendingIntent.FLAG_UPDATE_CURRENT);
+        final AlarmManager alarmManager = getAlarmManager();
+        final int type = shouldWakeDevice ? AlarmManager.ELAPSED_REALTIME_WAKEUP : AlarmManager.ELAPSED_REALTIME;
+        Logger.fd("Events sender alarm scheduled. Trigger time is in %d ms. Wakes device: %b.", delayInMilliseconds, shouldWakeDevice);
+        alarmManager.set(type, SystemClock.elapsedRealtime() + delayInMilliseconds, intent);
+    }
+
     private long getTriggerMillis() {
         if (DebugUtil.getInstance(context).isDebuggable()) {
             return SystemClock.elapsedRealtime() + 2 * 60 * 1000; // 2 minutes
@@ -5,34 +5,19 @@ import android.content.Context;
 import android.content.Intent;
 import android.os.ResultReceiver;
 
-import io.pivotal.android.push.prefs.PushPreferences;
-import java.util.List;
 import java.util.concurrent.Semaphore;
 
 import io.pivotal.android.push.PushParameters;
 import io.pivotal.android.push.analytics.jobs.BaseJob;
-import io.pivotal.android.push.analytics.jobs.EnqueueAnalyticsEventJob;
-import io.pivotal.android.push.analytics.jobs.JobParams;
-import io.pivotal.android.push.analytics.jobs.JobResultListener;
-import io.pivotal.android.push.analytics.jobs.PrepareDatabaseJob;
-import io.pivotal.android.push.analytics.jobs.SendAnalyticsEventsJob;
-import io.pivotal.android.push.backend.analytics.PCFPushSendAnalyticsApiRequestImpl;
-import io.pivotal.android.push.backend.analytics.PCFPushSendAnalyticsApiRequestProvider;
-import io.pivotal.android.push.database.AnalyticsEventsStorage;
-import io.pivotal.android.push.database.DatabaseAnalyticsEventsStorage;
-import io.pivotal.android.push.database.DatabaseWrapper;
-import io.pivotal.android.push.prefs.Pivotal;
-import io.pivotal.android.push.prefs.PushRequestHeaders;
-import io.pivotal.android.push.receiver.AnalyticsEventsSenderAlarmProvider;
-import io.pivotal.android.push.receiver.AnalyticsEventsSenderAlarmProviderImpl;
 import io.pivotal.android.push.receiver.AnalyticsEventsSenderAlarmReceiver;
 import io.pivotal.android.push.util.Logger;
-import io.pivotal.android.push.util.NetworkWrapper;
-import io.pivotal.android.push.util.NetworkWrapperImpl;
-import io.pivotal.android.push.util.ServiceStarter;
-import io.pivotal.android.push.util.ServiceStarterImpl;
-import io.pivotal.android.push.util.TimeProvider;
 
+/**
+ * Wakes the process up to run an analytics job (e.g.: from the send alarm).  The job itself runs on the
+ * {@link AnalyticsJobExecutor}, which keeps its dependencies between jobs.  Jobs started from inside this
+ * process are given to the executor directly by the {@link io.pivotal.android.push.util.ServiceStarterImpl}
+ * and do not go through this service.
+ */
 public class AnalyticsEventService extends IntentService {
 
     public static final String KEY_RESULT_RECEIVER = "result_receiver";
@@ -44,25 +29,9 @@ public class AnalyticsEventService extends IntentService {
 
     // Used by unit tests
     /* package */ static Semaphore semaphore = null;
-    /* package */ static AnalyticsEventsStorage eventsStorage = null;
-    /* package */ static TimeProvider timeProvider;
-    /* package */ static NetworkWrapper networkWrapper = null;
-    /* package */ static ServiceStarter serviceStarter = null;
-    /* package */ static AnalyticsEventsSenderAlarmProvider alarmProvider = null;
-    /* package */ static PCFPushSendAnalyticsApiRequestProvider sendAnalyticsRequestProvider = null;
-    /* package */ static List<String> listOfCompletedJobs = null;
-    /* package */ static PushPreferences pushPreferences;
-    /* package */ static PushRequestHeaders pushRequestHeaders;
-
-    static PushParameters parameters;
-
-    // Used by unit tests
-    /* package */ static void setPushPreferences(PushPreferences preferences) {
-        AnalyticsEventService.pushPreferences = preferences;
-    }
 
     public static void setPushParameters(PushParameters parameters) {
-        AnalyticsEventService.parameters = parameters;
+        AnalyticsJobExecutor.setPushParameters(parameters);
     }
 
     public static Intent getIntentToRunJob(Context context, BaseJob job) {
@@ -73,6 +42,19 @@ public class AnalyticsEventService extends IntentService {
         return intent;
     }
 
+    /* package */ static BaseJob getJobFromIntent(Intent intent) {
+
+        if (!intent.hasExtra(KEY_JOB)) {
+            return null;
+        }
+
+        final Object o = intent.getParcelableExtra(KEY_JOB);
+        if (!(o instanceof BaseJob)) {
+            return null;
+        }
+        return (BaseJob) o;
+    }
+
     public AnalyticsEventService() {
         super("AnalyticsEventService");
     }
@@ -87,21 +69,10 @@ public class AnalyticsEventService extends IntentService {
             if (intent != null) {
 
                 final ResultReceiver resultReceiver = getResultReceiver(intent);
+                final BaseJob job = getJobFromIntent(intent);
 
-                if (hasJob(intent)) {
-                    final BaseJob job = getJobFromIntent(intent);
-                    if (AnalyticsEventService.pushPreferences == null) {
-                        AnalyticsEventService.pushPreferences = new PushPreferences(this);
-                    }
-                    if (AnalyticsEventService.pushRequestHeaders == null) {
-                        AnalyticsEventService.pushRequestHeaders = PushRequestHeaders.getInstance(this);
-                    }
-                    if (pushPreferences.areAnalyticsEnabled()) {
-                            setupStatics(intent);
-                            runJob(job, resultReceiver);
-                    } else {
-                        sendResult(ANALYTICS_DISABLED, resultReceiver);
-                    }
+                if (job != null) {
+                    runJob(job, resultReceiver);
                 }
             }
         } finally {
@@ -109,37 +80,6 @@ public class AnalyticsEventService extends IntentService {
         }
     }
 
-    private void setupStatics(Intent intent) {
-
-        boolean needToCleanDatabase = false;
-
-        if (AnalyticsEventService.eventsStorage == null) {
-            needToCleanDatabase = setupDatabase();
-        }
-        if (AnalyticsEventService.alarmProvider == null) {
-            AnalyticsEventService.alarmProvider = new AnalyticsEventsSenderAlarmProviderImpl(this);
-        }
-        if (AnalyticsEventService.timeProvider == null) {
-            AnalyticsEventService.timeProvider = new TimeProvider();
-        }
-        if (AnalyticsEventService.networkWrapper == null) {
-            AnalyticsEventService.networkWrapper = new NetworkWrapperImpl();
-        }
-        if (AnalyticsEventService.serviceStarter == null) {
-            AnalyticsEventService.serviceStarter = new ServiceStarterImpl();
-        }
-        if (AnalyticsEventService.sendAnalyticsRequestProvider == null) {
-            final PCFPushSendAnalyticsApiRequestImpl request = new PCFPushSendAnalyticsApiRequestImpl(this, parameters, AnalyticsEventService.eventsStorage, AnalyticsEventService.pushRequestHeaders, AnalyticsEventService.networkWrapper);
-            AnalyticsEventService.sendAnalyticsRequestProvider = new PCFPushSendAnalyticsApiRequestProvider(request);
-        }
-
-        if (!isIntentForSetup(intent) && needToCleanDatabase) {
-            Logger.i("Instantiating database.");
-            final BaseJob referringJob = getJobFromIntent(intent);
-            cleanDatabase(referringJob);
-        }
-    }
-
     // If the service gets started in the background without the rest of the application running, then it will
     // have to kick off the logger itself.
     private void setupLogger() {
@@ -148,18 +88,6 @@ public class AnalyticsEventService extends IntentService {
         }
     }
 
-    private boolean setupDatabase() {
-        final boolean wasDatabaseInstanceCreated = DatabaseWrapper.createDatabaseInstance(this);
-        AnalyticsEventService.eventsStorage = new DatabaseAnalyticsEventsStorage();
-        return wasDatabaseInstanceCreated;
-    }
-
-    private void cleanDatabase(final BaseJob referringJob) {
-        final boolean canSendEvents = !(referringJob instanceof EnqueueAnalyticsEventJob) && !(referringJob instanceof SendAnalyticsEventsJob);
-        final PrepareDatabaseJob job = new PrepareDatabaseJob(canSendEvents);
-        runJob(job, null); // no result receiver used in this hard-coded job
-    }
-
     private ResultReceiver getResultReceiver(Intent intent) {
         ResultReceiver resultReceiver = null;
         if (intent.hasExtra(KEY_RESULT_RECEIVER)) {
@@ -170,69 +98,17 @@ public class AnalyticsEventService extends IntentService {
         return resultReceiver;
     }
 
-    private boolean isIntentForSetup(Intent intent) {
-        if (intent == null || !hasJob(intent)) {
-            return false;
-        }
-
-        BaseJob job = getJobFromIntent(intent);
-        if (job == null) {
-            return false;
-        }
-
-        return (job instanceof PrepareDatabaseJob);
-    }
-
-    private boolean hasJob(Intent intent) {
-        return (getJobFromIntent(intent) != null);
-    }
-
-    private BaseJob getJobFromIntent(Intent intent) {
-
-        if (!intent.hasExtra(KEY_JOB)) {
-            return null;
-        }
-
-        final Object o = intent.getParcelableExtra(KEY_JOB);
-        if (!(o instanceof BaseJob)) {
-            return null;
-        }
-        return (BaseJob) o;
-    }
-
-    private void runJob(BaseJob job, final ResultReceiver resultReceiver) {
-        final Semaphore runJobSemaphore = new Semaphore(0);
-
-        job.run(getJobParams(new JobResultListener() {
-
-            @Override
-            public void onJobComplete(int resultCode) {
-                sendResult(resultCode, resultReceiver);
-                runJobSemaphore.release();
-            }
-        }));
-
+    // Waits for the job so that the wake lock is not released before it is done
+    private void runJob(BaseJob job, ResultReceiver resultReceiver) {
         try {
-            runJobSemaphore.acquire();
-            recordCompletedJob(job);
+            final int resultCode = AnalyticsJobExecutor.getInstance(this).runJob(job);
+            sendResult(resultCode, resultReceiver);
         } catch (InterruptedException e) {
-            Logger.ex("Got interrupted while trying to run job '" + job.toString() + "'.", e);
+            Logger.ex("Got interrupted while waiting for job '" + job.toString() + "'.", e);
             sendResult(JOB_INTERRUPTED, resultReceiver);
         }
     }
 
-    private JobParams getJobParams(JobResultListener listener) {
-        return new JobParams(this,
-                listener,
-                AnalyticsEventService.timeProvider,
-                AnalyticsEventService.networkWrapper,
-                AnalyticsEventService.serviceStarter,
-                AnalyticsEventService.eventsStorage,
-                AnalyticsEventService.pushPreferences,
-                AnalyticsEventService.alarmProvider,
-                AnalyticsEventService.sendAnalyticsRequestProvider);
-    }
-
     // Used by unit tests
     private void sendResult(int resultCode, ResultReceiver resultReceiver) {
         if (resultReceiver != null) {
@@ -240,19 +116,10 @@ public class AnalyticsEventService extends IntentService {
         }
     }
 
-    // Used by unit tests
-    private void recordCompletedJob(BaseJob job) {
-        if (AnalyticsEventService.listOfCompletedJobs != null) {
-            AnalyticsEventService.listOfCompletedJobs.add(job.toString());
-        }
-    }
-
     private void postProcessAfterService(Intent intent) {
 
         try {
 
-            cleanupStatics();
-
             // If unit tests are running then release them so that they can continue
             if (AnalyticsEventService.semaphore != null) {
                 AnalyticsEventService.semaphore.release();
@@ -268,14 +135,4 @@ public class AnalyticsEventService extends IntentService {
             }
         }
     }
-
-    private void cleanupStatics() {
-        AnalyticsEventService.eventsStorage = null;
-        AnalyticsEventService.alarmProvider = null;
-        AnalyticsEventService.networkWrapper = null;
-        AnalyticsEventService.serviceStarter = null;
-        AnalyticsEventService.pushPreferences = null;
-        AnalyticsEventService.sendAnalyticsRequestProvider = null;
-        AnalyticsEventService.listOfCompletedJobs = null;
-    }
 }
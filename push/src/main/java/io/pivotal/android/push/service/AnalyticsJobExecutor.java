@@ -0,0 +1,318 @@
+package io.pivotal.android.push.service;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.os.PowerManager;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+import io.pivotal.android.push.PushParameters;
+import io.pivotal.android.push.analytics.AnalyticsEventLogger;
+import io.pivotal.android.push.analytics.AnalyticsUploadPolicy;
+import io.pivotal.android.push.analytics.DeviceConditionsImpl;
+import io.pivotal.android.push.analytics.jobs.BaseJob;
+import io.pivotal.android.push.analytics.jobs.EnqueueAnalyticsEventJob;
+import io.pivotal.android.push.analytics.jobs.JobParams;
+import io.pivotal.android.push.analytics.jobs.JobResultListener;
+import io.pivotal.android.push.analytics.jobs.PrepareDatabaseJob;
+import io.pivotal.android.push.analytics.jobs.SendAnalyticsEventsJob;
+import io.pivotal.android.push.backend.analytics.PCFPushSendAnalyticsApiRequestImpl;
+import io.pivotal.android.push.backend.analytics.PCFPushSendAnalyticsApiRequestProvider;
+import io.pivotal.android.push.database.AnalyticsEventsStorage;
+import io.pivotal.android.push.database.DatabaseAnalyticsEventsStorage;
+import io.pivotal.android.push.database.DatabaseWrapper;
+import io.pivotal.android.push.prefs.PushPreferences;
+import io.pivotal.android.push.prefs.PushRequestHeaders;
+import io.pivotal.android.push.receiver.AnalyticsEventsSenderAlarmProvider;
+import io.pivotal.android.push.receiver.AnalyticsEventsSenderAlarmProviderImpl;
+import io.pivotal.android.push.util.Logger;
+import io.pivotal.android.push.util.NetworkWrapper;
+import io.pivotal.android.push.util.PooledNetworkWrapper;
+import io.pivotal.android.push.util.ServiceStarter;
+import io.pivotal.android.push.util.ServiceStarterImpl;
+import io.pivotal.android.push.util.TimeProvider;
+
+/**
+ * Runs analytics jobs one at a time on a worker thread that lives as long as the process.  The objects
+ * used by the jobs (the events storage, the network wrapper, the API request, etc.) are created the first
+ * time that they are needed and then kept for the following jobs.
+ *
+ * Jobs wait in an {@link AnalyticsJobQueue}, so saving events runs before sending them, and sending runs
+ * before cleaning up the database.  Equivalent jobs that are waiting at the same time are only run once,
+ * and events that are waiting to be saved are saved together.
+ *
+ * Jobs started in this process are handed to the executor directly, without being written to a Parcel.
+ * The {@link AnalyticsEventService} is only used to wake the process up (e.g.: from the send alarm), and
+ * it runs its job on this executor too.
+ *
+ * The worker thread is a daemon thread and no service is started for the jobs that are submitted, so each
+ * submitted job holds a partial wake lock until it has run.  The component that submitted the job (e.g.: an
+ * activity or a broadcast receiver) may finish right away without the device going to sleep before the
+ * events are saved or sent.  Each job's hold on the wake lock times out, so a job that never finishes can't
+ * keep the device awake and drain the battery.
+ */
+public class AnalyticsJobExecutor {
+
+    // Long enough for a job to wait behind the other queued jobs and to retry its requests
+    private static final long WAKE_LOCK_TIMEOUT_IN_MILLISECONDS = 10 * 60 * 1000L;
+
+    // Used by unit tests
+    /* package */ static AnalyticsEventsStorage eventsStorage = null;
+    /* package */ static TimeProvider timeProvider;
+    /* package */ static NetworkWrapper networkWrapper = null;
+    /* package */ static ServiceStarter serviceStarter = null;
+    /* package */ static AnalyticsEventsSenderAlarmProvider alarmProvider = null;
+    /* package */ static PCFPushSendAnalyticsApiRequestProvider sendAnalyticsRequestProvider = null;
+    /* package */ static List<String> listOfCompletedJobs = null;
+    /* package */ static PushPreferences pushPreferences;
+    /* package */ static PushRequestHeaders pushRequestHeaders;
+
+    private static volatile PushParameters parameters;
+    private static volatile boolean haveParametersChanged = false;
+    private static AnalyticsJobExecutor instance;
+
+    private final Context context;
+    private final ExecutorService executor;
+    private final AnalyticsJobQueue queue = new AnalyticsJobQueue();
+    private final PowerManager.WakeLock wakeLock;
+
+    private final Runnable runNextJob = new Runnable() {
+        @Override
+        public void run() {
+            final AnalyticsJobQueue.PendingJob pendingJob = queue.poll();
+            // The job may have been combined with one that has already run
+            if (pendingJob != null) {
+                int resultCode = AnalyticsEventService.NO_RESULT;
+                try {
+                    resultCode = execute(pendingJob.getJob());
+                } finally {
+                    pendingJob.complete(resultCode);
+                }
+            }
+        }
+    };
+
+    // Each submitted job acquires the wake lock once, and it is released once for each job that has run
+    private final Runnable runNextJobAndReleaseWakeLock = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                runNextJob.run();
+            } finally {
+                releaseWakeLock();
+            }
+        }
+    };
+
+    public static synchronized AnalyticsJobExecutor getInstance(Context context) {
+        if (instance == null) {
+            instance = new AnalyticsJobExecutor(context.getApplicationContext() != null ? context.getApplicationContext() : context);
+        }
+        return instance;
+    }
+
+    /**
+     * @param parameters used to make the requests that send events to the server.  The request is made
+     *                   again the next time that a job runs if the parameters change.
+     */
+    public static void setPushParameters(PushParameters parameters) {
+        AnalyticsJobExecutor.parameters = parameters;
+        AnalyticsJobExecutor.haveParametersChanged = true;
+    }
+
+    /**
+     * Hands the job in the given intent to the executor, if the intent is for the {@link AnalyticsEventService}.
+     *
+     * @return true if the executor has accepted the job
+     */
+    public static boolean submitJobFromIntent(Context context, Intent intent) {
+        if (intent == null) {
+            return false;
+        }
+        final ComponentName componentName = intent.getComponent();
+        if (componentName == null || !AnalyticsEventService.class.getName().equals(componentName.getClassName())) {
+            return false;
+        }
+        final BaseJob job = AnalyticsEventService.getJobFromIntent(intent);
+        if (job == null) {
+            return false;
+        }
+        getInstance(context).submit(job);
+        return true;
+    }
+
+    private AnalyticsJobExecutor(Context context) {
+        this.context = context;
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "AnalyticsJobExecutor");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        final PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        this.wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "PCFPush:AnalyticsJobExecutor");
+        this.wakeLock.setReferenceCounted(true);
+    }
+
+    /**
+     * Runs the job after any jobs with a higher priority, or the same priority, that were submitted before it.
+     * Does not wait for it to finish.  The device is kept awake until the job has run, or for at most
+     * ten minutes.
+     */
+    public void submit(BaseJob job) {
+        if (job == null) {
+            throw new IllegalArgumentException("job may not be null");
+        }
+        queue.add(job);
+        wakeLock.acquire(WAKE_LOCK_TIMEOUT_IN_MILLISECONDS);
+        try {
+            executor.execute(runNextJobAndReleaseWakeLock);
+        } catch (RuntimeException e) {
+            releaseWakeLock();
+            throw e;
+        }
+    }
+
+    /**
+     * Runs the job after any jobs with a higher priority, or the same priority, that were submitted before it,
+     * and waits for it to finish.  The caller must keep the device awake while it waits.
+     *
+     * @return the result code of the job, or one of the {@link AnalyticsEventService} result codes if it could not run
+     * @throws InterruptedException if the calling thread was interrupted while it was waiting
+     */
+    public int runJob(BaseJob job) throws InterruptedException {
+        if (job == null) {
+            throw new IllegalArgumentException("job may not be null");
+        }
+        final AnalyticsJobQueue.PendingJob pendingJob = queue.add(job);
+        executor.execute(runNextJob);
+        return pendingJob.awaitResult();
+    }
+
+    private void releaseWakeLock() {
+        if (!wakeLock.isHeld()) {
+            return;
+        }
+        try {
+            wakeLock.release();
+        } catch (RuntimeException e) {
+            // The job's hold on the wake lock has already timed out, so the wake lock is under-locked
+            Logger.w("Wake lock was already released after it timed out: " + e.getLocalizedMessage());
+        }
+    }
+
+    // Used by unit tests
+    /* package */ boolean isHoldingWakeLock() {
+        return wakeLock.isHeld();
+    }
+
+    private int execute(BaseJob job) {
+        if (!Logger.isSetup()) {
+            Logger.setup(context);
+        }
+        try {
+            if (pushPreferences == null) {
+                pushPreferences = new PushPreferences(context);
+            }
+            if (pushRequestHeaders == null) {
+                pushRequestHeaders = PushRequestHeaders.getInstance(context);
+            }
+            if (!pushPreferences.areAnalyticsEnabled()) {
+                return AnalyticsEventService.ANALYTICS_DISABLED;
+            }
+            setupDependencies(job);
+            return runJobOnWorker(job);
+        } finally {
+            // Lets the next coalesced send start, even if this one was skipped because analytics are disabled
+            if (job instanceof SendAnalyticsEventsJob) {
+                AnalyticsEventLogger.onSendAnalyticsEventsJobComplete();
+            }
+        }
+    }
+
+    private void setupDependencies(BaseJob job) {
+
+        boolean needToCleanDatabase = false;
+
+        if (eventsStorage == null) {
+            needToCleanDatabase = DatabaseWrapper.createDatabaseInstance(context);
+            eventsStorage = new DatabaseAnalyticsEventsStorage();
+        }
+        if (alarmProvider == null) {
+            alarmProvider = new AnalyticsEventsSenderAlarmProviderImpl(context);
+        }
+        if (timeProvider == null) {
+            timeProvider = new TimeProvider();
+        }
+        if (networkWrapper == null) {
+            networkWrapper = new PooledNetworkWrapper();
+        }
+        if (serviceStarter == null) {
+            serviceStarter = new ServiceStarterImpl();
+        }
+        if (SendAnalyticsEventsJob.getUploadPolicy() == null) {
+            SendAnalyticsEventsJob.setUploadPolicy(new AnalyticsUploadPolicy(timeProvider, new DeviceConditionsImpl(context)));
+        }
+        if (sendAnalyticsRequestProvider == null || haveParametersChanged) {
+            haveParametersChanged = false;
+            final PCFPushSendAnalyticsApiRequestImpl request = new PCFPushSendAnalyticsApiRequestImpl(context, parameters, eventsStorage, pushRequestHeaders, networkWrapper);
+            sendAnalyticsRequestProvider = new PCFPushSendAnalyticsApiRequestProvider(request);
+        }
+
+        if (!(job instanceof PrepareDatabaseJob) && needToCleanDatabase) {
+            Logger.i("Instantiating database.");
+            final boolean canSendEvents = !(job instanceof EnqueueAnalyticsEventJob) && !(job instanceof SendAnalyticsEventsJob);
+            runJobOnWorker(new PrepareDatabaseJob(canSendEvents));
+        }
+    }
+
+    private int runJobOnWorker(BaseJob job) {
+        final Semaphore runJobSemaphore = new Semaphore(0);
+        final int[] result = new int[] { AnalyticsEventService.NO_RESULT };
+
+        job.run(getJobParams(new JobResultListener() {
+
+            @Override
+            public void onJobComplete(int resultCode) {
+                result[0] = resultCode;
+                runJobSemaphore.release();
+            }
+        }));
+
+        try {
+            runJobSemaphore.acquire();
+            recordCompletedJob(job);
+            return result[0];
+        } catch (InterruptedException e) {
+            Logger.ex("Got interrupted while trying to run job '" + job.toString() + "'.", e);
+            return AnalyticsEventService.JOB_INTERRUPTED;
+        }
+    }
+
+    private JobParams getJobParams(JobResultListener listener) {
+        return new JobParams(context,
+                listener,
+                timeProvider,
+                networkWrapper,
+                serviceStarter,
+                eventsStorage,
+                pushPreferences,
+                alarmProvider,
+                sendAnalyticsRequestProvider);
+    }
+
+    // Used by unit tests
+    private void recordCompletedJob(BaseJob job) {
+        final List<String> completedJobs = listOfCompletedJobs;
+        if (completedJobs != null) {
+            completedJobs.add(job.toString());
+        }
+    }
+}
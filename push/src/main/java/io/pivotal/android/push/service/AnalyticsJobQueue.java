@@ -0,0 +1,99 @@
+package io.pivotal.android.push.service;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.CountDownLatch;
+
+import io.pivotal.android.push.analytics.jobs.BaseJob;
+import io.pivotal.android.push.util.Logger;
+
+/**
+ * The analytics jobs waiting to run on the {@link AnalyticsJobExecutor}.  Jobs are taken in order of their
+ * {@link BaseJob#getPriority()}, and in the order they were added when their priorities are the same.
+ * A job that is added while an equivalent job is still waiting is combined with it (see
+ * {@link BaseJob#coalesceWith}) instead of being queued again.
+ */
+/* package */ class AnalyticsJobQueue {
+
+    /**
+     * A job waiting in the queue.  Everyone that added one of the jobs combined into it gets its result.
+     */
+    /* package */ static class PendingJob {
+
+        private final int priority;
+        private final long sequenceNumber;
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private BaseJob job;
+        private volatile int resultCode = AnalyticsEventService.NO_RESULT;
+
+        private PendingJob(BaseJob job, long sequenceNumber) {
+            this.job = job;
+            this.priority = job.getPriority();
+            this.sequenceNumber = sequenceNumber;
+        }
+
+        /* package */ BaseJob getJob() {
+            return job;
+        }
+
+        /* package */ void complete(int resultCode) {
+            this.resultCode = resultCode;
+            latch.countDown();
+        }
+
+        /* package */ int awaitResult() throws InterruptedException {
+            latch.await();
+            return resultCode;
+        }
+    }
+
+    private static final Comparator<PendingJob> PRIORITY_ORDER = new Comparator<PendingJob>() {
+
+        @Override
+        public int compare(PendingJob lhs, PendingJob rhs) {
+            if (lhs.priority != rhs.priority) {
+                return lhs.priority < rhs.priority ? -1 : 1;
+            }
+            if (lhs.sequenceNumber != rhs.sequenceNumber) {
+                return lhs.sequenceNumber < rhs.sequenceNumber ? -1 : 1;
+            }
+            return 0;
+        }
+    };
+
+    private final PriorityQueue<PendingJob> queue = new PriorityQueue<>(11, PRIORITY_ORDER);
+    private long nextSequenceNumber = 0;
+
+    /**
+     * @return the queued job that will run the given job, which may have been combined with a job that was already waiting
+     */
+    public synchronized PendingJob add(BaseJob job) {
+        if (job == null) {
+            throw new IllegalArgumentException("job may not be null");
+        }
+        for (final PendingJob pendingJob : queue) {
+            if (pendingJob.priority == job.getPriority()) {
+                final BaseJob coalescedJob = job.coalesceWith(pendingJob.job);
+                if (coalescedJob != null) {
+                    Logger.fd("Combining job '%s' with the job '%s' that is waiting to run.", job, pendingJob.job);
+                    pendingJob.job = coalescedJob;
+                    return pendingJob;
+                }
+            }
+        }
+        final PendingJob pendingJob = new PendingJob(job, nextSequenceNumber++);
+        queue.add(pendingJob);
+        return pendingJob;
+    }
+
+    /**
+     * @return the next job to run, or null if there are none waiting
+     */
+    public synchronized PendingJob poll() {
+        return queue.poll();
+    }
+
+    public synchronized int size() {
+        return queue.size();
+    }
+}
@@ -7,46 +7,54 @@ import android.content.Context;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
+import android.support.annotation.VisibleForTesting;
 import android.util.Base64;
 
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.math.BigInteger;
+import java.io.OutputStreamWriter;
+import java.net.ConnectException;
 import java.net.HttpURLConnection;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
 import java.net.URL;
 import java.security.GeneralSecurityException;
-import java.security.KeyManagementException;
-import java.security.KeyStore;
-import java.security.NoSuchAlgorithmException;
-import java.security.cert.Certificate;
-import java.security.cert.CertificateException;
-import java.security.cert.CertificateFactory;
-import java.security.cert.X509Certificate;
-import java.security.interfaces.RSAPublicKey;
-import java.util.List;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.HttpsURLConnection;
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.SSLSession;
 import javax.net.ssl.SSLSocketFactory;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.TrustManagerFactory;
-import javax.net.ssl.X509TrustManager;
 
 import io.pivotal.android.push.PushParameters;
 import io.pivotal.android.push.prefs.Pivotal;
 import io.pivotal.android.push.receiver.CustomSslProvider;
 
-import static java.util.Collections.list;
-
 public class ApiRequestImpl {
 
     public static final String CUSTOM_SSL_PROVIDER_META_DATA = "io.pivotal.android.push.CustomSslProvider";
 
+    private static final String CHARSET_UTF_8 = "UTF-8";
+    private static final int OUTPUT_BUFFER_SIZE = 8192;
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    private static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+    private static RetryPolicy retryPolicy = new RetryPolicy();
+    private static TimeProvider timeProvider = new TimeProvider();
+    private static Random circuitBreakerRandom = new Random();
+    private static final Map<String, CircuitBreaker> circuitBreakers = new HashMap<>();
+
     protected NetworkWrapper networkWrapper;
     protected Context context;
 
@@ -55,6 +63,75 @@ public class ApiRequestImpl {
         saveArguments(context, networkWrapper);
     }
 
+    /**
+     * Makes one attempt at a request.  Used by {@link #sendRequest(String, boolean, RequestSender)}, which may make
+     * several attempts.
+     */
+    protected interface RequestSender {
+
+        /**
+         * Opens a new connection and sets up the request (e.g.: the method and headers).
+         */
+        HttpURLConnection openConnection() throws Exception;
+
+        /**
+         * Connects and writes the request body, if there is one.
+         */
+        void writeRequest(HttpURLConnection urlConnection) throws IOException;
+    }
+
+    /**
+     * Sets how many times requests to the PCF Push server are attempted and how long to wait between attempts.
+     * Requests are attempted {@link RetryPolicy#DEFAULT_MAX_ATTEMPTS} times by default.  Each attempt blocks the
+     * thread making the request (e.g.: a background job) while it waits, so keep the maximum delay short.
+     *
+     * This should be called before any requests are made, e.g.: in your application's onCreate method.
+     */
+    public static synchronized void setRetryPolicy(RetryPolicy retryPolicy) {
+        setRetryPolicy(retryPolicy, getTimeProvider(), getCircuitBreakerRandom());
+    }
+
+    /**
+     * Replaces the retry policy and clock used by all API requests, and forgets the state of every circuit breaker.
+     */
+    @VisibleForTesting
+    public static synchronized void setRetryPolicy(RetryPolicy retryPolicy, TimeProvider timeProvider, Random circuitBreakerRandom) {
+        if (retryPolicy == null) {
+            throw new IllegalArgumentException("retryPolicy may not be null");
+        }
+        if (timeProvider == null) {
+            throw new IllegalArgumentException("timeProvider may not be null");
+        }
+        if (circuitBreakerRandom == null) {
+            throw new IllegalArgumentException("circuitBreakerRandom may not be null");
+        }
+        ApiRequestImpl.retryPolicy = retryPolicy;
+        ApiRequestImpl.timeProvider = timeProvider;
+        ApiRequestImpl.circuitBreakerRandom = circuitBreakerRandom;
+        circuitBreakers.clear();
+    }
+
+    private static synchronized RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    private static synchronized TimeProvider getTimeProvider() {
+        return timeProvider;
+    }
+
+    private static synchronized Random getCircuitBreakerRandom() {
+        return circuitBreakerRandom;
+    }
+
+    /* package */ static synchronized CircuitBreaker getCircuitBreaker(String endpoint) {
+        CircuitBreaker circuitBreaker = circuitBreakers.get(endpoint);
+        if (circuitBreaker == null) {
+            circuitBreaker = new CircuitBreaker(CircuitBreaker.DEFAULT_FAILURE_THRESHOLD, CircuitBreaker.DEFAULT_OPEN_DURATION_IN_MILLISECONDS, timeProvider, circuitBreakerRandom);
+            circuitBreakers.put(endpoint, circuitBreaker);
+        }
+        return circuitBreaker;
+    }
+
     public static String getBasicAuthorizationValue(PushParameters parameters) {
         final String stringToEncode = parameters.getPlatformUuid() + ":" + parameters.getPlatformSecret();
         return "Basic  " + Base64.encodeToString(stringToEncode.getBytes(), Base64.DEFAULT | Base64.NO_WRAP);
@@ -78,20 +155,162 @@ public class ApiRequestImpl {
         final HttpURLConnection urlConnection = networkWrapper.getHttpURLConnection(url);
         urlConnection.setReadTimeout(60000);
         urlConnection.setConnectTimeout(60000);
-        urlConnection.setChunkedStreamingMode(0);
         addCustomRequestHeaders(parameters, urlConnection);
         setupTrust(parameters, urlConnection);
         return urlConnection;
     }
 
-    protected void writeOutput(String requestBodyData, OutputStream outputStream) throws IOException {
-        final byte[] bytes = requestBodyData.getBytes();
-        for (byte b : bytes) {
-            outputStream.write(b);
+    protected void releaseHttpURLConnection(HttpURLConnection urlConnection) {
+        networkWrapper.releaseHttpURLConnection(urlConnection);
+    }
+
+    /**
+     * Sends a request, retrying it with exponential backoff if it fails with an IOException, a 5xx status or
+     * a 429 status with a "Retry-After" header.  Other statuses are returned right away.  Requests to an
+     * endpoint that keeps failing are suspended for a while by a circuit breaker shared by all API requests.
+     *
+     * A request that isn't idempotent (e.g.: a POST that creates something) is only sent again if the server
+     * can't have received it yet, i.e.: if the connection couldn't be made or the server answered 429 with a
+     * "Retry-After" header.  Otherwise a failed attempt could have been processed by the server and would be
+     * repeated.
+     *
+     * @param endpoint the service URL and endpoint the request is sent to, without any IDs or query
+     *                 parameters (e.g.: "https://push.example.com/v1/registration").  Requests to the same
+     *                 endpoint share a circuit breaker.
+     * @param isIdempotent true if sending the request more than once has the same effect as sending it once.
+     * @return the connection of the last attempt.  Its response code has been read but its body has not.
+     *         The caller must release the connection.
+     * @throws CircuitBreakerOpenException if requests to the endpoint are suspended.
+     */
+    protected HttpURLConnection sendRequest(String endpoint, boolean isIdempotent, RequestSender sender) throws Exception {
+        final CircuitBreaker circuitBreaker = getCircuitBreaker(endpoint);
+        final RetryPolicy retryPolicy = getRetryPolicy();
+        final TimeProvider timeProvider = getTimeProvider();
+
+        int numberOfFailedAttempts = 0;
+        while (true) {
+            if (!circuitBreaker.allowRequest()) {
+                throw new CircuitBreakerOpenException(endpoint);
+            }
+
+            // Every allowed request must report its outcome to the circuit breaker, even if the connection
+            // couldn't be opened, or a trial request in the half open state would never finish
+            HttpURLConnection urlConnection = null;
+            final int statusCode;
+            final long retryAfter;
+            try {
+                urlConnection = sender.openConnection();
+                sender.writeRequest(urlConnection);
+                statusCode = urlConnection.getResponseCode();
+                retryAfter = getRetryAfterInMilliseconds(statusCode, urlConnection, timeProvider);
+            } catch (Exception e) {
+                // The connection is in an unknown state so it can't be reused
+                if (urlConnection != null) {
+                    urlConnection.disconnect();
+                }
+                circuitBreaker.onFailure();
+                numberOfFailedAttempts += 1;
+                if (!(e instanceof IOException) || !retryPolicy.shouldRetry(numberOfFailedAttempts) || !(isIdempotent || isConnectionFailure(e))) {
+                    throw e;
+                }
+                final long delay = retryPolicy.getBackoffDelay(numberOfFailedAttempts);
+                Logger.w("Request to " + endpoint + " failed: " + e.getLocalizedMessage() + ". Retrying in " + delay + " ms.");
+                timeProvider.sleep(delay);
+                continue;
+            }
+
+            if (!isRetryableStatusCode(statusCode, retryAfter)) {
+                if (isServerFailureStatusCode(statusCode)) {
+                    circuitBreaker.onFailure();
+                } else {
+                    circuitBreaker.onSuccess();
+                }
+                return urlConnection;
+            }
+
+            circuitBreaker.onFailure();
+            numberOfFailedAttempts += 1;
+            if (!retryPolicy.shouldRetry(numberOfFailedAttempts) || retryAfter > retryPolicy.getMaxDelayInMilliseconds()) {
+                return urlConnection;
+            }
+            if (!isIdempotent && statusCode != HTTP_TOO_MANY_REQUESTS) {
+                // The server may have processed the request before it failed
+                return urlConnection;
+            }
+            final long delay = Math.max(retryPolicy.getBackoffDelay(numberOfFailedAttempts), retryAfter);
+            Logger.w("Request to " + endpoint + " returned HTTP status " + statusCode + ". Retrying in " + delay + " ms.");
+            releaseHttpURLConnection(urlConnection);
+            timeProvider.sleep(delay);
+        }
+    }
+
+    /**
+     * @param retryAfterInMilliseconds the delay requested by the "Retry-After" response header, or -1 if there was none.
+     */
+    protected boolean isRetryableStatusCode(int statusCode, long retryAfterInMilliseconds) {
+        if (statusCode == HTTP_TOO_MANY_REQUESTS) {
+            return retryAfterInMilliseconds >= 0;
+        }
+        if (isFatalStatusCode(statusCode)) {
+            return false;
+        }
+        return statusCode >= 500;
+    }
+
+    // The request was never sent if the connection couldn't be made
+    private static boolean isConnectionFailure(Exception e) {
+        return e instanceof ConnectException || e instanceof NoRouteToHostException || e instanceof UnknownHostException;
+    }
+
+    private boolean isServerFailureStatusCode(int statusCode) {
+        return statusCode >= 500 || statusCode == HTTP_TOO_MANY_REQUESTS;
+    }
+
+    // The "Retry-After" header is either a number of seconds or an HTTP date
+    /* package */ static long getRetryAfterInMilliseconds(int statusCode, HttpURLConnection urlConnection, TimeProvider timeProvider) {
+        if (statusCode != HTTP_TOO_MANY_REQUESTS && statusCode < 500) {
+            return -1;
+        }
+        final String value = urlConnection.getHeaderField("Retry-After");
+        if (value == null || value.trim().isEmpty()) {
+            return -1;
+        }
+        try {
+            return Math.max(0L, Long.parseLong(value.trim()) * 1000L);
+        } catch (NumberFormatException e) {
+            // Not a number of seconds
+        }
+        try {
+            final SimpleDateFormat dateFormat = new SimpleDateFormat(HTTP_DATE_FORMAT, Locale.US);
+            dateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+            return Math.max(0L, dateFormat.parse(value.trim()).getTime() - timeProvider.currentTimeMillis());
+        } catch (ParseException e) {
+            Logger.w("Ignoring unparseable Retry-After header: " + value);
+            return -1;
         }
+    }
+
+    protected void writeOutput(String requestBodyData, OutputStream outputStream) throws IOException {
+        outputStream.write(requestBodyData.getBytes(CHARSET_UTF_8));
         outputStream.close();
     }
 
+    /**
+     * Serializes the given object straight into the output stream as UTF-8 JSON.  The output stream is closed afterwards.
+     */
+    protected void writeOutput(Gson gson, Object requestBodyData, OutputStream outputStream) throws IOException {
+        final JsonWriter jsonWriter = getJsonWriter(outputStream);
+        gson.toJson(requestBodyData, requestBodyData.getClass(), jsonWriter);
+        jsonWriter.close();
+    }
+
+    /**
+     * Returns a buffered UTF-8 JSON writer over the given output stream.  Closing the writer closes the stream.
+     */
+    protected JsonWriter getJsonWriter(OutputStream outputStream) throws IOException {
+        return new JsonWriter(new BufferedWriter(new OutputStreamWriter(outputStream, CHARSET_UTF_8), OUTPUT_BUFFER_SIZE));
+    }
+
     protected String readInput(InputStream inputStream) throws IOException {
         final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
         byte[] buffer = new byte[256];
@@ -159,150 +378,21 @@ public class ApiRequestImpl {
         }
     }
 
-    private void trustAllSslCertificates(HttpsURLConnection urlConnection) throws NoSuchAlgorithmException, KeyManagementException {
-        // Create a trust manager that does not validate certificate chains
-        TrustManager[] trustAllCerts = new TrustManager[] {
-                new X509TrustManager() {
-                    public X509Certificate[] getAcceptedIssuers() {
-                        return new X509Certificate[0];
-                    }
-                    public void checkClientTrusted(X509Certificate[] certs, String authType) {}
-                    public void checkServerTrusted(X509Certificate[] certs, String authType) {}
-                }};
+    private void trustAllSslCertificates(HttpsURLConnection urlConnection) throws GeneralSecurityException {
+        urlConnection.setSSLSocketFactory(SslTrustCache.getTrustAllSocketFactory());
 
         // Ignore differences between given hostname and certificate hostname
-        HostnameVerifier hv = new HostnameVerifier() {
-            public boolean verify(String hostname, SSLSession session) { return true; }
-        };
-
-        SSLContext context = SSLContext.getInstance("TLS");
-        context.init(null, trustAllCerts, null);
-
-        urlConnection.setSSLSocketFactory(context.getSocketFactory());
-        urlConnection.setHostnameVerifier(hv);
+        urlConnection.setHostnameVerifier(SslTrustCache.getTrustAllHostnameVerifier());
 
         Logger.w("Note: We trust all SSL certifications in PCF Push.");
     }
 
     private void trustPinnedSslCertificates(Context context, PushParameters parameters, HttpsURLConnection urlConnection) throws GeneralSecurityException, IOException {
-
-        // Load CAs from an InputStream
-        final KeyStore keyStore = getKeyStore(context, parameters);
-
-        // Create a trust manager that validates a pinned certificate
-        TrustManager[] trustPinnedManager = new TrustManager[] {
-                new X509TrustManager() {
-                    @Override
-                    public void checkClientTrusted(X509Certificate[] chain, String authType) throws CertificateException {}
-
-                    @Override
-                    public void checkServerTrusted(X509Certificate[] chain, String authType) throws CertificateException {
-                        if (chain == null) {
-                            throw new IllegalArgumentException("checkServerTrusted: X509Certificate array is null");
-                        }
-
-                        if (!(chain.length > 0)) {
-                            throw new IllegalArgumentException("checkServerTrusted: X509Certificate is empty");
-                        }
-
-                        if (!(authType != null && authType.contains("RSA"))) {
-                            throw new CertificateException("checkServerTrusted: AuthType is not RSA.  AuthType: " + authType);
-                        }
-
-                        boolean foundMatchingCertificate = false;
-
-                        // Remote certificate
-                        RSAPublicKey remotePubKey = (RSAPublicKey) chain[0].getPublicKey();
-                        String remoteEncodedPubKey = new BigInteger(1, remotePubKey.getEncoded()).toString(16);
-
-                        String localEncodedPubKey;
-                        // Perform custom SSL/TLS checks
-                        try {
-                            TrustManagerFactory trustMgrFactory = TrustManagerFactory.getInstance("X509");
-                            trustMgrFactory.init(keyStore);
-
-                            for (TrustManager trustManager : trustMgrFactory.getTrustManagers()) {
-                                ((X509TrustManager) trustManager).checkServerTrusted(chain, authType);
-                            }
-
-                            for (String alias : list(keyStore.aliases())) {
-                                // Local certificate
-                                RSAPublicKey localPubKey = (RSAPublicKey) keyStore.getCertificate(alias).getPublicKey();
-                                localEncodedPubKey = new BigInteger(1, localPubKey.getEncoded()).toString(16);
-
-                                foundMatchingCertificate = localEncodedPubKey.equalsIgnoreCase(remoteEncodedPubKey);
-
-                                if (foundMatchingCertificate)
-                                    break;
-                            }
-
-                        } catch (Exception error) {
-                            throw new CertificateException(error);
-                        }
-
-                        // Pin it!
-                        if (!foundMatchingCertificate) {
-                            throw new CertificateException("The server's certificate has not been authenticated.");
-                        }
-                    }
-
-                    @Override
-                    public X509Certificate[] getAcceptedIssuers() {
-                        return new X509Certificate[0];
-                    }
-                }
-        };
-
-        SSLContext sslContext = SSLContext.getInstance("TLS");
-        sslContext.init(null, trustPinnedManager, null);
-
-        urlConnection.setSSLSocketFactory(sslContext.getSocketFactory());
+        urlConnection.setSSLSocketFactory(SslTrustCache.getPinnedSocketFactory(context, parameters.getPinnedSslCertificateNames()));
 
         Logger.w("Note: Authenticating certificate in PCF Push.");
     }
 
-    private KeyStore getKeyStore(Context context, PushParameters parameters) throws GeneralSecurityException, IOException {
-
-        CertificateFactory cf = CertificateFactory.getInstance("X.509");
-        String keyStoreType = KeyStore.getDefaultType();
-        final KeyStore keyStore = KeyStore.getInstance(keyStoreType);
-        keyStore.load(null, null);
-
-        List<String> pinnedCertificateNames = parameters.getPinnedSslCertificateNames();
-        for (int i = 0; i < pinnedCertificateNames.size(); i += 1) {
-
-            String pinnedCertificateName = pinnedCertificateNames.get(i);
-            InputStream caInput = null;
-            Certificate ca = null;
-
-            try {
-                if (pinnedCertificateName != null) {
-                    caInput = context.getAssets().open(pinnedCertificateName);
-                    ca = cf.generateCertificate(caInput);
-                    Logger.i("Note: We are pinning certificate '" + pinnedCertificateName + "'.");
-                }
-
-            } catch (IOException e1) {
-                Logger.w("WARNING: could not open certificate file '" + pinnedCertificateName + "': " + e1);
-
-            } catch (CertificateException e2) {
-                Logger.w("WARNING: could not read certificate file '" + pinnedCertificateName + "': " + e2);
-
-            } finally {
-                if (caInput != null) {
-                    caInput.close();
-                }
-            }
-
-            // Create a KeyStore containing our trusted CAs
-            if (ca != null) {
-                keyStore.setCertificateEntry(String.valueOf(i), ca);
-            }
-        }
-
-        return keyStore;
-    }
-
     public static Class<? extends CustomSslProvider> getCustomSslProviderClass(final Context context) {
         try {
             final Class<? extends CustomSslProvider> klass = ApiRequestImpl.findProviderClassName(context);
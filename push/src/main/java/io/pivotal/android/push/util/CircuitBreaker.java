@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2014 Pivotal Software, Inc. All rights reserved.
+ */
+package io.pivotal.android.push.util;
+
+import java.util.Random;
+
+/**
+ * Stops requests to a back-end endpoint after it has failed several times in a row.
+ *
+ * After the failure threshold is reached the circuit is "open" and no requests are allowed for the open
+ * duration plus a random amount of up to the same duration again.  The jitter spreads out the devices
+ * that saw the same outage, so they don't all come back at once.  Once that time has passed the circuit is
+ * "half open": a single trial request is allowed through.  If it succeeds then the circuit closes, and
+ * if it fails then the circuit opens again.
+ */
+public class CircuitBreaker {
+
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    public static final long DEFAULT_OPEN_DURATION_IN_MILLISECONDS = 60 * 1000L;
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openDurationInMilliseconds;
+    private final TimeProvider timeProvider;
+    private final Random random;
+
+    private int numberOfConsecutiveFailures;
+    private long openUntil;
+    private boolean isOpen;
+    private boolean isTrialRequestInProgress;
+
+    public CircuitBreaker(int failureThreshold, long openDurationInMilliseconds, TimeProvider timeProvider, Random random) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("failureThreshold must be at least 1");
+        }
+        if (openDurationInMilliseconds < 0) {
+            throw new IllegalArgumentException("openDurationInMilliseconds may not be negative");
+        }
+        if (timeProvider == null) {
+            throw new IllegalArgumentException("timeProvider may not be null");
+        }
+        if (random == null) {
+            throw new IllegalArgumentException("random may not be null");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openDurationInMilliseconds = openDurationInMilliseconds;
+        this.timeProvider = timeProvider;
+        this.random = random;
+    }
+
+    /**
+     * @return true if a request may be made now.  In the half open state only the first caller is allowed through.
+     */
+    public synchronized boolean allowRequest() {
+        switch (getState()) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                if (isTrialRequestInProgress) {
+                    return false;
+                }
+                isTrialRequestInProgress = true;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        numberOfConsecutiveFailures = 0;
+        isOpen = false;
+        isTrialRequestInProgress = false;
+    }
+
+    public synchronized void onFailure() {
+        numberOfConsecutiveFailures += 1;
+        if (isTrialRequestInProgress || numberOfConsecutiveFailures >= failureThreshold) {
+            open();
+        }
+        isTrialRequestInProgress = false;
+    }
+
+    public synchronized State getState() {
+        if (!isOpen) {
+            return State.CLOSED;
+        }
+        if (timeProvider.currentTimeMillis() < openUntil) {
+            return State.OPEN;
+        }
+        return State.HALF_OPEN;
+    }
+
+    private void open() {
+        final long jitter = (long) (random.nextDouble() * openDurationInMilliseconds);
+        openUntil = timeProvider.currentTimeMillis() + openDurationInMilliseconds + jitter;
+        if (!isOpen) {
+            Logger.w("Too many failed requests. Suspending requests for " + (openUntil - timeProvider.currentTimeMillis()) + " ms.");
+        }
+        isOpen = true;
+    }
+}
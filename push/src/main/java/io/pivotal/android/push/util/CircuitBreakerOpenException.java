@@ -0,0 +1,16 @@
+/*
+ * Copyright (C) 2014 Pivotal Software, Inc. All rights reserved.
+ */
+package io.pivotal.android.push.util;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of making a request to an endpoint whose {@link CircuitBreaker} is open.
+ */
+public class CircuitBreakerOpenException extends IOException {
+
+    public CircuitBreakerOpenException(String endpoint) {
+        super("Requests to " + endpoint + " are suspended after too many failures");
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2014 Pivotal Software, Inc. All rights reserved.
+ */
+package io.pivotal.android.push.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes a request body into an HTTP connection, gzipping it on the fly if it turns out to be at least
+ * some minimum size.  Up to that many bytes are held in memory before the connection is opened, so the
+ * "Content-Encoding" header can still be set once it is known whether the body will be compressed.
+ */
+public class DeferredGzipOutputStream extends OutputStream {
+
+    public static final String CONTENT_ENCODING_GZIP = "gzip";
+
+    private static final int GZIP_BUFFER_SIZE = 8192;
+
+    private final HttpURLConnection urlConnection;
+    private final int thresholdInBytes;
+    private ByteArrayOutputStream pendingOutput;
+    private OutputStream outputStream;
+    private boolean isCompressed;
+    private boolean isClosed;
+
+    /**
+     * @param urlConnection the connection to write into. It should not be connected yet.
+     * @param thresholdInBytes bodies at least this large are compressed. Zero compresses every body.
+     */
+    public DeferredGzipOutputStream(HttpURLConnection urlConnection, int thresholdInBytes) {
+        if (urlConnection == null) {
+            throw new IllegalArgumentException("urlConnection may not be null");
+        }
+        if (thresholdInBytes < 0) {
+            throw new IllegalArgumentException("thresholdInBytes may not be negative");
+        }
+        this.urlConnection = urlConnection;
+        this.thresholdInBytes = thresholdInBytes;
+        this.pendingOutput = new ByteArrayOutputStream(Math.min(thresholdInBytes, GZIP_BUFFER_SIZE));
+    }
+
+    /**
+     * @return true if the body is being compressed. Only meaningful once the stream has been closed.
+     */
+    public boolean isCompressed() {
+        return isCompressed;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int count) throws IOException {
+        if (isClosed) {
+            throw new IOException("stream is closed");
+        }
+        if (outputStream == null) {
+            if (pendingOutput.size() + count < thresholdInBytes) {
+                pendingOutput.write(buffer, offset, count);
+                return;
+            }
+            open(true);
+        }
+        outputStream.write(buffer, offset, count);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        // Flushing before the threshold is reached would force the decision too early.
+        if (outputStream != null) {
+            outputStream.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (isClosed) {
+            return;
+        }
+        isClosed = true;
+        if (outputStream == null) {
+            open(pendingOutput.size() >= thresholdInBytes);
+        }
+        outputStream.close();
+    }
+
+    private void open(boolean shouldCompress) throws IOException {
+        if (shouldCompress) {
+            urlConnection.addRequestProperty("Content-Encoding", CONTENT_ENCODING_GZIP);
+        }
+        urlConnection.connect();
+        if (shouldCompress) {
+            outputStream = new GZIPOutputStream(urlConnection.getOutputStream(), GZIP_BUFFER_SIZE);
+        } else {
+            outputStream = urlConnection.getOutputStream();
+        }
+        isCompressed = shouldCompress;
+        pendingOutput.writeTo(outputStream);
+        pendingOutput = null;
+    }
+}
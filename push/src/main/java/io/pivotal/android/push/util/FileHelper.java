@@ -2,16 +2,26 @@ package io.pivotal.android.push.util;
 
 import android.content.Context;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Writer;
 
 public class FileHelper {
 
+    private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+    private static final int OUTPUT_BUFFER_SIZE = 8192;
+
+    public interface ContentWriter {
+        void write(Writer writer) throws IOException;
+    }
+
     final Context context;
 
     public FileHelper(Context context) {
@@ -27,4 +37,36 @@ public class FileHelper {
         final File file = new File(context.getFilesDir(), filename);
         return new FileWriter(file);
     }
+
+    /**
+     * Writes the file by writing a temporary file first and then renaming it over the old one, so that
+     * the file always has either all of the old contents or all of the new contents.  If writing fails then
+     * the old file is left as it was.
+     */
+    public void writeAtomically(String filename, ContentWriter contentWriter) throws IOException {
+        final File file = new File(context.getFilesDir(), filename);
+        final File temporaryFile = new File(context.getFilesDir(), filename + TEMPORARY_FILE_SUFFIX);
+        final FileOutputStream outputStream = new FileOutputStream(temporaryFile);
+        boolean isWritten = false;
+        try {
+            final Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, "UTF-8"), OUTPUT_BUFFER_SIZE);
+            contentWriter.write(writer);
+            writer.flush();
+            outputStream.getFD().sync();
+            isWritten = true;
+        } finally {
+            outputStream.close();
+            if (!isWritten) {
+                temporaryFile.delete();
+            }
+        }
+        if (!temporaryFile.renameTo(file)) {
+            temporaryFile.delete();
+            throw new IOException("Could not rename '" + temporaryFile.getName() + "' to '" + filename + "'");
+        }
+    }
+
+    public boolean delete(String filename) {
+        return context.deleteFile(filename);
+    }
 }
@@ -9,35 +9,127 @@ import com.google.gson.JsonParseException;
 import com.google.gson.JsonPrimitive;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
-import com.google.gson.TypeAdapter;
-import com.google.gson.reflect.TypeToken;
-import com.google.gson.stream.JsonReader;
-import com.google.gson.stream.JsonToken;
-import com.google.gson.stream.JsonWriter;
 
-import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.Date;
 
+import io.pivotal.android.push.model.analytics.AnalyticsEvent;
+import io.pivotal.android.push.model.analytics.AnalyticsEventList;
+import io.pivotal.android.push.model.analytics.AnalyticsEventListTypeAdapter;
+import io.pivotal.android.push.model.analytics.AnalyticsEventTypeAdapter;
+import io.pivotal.android.push.model.api.PCFPushApiRegistrationPostRequestData;
+import io.pivotal.android.push.model.api.PCFPushApiRegistrationPostRequestDataTypeAdapter;
+import io.pivotal.android.push.model.api.PCFPushApiRegistrationPutRequestData;
+import io.pivotal.android.push.model.api.PCFPushApiRegistrationPutRequestDataTypeAdapter;
+import io.pivotal.android.push.model.api.PCFPushApiRegistrationResponseData;
+import io.pivotal.android.push.model.api.PCFPushApiRegistrationResponseDataTypeAdapter;
 import io.pivotal.android.push.model.geofence.PCFPushGeofenceData;
 import io.pivotal.android.push.model.geofence.PCFPushGeofenceDataList;
-
+import io.pivotal.android.push.model.geofence.PCFPushGeofenceDataListTypeAdapter;
+import io.pivotal.android.push.model.geofence.PCFPushGeofenceDataTypeAdapter;
+import io.pivotal.android.push.model.geofence.PCFPushGeofenceLocation;
+import io.pivotal.android.push.model.geofence.PCFPushGeofenceLocationTypeAdapter;
+import io.pivotal.android.push.model.geofence.PCFPushGeofencePayload;
+import io.pivotal.android.push.model.geofence.PCFPushGeofencePayloadTypeAdapter;
+import io.pivotal.android.push.model.geofence.PCFPushGeofenceResponseData;
+import io.pivotal.android.push.model.geofence.PCFPushGeofenceResponseDataTypeAdapter;
+import io.pivotal.android.push.version.GeofenceStatus;
+import io.pivotal.android.push.version.GeofenceStatusTypeAdapter;
+
+/**
+ * Keeps the Gson instances used by the library.  Each one is built the first time it is needed and then
+ * shared: Gson instances are thread safe, and keep the type adapters they have looked up.  The library's own
+ * models are read and written by the hand-written type adapters registered here instead of by reflection.
+ */
 public class GsonUtil {
 
-    public static Gson getGson() {
-        return getBuilder().create();
+    // The models that have their own type adapters.  They are looked up ahead of time by warmUp.
+    private static final Class<?>[] MODEL_CLASSES = {
+            AnalyticsEvent.class,
+            AnalyticsEventList.class,
+            PCFPushApiRegistrationPostRequestData.class,
+            PCFPushApiRegistrationPutRequestData.class,
+            PCFPushApiRegistrationResponseData.class,
+            PCFPushGeofenceData.class,
+            PCFPushGeofenceDataList.class,
+            PCFPushGeofenceLocation.class,
+            PCFPushGeofencePayload.class,
+            PCFPushGeofenceResponseData.class,
+            GeofenceStatus.class
+    };
+
+    private static final AnalyticsEventTypeAdapter analyticsEventTypeAdapter = new AnalyticsEventTypeAdapter();
+    private static final AnalyticsEventListTypeAdapter analyticsEventListTypeAdapter = new AnalyticsEventListTypeAdapter(analyticsEventTypeAdapter);
+    private static final PCFPushGeofenceLocationTypeAdapter geofenceLocationTypeAdapter = new PCFPushGeofenceLocationTypeAdapter();
+    private static final PCFPushGeofencePayloadTypeAdapter geofencePayloadTypeAdapter = new PCFPushGeofencePayloadTypeAdapter();
+    private static final PCFPushGeofenceDataTypeAdapter geofenceDataTypeAdapter = new PCFPushGeofenceDataTypeAdapter(geofenceLocationTypeAdapter, geofencePayloadTypeAdapter);
+    private static final PCFPushGeofenceDataListTypeAdapter geofenceDataListTypeAdapter = new PCFPushGeofenceDataListTypeAdapter(geofenceDataTypeAdapter);
+    private static final PCFPushGeofenceResponseDataTypeAdapter geofenceResponseDataTypeAdapter = new PCFPushGeofenceResponseDataTypeAdapter(geofenceDataTypeAdapter);
+
+    private static Gson gson;
+    private static Gson gsonThatSerializesNulls;
+    private static boolean isWarmUpStarted = false;
+
+    public static synchronized Gson getGson() {
+        if (gson == null) {
+            gson = getBuilder().create();
+        }
+        return gson;
     }
 
-    public static Gson getGsonAndSerializeNulls() {
-        return getBuilder().serializeNulls().create();
+    public static synchronized Gson getGsonAndSerializeNulls() {
+        if (gsonThatSerializesNulls == null) {
+            gsonThatSerializesNulls = getBuilder().serializeNulls().create();
+        }
+        return gsonThatSerializesNulls;
     }
 
-    private static GsonBuilder getBuilder() {
+    /**
+     * Builds the shared Gson instance and looks up the type adapters for the library's models on a
+     * background thread, so that the first request or file read on a cold start does not have to wait for
+     * it.  Only the first call does anything.  Safe to call from the main thread.
+     */
+    public static void warmUpInBackground() {
+        synchronized (GsonUtil.class) {
+            if (isWarmUpStarted) {
+                return;
+            }
+            isWarmUpStarted = true;
+        }
+
+        final Thread thread = new Thread(new Runnable() {
 
-        final Type longSparseArrayType = new TypeToken<PCFPushGeofenceDataList>(){}.getType();
+            @Override
+            public void run() {
+                warmUp();
+            }
+        }, "GsonWarmUp");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /* package */ static void warmUp() {
+        final Gson gson = getGson();
+        for (final Class<?> modelClass : MODEL_CLASSES) {
+            gson.getAdapter(modelClass);
+        }
+        Logger.d("Gson is ready.");
+    }
 
+    private static GsonBuilder getBuilder() {
         return new GsonBuilder()
-                .registerTypeAdapter(longSparseArrayType, new PCFPushGeofenceDataListTypeAdapter())
+                .registerTypeAdapter(PCFPushGeofenceDataList.class, geofenceDataListTypeAdapter)
+                .registerTypeAdapter(PCFPushGeofenceData.class, geofenceDataTypeAdapter)
+                .registerTypeAdapter(PCFPushGeofenceLocation.class, geofenceLocationTypeAdapter)
+                .registerTypeAdapter(PCFPushGeofencePayload.class, geofencePayloadTypeAdapter)
+                .registerTypeAdapter(PCFPushGeofenceResponseData.class, geofenceResponseDataTypeAdapter)
+                .registerTypeAdapter(GeofenceStatus.class, new GeofenceStatusTypeAdapter())
+                .registerTypeAdapter(PCFPushApiRegistrationPostRequestData.class, new PCFPushApiRegistrationPostRequestDataTypeAdapter())
+                .registerTypeAdapter(PCFPushApiRegistrationPutRequestData.class, new PCFPushApiRegistrationPutRequestDataTypeAdapter())
+                .registerTypeAdapter(PCFPushApiRegistrationResponseData.class, new PCFPushApiRegistrationResponseDataTypeAdapter())
+                .registerTypeAdapter(AnalyticsEvent.class, analyticsEventTypeAdapter)
+                .registerTypeAdapter(AnalyticsEventList.class, analyticsEventListTypeAdapter)
                 .registerTypeAdapter(Date.class, dateDeserializer)
                 .registerTypeAdapter(Date.class, dateSerializer);
     }
@@ -62,57 +154,4 @@ public class GsonUtil {
             return new JsonPrimitive(src.getTime());
         }
     };
-
-    private static class PCFPushGeofenceDataListTypeAdapter extends TypeAdapter<PCFPushGeofenceDataList> {
-
-        final Gson gson;
-
-        public PCFPushGeofenceDataListTypeAdapter() {
-
-            this.gson = new GsonBuilder()
-                    .registerTypeAdapter(Date.class, dateSerializer)
-                    .registerTypeAdapter(Date.class, dateDeserializer)
-                    .create();
-        }
-
-        @Override
-        public void write(JsonWriter out, PCFPushGeofenceDataList array) throws IOException {
-            if (array == null) {
-                out.nullValue();
-                return;
-            }
-
-            final Type dataType = new TypeToken<PCFPushGeofenceData>(){}.getType();
-
-            out.beginArray();
-
-            for (int i = 0; i < array.size(); i += 1) {
-                final long key = array.keyAt(i);
-                final PCFPushGeofenceData item = array.get(key);
-                gson.toJson(gson.toJsonTree(item, dataType), out);
-            }
-
-            out.endArray();
-        }
-
-        @Override
-        public PCFPushGeofenceDataList read(JsonReader in) throws IOException {
-            if (in.peek() == JsonToken.NULL) {
-                in.nextNull();
-                return null;
-            }
-            if (in.peek() != JsonToken.BEGIN_ARRAY) {
-                throw new IOException("Parsing PCFPushGeofenceDataList. Expected JsonToken.BEGIN_ARRAY");
-            }
-            final PCFPushGeofenceDataList result = new PCFPushGeofenceDataList();
-            in.beginArray();
-            while (in.peek() != JsonToken.END_ARRAY) {
-                final PCFPushGeofenceData item = gson.fromJson(in, PCFPushGeofenceData.class);
-                final long key = item.getId();
-                result.put(key, item);
-            }
-            in.endArray();
-            return result;
-        }
-    }
 }
@@ -0,0 +1,141 @@
+package io.pivotal.android.push.util;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Helpers for the hand-written Gson type adapters.  Values are read the same way as Gson's own adapters
+ * read them (e.g.: numbers may be quoted), and badly formed numbers are reported as a
+ * {@link JsonSyntaxException}.  Dates are written as milliseconds, the same as {@link GsonUtil} does.
+ */
+public class JsonStreamUtil {
+
+    // Numbers and booleans are read as strings, the same as Gson does for String fields
+    public static String readString(JsonReader in) throws IOException {
+        final JsonToken token = in.peek();
+        if (token == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        if (token == JsonToken.BOOLEAN) {
+            return Boolean.toString(in.nextBoolean());
+        }
+        return in.nextString();
+    }
+
+    public static long readLong(JsonReader in) throws IOException {
+        try {
+            return in.nextLong();
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    public static int readInt(JsonReader in) throws IOException {
+        try {
+            return in.nextInt();
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    public static double readDouble(JsonReader in) throws IOException {
+        try {
+            return in.nextDouble();
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    public static boolean readBoolean(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.STRING) {
+            return Boolean.parseBoolean(in.nextString());
+        }
+        return in.nextBoolean();
+    }
+
+    public static Date readDate(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return new Date(readLong(in));
+    }
+
+    public static void writeDate(JsonWriter out, Date date) throws IOException {
+        if (date == null) {
+            out.nullValue();
+        } else {
+            out.value(date.getTime());
+        }
+    }
+
+    public static List<String> readStringList(JsonReader in) throws IOException {
+        final List<String> list = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            list.add(readString(in));
+        }
+        in.endArray();
+        return list;
+    }
+
+    public static Set<String> readStringSet(JsonReader in) throws IOException {
+        final Set<String> set = new LinkedHashSet<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            set.add(readString(in));
+        }
+        in.endArray();
+        return set;
+    }
+
+    public static void writeStrings(JsonWriter out, Collection<String> strings) throws IOException {
+        if (strings == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginArray();
+        for (final String string : strings) {
+            out.value(string);
+        }
+        out.endArray();
+    }
+
+    public static List<Long> readLongList(JsonReader in) throws IOException {
+        final List<Long> list = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                list.add(null);
+            } else {
+                list.add(readLong(in));
+            }
+        }
+        in.endArray();
+        return list;
+    }
+
+    public static void writeLongs(JsonWriter out, List<Long> longs) throws IOException {
+        if (longs == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginArray();
+        for (int i = 0; i < longs.size(); i += 1) {
+            out.value(longs.get(i));
+        }
+        out.endArray();
+    }
+}
@@ -36,4 +36,13 @@ public class NetworkUtil {
         NetworkInfo activeNetworkInfo = connectivityManager.getActiveNetworkInfo();
         return (activeNetworkInfo != null) && activeNetworkInfo.isConnected();
     }
+
+    /**
+     * Checks if the active network is one that the user is not charged for by the amount of data (e.g.: Wi-Fi).
+     * @return Returns true if the device is connected to an unmetered network, else returns false.
+     */
+    public boolean isNetworkUnmetered() {
+        ConnectivityManager connectivityManager = (ConnectivityManager) applicationContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        return isNetworkAvailable() && !connectivityManager.isActiveNetworkMetered();
+    }
 }
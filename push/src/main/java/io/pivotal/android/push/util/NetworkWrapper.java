@@ -14,4 +14,10 @@ public interface NetworkWrapper {
     boolean isNetworkAvailable(Context context);
 
     HttpURLConnection getHttpURLConnection(URL url) throws IOException;
+
+    /**
+     * Called once a request is finished with the given connection.  Implementations may either close the
+     * underlying socket or return it to a connection pool for reuse by later requests.
+     */
+    void releaseHttpURLConnection(HttpURLConnection urlConnection);
 }
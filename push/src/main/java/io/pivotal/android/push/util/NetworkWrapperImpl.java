@@ -21,4 +21,9 @@ public class NetworkWrapperImpl implements NetworkWrapper {
         return (HttpURLConnection) url.openConnection();
     }
 
+    @Override
+    public void releaseHttpURLConnection(HttpURLConnection urlConnection) {
+        urlConnection.disconnect();
+    }
+
 }
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2014 Pivotal Software, Inc. All rights reserved.
+ */
+package io.pivotal.android.push.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+
+/**
+ * A network wrapper that keeps HTTP connections alive between requests.
+ *
+ * Released connections have their response bodies drained and closed (instead of being
+ * disconnected) so that the platform HTTP stack can return their sockets to its keep-alive
+ * pool.  HTTPS connections to the same host that share the same trust configuration (see
+ * {@link SslTrustCache}) also share the same SSL socket factory and therefore reuse TLS sessions.
+ *
+ * The size and idle timeout of the pool are left to the platform.  They are set by process-wide
+ * system properties (e.g.: "http.maxConnections"), which belong to the host application, so this
+ * class does not change them.
+ */
+public class PooledNetworkWrapper extends NetworkWrapperImpl {
+
+    // Responses larger than this are not worth draining.  Their connections are simply closed.
+    private static final int MAX_DRAIN_SIZE_IN_BYTES = 64 * 1024;
+
+    @Override
+    public void releaseHttpURLConnection(HttpURLConnection urlConnection) {
+        InputStream inputStream = null;
+        try {
+            if (urlConnection.getResponseCode() >= 400) {
+                inputStream = urlConnection.getErrorStream();
+            } else {
+                inputStream = urlConnection.getInputStream();
+            }
+
+            if (inputStream != null && !drain(inputStream)) {
+                urlConnection.disconnect();
+            }
+
+        } catch (IOException e) {
+            Logger.w("Could not drain HTTP response. Closing connection: " + e);
+            urlConnection.disconnect();
+
+        } finally {
+            if (inputStream != null) {
+                try {
+                    inputStream.close();
+                } catch (IOException e) {
+                    Logger.w("Could not close HTTP response stream: " + e);
+                }
+            }
+        }
+    }
+
+    // Returns true if the entire response body was consumed
+    private static boolean drain(InputStream inputStream) throws IOException {
+        final byte[] buffer = new byte[4096];
+        int totalBytesRead = 0;
+        while (totalBytesRead <= MAX_DRAIN_SIZE_IN_BYTES) {
+            final int numberBytesRead = inputStream.read(buffer);
+            if (numberBytesRead < 0) {
+                return true;
+            }
+            totalBytesRead += numberBytesRead;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2014 Pivotal Software, Inc. All rights reserved.
+ */
+package io.pivotal.android.push.util;
+
+import java.util.Random;
+
+/**
+ * Decides how many times a failed request is attempted and how long to wait between attempts.  The wait uses
+ * exponential backoff with "full jitter": a random delay between zero and an exponentially growing cap, so that
+ * many devices that failed at the same time don't all retry at the same time too.
+ *
+ * The request's thread is blocked while it waits, so the default maximum delay is short.  Failures that need a
+ * longer wait (e.g.: a long "Retry-After") are left to the caller, e.g.: the next analytics upload.
+ */
+public class RetryPolicy {
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final long DEFAULT_BASE_DELAY_IN_MILLISECONDS = 1000L;
+    public static final long DEFAULT_MAX_DELAY_IN_MILLISECONDS = 5 * 1000L;
+
+    private final int maxAttempts;
+    private final long baseDelayInMilliseconds;
+    private final long maxDelayInMilliseconds;
+    private final Random random;
+
+    public RetryPolicy() {
+        this(DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_DELAY_IN_MILLISECONDS, DEFAULT_MAX_DELAY_IN_MILLISECONDS, new Random());
+    }
+
+    /**
+     * @param maxAttempts the total number of attempts, including the first one.  Must be at least 1.
+     * @param baseDelayInMilliseconds the cap on the delay after the first failed attempt.
+     * @param maxDelayInMilliseconds the largest delay between two attempts.
+     * @param random the source of the jitter.
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayInMilliseconds, long maxDelayInMilliseconds, Random random) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1");
+        }
+        if (baseDelayInMilliseconds < 0) {
+            throw new IllegalArgumentException("baseDelayInMilliseconds may not be negative");
+        }
+        if (maxDelayInMilliseconds < baseDelayInMilliseconds) {
+            throw new IllegalArgumentException("maxDelayInMilliseconds may not be less than baseDelayInMilliseconds");
+        }
+        if (random == null) {
+            throw new IllegalArgumentException("random may not be null");
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseDelayInMilliseconds = baseDelayInMilliseconds;
+        this.maxDelayInMilliseconds = maxDelayInMilliseconds;
+        this.random = random;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getMaxDelayInMilliseconds() {
+        return maxDelayInMilliseconds;
+    }
+
+    /**
+     * @return true if another attempt may be made after the given number of failed attempts.
+     */
+    public boolean shouldRetry(int numberOfFailedAttempts) {
+        return numberOfFailedAttempts < maxAttempts;
+    }
+
+    /**
+     * @param numberOfFailedAttempts the number of attempts that have failed so far.  Must be at least 1.
+     * @return a random delay between zero and min(maxDelay, baseDelay * 2 ^ (numberOfFailedAttempts - 1)), inclusive.
+     */
+    public long getBackoffDelay(int numberOfFailedAttempts) {
+        if (numberOfFailedAttempts < 1) {
+            throw new IllegalArgumentException("numberOfFailedAttempts must be at least 1");
+        }
+        final long cap = getBackoffCap(numberOfFailedAttempts);
+        final double fraction;
+        synchronized (random) {
+            fraction = random.nextDouble();
+        }
+        return Math.min(cap, (long) (fraction * (cap + 1)));
+    }
+
+    /* package */ long getBackoffCap(int numberOfFailedAttempts) {
+        final int exponent = Math.min(numberOfFailedAttempts - 1, 30);
+        final long cap = baseDelayInMilliseconds << exponent;
+        if (cap < 0 || cap > maxDelayInMilliseconds) {
+            return maxDelayInMilliseconds;
+        }
+        return cap;
+    }
+}
@@ -4,10 +4,17 @@ import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 
+import io.pivotal.android.push.service.AnalyticsJobExecutor;
+
 public class ServiceStarterImpl implements ServiceStarter {
 
     @Override
     public ComponentName startService(Context context, Intent service) {
+        // Analytics jobs started inside this process skip the service and the Parcel round-trip.  The executor
+        // holds a wake lock until each job has run, since no service keeps the process going.
+        if (AnalyticsJobExecutor.submitJobFromIntent(context, service)) {
+            return service.getComponent();
+        }
         return context.startService(service);
     }
 }
@@ -0,0 +1,300 @@
+/*
+ * Copyright (C) 2014 Pivotal Software, Inc. All rights reserved.
+ */
+package io.pivotal.android.push.util;
+
+import android.content.Context;
+import android.support.annotation.VisibleForTesting;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+
+import io.pivotal.android.push.prefs.Pivotal;
+
+import static java.util.Collections.list;
+
+/**
+ * Process-wide cache of the SSL trust configuration used by the PCF Push API requests.
+ *
+ * Building a pinned-certificate trust pipeline means parsing the certificates out of the
+ * application assets, initializing a TrustManagerFactory and an SSLContext.  All of this is
+ * done once per distinct (validation mode, pinned certificate list) pair and is then shared
+ * by all registration, geofence and analytics requests in the process.
+ */
+public class SslTrustCache {
+
+    private static final String PIN_DIGEST_ALGORITHM = "SHA-256";
+
+    private static final Map<Key, SSLSocketFactory> socketFactories = new HashMap<>();
+
+    private static final HostnameVerifier TRUST_ALL_HOSTNAME_VERIFIER = new HostnameVerifier() {
+        @Override
+        public boolean verify(String hostname, SSLSession session) {
+            return true;
+        }
+    };
+
+    private SslTrustCache() {}
+
+    /**
+     * Returns the shared socket factory that does not validate any certificate chains.
+     */
+    public static SSLSocketFactory getTrustAllSocketFactory() throws GeneralSecurityException {
+        final Key key = new Key(Pivotal.SslCertValidationMode.TRUST_ALL, null);
+        synchronized (socketFactories) {
+            SSLSocketFactory socketFactory = socketFactories.get(key);
+            if (socketFactory == null) {
+                socketFactory = buildTrustAllSocketFactory();
+                socketFactories.put(key, socketFactory);
+            }
+            return socketFactory;
+        }
+    }
+
+    /**
+     * Returns the hostname verifier that ignores differences between the given hostname and the certificate hostname.
+     */
+    public static HostnameVerifier getTrustAllHostnameVerifier() {
+        return TRUST_ALL_HOSTNAME_VERIFIER;
+    }
+
+    /**
+     * Returns the shared socket factory that only accepts servers presenting one of the given pinned certificates.
+     *
+     * @param context  Used to read the pinned certificates from the application assets the first time around.
+     * @param pinnedCertificateNames  The names of the pinned certificate files in the application assets.
+     */
+    public static SSLSocketFactory getPinnedSocketFactory(Context context, List<String> pinnedCertificateNames) throws GeneralSecurityException, IOException {
+        final Key key = new Key(Pivotal.SslCertValidationMode.PINNED, pinnedCertificateNames);
+        synchronized (socketFactories) {
+            SSLSocketFactory socketFactory = socketFactories.get(key);
+            if (socketFactory == null) {
+                socketFactory = buildPinnedSocketFactory(context, key.pinnedCertificateNames);
+                socketFactories.put(key, socketFactory);
+            }
+            return socketFactory;
+        }
+    }
+
+    @VisibleForTesting
+    public static void reset() {
+        synchronized (socketFactories) {
+            socketFactories.clear();
+        }
+    }
+
+    @VisibleForTesting
+    static int size() {
+        synchronized (socketFactories) {
+            return socketFactories.size();
+        }
+    }
+
+    private static SSLSocketFactory buildTrustAllSocketFactory() throws GeneralSecurityException {
+        // Create a trust manager that does not validate certificate chains
+        final TrustManager[] trustAllCerts = new TrustManager[] {
+                new X509TrustManager() {
+                    public X509Certificate[] getAcceptedIssuers() {
+                        return new X509Certificate[0];
+                    }
+                    public void checkClientTrusted(X509Certificate[] certs, String authType) {}
+                    public void checkServerTrusted(X509Certificate[] certs, String authType) {}
+                }};
+
+        final SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(null, trustAllCerts, null);
+        return sslContext.getSocketFactory();
+    }
+
+    private static SSLSocketFactory buildPinnedSocketFactory(Context context, List<String> pinnedCertificateNames) throws GeneralSecurityException, IOException {
+
+        // Load CAs from the application assets
+        final KeyStore keyStore = getKeyStore(context, pinnedCertificateNames);
+
+        final TrustManagerFactory trustMgrFactory = TrustManagerFactory.getInstance("X509");
+        trustMgrFactory.init(keyStore);
+
+        final List<X509TrustManager> keyStoreTrustManagers = new ArrayList<>();
+        for (TrustManager trustManager : trustMgrFactory.getTrustManagers()) {
+            if (trustManager instanceof X509TrustManager) {
+                keyStoreTrustManagers.add((X509TrustManager) trustManager);
+            }
+        }
+
+        final List<byte[]> pinDigests = new ArrayList<>();
+        for (String alias : list(keyStore.aliases())) {
+            pinDigests.add(getPinDigest(keyStore.getCertificate(alias).getPublicKey()));
+        }
+
+        final TrustManager[] trustPinnedManager = new TrustManager[] {
+                new PinnedTrustManager(keyStoreTrustManagers, pinDigests)
+        };
+
+        final SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(null, trustPinnedManager, null);
+        return sslContext.getSocketFactory();
+    }
+
+    private static KeyStore getKeyStore(Context context, List<String> pinnedCertificateNames) throws GeneralSecurityException, IOException {
+
+        final CertificateFactory cf = CertificateFactory.getInstance("X.509");
+        final String keyStoreType = KeyStore.getDefaultType();
+        final KeyStore keyStore = KeyStore.getInstance(keyStoreType);
+        keyStore.load(null, null);
+
+        for (int i = 0; i < pinnedCertificateNames.size(); i += 1) {
+
+            final String pinnedCertificateName = pinnedCertificateNames.get(i);
+            InputStream caInput = null;
+            Certificate ca = null;
+
+            try {
+                if (pinnedCertificateName != null) {
+                    caInput = context.getAssets().open(pinnedCertificateName);
+                    ca = cf.generateCertificate(caInput);
+                    Logger.i("Note: We are pinning certificate '" + pinnedCertificateName + "'.");
+                }
+
+            } catch (IOException e1) {
+                Logger.w("WARNING: could not open certificate file '" + pinnedCertificateName + "': " + e1);
+
+            } catch (CertificateException e2) {
+                Logger.w("WARNING: could not read certificate file '" + pinnedCertificateName + "': " + e2);
+
+            } finally {
+                if (caInput != null) {
+                    caInput.close();
+                }
+            }
+
+            // Create a KeyStore containing our trusted CAs
+            if (ca != null) {
+                keyStore.setCertificateEntry(String.valueOf(i), ca);
+            }
+        }
+
+        return keyStore;
+    }
+
+    @VisibleForTesting
+    static byte[] getPinDigest(PublicKey publicKey) throws NoSuchAlgorithmException {
+        return MessageDigest.getInstance(PIN_DIGEST_ALGORITHM).digest(publicKey.getEncoded());
+    }
+
+    private static class PinnedTrustManager implements X509TrustManager {
+
+        private final List<X509TrustManager> keyStoreTrustManagers;
+        private final List<byte[]> pinDigests;
+
+        private PinnedTrustManager(List<X509TrustManager> keyStoreTrustManagers, List<byte[]> pinDigests) {
+            this.keyStoreTrustManagers = keyStoreTrustManagers;
+            this.pinDigests = pinDigests;
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType) throws CertificateException {}
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+            if (chain == null) {
+                throw new IllegalArgumentException("checkServerTrusted: X509Certificate array is null");
+            }
+
+            if (!(chain.length > 0)) {
+                throw new IllegalArgumentException("checkServerTrusted: X509Certificate is empty");
+            }
+
+            if (!(authType != null && authType.contains("RSA"))) {
+                throw new CertificateException("checkServerTrusted: AuthType is not RSA.  AuthType: " + authType);
+            }
+
+            boolean foundMatchingCertificate = false;
+
+            // Perform custom SSL/TLS checks
+            try {
+                for (X509TrustManager trustManager : keyStoreTrustManagers) {
+                    trustManager.checkServerTrusted(chain, authType);
+                }
+
+                // Remote certificate
+                final byte[] remotePinDigest = getPinDigest(chain[0].getPublicKey());
+
+                for (byte[] localPinDigest : pinDigests) {
+                    if (MessageDigest.isEqual(localPinDigest, remotePinDigest)) {
+                        foundMatchingCertificate = true;
+                        break;
+                    }
+                }
+
+            } catch (Exception error) {
+                throw new CertificateException(error);
+            }
+
+            // Pin it!
+            if (!foundMatchingCertificate) {
+                throw new CertificateException("The server's certificate has not been authenticated.");
+            }
+        }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return new X509Certificate[0];
+        }
+    }
+
+    private static final class Key {
+
+        private final Pivotal.SslCertValidationMode mode;
+        private final List<String> pinnedCertificateNames;
+
+        private Key(Pivotal.SslCertValidationMode mode, List<String> pinnedCertificateNames) {
+            this.mode = mode;
+            if (pinnedCertificateNames == null) {
+                this.pinnedCertificateNames = Collections.emptyList();
+            } else {
+                this.pinnedCertificateNames = Collections.unmodifiableList(new ArrayList<>(pinnedCertificateNames));
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return mode == other.mode && pinnedCertificateNames.equals(other.pinnedCertificateNames);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = mode != null ? mode.hashCode() : 0;
+            result = 31 * result + pinnedCertificateNames.hashCode();
+            return result;
+        }
+    }
+}
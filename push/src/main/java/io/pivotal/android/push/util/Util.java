@@ -9,8 +9,6 @@ import android.content.pm.PackageManager;
 import android.os.Build;
 import android.util.Base64;
 
-import com.google.gson.Gson;
-
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
@@ -112,7 +110,7 @@ public class Util {
                     }
                     final File file = new File(dir, "geofences.json");
                     writer = new FileWriter(file);
-                    new Gson().toJson(map, writer);
+                    GsonUtil.getGson().toJson(map, writer);
                     Logger.d("Saved geofences to file: " + file.getAbsolutePath());
                 } catch (Exception e) {
                     Logger.w("Was not able to save geofences to filesystem. This error is not-fatal. " + e.getLocalizedMessage());
@@ -0,0 +1,71 @@
+package io.pivotal.android.push.version;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import io.pivotal.android.push.util.JsonStreamUtil;
+
+/**
+ * Reads and writes a {@link GeofenceStatus} without reflection.  Uses the field names that Gson's reflective
+ * adapter used, so that saved statuses can still be read.
+ */
+public class GeofenceStatusTypeAdapter extends TypeAdapter<GeofenceStatus> {
+
+    private static final String IS_ERROR = "isError";
+    private static final String ERROR_REASON = "errorReason";
+    private static final String NUMBER_CURRENTLY_MONITORING_GEOFENCES = "numberCurrentlyMonitoringGeofences";
+
+    @Override
+    public void write(JsonWriter out, GeofenceStatus status) throws IOException {
+        if (status == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name(IS_ERROR).value(status.isError());
+        out.name(ERROR_REASON).value(status.getErrorReason());
+        out.name(NUMBER_CURRENTLY_MONITORING_GEOFENCES).value(status.getNumberCurrentlyMonitoringGeofences());
+        out.endObject();
+    }
+
+    @Override
+    public GeofenceStatus read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        boolean isError = false;
+        String errorReason = null;
+        int numberCurrentlyMonitoringGeofences = 0;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            final String fieldName = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (fieldName) {
+                case IS_ERROR:
+                    isError = JsonStreamUtil.readBoolean(in);
+                    break;
+                case ERROR_REASON:
+                    errorReason = JsonStreamUtil.readString(in);
+                    break;
+                case NUMBER_CURRENTLY_MONITORING_GEOFENCES:
+                    numberCurrentlyMonitoringGeofences = JsonStreamUtil.readInt(in);
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return new GeofenceStatus(isError, errorReason, numberCurrentlyMonitoringGeofences);
+    }
+}